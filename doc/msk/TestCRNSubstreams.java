@@ -0,0 +1,86 @@
+import java.io.File;
+
+import umontreal.iro.lecuyer.contactcenters.app.ContactCenterSimWithObservations;
+import umontreal.iro.lecuyer.contactcenters.app.EvalOptionType;
+import umontreal.iro.lecuyer.contactcenters.app.PerformanceMeasureType;
+import umontreal.iro.lecuyer.contactcenters.app.SimParamsConverter;
+import umontreal.iro.lecuyer.contactcenters.app.params.RandomStreamsParams;
+import umontreal.iro.lecuyer.contactcenters.app.params.SimParams;
+import umontreal.iro.lecuyer.contactcenters.msk.CallCenterParamsConverter;
+import umontreal.iro.lecuyer.contactcenters.msk.CallCenterSim;
+import umontreal.iro.lecuyer.contactcenters.msk.model.CallCenterCreationException;
+import umontreal.iro.lecuyer.contactcenters.msk.params.CallCenterParams;
+import umontreal.ssj.stat.Tally;
+
+public class TestCRNSubstreams {
+   // Adds the differences of observations to the given tally
+   public static void addObsDiff (double[] obs0, double[] obs1, Tally tally) {
+      assert obs0.length == obs1.length;
+      tally.init ();
+      for (int j = 0; j < obs0.length; j++)
+         tally.add (obs1[j] - obs0[j]);
+   }
+
+   // Estimates the variance of the difference of observations
+   // for the given staffing change, with IRNs and CRNs
+   public static double[] varianceOfDiff (CallCenterParams ccParams,
+         SimParams simParams, PerformanceMeasureType pm, int i,
+         int deltaStaffing) throws CallCenterCreationException {
+      ContactCenterSimWithObservations sim = new CallCenterSim (ccParams,
+            simParams);
+      sim.setAutoResetStartStream (false);
+      int rows = pm.rows (sim);
+      int columns = pm.columns (sim);
+      sim.eval ();
+      double[] obs0 = sim.getObs (pm, rows - 1, columns - 1);
+      sim.resetStartStream ();
+      int[] staffing = (int[]) sim.getEvalOption (EvalOptionType.STAFFINGVECTOR);
+      staffing[i] += deltaStaffing;
+      sim.setEvalOption (EvalOptionType.STAFFINGVECTOR, staffing);
+      sim.eval ();
+      double[] obs1 = sim.getObs (pm, rows - 1, columns - 1);
+      sim.eval ();
+      double[] obs1i = sim.getObs (pm, rows - 1, columns - 1);
+
+      Tally diffIRN = new Tally ();
+      addObsDiff (obs0, obs1i, diffIRN);
+      Tally diffCRN = new Tally ();
+      addObsDiff (obs0, obs1, diffCRN);
+      return new double[] { diffIRN.average (), diffIRN.variance (),
+            diffCRN.average (), diffCRN.variance () };
+   }
+
+   public static void main (String[] args) throws CallCenterCreationException {
+      if (args.length != 4) {
+         System.out.println
+            ("Usage: java TestCRNSubstreams ccParams simParams i deltaStaffing");
+         System.exit (1);
+      }
+      String ccParamsFn = args[0];
+      String simParamsFn = args[1];
+      int i = Integer.parseInt (args[2]);
+      int deltaStaffing = Integer.parseInt (args[3]);
+
+      CallCenterParamsConverter cnvCC = new CallCenterParamsConverter ();
+      CallCenterParams ccParams = cnvCC.unmarshalOrExit (new File (ccParamsFn));
+      SimParamsConverter cnvSim = new SimParamsConverter ();
+      SimParams simParams = cnvSim.unmarshalOrExit (new File (simParamsFn));
+      simParams.setKeepObs (true);
+      if (simParams.getRandomStreams () == null)
+         simParams.setRandomStreams (new RandomStreamsParams ());
+
+      PerformanceMeasureType pm = PerformanceMeasureType.RATEOFINTARGETSL;
+      System.out.printf ("%-20s %12s %12s %12s %12s %10s%n", "Streams",
+            "Mean IRN", "Var IRN", "Mean CRN", "Var CRN", "Var ratio");
+      for (boolean callSubstreams : new boolean[] { false, true }) {
+         simParams.getRandomStreams ().setCallSubstreams (callSubstreams);
+         long start = System.currentTimeMillis ();
+         double[] res = varianceOfDiff (ccParams, simParams, pm, i,
+               deltaStaffing);
+         long time = System.currentTimeMillis () - start;
+         System.out.printf ("%-20s %12.5g %12.5g %12.5g %12.5g %10.3g  (%d ms)%n",
+               callSubstreams ? "call substreams" : "type streams",
+               res[0], res[1], res[2], res[3], res[1] / res[3], time);
+      }
+   }
+}
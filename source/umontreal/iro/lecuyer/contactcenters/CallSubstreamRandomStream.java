@@ -0,0 +1,157 @@
+package umontreal.iro.lecuyer.contactcenters;
+
+import umontreal.ssj.rng.CloneableRandomStream;
+import umontreal.ssj.rng.MRG32k3a;
+import umontreal.ssj.util.ArithmeticMod;
+
+/**
+ * Random stream giving a distinct substream to
+ * each contact created during a replication, for a
+ * better synchronization of common random numbers.
+ * This stream is constructed from an {@link MRG32k3a} stream
+ * whose starting point is divided into
+ * blocks of $2^{106}$ uniforms, one block per replication.
+ * Each block is in turn divided into substreams of $2^{76}$ uniforms,
+ * and the $n$th call to {@link #nextCallSubstream()} during
+ * a replication moves this stream to the beginning of the
+ * $n$th substream of the block of the replication.
+ * If a contact factory calls this method before generating
+ * the random variates of each new contact, the
+ * variates of the $n$th contact
+ * only depend on the replication and on $n$, not on the
+ * number of uniforms used by the previous contacts.
+ * Comparing two systems with common random numbers then
+ * keeps the variates of contacts synchronized even if
+ * the systems require different random variates for each contact,
+ * e.g., when a contact is transferred in one system but not in the other.
+ *
+ * For this stream, {@link #resetStartStream()} moves to
+ * the block of the first replication,
+ * {@link #resetNextSubstream()} moves to the block of the next
+ * replication, and {@link #resetStartSubstream()}
+ * restarts the current replication.
+ * Each of these methods resets the index of the contact substream
+ * so the next call to {@link #nextCallSubstream()} moves to the
+ * first substream of the block.
+ * This supports up to $2^{30}$ contacts per replication, and
+ * $2^{21}$ replications.
+ */
+public class CallSubstreamRandomStream implements CloneableRandomStream {
+   // Modulus of the two components of MRG32k3a
+   private static final long M1 = 4294967087L;
+   private static final long M2 = 4294944443L;
+   // Transition matrices of the components
+   private static final long[][] A1 = { { 0, 1, 0 }, { 0, 0, 1 },
+         { M1 - 810728L, 1403580L, 0 } };
+   private static final long[][] A2 = { { 0, 1, 0 }, { 0, 0, 1 },
+         { M2 - 1370589L, 0, 527612L } };
+   /**
+    * Base-2 logarithm of the number of uniforms
+    * in the block of a replication.
+    */
+   public static final int REPLICATIONEXP = 106;
+   private static final long[][] A1REP = new long[3][3];
+   private static final long[][] A2REP = new long[3][3];
+   static {
+      ArithmeticMod.matTwoPowModM (A1, A1REP, M1, REPLICATIONEXP);
+      ArithmeticMod.matTwoPowModM (A2, A2REP, M2, REPLICATIONEXP);
+   }
+
+   private long[] startState;
+   private long[] repState;
+   private MRG32k3a stream;
+   private boolean callStarted;
+
+   /**
+    * Constructs a new random stream giving
+    * substreams to contacts, starting from
+    * the current state of \texttt{stream}.
+    * The given stream is not modified.
+    * @param stream the stream giving the starting point.
+    * @exception NullPointerException if \texttt{stream} is \texttt{null}.
+    */
+   public CallSubstreamRandomStream (MRG32k3a stream) {
+      if (stream == null)
+         throw new NullPointerException ("The stream must not be null");
+      startState = stream.getState ();
+      repState = startState.clone ();
+      this.stream = stream.clone ();
+      startReplication ();
+   }
+
+   private void startReplication () {
+      stream.setSeed (repState);
+      callStarted = false;
+   }
+
+   /**
+    * Moves this stream to the beginning of the substream
+    * of the next contact of the current replication.
+    * The first call after a reset moves to the
+    * first substream of the replication.
+    */
+   public void nextCallSubstream () {
+      if (callStarted)
+         stream.resetNextSubstream ();
+      else {
+         stream.resetStartSubstream ();
+         callStarted = true;
+      }
+   }
+
+   public void resetStartStream () {
+      System.arraycopy (startState, 0, repState, 0, repState.length);
+      startReplication ();
+   }
+
+   public void resetStartSubstream () {
+      startReplication ();
+   }
+
+   public void resetNextSubstream () {
+      final long[] s1 = { repState[0], repState[1], repState[2] };
+      final long[] s2 = { repState[3], repState[4], repState[5] };
+      final long[] v = new long[3];
+      ArithmeticMod.matVecModM (A1REP, s1, v, M1);
+      System.arraycopy (v, 0, repState, 0, 3);
+      ArithmeticMod.matVecModM (A2REP, s2, v, M2);
+      System.arraycopy (v, 0, repState, 3, 3);
+      startReplication ();
+   }
+
+   public double nextDouble () {
+      return stream.nextDouble ();
+   }
+
+   public void nextArrayOfDouble (double[] u, int start, int n) {
+      stream.nextArrayOfDouble (u, start, n);
+   }
+
+   public int nextInt (int i, int j) {
+      return stream.nextInt (i, j);
+   }
+
+   public void nextArrayOfInt (int i, int j, int[] u, int start, int n) {
+      stream.nextArrayOfInt (i, j, u, start, n);
+   }
+
+   @Override
+   public CallSubstreamRandomStream clone () {
+      final CallSubstreamRandomStream cpy;
+      try {
+         cpy = (CallSubstreamRandomStream) super.clone ();
+      }
+      catch (final CloneNotSupportedException cne) {
+         throw new InternalError ("Clone not supported for a class implementing Cloneable");
+      }
+      cpy.startState = startState.clone ();
+      cpy.repState = repState.clone ();
+      cpy.stream = stream.clone ();
+      return cpy;
+   }
+
+   @Override
+   public String toString () {
+      return stream.toString ();
+   }
+}
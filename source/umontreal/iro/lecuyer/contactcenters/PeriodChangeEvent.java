@@ -40,14 +40,22 @@ import umontreal.ssj.util.Misc;
  * resets the current period index.
  * The event needs to be started by using {@link #start()};
  * this schedules it at the beginning of the first main period.
- * This also schedules auxiliary event managing
- * period changes at the other periods.
- * It is recommended to start the period-change
- * event before scheduling any other event to
- * ensure that period changes have priority
- * over other events.
+ * Each time the event occurs, it
+ * reschedules itself at the beginning of the next period, so
+ * the event list contains a single period-change event
+ * at any time, whatever the number of periods.
+ * Period-change events have priority {@link #PRIORITY}, so
+ * they occur before other events scheduled at the same
+ * simulation time.
  * When the period change occurs, it is
  * notified to any registered {@link PeriodChangeListener} implementation.
+ * Components whose parameters are stored in per-period
+ * arrays, e.g., {@link MultiPeriodGen}, do not need to be notified;
+ * they can read the current period index from
+ * {@link #getCurrentPeriod()} each time a parameter is needed.
+ * Listeners should thus be reserved for components
+ * reacting to period changes, e.g., by rescheduling events
+ * or by changing the number of agents in a group.
  * When returning from \texttt{Sim.start} or just before
  * calling \texttt{Sim.stop}, it is recommended to call
  * the {@link #stop()} method of this object, since the end
@@ -81,7 +89,6 @@ public class PeriodChangeEvent extends Event implements Initializable, Named, To
    private double stopTime = -1;
    private boolean lockedPeriod = false;
    private boolean started = false;
-   private int modCount = 0;
 
    /**
     * Constructs a new period-change event
@@ -349,8 +356,6 @@ public class PeriodChangeEvent extends Event implements Initializable, Named, To
             ("The event was already stopped, init() must be called to reset");
       if (currentPeriod < endingTimes.length)
          schedule (endingTimes[currentPeriod] - simulator().time());
-      for (int p = currentPeriod + 1; p < endingTimes.length; p++)
-         new PCEWrapper (this).schedule (endingTimes[p] - simulator().time ());
       started = true;
    }
 
@@ -392,14 +397,6 @@ public class PeriodChangeEvent extends Event implements Initializable, Named, To
       return started;
    }
 
-   @Override
-   public boolean cancel() {
-      final boolean b = super.cancel ();
-      // This makes PCEWrapper's obsolete
-      ++modCount;
-      return b;
-   }
-
    /**
     * Returns the index of the current simulation
     * period.
@@ -681,19 +678,14 @@ public class PeriodChangeEvent extends Event implements Initializable, Named, To
       if (lockedPeriod)
          return;
       ++currentPeriod;
+      // The next period change is scheduled before the listeners
+      // are notified, for it to precede any event they
+      // schedule at the same time with the same priority.
+      if (currentPeriod < endingTimes.length)
+         schedule (endingTimes[currentPeriod] - simulator().time());
       final int npcl = pclList.size();
       for (int i = 0; i < npcl; i++)
          pclList.get (i).changePeriod (this);
-      // if (currentPeriod < endTimes.length)
-      //    schedule (endTimes[currentPeriod] - simulator().time());
-      // To avoid inconsistencies during the simulation
-      // the period-change event should have the highest priority.
-      // It should happen before any other events at the same
-      // simulation time.
-      // This code should be updated when SSJ supports
-      // event priorities. In the mean time, if the problem arises,
-      // one should schedule the beginning of the first main period
-      // to a time slightly smaller than the real time.
    }
 
    @Override
@@ -712,34 +704,4 @@ public class PeriodChangeEvent extends Event implements Initializable, Named, To
       sb.append (']');
       return sb.toString();
    }
-
-   /**
-    * This is used to schedule all period-change events
-    * at the time {@link #start()} is called.
-    * This made sure that period-change events occurred before
-    * any other events while event priorities were not implemented in
-    * SSJ.
-    */
-   private static final class PCEWrapper extends Event {
-      private PeriodChangeEvent pce;
-      private int expectedModCount;
-
-      public PCEWrapper (PeriodChangeEvent pce) {
-         super (pce.simulator ());
-         priority = pce.priority();
-         this.pce = pce;
-         expectedModCount = pce.modCount;
-      }
-
-      @Override
-      public void actions() {
-         if (expectedModCount == pce.modCount)
-            pce.actions ();
-      }
-
-      @Override
-      public String toString() {
-         return pce.toString ();
-      }
-   }
 }
@@ -0,0 +1,235 @@
+package umontreal.iro.lecuyer.contactcenters.app;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import umontreal.iro.lecuyer.contactcenters.app.params.ObsMatrix;
+
+/**
+ * Represents a binary file storing observations
+ * referenced by an XML file containing simulation results.
+ * Each list of observations is stored as a block of
+ * double-precision values in little-endian order, whose
+ * offset and length are given by the attributes of
+ * the corresponding {@link ObsMatrix.Obs} element.
+ * Blocks can optionally be compressed independently
+ * with the deflate algorithm.
+ * Blocks are read and written by chunks at given positions
+ * of the file, which is never memory-mapped.
+ *
+ * This replaces the textual list of values in XML
+ * files, which is expensive to write and parse
+ * when many observations are kept.
+ */
+public class BinaryObsFile implements Closeable {
+   private final File file;
+   private final RandomAccessFile raf;
+   private final FileChannel channel;
+   private final boolean compress;
+   // Number of values converted at once when writing or inflating
+   private static final int CHUNKSIZE = 8192;
+   private Deflater deflater;
+   private Inflater inflater;
+
+   private BinaryObsFile (File file, String mode, boolean compress) throws IOException {
+      this.file = file;
+      raf = new RandomAccessFile (file, mode);
+      channel = raf.getChannel ();
+      this.compress = compress;
+   }
+
+   /**
+    * Creates a new binary file with name \texttt{file},
+    * for writing observations.
+    * Any existing file with the same name is truncated.
+    * If \texttt{compress} is \texttt{true}, the
+    * written blocks are compressed.
+    * @param file the created file.
+    * @param compress determines if blocks are compressed.
+    * @return the binary file.
+    * @throws IOException if the file cannot be created.
+    */
+   public static BinaryObsFile create (File file, boolean compress) throws IOException {
+      final BinaryObsFile obsFile = new BinaryObsFile (file, "rw", compress);
+      obsFile.channel.truncate (0);
+      return obsFile;
+   }
+
+   /**
+    * Opens the existing binary file \texttt{file}
+    * for reading observations.
+    * @param file the opened file.
+    * @return the binary file.
+    * @throws IOException if the file cannot be opened.
+    */
+   public static BinaryObsFile open (File file) throws IOException {
+      return new BinaryObsFile (file, "r", false);
+   }
+
+   /**
+    * Returns the file represented by this object.
+    * @return the binary file.
+    */
+   public File getFile () {
+      return file;
+   }
+
+   /**
+    * Appends the first \texttt{n} values of \texttt{values}
+    * at the end of the file, and
+    * sets the offset, length, and compressed length
+    * attributes of \texttt{obs} accordingly.
+    * The list of values of \texttt{obs} is cleared.
+    * The values are converted and compressed by chunks, so
+    * arrays of any length can be written without allocating
+    * a buffer of $8n$ bytes.
+    * If the compressed block would be too large to have its length stored
+    * in \texttt{obs}, it is written uncompressed.
+    * @param obs the element referencing the written block.
+    * @param values the array of observations.
+    * @param n the number of observations.
+    * @throws IOException if an I/O error occurs.
+    */
+   public void write (ObsMatrix.Obs obs, double[] values, int n) throws IOException {
+      final long offset = channel.size ();
+      obs.unsetValue ();
+      obs.setOffset (offset);
+      obs.setLength (n);
+      final byte[] bytes = new byte[8*Math.min (n, CHUNKSIZE)];
+      if (compress) {
+         final long len = writeCompressed (values, n, bytes, offset);
+         if (len <= Integer.MAX_VALUE) {
+            obs.setCompressedLength ((int)len);
+            return;
+         }
+         channel.truncate (offset);
+      }
+      long pos = offset;
+      for (int start = 0; start < n; start += CHUNKSIZE) {
+         final int m = Math.min (CHUNKSIZE, n - start);
+         pos = writeFully (toBytes (values, start, m, bytes), pos);
+      }
+      obs.unsetCompressedLength ();
+   }
+
+   private static ByteBuffer toBytes (double[] values, int start, int m, byte[] bytes) {
+      final ByteBuffer buf = ByteBuffer.wrap (bytes, 0, 8*m).order (ByteOrder.LITTLE_ENDIAN);
+      buf.asDoubleBuffer ().put (values, start, m);
+      return buf;
+   }
+
+   private long writeCompressed (double[] values, int n, byte[] bytes, long offset) throws IOException {
+      if (deflater == null)
+         deflater = new Deflater (Deflater.BEST_SPEED);
+      deflater.reset ();
+      final byte[] out = new byte[bytes.length + 64];
+      long pos = offset;
+      int start = 0;
+      do {
+         final int m = Math.min (CHUNKSIZE, n - start);
+         toBytes (values, start, m, bytes);
+         deflater.setInput (bytes, 0, 8*m);
+         start += m;
+         final boolean last = start >= n;
+         if (last)
+            deflater.finish ();
+         while (last ? !deflater.finished () : !deflater.needsInput ()) {
+            final int len = deflater.deflate (out);
+            pos = writeFully (ByteBuffer.wrap (out, 0, len), pos);
+         }
+      }
+      while (start < n);
+      return pos - offset;
+   }
+
+   private long writeFully (ByteBuffer src, long pos) throws IOException {
+      while (src.hasRemaining ())
+         pos += channel.write (src, pos);
+      return pos;
+   }
+
+   /**
+    * Reads and returns the observations referenced
+    * by \texttt{obs}.
+    * @param obs the element referencing a block of the file.
+    * @return the array of observations.
+    * @throws IOException if an I/O error occurs.
+    * @exception IllegalArgumentException if \texttt{obs}
+    * does not reference a block.
+    */
+   public double[] read (ObsMatrix.Obs obs) throws IOException {
+      if (obs.getOffset () == null || obs.getLength () == null)
+         throw new IllegalArgumentException
+         ("The element does not reference observations in a binary file");
+      final long offset = obs.getOffset ();
+      final int n = obs.getLength ();
+      final double[] res = new double[n];
+      if (n == 0)
+         return res;
+      if (obs.getCompressedLength () == null) {
+         final byte[] bytes = new byte[8*Math.min (n, CHUNKSIZE)];
+         long pos = offset;
+         for (int start = 0; start < n; start += CHUNKSIZE) {
+            final int m = Math.min (CHUNKSIZE, n - start);
+            final ByteBuffer buf = ByteBuffer.wrap (bytes, 0, 8*m);
+            pos = readFully (buf, pos);
+            ByteBuffer.wrap (bytes, 0, 8*m).order (ByteOrder.LITTLE_ENDIAN)
+            .asDoubleBuffer ().get (res, start, m);
+         }
+         return res;
+      }
+      final ByteBuffer in = ByteBuffer.allocate (obs.getCompressedLength ());
+      readFully (in, offset);
+      if (inflater == null)
+         inflater = new Inflater ();
+      inflater.reset ();
+      inflater.setInput (in.array ());
+      final byte[] out = new byte[8*Math.min (n, CHUNKSIZE)];
+      try {
+         for (int start = 0; start < n; start += CHUNKSIZE) {
+            final int m = Math.min (CHUNKSIZE, n - start);
+            int len = 0;
+            while (len < 8*m && !inflater.finished ()) {
+               final int l = inflater.inflate (out, len, 8*m - len);
+               if (l == 0 && inflater.needsInput ())
+                  break;
+               len += l;
+            }
+            if (len < 8*m)
+               throw new IOException ("Truncated block of observations in file " + file);
+            ByteBuffer.wrap (out, 0, 8*m).order (ByteOrder.LITTLE_ENDIAN)
+            .asDoubleBuffer ().get (res, start, m);
+         }
+      }
+      catch (final DataFormatException dfe) {
+         throw new IOException ("Invalid block of observations in file " + file, dfe);
+      }
+      return res;
+   }
+
+   private long readFully (ByteBuffer dst, long pos) throws IOException {
+      while (dst.hasRemaining ()) {
+         final int r = channel.read (dst, pos);
+         if (r < 0)
+            throw new IOException ("Unexpected end of file " + file);
+         pos += r;
+      }
+      return pos;
+   }
+
+   public void close () throws IOException {
+      if (deflater != null)
+         deflater.end ();
+      if (inflater != null)
+         inflater.end ();
+      raf.close ();
+   }
+}
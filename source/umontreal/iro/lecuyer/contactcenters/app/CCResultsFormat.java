@@ -69,7 +69,23 @@ public enum CCResultsFormat {
     * is \texttt{xls}.
     */
    EXCEL { @Override
-   public String getFileExtension() { return "xls"; }};
+   public String getFileExtension() { return "xls"; }},
+
+   /**
+    * Results are formatted to a workbook in the
+    * Office Open XML format, with the same sheets as
+    * {@link #EXCEL}.
+    * The workbook is written as it is produced,
+    * and observations are not limited to
+    * 65,536 rows; they continue on new sheets
+    * when a sheet is full.
+    * Contrary to {@link #EXCEL}, results cannot
+    * be appended to an existing workbook.
+    * The file extension for this format
+    * is \texttt{xlsx}.
+    */
+   XLSX { @Override
+   public String getFileExtension() { return "xlsx"; }};
    
    
    /**
@@ -15,6 +15,7 @@ import org.xml.sax.ContentHandler;
 import org.xml.sax.SAXException;
 
 import umontreal.iro.lecuyer.contactcenters.app.params.ContactCenterEvalResultsParams;
+import umontreal.iro.lecuyer.contactcenters.app.params.ContactCenterSimResultsParams;
 import umontreal.iro.lecuyer.xmlbind.JAXBParamsConverter;
 
 /**
@@ -32,6 +33,23 @@ public class ContactCenterEvalResultsConverter extends JAXBParamsConverter<Conta
    public ContactCenterEvalResultsConverter () {
       super (ContactCenterEvalResultsParams.class);
    }
+
+   /**
+    * Resolves the name of the binary file containing observations,
+    * if any, with respect to the directory of the XML file
+    * \texttt{file}.
+    */
+   private static void resolveObservationFile (ContactCenterEvalResultsParams ccp, File file) {
+      if (!(ccp instanceof ContactCenterSimResultsParams))
+         return;
+      final ContactCenterSimResultsParams ccp2 = (ContactCenterSimResultsParams) ccp;
+      if (!ccp2.isSetObservationFile ())
+         return;
+      final File obsFile = new File (ccp2.getObservationFile ());
+      if (!obsFile.isAbsolute ())
+         ccp2.setObservationFile (new File (file.getAbsoluteFile ().getParentFile (),
+               ccp2.getObservationFile ()).getPath ());
+   }
    
    @Override
    public JAXBContext getContext () throws JAXBException {
@@ -63,6 +81,7 @@ public class ContactCenterEvalResultsConverter extends JAXBParamsConverter<Conta
     */
    public ContactCenterEvalResults unmarshalToEval (File file) throws JAXBException {
       final ContactCenterEvalResultsParams ccp = unmarshal (file);
+      resolveObservationFile (ccp, file);
       return ContactCenterEvalResults.createFromParams (ccp);
    }
 
@@ -80,6 +99,7 @@ public class ContactCenterEvalResultsConverter extends JAXBParamsConverter<Conta
     */
    public ContactCenterEvalResults unmarshalToEval (File file, boolean reportPropertiesToEvalInfo) throws JAXBException {
       final ContactCenterEvalResultsParams ccp = unmarshal (file);
+      resolveObservationFile (ccp, file);
       return ContactCenterEvalResults.createFromParams (ccp, reportPropertiesToEvalInfo);
    }
    
@@ -93,6 +113,7 @@ public class ContactCenterEvalResultsConverter extends JAXBParamsConverter<Conta
     */
    public ContactCenterEvalResults unmarshalGZippedToEval (File file) throws JAXBException {
       final ContactCenterEvalResultsParams ccp = unmarshalGZipped (file);
+      resolveObservationFile (ccp, file);
       return ContactCenterEvalResults.createFromParams (ccp);
    }
 
@@ -108,6 +129,7 @@ public class ContactCenterEvalResultsConverter extends JAXBParamsConverter<Conta
     */
    public ContactCenterEvalResults unmarshalGZippedToEval (File file, boolean reportPropertiesToEvalInfo) throws JAXBException {
       final ContactCenterEvalResultsParams ccp = unmarshalGZipped (file);
+      resolveObservationFile (ccp, file);
       return ContactCenterEvalResults.createFromParams (ccp, reportPropertiesToEvalInfo);
    }
    
@@ -238,6 +260,7 @@ public class ContactCenterEvalResultsConverter extends JAXBParamsConverter<Conta
     */
    public ContactCenterEvalResults unmarshalToEvalOrExit (File file) {
       final ContactCenterEvalResultsParams ccp = unmarshalOrExit (file);
+      resolveObservationFile (ccp, file);
       return ContactCenterEvalResults.createFromParams (ccp);
    }
 
@@ -252,6 +275,7 @@ public class ContactCenterEvalResultsConverter extends JAXBParamsConverter<Conta
     */
    public ContactCenterEvalResults unmarshalToEvalOrExit (File file, boolean reportPropertiesToEvalInfo) {
       final ContactCenterEvalResultsParams ccp = unmarshalOrExit (file);
+      resolveObservationFile (ccp, file);
       return ContactCenterEvalResults.createFromParams (ccp, reportPropertiesToEvalInfo);
    }
    
@@ -1,5 +1,6 @@
 package umontreal.iro.lecuyer.contactcenters.app;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
@@ -30,7 +31,6 @@ import umontreal.iro.lecuyer.util.LaTeXObjectMatrixFormatter;
 import umontreal.iro.lecuyer.xmlbind.ArrayConverter;
 import umontreal.iro.lecuyer.xmlbind.params.DoubleArray;
 import umontreal.iro.lecuyer.xmlbind.params.IntArray;
-import cern.colt.list.DoubleArrayList;
 import cern.colt.matrix.DoubleMatrix2D;
 import cern.colt.matrix.impl.DenseDoubleMatrix2D;
 
@@ -38,6 +38,15 @@ import cern.colt.matrix.impl.DenseDoubleMatrix2D;
  * Extends {@link ContactCenterEvalResults} to store
  * additional information related to the simulation of a call
  * center.
+ *
+ * When results are read from parameters referencing
+ * observations stored in a {@link BinaryObsFile},
+ * the observations are read only when the matrix of
+ * tallies for the corresponding type of performance measure
+ * is requested.
+ * Summary statistics, e.g., averages, variances,
+ * and confidence intervals, are available without
+ * reading the observations.
  */
 public class ContactCenterSimResults extends ContactCenterEvalResults implements
       ContactCenterSim {
@@ -53,6 +62,9 @@ public class ContactCenterSimResults extends ContactCenterEvalResults implements
          PerformanceMeasureType.class);
    private final transient Map<PerformanceMeasureType, MatrixOfFunctionOfMultipleMeansTallies<?>> fmmTallyMap = new EnumMap<PerformanceMeasureType, MatrixOfFunctionOfMultipleMeansTallies<?>> (
          PerformanceMeasureType.class);
+   private final transient Map<PerformanceMeasureType, ObsMatrix> lazyObsMap = new EnumMap<PerformanceMeasureType, ObsMatrix> (
+         PerformanceMeasureType.class);
+   private transient File obsFile;
    private int nstep;
 
    /**
@@ -99,10 +111,16 @@ public class ContactCenterSimResults extends ContactCenterEvalResults implements
          ArrayConverter.unmarshalArray (pm);
          nMap.put (pmt, m);
       }
+      if (ccp.isSetObservationFile ())
+         obsFile = new File (ccp.getObservationFile ());
       for (final ObsMatrix obsMat : ccp.getObservationMatrices ()) {
          final PerformanceMeasureType pmt = getPerformanceMeasureType (obsMat.getMeasure ());
          if (pmt == null)
             continue;
+         if (obsFile != null && isInBinaryFile (obsMat)) {
+            lazyObsMap.put (pmt, obsMat);
+            continue;
+         }
          final double[][][] obs = new double[pmt.rows (this)][pmt.columns (this)][];
          for (final Obs o : obsMat.getObs ()) {
             final int r = o.getRow ();
@@ -116,13 +134,67 @@ public class ContactCenterSimResults extends ContactCenterEvalResults implements
       }
    }
    
+   private static boolean isInBinaryFile (ObsMatrix obsMat) {
+      for (final Obs o : obsMat.getObs ())
+         if (o.isSetOffset ())
+            return true;
+      return false;
+   }
+
+   private void loadObs (PerformanceMeasureType pmt) {
+      final ObsMatrix obsMat = lazyObsMap.remove (pmt);
+      if (obsMat == null)
+         return;
+      final double[][][] obs = new double[pmt.rows (this)][pmt.columns (this)][];
+      try {
+         final BinaryObsFile bf = BinaryObsFile.open (obsFile);
+         try {
+            for (final Obs o : obsMat.getObs ()) {
+               final int r = o.getRow ();
+               final int c = o.getColumn ();
+               if (o.isSetOffset ())
+                  obs[r][c] = bf.read (o);
+               else
+                  obs[r][c] = ArrayConverter.unmarshalArray (o.getValue ());
+            }
+         }
+         finally {
+            bf.close ();
+         }
+      }
+      catch (final IOException ioe) {
+         throw new IllegalStateException ("Could not read observations for "
+               + pmt.name () + " from " + obsFile, ioe);
+      }
+      final MatrixOfTallies<?> mta = getMatrixOfTallies (pmt.getDescription (),
+            obs);
+      if (mta != null)
+         tallyMap.put (pmt, mta);
+   }
+
+   private void loadAllObs () {
+      while (!lazyObsMap.isEmpty ())
+         loadObs (lazyObsMap.keySet ().iterator ().next ());
+   }
+
    @Override
    public void writeParams (ContactCenterEvalResultsParams ccp) {
+      try {
+         writeParams (ccp, null);
+      }
+      catch (final IOException ioe) {
+         // Cannot happen without a binary file
+         throw new IllegalStateException (ioe);
+      }
+   }
+
+   private void writeParams (ContactCenterEvalResultsParams ccp, BinaryObsFile bf) throws IOException {
       super.writeParams (ccp);
       if (!(ccp instanceof ContactCenterSimResultsParams))
          return;
       
       final ContactCenterSimResultsParams ccp2 = (ContactCenterSimResultsParams)ccp;
+      loadAllObs ();
       ccp2.setNumSteps (nstep);
       ccp2.getVarianceMatrices().clear();
       for (final Map.Entry<PerformanceMeasureType, DoubleMatrix2D> e : varMap.entrySet ()) {
@@ -171,9 +243,11 @@ public class ContactCenterSimResults extends ContactCenterEvalResults implements
                   obs.setRow (r);
                   obs.setColumn (c);
                   obs.getValue().clear();
-                  final DoubleArrayList obsList = ta2.getDoubleArrayList();
-                  obsList.trimToSize();
-                  obs.getValue().addAll (ArrayConverter.marshalArray (obsList.elements()));
+                  if (bf == null) {
+                     obs.getValue().addAll (ArrayConverter.marshalArray (ta2.getArray()));
+                  }
+                  else
+                     bf.write (obs, ta2.getArray (), ta2.numberObs ());
                   obsM.getObs().add (obs);
                   hasObs = true;
                }
@@ -181,6 +255,10 @@ public class ContactCenterSimResults extends ContactCenterEvalResults implements
          if (hasObs)
             ccp2.getObservationMatrices().add (obsM);
       }
+      if (bf == null)
+         ccp2.setObservationFile (null);
+      else
+         ccp2.setObservationFile (bf.getFile ().getName ());
    }
 
    /**
@@ -281,6 +359,7 @@ public class ContactCenterSimResults extends ContactCenterEvalResults implements
    }
 
    public MatrixOfStatProbes<?> getMatrixOfStatProbes (PerformanceMeasureType m) {
+      loadObs (m);
       MatrixOfStatProbes<? extends StatProbe> probe = tallyMap.get (m);
       if (probe == null)
          probe = fmmTallyMap.get (m);
@@ -290,6 +369,7 @@ public class ContactCenterSimResults extends ContactCenterEvalResults implements
    }
 
    public MatrixOfTallies<?> getMatrixOfTallies (PerformanceMeasureType m) {
+      loadObs (m);
       final MatrixOfTallies<?> mta = tallyMap.get (m);
       if (mta == null)
          throw new NoSuchElementException ("No matrix of tallies for "
@@ -459,6 +539,7 @@ public class ContactCenterSimResults extends ContactCenterEvalResults implements
    }
 
    private void writeObject (ObjectOutputStream os) throws IOException {
+      loadAllObs ();
       os.defaultWriteObject ();
       final Map<PerformanceMeasureType, double[][][]> obsMap = new EnumMap<PerformanceMeasureType, double[][][]> (
             PerformanceMeasureType.class);
@@ -511,4 +592,23 @@ public class ContactCenterSimResults extends ContactCenterEvalResults implements
       writeParams (ccp);
       return ccp;
    }
+
+   /**
+    * Similar to {@link #createParams()}, but writes the
+    * observations to the binary file \texttt{bf}
+    * instead of storing them in the returned parameter object.
+    * The \texttt{observationFile} attribute of the
+    * returned parameters is set to the name of the binary file,
+    * without the directory, so the binary file
+    * is expected to be in the same directory as the XML file.
+    * @param bf the binary file receiving the observations.
+    * @return the parameter object containing results.
+    * @throws IOException if an error occurs while writing
+    * observations.
+    */
+   public ContactCenterSimResultsParams createParams (BinaryObsFile bf) throws IOException {
+      final ContactCenterSimResultsParams ccp = new ContactCenterSimResultsParams();
+      writeParams (ccp, bf);
+      return ccp;
+   }
 }
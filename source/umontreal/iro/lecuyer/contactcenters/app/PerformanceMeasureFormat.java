@@ -1,16 +1,25 @@
 package umontreal.iro.lecuyer.contactcenters.app;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 import java.util.zip.GZIPOutputStream;
 import java.util.NoSuchElementException;
@@ -25,6 +34,8 @@ import jxl.read.biff.BiffException;
 import jxl.write.WritableWorkbook;
 import jxl.write.WriteException;
 
+import umontreal.iro.lecuyer.contactcenters.app.params.ContactCenterEvalResultsParams;
+import umontreal.iro.lecuyer.contactcenters.app.params.ContactCenterSimResultsParams;
 import umontreal.iro.lecuyer.contactcenters.app.params.PerformanceMeasureParams;
 import umontreal.iro.lecuyer.contactcenters.app.params.HistogramParams;
 import umontreal.iro.lecuyer.contactcenters.app.params.PrintedStatParams;
@@ -35,6 +46,7 @@ import umontreal.ssj.charts.HistogramSeriesCollection;
 import umontreal.ssj.util.Misc;
 import umontreal.iro.lecuyer.util.LineBreaker;
 import umontreal.iro.lecuyer.util.ModifiableWorkbook;
+import umontreal.iro.lecuyer.util.XlsxWriter;
 import umontreal.iro.lecuyer.util.ArrayUtil;
 
 
@@ -48,6 +60,7 @@ public abstract class PerformanceMeasureFormat {
    protected String[] contactTypeProperties;
    protected String[] agentGroupProperties;
    protected List<HistogramChart> histogramList;
+   private ExecutorService executor;
 
    /**
     * Return the standard deviation of this performance measure.
@@ -185,21 +198,120 @@ public abstract class PerformanceMeasureFormat {
    /**
     * Writes all histograms for the chosen measures in a LaTex file.
     * Each histogram is written in a separate file.
+    * If the titles of several histograms give the same file name,
+    * only the last of these histograms is written.
     */
    public void writeHistogramsLaTeX() {
       if (null == histogramList)
       	return;
-   	HistogramChart chart;
+      // Two tasks must not write the same file concurrently
+      final Map<String, HistogramChart> charts = new LinkedHashMap<String, HistogramChart>();
    	for (int i = 0; i < histogramList.size(); i++) {
-   		chart = histogramList.get(i);
+   		final HistogramChart chart = histogramList.get(i);
    		String name = chart.getTitle();
    		String name1 = name.replaceAll("\\)", "");
          name = name1.replaceAll(", ", "-");
          name1 = name.replaceAll(" \\(", "-");
        	name = name1.replaceAll(" ", "\\_");
-      	name1 = name.concat(".tex");
-   		chart.toLatexFile(name1, 12, 8);
+      	charts.put (name.concat(".tex"), chart);
    	}
+      final List<Callable<Object>> tasks = new ArrayList<Callable<Object>> (charts.size ());
+      for (final Map.Entry<String, HistogramChart> e : charts.entrySet ()) {
+         final String fileName = e.getKey ();
+         final HistogramChart chart = e.getValue ();
+      	tasks.add (new Callable<Object>() {
+      	   public Object call () {
+      	      chart.toLatexFile(fileName, 12, 8);
+      	      return null;
+      	   }
+      	});
+      }
+   	invokeAll (tasks);
+   }
+
+   /**
+    * Returns the executor service used to render independent
+    * parts of reports concurrently, e.g., the detailed
+    * sections of a report, or the \LaTeX{} files of histograms.
+    * If this returns \texttt{null} (the default), these
+    * parts are rendered one after the other by the calling thread.
+    * @return the executor service, or \texttt{null}.
+    */
+   public ExecutorService getExecutorService () {
+      return executor;
+   }
+
+   /**
+    * Sets the executor service used to render
+    * independent parts of reports to \texttt{executor}.
+    * If this is non-\texttt{null}, the detailed sections
+    * of reports are formatted concurrently, so the evaluation
+    * system being formatted must support concurrent reads of
+    * matrices of distinct types of performance measures.
+    * This is not the case for simulators spilling
+    * observations to disk or applying control variables,
+    * because reading their matrices modifies shared
+    * statistical collectors.
+    * @param executor the new executor service, or \texttt{null}.
+    * @see #getExecutorService()
+    */
+   public void setExecutorService (ExecutorService executor) {
+      this.executor = executor;
+   }
+
+   /**
+    * Executes the independent tasks \texttt{tasks}
+    * using the executor service returned by
+    * {@link #getExecutorService()}, and returns their results
+    * in the order of the tasks.
+    * If no executor service was set, the tasks are executed
+    * one after the other by the calling thread.
+    * If a task fails, the exception of the first failed task,
+    * in the order of the list, is rethrown.
+    * @param <T> the type of the results.
+    * @param tasks the tasks to execute.
+    * @return the list of results.
+    */
+   protected <T> List<T> invokeAll (List<? extends Callable<T>> tasks) {
+      final List<T> res = new ArrayList<T> (tasks.size ());
+      if (executor == null) {
+         for (final Callable<T> task : tasks) {
+            try {
+               res.add (task.call ());
+            }
+            catch (final RuntimeException re) {
+               throw re;
+            }
+            catch (final Exception e) {
+               throw new IllegalStateException (e);
+            }
+         }
+         return res;
+      }
+      final List<Future<T>> futures = new ArrayList<Future<T>> (tasks.size ());
+      try {
+         for (final Callable<T> task : tasks)
+            futures.add (executor.submit (task));
+         for (final Future<T> f : futures)
+            res.add (f.get ());
+      }
+      catch (final InterruptedException ie) {
+         Thread.currentThread ().interrupt ();
+         throw new IllegalStateException ("Interrupted while rendering a report", ie);
+      }
+      catch (final ExecutionException ee) {
+         final Throwable cause = ee.getCause ();
+         if (cause instanceof RuntimeException)
+            throw (RuntimeException)cause;
+         if (cause instanceof Error)
+            throw (Error)cause;
+         throw new IllegalStateException (cause);
+      }
+      finally {
+         for (final Future<T> f : futures)
+            f.cancel (true);
+      }
+      return res;
    }
 
    public PerformanceMeasureFormat() {
@@ -784,7 +896,7 @@ public abstract class PerformanceMeasureFormat {
                return;
             case TEXT:
                final OutputStream stream = new FileOutputStream (outputFile, true);
-               final PrintWriter out = new PrintWriter (new OutputStreamWriter (stream));
+               final PrintWriter out = new PrintWriter (new BufferedWriter (new OutputStreamWriter (stream)));
                out.println ();
                out.println ();
                LineBreaker.writeLines (out, eval.formatStatistics ());
@@ -792,7 +904,7 @@ public abstract class PerformanceMeasureFormat {
                return;
             case LATEXT:
                final OutputStream streamL = new FileOutputStream (outputFile, true);
-               final PrintWriter outL = new PrintWriter (new OutputStreamWriter (streamL));
+               final PrintWriter outL = new PrintWriter (new BufferedWriter (new OutputStreamWriter (streamL)));
                outL.println ();
                outL.println ();
                LineBreaker.writeLines (outL, eval.formatStatisticsLaTeX ());
@@ -814,7 +926,13 @@ public abstract class PerformanceMeasureFormat {
          final OutputStream stream = new FileOutputStream (f);
          boolean done = false;
          try {
-            formatResults (eval, stream, fmt);
+            final ReportParams reportParams = eval.getReportParams ();
+            if ((fmt == CCResultsFormat.XML || fmt == CCResultsFormat.XMLGZ)
+                  && reportParams != null && reportParams.isBinaryObs ())
+               formatResults (eval, stream, fmt, new File (f.getPath () + ".obs"),
+                     reportParams.isCompressBinaryObs ());
+            else
+               formatResults (eval, stream, fmt);
             done = true;
          }
          finally {
@@ -831,8 +949,8 @@ public abstract class PerformanceMeasureFormat {
     * contents returned by \texttt{eval.}{@link ContactCenterEval#formatStatistics()
     * formatStatistics}. Otherwise, it saves the results in \texttt{stream}.
     * Depending on the value of \texttt{fmt}, i.e., \texttt{TEXT},
-    * \texttt{BINARY}, \texttt{XML}, or \texttt{EXCEL}, the format of the output
-    * file is plain text, binary, XML, or MS Excel, respectively.
+    * \texttt{BINARY}, \texttt{XML}, \texttt{EXCEL}, or \texttt{XLSX}, the format of the output
+    * file is plain text, binary, XML, MS Excel, or Office Open XML, respectively.
     *
     * @param eval
     *           the evaluation system being processed.
@@ -851,15 +969,44 @@ public abstract class PerformanceMeasureFormat {
     */
    public static void formatResults (ContactCenterEval eval, OutputStream stream,
          CCResultsFormat fmt) throws IOException, JAXBException {
+      formatResults (eval, stream, fmt, null, false);
+   }
+
+   /**
+    * Similar to {@link #formatResults(ContactCenterEval,OutputStream,CCResultsFormat)},
+    * but if the format is XML and \texttt{obsFile} is non-\texttt{null},
+    * observations are written to the binary file \texttt{obsFile}
+    * rather than in the XML document.
+    * See {@link BinaryObsFile} for more information.
+    * The observations are compressed if \texttt{compressObs}
+    * is \texttt{true}.
+    *
+    * @param eval
+    *           the evaluation system being processed.
+    * @param stream
+    *           the output stream.
+    * @param fmt
+    *           the format of the output.
+    * @param obsFile
+    *           the binary file for observations, or \texttt{null}.
+    * @param compressObs
+    *           determines if observations in the binary file are compressed.
+    * @throws IOException
+    *            if an I/O error occurs.
+    * @throws JAXBException
+    *            if an error occurs during marshalling.
+    */
+   public static void formatResults (ContactCenterEval eval, OutputStream stream,
+         CCResultsFormat fmt, File obsFile, boolean compressObs) throws IOException, JAXBException {
       if (fmt == null || fmt == CCResultsFormat.STDOUT)
          System.out.println (eval.formatStatistics ());
       else if (fmt == CCResultsFormat.TEXT) {
-         final PrintWriter output = new PrintWriter (new OutputStreamWriter (stream));
+         final PrintWriter output = new PrintWriter (new BufferedWriter (new OutputStreamWriter (stream)));
          LineBreaker.writeLines (output, eval.formatStatistics ());
          output.close ();
       }
       else if (fmt == CCResultsFormat.LATEXT) {
-         final PrintWriter output = new PrintWriter (new OutputStreamWriter (stream));
+         final PrintWriter output = new PrintWriter (new BufferedWriter (new OutputStreamWriter (stream)));
          LineBreaker.writeLines (output, eval.formatStatisticsLaTeX ());
          output.close ();
       }
@@ -872,6 +1019,13 @@ public abstract class PerformanceMeasureFormat {
          }
          catch (final WriteException e) {}
       }
+      else if (fmt == CCResultsFormat.XLSX) {
+         final XlsxWriter writer = new XlsxWriter (stream);
+         final ReportParams reportParams = eval.getReportParams () == null ? new ReportParams ()
+               : eval.getReportParams ();
+         new PerformanceMeasureFormatXlsx (writer, reportParams).formatStatistics (eval);
+         writer.close ();
+      }
       else {
          final ContactCenterEvalResults evalRes = ContactCenterEvalResults.createFromEval (eval);
 
@@ -881,18 +1035,56 @@ public abstract class PerformanceMeasureFormat {
 //            os.writeObject (evalRes);
 //            os.close ();
 //         }
+         if (fmt != CCResultsFormat.XMLGZ && fmt != CCResultsFormat.XML)
+            throw new IllegalArgumentException ("Invalid value of fmt: " + fmt);
+         final ContactCenterEvalResultsParams ccp;
+         if (obsFile != null && evalRes instanceof ContactCenterSimResults) {
+            // The results might have been read from obsFile, and load
+            // their observations lazily, so obsFile is replaced only
+            // after every observation is written.
+            final File tmpFile = File.createTempFile (obsFile.getName (), ".tmp",
+                  obsFile.getAbsoluteFile ().getParentFile ());
+            boolean moved = false;
+            try {
+               final ContactCenterSimResultsParams sccp;
+               final BinaryObsFile bf = BinaryObsFile.create (tmpFile, compressObs);
+               try {
+                  sccp = ((ContactCenterSimResults) evalRes).createParams (bf);
+               }
+               finally {
+                  bf.close ();
+               }
+               sccp.setObservationFile (obsFile.getName ());
+               ccp = sccp;
+               moveFile (tmpFile, obsFile);
+               moved = true;
+            }
+            finally {
+               if (!moved)
+                  tmpFile.delete ();
+            }
+         }
+         else
+            ccp = evalRes.createParams ();
+         final ContactCenterEvalResultsConverter cnv = new ContactCenterEvalResultsConverter();
          if (fmt == CCResultsFormat.XMLGZ) {
-            final ContactCenterEvalResultsConverter cnv = new ContactCenterEvalResultsConverter();
             final GZIPOutputStream gz = new GZIPOutputStream (stream);
-            cnv.marshalEval (evalRes, new StreamResult (gz));
+            cnv.marshal (ccp, new StreamResult (gz));
             gz.close ();
          }
-         else if (fmt == CCResultsFormat.XML) {
-            final ContactCenterEvalResultsConverter cnv = new ContactCenterEvalResultsConverter();
-            cnv.marshalEval (evalRes, new StreamResult (stream));
-         }
          else
-            throw new IllegalArgumentException ("Invalid value of fmt: " + fmt);
+            cnv.marshal (ccp, new StreamResult (stream));
+      }
+   }
+
+   private static void moveFile (File source, File target) throws IOException {
+      try {
+         Files.move (source.toPath (), target.toPath (),
+               StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      }
+      catch (final AtomicMoveNotSupportedException amne) {
+         Files.move (source.toPath (), target.toPath (),
+               StandardCopyOption.REPLACE_EXISTING);
       }
    }
 }
@@ -91,6 +91,7 @@ public class PerformanceMeasureFormatExcel extends PerformanceMeasureFormat {
    private boolean rowOutlines = false;
    private boolean columnOutlines = false;
    private int maxColumns = 256;
+   private boolean observationSheet = true;
    private final Set<Pair<Integer, Integer>> rowGroups = new HashSet<Pair<Integer, Integer>>();
    private final Set<Pair<Integer, Integer>> columnGroups = new HashSet<Pair<Integer, Integer>>();
    
@@ -364,6 +365,30 @@ public class PerformanceMeasureFormatExcel extends PerformanceMeasureFormat {
       this.maxColumns = maxColumns;
    }
 
+   /**
+    * Determines if
+    * {@link #formatStatistics(ContactCenterSim,ReportParams)}
+    * creates a sheet containing observations when the report
+    * parameters request it. This is \texttt{true} by default.
+    * 
+    * @return the observation sheet flag.
+    */
+   public boolean getObservationSheet () {
+      return observationSheet;
+   }
+
+   /**
+    * Sets the observation sheet flag to \texttt{observationSheet}.
+    * This can be set to \texttt{false} when observations are
+    * written separately, e.g., by {@link PerformanceMeasureFormatXlsx}.
+    * 
+    * @param observationSheet
+    *           the new value of the flag.
+    */
+   public void setObservationSheet (boolean observationSheet) {
+      this.observationSheet = observationSheet;
+   }
+
    private void prepareRow (int row) {
       if (row >= sheet.getRows ())
          // Beyond last row
@@ -1616,32 +1641,9 @@ public class PerformanceMeasureFormatExcel extends PerformanceMeasureFormat {
             currentRow += maxNumObs + 1;
             maxNumObs = 0;
          }
-         final StringBuilder sb = new StringBuilder();
-         sb.append (pm.getDescription ());
-         int row, column;
-         if (ppar.isSetRow () || ppar.isSetColumn ())
-            sb.append (" (");
-         if (ppar.isSetRow ()) {
-            row = ppar.getRow ();
-            if (row < 0)
-               row += pm.rows (sim);
-            sb.append (pm.rowName (sim, row));
-         }
-         else
-            row = pm.rows (sim) - 1;
-         if (ppar.isSetColumn ()) {
-            if (ppar.isSetRow ())
-               sb.append (", ");
-            column = ppar.getColumn ();
-            if (column < 0)
-               column += pm.columns (sim);
-            sb.append (pm.columnName (sim, column));
-         }
-         else
-            column = pm.columns (sim) - 1;
-         if (ppar.isSetRow () || ppar.isSetColumn ())
-            sb.append (')');
-         createStringCell (sb.toString (), currentRow, startingColumn + idx,
+         final int row = getObsRow (sim, ppar);
+         final int column = getObsColumn (sim, ppar);
+         createStringCell (getObsDescription (sim, ppar, row, column), currentRow, startingColumn + idx,
                true, true, true, true, false);
          double[] obs;
          try {
@@ -1678,6 +1680,54 @@ public class PerformanceMeasureFormatExcel extends PerformanceMeasureFormat {
       return true;
    }
 
+   /**
+    * Returns the row of the matrix of observations selected by \texttt{ppar},
+    * which is the last row if no row is given.
+    */
+   static int getObsRow (ContactCenterInfo sim, PerformanceMeasureParams ppar) {
+      final PerformanceMeasureType pm = PerformanceMeasureType.valueOf (ppar.getMeasure ());
+      if (!ppar.isSetRow ())
+         return pm.rows (sim) - 1;
+      final int row = ppar.getRow ();
+      return row < 0 ? row + pm.rows (sim) : row;
+   }
+
+   /**
+    * Returns the column of the matrix of observations selected by \texttt{ppar},
+    * which is the last column if no column is given.
+    */
+   static int getObsColumn (ContactCenterInfo sim, PerformanceMeasureParams ppar) {
+      final PerformanceMeasureType pm = PerformanceMeasureType.valueOf (ppar.getMeasure ());
+      if (!ppar.isSetColumn ())
+         return pm.columns (sim) - 1;
+      final int column = ppar.getColumn ();
+      return column < 0 ? column + pm.columns (sim) : column;
+   }
+
+   /**
+    * Returns the description of the observations selected
+    * by \texttt{ppar}, used as the header of the column
+    * containing the observations.
+    */
+   static String getObsDescription (ContactCenterInfo sim, PerformanceMeasureParams ppar,
+         int row, int column) {
+      final PerformanceMeasureType pm = PerformanceMeasureType.valueOf (ppar.getMeasure ());
+      final StringBuilder sb = new StringBuilder();
+      sb.append (pm.getDescription ());
+      if (ppar.isSetRow () || ppar.isSetColumn ())
+         sb.append (" (");
+      if (ppar.isSetRow ())
+         sb.append (pm.rowName (sim, row));
+      if (ppar.isSetColumn ()) {
+         if (ppar.isSetRow ())
+            sb.append (", ");
+         sb.append (pm.columnName (sim, column));
+      }
+      if (ppar.isSetRow () || ppar.isSetColumn ())
+         sb.append (')');
+      return sb.toString ();
+   }
+
    /**
     * Formats a workbook containing the report of the last evaluation performed
     * by the system \texttt{eval}. This method can be called by the
@@ -2018,7 +2068,7 @@ public class PerformanceMeasureFormatExcel extends PerformanceMeasureFormat {
                formatStatisticsDetailedHidePeriods (sim, level, pm);
          }
       }
-      if (obsSheetName != null && obsSheetName.length () > 0 && sim instanceof ContactCenterSimWithObservations && reportParams.isSetPrintedObs ()) {
+      if (observationSheet && obsSheetName != null && obsSheetName.length () > 0 && sim instanceof ContactCenterSimWithObservations && reportParams.isSetPrintedObs ()) {
          newSheet (obsSheetName);
          formatObservations ((ContactCenterSimWithObservations)sim, reportParams);
       }
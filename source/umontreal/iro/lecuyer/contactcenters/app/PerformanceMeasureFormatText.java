@@ -4,9 +4,12 @@ import java.lang.reflect.Array;
 import java.sql.Time;
 import java.text.DateFormat;
 import java.text.NumberFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
 
 import javax.xml.datatype.Duration;
 
@@ -1003,13 +1006,20 @@ public class PerformanceMeasureFormatText extends PerformanceMeasureFormat {
     * of performance measure to include in the report (if supported by
     * \texttt{eval}), whether a detailed report must be included, and if this
     * detailed report includes information about each individual period.
+    * The detailed reports are selected before any matrix of
+    * performance measures is computed, and they are formatted
+    * after the summary.
+    * If {@link #getExecutorService()} returns a non-\texttt{null}
+    * executor, the detailed reports are formatted concurrently
+    * using that executor; otherwise, they are formatted
+    * by the calling thread.
     *
     * @param eval
     *           the evaluation system.
     * @param reportParams the report parameters.
     * @return the string containing the formatted report.
     */
-   public String formatValues (ContactCenterEval eval,
+   public String formatValues (final ContactCenterEval eval,
          ReportParams reportParams) {
       final PrintedStatParams[] printedStats = reportParams == null ? null : reportParams.getPrintedStats ().toArray (new PrintedStatParams[0]);
       PrintedStatParams[] pstats;
@@ -1023,7 +1033,8 @@ public class PerformanceMeasureFormatText extends PerformanceMeasureFormat {
          sb.append (formatInfo (eval.getEvalInfo ()));
          sb.append ("\n\n");
       }
-      sb.append (formatValuesSummary (eval, pms));
+      // Select the detailed sections before any matrix is computed
+      final List<Callable<String>> sections = new ArrayList<Callable<String>> ();
       for (final PrintedStatParams ps : pstats) {
          boolean psDetailed = ps.isSetDetailed () ? ps.isDetailed () : reportParams.isDefaultDetailed ();
          if (!psDetailed)
@@ -1033,7 +1044,7 @@ public class PerformanceMeasureFormatText extends PerformanceMeasureFormat {
          // since the information is all contained in the summary report.
          if (!isIncludedInReport (eval, pm))
             continue;
-         boolean psPeriods = ps.isSetPeriods () ? ps.isPeriods () : reportParams.isDefaultPeriods ();
+         final boolean psPeriods = ps.isSetPeriods () ? ps.isPeriods () : reportParams.isDefaultPeriods ();
          if (isIncludedInSummary (eval, pm)) {
             if (pm.rows (eval) == 1
                   && pm.columns (eval) == 1)
@@ -1043,12 +1054,18 @@ public class PerformanceMeasureFormatText extends PerformanceMeasureFormat {
                   && pm.rows (eval) == 1)
                continue;
          }
-         sb.append ("\n\n"); //$NON-NLS-1$
-         if (psPeriods)
-            sb.append (formatValuesDetailed (eval, pm));
-         else
-            sb.append (formatValuesDetailedHidePeriods (eval, pm));
+         sections.add (new Callable<String>() {
+            public String call () {
+               if (psPeriods)
+                  return formatValuesDetailed (eval, pm);
+               else
+                  return formatValuesDetailedHidePeriods (eval, pm);
+            }
+         });
       }
+      sb.append (formatValuesSummary (eval, pms));
+      for (final String section : invokeAll (sections))
+         sb.append ("\n\n").append (section); //$NON-NLS-1$
       return sb.toString ();
    }
 
@@ -1069,7 +1086,7 @@ public class PerformanceMeasureFormatText extends PerformanceMeasureFormat {
     * @param reportParams the report parameters.
     * @return the formatted report.
     */
-   public String formatStatistics (ContactCenterSim sim,
+   public String formatStatistics (final ContactCenterSim sim,
          ReportParams reportParams) {
       final double level = reportParams == null ? sim.getConfidenceLevel () : reportParams.getConfidenceLevel ();
       final PrintedStatParams[] printedStats = reportParams == null ? null : reportParams.getPrintedStats ().toArray (new PrintedStatParams[0]);
@@ -1083,17 +1100,8 @@ public class PerformanceMeasureFormatText extends PerformanceMeasureFormat {
          sb.append (formatInfo (sim.getEvalInfo ()));
          sb.append ("\n\n");
       }
-      final PerformanceMeasureType[] pmsVal = getPerformanceMeasures (pstats,
-            true, RowType.values ());
-      if (pmsVal.length > 0)
-         sb.append (formatValuesSummary (sim, pmsVal));
-      final PerformanceMeasureType[] pmsStat = getPerformanceMeasures (pstats,
-            false, RowType.values ());
-      if (pmsStat.length > 0) {
-         if (pmsVal.length > 0)
-            sb.append ("\n\n");
-         sb.append (formatStatisticsSummary (sim, level, pmsStat));
-      }
+      // Select the detailed sections before any matrix is computed
+      final List<Callable<String>> sections = new ArrayList<Callable<String>> ();
       for (final PrintedStatParams ps : pstats) {
          boolean psDetailed = ps.isSetDetailed () ? ps.isDetailed () : reportParams.isDefaultDetailed ();
          if (!psDetailed)
@@ -1112,19 +1120,37 @@ public class PerformanceMeasureFormatText extends PerformanceMeasureFormat {
                   && pm.rows (sim) == 1)
                continue;
          }
-         sb.append ("\n\n"); //$NON-NLS-1$
          final boolean psOnlyAverages = ps.isSetOnlyAverages () ? ps.isOnlyAverages () : reportParams.isDefaultOnlyAverages ();
-         if (psOnlyAverages) {
-            if (psPeriods)
-               sb.append (formatValuesDetailed (sim, pm));
-            else
-               sb.append (formatValuesDetailedHidePeriods (sim, pm));
-         }
-         else if (psPeriods)
-            sb.append (formatStatisticsDetailed (sim, level, pm));
-         else
-            sb.append (formatStatisticsDetailedHidePeriods (sim, level, pm));
+         sections.add (new Callable<String>() {
+            public String call () {
+               if (psOnlyAverages) {
+                  if (psPeriods)
+                     return formatValuesDetailed (sim, pm);
+                  else
+                     return formatValuesDetailedHidePeriods (sim, pm);
+               }
+               else if (psPeriods)
+                  return formatStatisticsDetailed (sim, level, pm);
+               else
+                  return formatStatisticsDetailedHidePeriods (sim, level, pm);
+            }
+         });
+      }
+      final PerformanceMeasureType[] pmsVal = getPerformanceMeasures (pstats,
+            true, RowType.values ());
+      if (pmsVal.length > 0)
+         sb.append (formatValuesSummary (sim, pmsVal));
+      final PerformanceMeasureType[] pmsStat = getPerformanceMeasures (pstats,
+            false, RowType.values ());
+      if (pmsStat.length > 0) {
+         if (pmsVal.length > 0)
+            sb.append ("\n\n");
+         sb.append (formatStatisticsSummary (sim, level, pmsStat));
       }
+      // The summaries are done, so each section reads the
+      // matrices of a single type of performance measure.
+      for (final String section : invokeAll (sections))
+         sb.append ("\n\n").append (section); //$NON-NLS-1$
       if (sim instanceof ContactCenterSimWithObservations && reportParams.isSetPrintedObs ()) {
          sb.append ("\n\n").append (formatObservations ((ContactCenterSimWithObservations)sim,
                reportParams));
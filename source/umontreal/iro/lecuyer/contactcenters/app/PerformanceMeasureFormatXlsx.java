@@ -0,0 +1,287 @@
+package umontreal.iro.lecuyer.contactcenters.app;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+import jxl.BooleanCell;
+import jxl.Cell;
+import jxl.CellType;
+import jxl.CellView;
+import jxl.DateCell;
+import jxl.LabelCell;
+import jxl.NumberCell;
+import jxl.Range;
+import jxl.Sheet;
+import jxl.Workbook;
+import jxl.format.Alignment;
+import jxl.format.CellFormat;
+import jxl.read.biff.BiffException;
+import jxl.write.WritableWorkbook;
+import jxl.write.WriteException;
+import umontreal.iro.lecuyer.contactcenters.app.params.PerformanceMeasureParams;
+import umontreal.iro.lecuyer.contactcenters.app.params.ReportParams;
+import umontreal.iro.lecuyer.util.XlsxWriter;
+import umontreal.ssj.util.TimeUnit;
+
+/**
+ * Formats reports of evaluations into workbooks in the Office
+ * Open XML format, using an {@link XlsxWriter}.
+ * The summary and detailed sheets, which contain a number of rows
+ * independent of the number of observations, are first formatted
+ * in memory using {@link PerformanceMeasureFormatExcel}, and
+ * then copied to the output. The observations, which can
+ * contain many rows, are written row by row directly to
+ * the output, and continued on a new sheet each time
+ * a sheet contains the maximal number of rows,
+ * {@link XlsxWriter#MAX_ROWS}.
+ */
+public class PerformanceMeasureFormatXlsx {
+   private static final long msInADay = 24*60*60*1000;
+   // Excel represents dates as days since December 30, 1899
+   private static final double EPOCH_DAYS = 25569;
+   private XlsxWriter writer;
+   private ReportParams reportParams;
+
+   /**
+    * Constructs a new formatter writing to
+    * \texttt{writer}, and using report
+    * parameters \texttt{reportParams}.
+    *
+    * @param writer
+    *           the workbook writer.
+    * @param reportParams
+    *           the report parameters.
+    */
+   public PerformanceMeasureFormatXlsx (XlsxWriter writer, ReportParams reportParams) {
+      if (writer == null || reportParams == null)
+         throw new NullPointerException ();
+      this.writer = writer;
+      this.reportParams = reportParams;
+   }
+
+   /**
+    * Returns the workbook writer used by this formatter.
+    *
+    * @return the workbook writer.
+    */
+   public XlsxWriter getWriter () {
+      return writer;
+   }
+
+   /**
+    * Formats the report of the last evaluation performed by
+    * \texttt{eval}. This creates the same sheets as
+    * {@link ContactCenterEval#formatStatisticsExcel(WritableWorkbook)}.
+    *
+    * @param eval
+    *           the evaluation system.
+    * @return \texttt{true} if at least one sheet was written.
+    * @throws IOException
+    *            if an I/O error occurs.
+    */
+   public boolean formatStatistics (ContactCenterEval eval) throws IOException {
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      final WritableWorkbook wb = Workbook.createWorkbook (out);
+      final PerformanceMeasureFormatExcel pfmt = new PerformanceMeasureFormatExcel (wb, reportParams);
+      pfmt.setMaxColumns (reportParams.getMaxColumns ());
+      pfmt.setObservationSheet (false);
+      boolean res;
+      try {
+         if (eval instanceof ContactCenterSim)
+            res = pfmt.formatStatistics ((ContactCenterSim) eval, reportParams);
+         else
+            res = pfmt.formatValues (eval, reportParams);
+         if (wb.getNumberOfSheets () > 0)
+            wb.write ();
+         wb.close ();
+      }
+      catch (final WriteException we) {
+         throw new IOException ("Could not format the report", we);
+      }
+      if (out.size () > 0) {
+         // The formats of cells are resolved only
+         // when the workbook is read back.
+         final Workbook rwb;
+         try {
+            rwb = Workbook.getWorkbook (new ByteArrayInputStream (out.toByteArray ()));
+         }
+         catch (final BiffException be) {
+            throw new IOException ("Could not format the report", be);
+         }
+         for (final Sheet sheet : rwb.getSheets ())
+            copySheet (sheet);
+         rwb.close ();
+      }
+
+      final String obsSheetName = reportParams.getObsSheetName () == null ?
+            PerformanceMeasureFormatExcel.defaultObsSheetName : reportParams.getObsSheetName ();
+      if (obsSheetName.length () > 0 && eval instanceof ContactCenterSimWithObservations)
+         res |= formatObservations ((ContactCenterSimWithObservations) eval, obsSheetName);
+      return res;
+   }
+
+   /**
+    * Copies the contents of the sheet \texttt{sheet} into a new
+    * sheet with the same name. The values, merged cells, and
+    * column widths are copied, while the formats of cells are replaced by the
+    * closest styles supported by {@link XlsxWriter}.
+    *
+    * @param sheet
+    *           the copied sheet.
+    * @throws IOException
+    *            if an I/O error occurs.
+    */
+   public void copySheet (Sheet sheet) throws IOException {
+      writer.newSheet (sheet.getName ());
+      final int nc = sheet.getColumns ();
+      for (int c = 0; c < nc; c++) {
+         final CellView view = sheet.getColumnView (c);
+         if (view != null && view.getSize () >= 256)
+            writer.setColumnWidth (c, view.getSize () / 256.0);
+      }
+      for (final Range range : sheet.getMergedCells ()) {
+         final Cell tl = range.getTopLeft ();
+         final Cell br = range.getBottomRight ();
+         writer.mergeCells (tl.getRow (), tl.getColumn (), br.getRow (), br.getColumn ());
+      }
+      final int nr = sheet.getRows ();
+      for (int r = 0; r < nr; r++) {
+         writer.newRow ();
+         for (final Cell cell : sheet.getRow (r)) {
+            while (writer.getCurrentColumn () < cell.getColumn ())
+               writer.skipCell ();
+            copyCell (cell);
+         }
+      }
+   }
+
+   private void copyCell (Cell cell) throws IOException {
+      final CellType type = cell.getType ();
+      final int style = getStyle (cell.getCellFormat ());
+      if (type == CellType.NUMBER)
+         writer.writeCell (((NumberCell) cell).getValue (), style);
+      else if (type == CellType.LABEL)
+         writer.writeCell (((LabelCell) cell).getString (), style);
+      else if (type == CellType.DATE) {
+         final DateCell dc = (DateCell) cell;
+         double days = dc.getDate ().getTime () / (double)msInADay + EPOCH_DAYS;
+         // Undoes the correction for the nonexistent February 29, 1900
+         if (!dc.isTime () && days < 62)
+            --days;
+         writer.writeCell (days, style == XlsxWriter.STYLE_TIME ?
+               XlsxWriter.STYLE_TIME : XlsxWriter.STYLE_DATE);
+      }
+      else if (type == CellType.BOOLEAN)
+         writer.writeCell (((BooleanCell) cell).getValue ());
+      else
+         writer.skipCell ();
+   }
+
+   private static int getStyle (CellFormat fmt) {
+      if (fmt == null)
+         return XlsxWriter.STYLE_DEFAULT;
+      if (fmt.getFormat () != null) {
+         final String fs = fmt.getFormat ().getFormatString ();
+         if (fs != null) {
+            if (fs.indexOf ('%') >= 0)
+               return XlsxWriter.STYLE_PERCENT;
+            if (fs.indexOf ("ss") >= 0)
+               return XlsxWriter.STYLE_TIME;
+            if (fs.equals ("0"))
+               return XlsxWriter.STYLE_INTEGER;
+         }
+      }
+      if (fmt.getAlignment () == Alignment.CENTRE)
+         return XlsxWriter.STYLE_TITLE;
+      return XlsxWriter.STYLE_DEFAULT;
+   }
+
+   /**
+    * Writes the observations requested by the report parameters
+    * for the simulator \texttt{sim}
+    * in a new sheet named \texttt{sheetName}.
+    * Each column of the sheet contains the observations for
+    * a performance measure, and starts with a header giving
+    * the name of the measure. Columns are grouped in blocks
+    * of at most {@link ReportParams#getMaxColumns()} columns.
+    * When the current sheet becomes full, a new sheet is created,
+    * and the header is repeated.
+    *
+    * @param sim
+    *           the simulator to get observations from.
+    * @param sheetName
+    *           the name of the sheet.
+    * @return \texttt{true} if a sheet was created.
+    * @throws IOException
+    *            if an I/O error occurs.
+    */
+   public boolean formatObservations (ContactCenterSimWithObservations sim, String sheetName)
+   throws IOException {
+      if (!reportParams.isSetPrintedObs ())
+         return false;
+      writer.newSheet (sheetName);
+      final int maxColumns = Math.min (reportParams.getMaxColumns (), XlsxWriter.MAX_COLUMNS);
+      final int n = reportParams.getPrintedObs ().size ();
+      for (int start = 0; start < n; start += maxColumns) {
+         final int nc = Math.min (maxColumns, n - start);
+         final String[] headers = new String[nc];
+         final double[][] obs = new double[nc][];
+         final int[] styles = new int[nc];
+         final boolean[] time = new boolean[nc];
+         int maxNumObs = 0;
+         for (int j = 0; j < nc; j++) {
+            final PerformanceMeasureParams ppar = reportParams.getPrintedObs ().get (start + j);
+            final PerformanceMeasureType pm = PerformanceMeasureType.valueOf (ppar.getMeasure ());
+            final int row = PerformanceMeasureFormatExcel.getObsRow (sim, ppar);
+            final int column = PerformanceMeasureFormatExcel.getObsColumn (sim, ppar);
+            headers[j] = PerformanceMeasureFormatExcel.getObsDescription (sim, ppar, row, column);
+            try {
+               obs[j] = sim.getObs (pm, row, column);
+            }
+            catch (final NoSuchElementException nse) {
+               obs[j] = null;
+            }
+            time[j] = pm.isTime ();
+            styles[j] = time[j] ? XlsxWriter.STYLE_TIME :
+               pm.isPercentage () ? XlsxWriter.STYLE_PERCENT : XlsxWriter.STYLE_DEFAULT;
+            maxNumObs = Math.max (maxNumObs, obs[j] == null ? 1 : obs[j].length);
+         }
+         writeObsHeader (headers, sheetName);
+         for (int i = 0; i < maxNumObs; i++) {
+            if (writer.getNumRows () >= XlsxWriter.MAX_ROWS) {
+               writer.newSheet (sheetName);
+               writeObsHeader (headers, sheetName);
+            }
+            writer.newRow ();
+            for (int j = 0; j < nc; j++) {
+               if (obs[j] == null) {
+                  if (i == 0)
+                     writer.writeCell (Messages.getString ("PerformanceMeasureFormat.NoObs"),
+                           XlsxWriter.STYLE_DEFAULT);
+                  else
+                     writer.skipCell ();
+               }
+               else if (i >= obs[j].length || Double.isNaN (obs[j][i]))
+                  writer.skipCell ();
+               else if (time[j]) {
+                  final long t = Math.round (TimeUnit.convert (obs[j][i], sim.getDefaultUnit (), TimeUnit.MILLISECOND));
+                  writer.writeCell (t / (double)msInADay, styles[j]);
+               }
+               else
+                  writer.writeCell (obs[j][i], styles[j]);
+            }
+         }
+      }
+      return true;
+   }
+
+   private void writeObsHeader (String[] headers, String sheetName) throws IOException {
+      if (writer.getNumRows () >= XlsxWriter.MAX_ROWS - 1)
+         writer.newSheet (sheetName);
+      writer.newRow ();
+      for (final String h : headers)
+         writer.writeCell (h, XlsxWriter.STYLE_BOLD);
+   }
+}
@@ -1202,6 +1202,98 @@ public enum PerformanceMeasureType {
       Messages.getString("PerformanceMeasureType.MseWaitingTimeServed"), EstimationType.FUNCTIONOFEXPECTATIONS,  //$NON-NLS-1$
       RowType.CONTACTTYPE, ColumnType.MAINPERIOD, false, true, 0),
 
+   /**
+    * Represents the expected 80th percentile of the waiting times of contacts having abandoned,
+    * for each contact type and period.
+    * For each replication, the percentile is estimated by a histogram with
+    * logarithmically-spaced buckets, so observations do not need to be stored
+    * and the memory used does not depend on the number of contacts.
+    * The relative error on the estimated percentile is
+    * given by the \texttt{quantileRelativeAccuracy} attribute of
+    * the simulation parameters, and is 0.5\% by default.
+    * Since percentiles cannot be summed, the
+    * percentiles for segments regrouping contact types or
+    * main periods are estimated from histograms
+    * regrouping every concerned contact.
+    * A replication without any contact concerning a given
+    * type and period does not define the percentile, and
+    * is not counted in the estimate for this type and period.
+    * Control variables are not applied to percentiles.
+    * The other types of measures based on percentiles
+    * of waiting times work the same way.
+    *
+    * @xmlconfig.title
+    * @xmlconfig.pm
+    */
+   WAITINGTIMEABANDONEDQ80(
+      Messages.getString("PerformanceMeasureType.WaitingTimeAbandonedQ80"), EstimationType.EXPECTATION,  //$NON-NLS-1$
+      RowType.CONTACTTYPE, ColumnType.MAINPERIOD, false, true, 0),
+
+   /**
+    * Represents the expected 90th percentile of the waiting times of contacts having abandoned,
+    * for each contact type and period.
+    * See {@link #WAITINGTIMEABANDONEDQ80} for how
+    * the percentile is estimated.
+    *
+    * @xmlconfig.title
+    * @xmlconfig.pm
+    */
+   WAITINGTIMEABANDONEDQ90(
+      Messages.getString("PerformanceMeasureType.WaitingTimeAbandonedQ90"), EstimationType.EXPECTATION,  //$NON-NLS-1$
+      RowType.CONTACTTYPE, ColumnType.MAINPERIOD, false, true, 0),
+
+   /**
+    * Represents the expected 95th percentile of the waiting times of contacts having abandoned,
+    * for each contact type and period.
+    * See {@link #WAITINGTIMEABANDONEDQ80} for how
+    * the percentile is estimated.
+    *
+    * @xmlconfig.title
+    * @xmlconfig.pm
+    */
+   WAITINGTIMEABANDONEDQ95(
+      Messages.getString("PerformanceMeasureType.WaitingTimeAbandonedQ95"), EstimationType.EXPECTATION,  //$NON-NLS-1$
+      RowType.CONTACTTYPE, ColumnType.MAINPERIOD, false, true, 0),
+
+   /**
+    * Represents the expected 80th percentile of the waiting times of served contacts,
+    * for each contact type and period.
+    * See {@link #WAITINGTIMEABANDONEDQ80} for how
+    * the percentile is estimated.
+    *
+    * @xmlconfig.title
+    * @xmlconfig.pm
+    */
+   WAITINGTIMESERVEDQ80(
+      Messages.getString("PerformanceMeasureType.WaitingTimeServedQ80"), EstimationType.EXPECTATION,  //$NON-NLS-1$
+      RowType.CONTACTTYPE, ColumnType.MAINPERIOD, false, true, 0),
+
+   /**
+    * Represents the expected 90th percentile of the waiting times of served contacts,
+    * for each contact type and period.
+    * See {@link #WAITINGTIMEABANDONEDQ80} for how
+    * the percentile is estimated.
+    *
+    * @xmlconfig.title
+    * @xmlconfig.pm
+    */
+   WAITINGTIMESERVEDQ90(
+      Messages.getString("PerformanceMeasureType.WaitingTimeServedQ90"), EstimationType.EXPECTATION,  //$NON-NLS-1$
+      RowType.CONTACTTYPE, ColumnType.MAINPERIOD, false, true, 0),
+
+   /**
+    * Represents the expected 95th percentile of the waiting times of served contacts,
+    * for each contact type and period.
+    * See {@link #WAITINGTIMEABANDONEDQ80} for how
+    * the percentile is estimated.
+    *
+    * @xmlconfig.title
+    * @xmlconfig.pm
+    */
+   WAITINGTIMESERVEDQ95(
+      Messages.getString("PerformanceMeasureType.WaitingTimeServedQ95"), EstimationType.EXPECTATION,  //$NON-NLS-1$
+      RowType.CONTACTTYPE, ColumnType.MAINPERIOD, false, true, 0),
+
    /**
     * Average waiting time, for each (contact type, agent group) pair, whether
     * inbound or outbound, whether served or having abandoned. Let
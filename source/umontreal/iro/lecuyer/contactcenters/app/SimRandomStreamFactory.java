@@ -50,6 +50,18 @@ public class SimRandomStreamFactory extends BasicRandomStreamFactory {
       super (getStreamClass (par));
    }
    
+   /**
+    * Determines if each call uses its own substream of the
+    * streams of call factories, as given by
+    * {@link RandomStreamsParams#isCallSubstreams()}, or
+    * returns \texttt{false} if \texttt{par} is \texttt{null}.
+    * @param par the random streams parameters.
+    * @return the call substreams indicator.
+    */
+   public static boolean isCallSubstreams (RandomStreamsParams par) {
+      return par == null ? false : par.isCallSubstreams ();
+   }
+
    public static void initSeed (RandomStreamsParams par) {
       if (par == null)
          // We cannot initialize the default MRG32k3a to the
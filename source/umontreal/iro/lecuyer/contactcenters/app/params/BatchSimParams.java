@@ -37,6 +37,12 @@ public class BatchSimParams
     protected Integer maxBatches;
     @XmlAttribute(name = "warmupBatches")
     protected Integer warmupBatches;
+    @XmlAttribute(name = "autoWarmup")
+    protected Boolean autoWarmup;
+    @XmlAttribute(name = "maxLag1Correlation")
+    protected Double maxLag1Correlation;
+    @XmlAttribute(name = "numRuns")
+    protected Integer numRuns;
     @XmlAttribute(name = "aggregation")
     protected Boolean aggregation;
     @XmlAttribute(name = "batchSize", required = true)
@@ -138,6 +144,110 @@ public class BatchSimParams
         this.warmupBatches = null;
     }
 
+    /**
+     * Gets the value of the autoWarmup property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Boolean }
+     *     
+     */
+    public boolean isAutoWarmup() {
+        if (autoWarmup == null) {
+            return false;
+        } else {
+            return autoWarmup;
+        }
+    }
+
+    /**
+     * Sets the value of the autoWarmup property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Boolean }
+     *     
+     */
+    public void setAutoWarmup(boolean value) {
+        this.autoWarmup = value;
+    }
+
+    public boolean isSetAutoWarmup() {
+        return (this.autoWarmup!= null);
+    }
+
+    public void unsetAutoWarmup() {
+        this.autoWarmup = null;
+    }
+
+    /**
+     * Gets the value of the maxLag1Correlation property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Double }
+     *     
+     */
+    public double getMaxLag1Correlation() {
+        return maxLag1Correlation;
+    }
+
+    /**
+     * Sets the value of the maxLag1Correlation property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Double }
+     *     
+     */
+    public void setMaxLag1Correlation(double value) {
+        this.maxLag1Correlation = value;
+    }
+
+    public boolean isSetMaxLag1Correlation() {
+        return (this.maxLag1Correlation!= null);
+    }
+
+    public void unsetMaxLag1Correlation() {
+        this.maxLag1Correlation = null;
+    }
+
+    /**
+     * Gets the value of the numRuns property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public int getNumRuns() {
+        if (numRuns == null) {
+            return  1;
+        } else {
+            return numRuns;
+        }
+    }
+
+    /**
+     * Sets the value of the numRuns property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setNumRuns(int value) {
+        this.numRuns = value;
+    }
+
+    public boolean isSetNumRuns() {
+        return (this.numRuns!= null);
+    }
+
+    public void unsetNumRuns() {
+        this.numRuns = null;
+    }
+
     /**
      * Gets the value of the aggregation property.
      * 
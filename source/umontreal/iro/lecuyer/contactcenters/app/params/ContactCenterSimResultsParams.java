@@ -50,6 +50,8 @@ public class ContactCenterSimResultsParams
     protected List<ObsMatrix> observationMatrices;
     @XmlAttribute(name = "numSteps")
     protected Integer numSteps;
+    @XmlAttribute(name = "observationFile")
+    protected String observationFile;
 
     /**
      * Gets the value of the varianceMatrices property.
@@ -272,4 +274,32 @@ public class ContactCenterSimResultsParams
         this.numSteps = null;
     }
 
+    /**
+     * Gets the value of the observationFile property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link String }
+     *     
+     */
+    public String getObservationFile() {
+        return observationFile;
+    }
+
+    /**
+     * Sets the value of the observationFile property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link String }
+     *     
+     */
+    public void setObservationFile(String value) {
+        this.observationFile = value;
+    }
+
+    public boolean isSetObservationFile() {
+        return (this.observationFile!= null);
+    }
+
 }
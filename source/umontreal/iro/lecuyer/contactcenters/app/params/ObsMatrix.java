@@ -113,6 +113,9 @@ public class ObsMatrix {
      *     &lt;extension base="&lt;http://www.iro.umontreal.ca/lecuyer/ssj>doubleList">
      *       &lt;attribute name="row" use="required" type="{http://www.iro.umontreal.ca/lecuyer/ssj}nonNegativeInt" />
      *       &lt;attribute name="column" use="required" type="{http://www.iro.umontreal.ca/lecuyer/ssj}nonNegativeInt" />
+     *       &lt;attribute name="offset" type="{http://www.w3.org/2001/XMLSchema}long" />
+     *       &lt;attribute name="length" type="{http://www.iro.umontreal.ca/lecuyer/ssj}nonNegativeInt" />
+     *       &lt;attribute name="compressedLength" type="{http://www.iro.umontreal.ca/lecuyer/ssj}nonNegativeInt" />
      *     &lt;/extension>
      *   &lt;/simpleContent>
      * &lt;/complexType>
@@ -132,6 +135,12 @@ public class ObsMatrix {
         protected int row;
         @XmlAttribute(name = "column", required = true)
         protected int column;
+        @XmlAttribute(name = "offset")
+        protected Long offset;
+        @XmlAttribute(name = "length")
+        protected Integer length;
+        @XmlAttribute(name = "compressedLength")
+        protected Integer compressedLength;
 
         /**
          * Gets the value of the value property.
@@ -210,6 +219,102 @@ public class ObsMatrix {
             return true;
         }
 
+        /**
+         * Gets the value of the offset property.
+         * 
+         * @return
+         *     possible object is
+         *     {@link Long }
+         *     
+         */
+        public Long getOffset() {
+            return offset;
+        }
+
+        /**
+         * Sets the value of the offset property.
+         * 
+         * @param value
+         *     allowed object is
+         *     {@link Long }
+         *     
+         */
+        public void setOffset(Long value) {
+            this.offset = value;
+        }
+
+        public boolean isSetOffset() {
+            return (this.offset!= null);
+        }
+
+        public void unsetOffset() {
+            this.offset = null;
+        }
+
+        /**
+         * Gets the value of the length property.
+         * 
+         * @return
+         *     possible object is
+         *     {@link Integer }
+         *     
+         */
+        public Integer getLength() {
+            return length;
+        }
+
+        /**
+         * Sets the value of the length property.
+         * 
+         * @param value
+         *     allowed object is
+         *     {@link Integer }
+         *     
+         */
+        public void setLength(Integer value) {
+            this.length = value;
+        }
+
+        public boolean isSetLength() {
+            return (this.length!= null);
+        }
+
+        public void unsetLength() {
+            this.length = null;
+        }
+
+        /**
+         * Gets the value of the compressedLength property.
+         * 
+         * @return
+         *     possible object is
+         *     {@link Integer }
+         *     
+         */
+        public Integer getCompressedLength() {
+            return compressedLength;
+        }
+
+        /**
+         * Sets the value of the compressedLength property.
+         * 
+         * @param value
+         *     allowed object is
+         *     {@link Integer }
+         *     
+         */
+        public void setCompressedLength(Integer value) {
+            this.compressedLength = value;
+        }
+
+        public boolean isSetCompressedLength() {
+            return (this.compressedLength!= null);
+        }
+
+        public void unsetCompressedLength() {
+            this.compressedLength = null;
+        }
+
     }
 
 }
@@ -38,6 +38,8 @@ public class RandomStreamsParams {
     protected String streamClass;
     @XmlAttribute(name = "caching")
     protected Boolean caching;
+    @XmlAttribute(name = "callSubstreams")
+    protected Boolean callSubstreams;
 
     /**
      * 
@@ -182,4 +184,40 @@ public class RandomStreamsParams {
         this.caching = null;
     }
 
+    /**
+     * Gets the value of the callSubstreams property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Boolean }
+     *     
+     */
+    public boolean isCallSubstreams() {
+        if (callSubstreams == null) {
+            return false;
+        } else {
+            return callSubstreams;
+        }
+    }
+
+    /**
+     * Sets the value of the callSubstreams property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Boolean }
+     *     
+     */
+    public void setCallSubstreams(boolean value) {
+        this.callSubstreams = value;
+    }
+
+    public boolean isSetCallSubstreams() {
+        return (this.callSubstreams!= null);
+    }
+
+    public void unsetCallSubstreams() {
+        this.callSubstreams = null;
+    }
+
 }
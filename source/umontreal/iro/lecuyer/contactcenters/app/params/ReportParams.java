@@ -95,6 +95,10 @@ public class ReportParams {
     protected Boolean defaultPeriods;
     @XmlAttribute(name = "defaultOnlyAverages")
     protected Boolean defaultOnlyAverages;
+    @XmlAttribute(name = "binaryObs")
+    protected Boolean binaryObs;
+    @XmlAttribute(name = "compressBinaryObs")
+    protected Boolean compressBinaryObs;
 
     /**
      * Gets the value of the properties property.
@@ -584,4 +588,76 @@ public class ReportParams {
         this.defaultOnlyAverages = null;
     }
 
+    /**
+     * Gets the value of the binaryObs property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Boolean }
+     *     
+     */
+    public boolean isBinaryObs() {
+        if (binaryObs == null) {
+            return false;
+        } else {
+            return binaryObs;
+        }
+    }
+
+    /**
+     * Sets the value of the binaryObs property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Boolean }
+     *     
+     */
+    public void setBinaryObs(boolean value) {
+        this.binaryObs = value;
+    }
+
+    public boolean isSetBinaryObs() {
+        return (this.binaryObs!= null);
+    }
+
+    public void unsetBinaryObs() {
+        this.binaryObs = null;
+    }
+
+    /**
+     * Gets the value of the compressBinaryObs property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Boolean }
+     *     
+     */
+    public boolean isCompressBinaryObs() {
+        if (compressBinaryObs == null) {
+            return false;
+        } else {
+            return compressBinaryObs;
+        }
+    }
+
+    /**
+     * Sets the value of the compressBinaryObs property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Boolean }
+     *     
+     */
+    public void setCompressBinaryObs(boolean value) {
+        this.compressBinaryObs = value;
+    }
+
+    public boolean isSetCompressBinaryObs() {
+        return (this.compressBinaryObs!= null);
+    }
+
+    public void unsetCompressBinaryObs() {
+        this.compressBinaryObs = null;
+    }
+
 }
@@ -60,6 +60,14 @@ public abstract class SimParams {
     protected Boolean restrictToPrintedStat;
     @XmlAttribute(name = "estimateContactTypeAgentGroup")
     protected Boolean estimateContactTypeAgentGroup;
+    @XmlAttribute(name = "enableProfiling")
+    protected Boolean enableProfiling;
+    @XmlAttribute(name = "spillObs")
+    protected Boolean spillObs;
+    @XmlAttribute(name = "incrementalCV")
+    protected Boolean incrementalCV;
+    @XmlAttribute(name = "quantileRelativeAccuracy")
+    protected Double quantileRelativeAccuracy;
 
     /**
      * Gets the value of the callTrace property.
@@ -427,4 +435,148 @@ public abstract class SimParams {
         this.estimateContactTypeAgentGroup = null;
     }
 
+    /**
+     * Gets the value of the enableProfiling property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Boolean }
+     *     
+     */
+    public boolean isEnableProfiling() {
+        if (enableProfiling == null) {
+            return false;
+        } else {
+            return enableProfiling;
+        }
+    }
+
+    /**
+     * Sets the value of the enableProfiling property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Boolean }
+     *     
+     */
+    public void setEnableProfiling(boolean value) {
+        this.enableProfiling = value;
+    }
+
+    public boolean isSetEnableProfiling() {
+        return (this.enableProfiling!= null);
+    }
+
+    public void unsetEnableProfiling() {
+        this.enableProfiling = null;
+    }
+
+    /**
+     * Gets the value of the spillObs property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Boolean }
+     *     
+     */
+    public boolean isSpillObs() {
+        if (spillObs == null) {
+            return false;
+        } else {
+            return spillObs;
+        }
+    }
+
+    /**
+     * Sets the value of the spillObs property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Boolean }
+     *     
+     */
+    public void setSpillObs(boolean value) {
+        this.spillObs = value;
+    }
+
+    public boolean isSetSpillObs() {
+        return (this.spillObs!= null);
+    }
+
+    public void unsetSpillObs() {
+        this.spillObs = null;
+    }
+
+    /**
+     * Gets the value of the incrementalCV property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Boolean }
+     *     
+     */
+    public boolean isIncrementalCV() {
+        if (incrementalCV == null) {
+            return false;
+        } else {
+            return incrementalCV;
+        }
+    }
+
+    /**
+     * Sets the value of the incrementalCV property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Boolean }
+     *     
+     */
+    public void setIncrementalCV(boolean value) {
+        this.incrementalCV = value;
+    }
+
+    public boolean isSetIncrementalCV() {
+        return (this.incrementalCV!= null);
+    }
+
+    public void unsetIncrementalCV() {
+        this.incrementalCV = null;
+    }
+
+    /**
+     * Gets the value of the quantileRelativeAccuracy property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Double }
+     *     
+     */
+    public double getQuantileRelativeAccuracy() {
+        if (quantileRelativeAccuracy == null) {
+            return  0.005D;
+        } else {
+            return quantileRelativeAccuracy;
+        }
+    }
+
+    /**
+     * Sets the value of the quantileRelativeAccuracy property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Double }
+     *     
+     */
+    public void setQuantileRelativeAccuracy(double value) {
+        this.quantileRelativeAccuracy = value;
+    }
+
+    public boolean isSetQuantileRelativeAccuracy() {
+        return (this.quantileRelativeAccuracy!= null);
+    }
+
+    public void unsetQuantileRelativeAccuracy() {
+        this.quantileRelativeAccuracy = null;
+    }
+
 }
@@ -117,7 +117,7 @@ public class ExcelContactTrace implements ContactTrace {
       closed = true;
    }
    
-   private static final String[] FIELDS = {
+   static final String[] FIELDS = {
       "Step",
       "Type",
       "Period",
@@ -58,6 +58,8 @@ public class FileContactTrace implements ContactTrace {
     * Otherwise, if the name of the output file of the trace ends
     * with \texttt{.xls}, an
     * {@link ExcelContactTrace} is returned.
+    * If it ends with \texttt{.xlsx}, an
+    * {@link XlsxContactTrace} is returned.
     * Otherwise, a {@link FileContactTrace}
     * is returned.
     * @param traceParams the parameters of the trace.
@@ -69,6 +71,8 @@ public class FileContactTrace implements ContactTrace {
       if (traceParams.getDatabase () != null
             && traceParams.getTableName () != null)
          return new DBContactTrace (traceParams.getDatabase (), traceParams.getTableName ());
+      if (traceParams.getOutputFileName ().endsWith (".xlsx"))
+         return new XlsxContactTrace (new File (traceParams.getOutputFileName ()), traceParams.getSheetName ());
       final boolean outputExcel = traceParams.getOutputFileName().endsWith (".xls");
       if (outputExcel)
          return new ExcelContactTrace (new File (traceParams.getOutputFileName ()), traceParams.getSheetName ());
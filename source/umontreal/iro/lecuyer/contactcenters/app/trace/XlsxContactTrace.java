@@ -0,0 +1,123 @@
+package umontreal.iro.lecuyer.contactcenters.app.trace;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import umontreal.iro.lecuyer.util.XlsxWriter;
+
+/**
+ * Outputs trace to a workbook in the Office Open XML format
+ * using {@link XlsxWriter}.
+ * Contrary to {@link ExcelContactTrace}, the rows are written
+ * to the file as calls are processed, so memory usage does not
+ * grow with the length of the trace.
+ * When a sheet contains the maximal number of rows,
+ * a new sheet is created, and the trace continues on it.
+ */
+public class XlsxContactTrace implements ContactTrace {
+   private final Logger logger = Logger
+         .getLogger ("umontreal.iro.lecuyer.contactcenters.app.trace");
+   private XlsxWriter writer;
+   private boolean closed = true;
+   private File traceFile;
+   private String sheetName;
+
+   /**
+    * Creates a new call trace to a sheet
+    * \texttt{sheetName} in a workbook named
+    * \texttt{traceFile}.
+    *
+    * @param traceFile
+    *           the output trace file.
+    * @param sheetName
+    * the base name of the sheets containing the trace.
+    */
+   public XlsxContactTrace (File traceFile, String sheetName) {
+      this.traceFile = traceFile;
+      this.sheetName = sheetName;
+   }
+
+   public void init () {
+      if (traceFile.exists ()) {
+         // Select a new name
+         final String name = traceFile.getName ();
+         final int idx = name.lastIndexOf ('.');
+         int n = 1;
+         File outputFile2 = null;
+         while (outputFile2 == null || outputFile2.exists ()) {
+            final String name2 = idx == -1 ? name + n++ : name.substring (0, idx) + n++ + name.substring (idx);
+            outputFile2 = new File (traceFile.getParentFile (), name2);
+         }
+         traceFile = outputFile2;
+         logger.warning ("Writing trace to file " + traceFile.getName());
+      }
+      try {
+         writer = new XlsxWriter (new BufferedOutputStream (new FileOutputStream (traceFile)));
+         closed = false;
+         newSheet ();
+      }
+      catch (final IOException ioe) {
+         logger.log (Level.WARNING, "Cannot output call-by-call trace", ioe);
+         close ();
+      }
+   }
+
+   private void newSheet () throws IOException {
+      writer.newSheet (sheetName);
+      writeHeader ();
+   }
+
+   public void close () {
+      if (writer != null)
+         try {
+            writer.close ();
+         }
+         catch (final IOException ioe) {
+            logger.log (Level.WARNING, "Error while writing file", ioe);
+         }
+      writer = null;
+      closed = true;
+   }
+
+   public void writeHeader () {
+      if (closed)
+         return;
+      try {
+         writer.newRow ();
+         for (final String f : ExcelContactTrace.FIELDS)
+            writer.writeCell (f, XlsxWriter.STYLE_BOLD);
+      }
+      catch (final IOException ioe) {
+         logger.log (Level.WARNING, "Could not write header row", ioe);
+         close ();
+      }
+   }
+
+   public void writeLine (int step, int type, int period,
+         double arvTime, double queueTime, String outcome,
+         int group, double srvTime) {
+      if (closed)
+         return;
+      try {
+         if (writer.getNumRows () == XlsxWriter.MAX_ROWS)
+            newSheet ();
+         writer.newRow ();
+         writer.writeCell (step, XlsxWriter.STYLE_DEFAULT);
+         writer.writeCell (type, XlsxWriter.STYLE_DEFAULT);
+         writer.writeCell (period, XlsxWriter.STYLE_DEFAULT);
+         writer.writeCell (arvTime, XlsxWriter.STYLE_DEFAULT);
+         writer.writeCell (queueTime, XlsxWriter.STYLE_DEFAULT);
+         writer.writeCell (outcome, XlsxWriter.STYLE_DEFAULT);
+         writer.writeCell (group, XlsxWriter.STYLE_DEFAULT);
+         writer.writeCell (srvTime, XlsxWriter.STYLE_DEFAULT);
+      }
+      catch (final IOException ioe) {
+         logger.log (Level.WARNING, "Could not write trace line", ioe);
+         close ();
+      }
+   }
+}
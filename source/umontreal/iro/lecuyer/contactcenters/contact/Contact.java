@@ -80,8 +80,12 @@ public class Contact implements Comparable<Contact>, Named, Cloneable {
    //private double afterContactTime = 0;
    //private double[] contactTimeGroups;
    //private double[] afterContactTimeGroups;
-   private ServiceTimes contactTime = new ServiceTimes (Double.POSITIVE_INFINITY);
-   private ServiceTimes afterContactTime = new ServiceTimes (0);
+   // The containers are created on demand, because most contacts
+   // only use the default times.
+   private double defaultContactTime = Double.POSITIVE_INFINITY;
+   private double defaultAfterContactTime = 0;
+   private ServiceTimes contactTime;
+   private ServiceTimes afterContactTime;
    private double priority = 1.0;
    private int typeId;
    private boolean hasExited = false;
@@ -294,6 +298,8 @@ public class Contact implements Comparable<Contact>, Named, Cloneable {
     * @return the contact times.
     */
    public ServiceTimes getContactTimes() {
+      if (contactTime == null)
+         contactTime = new ServiceTimes (defaultContactTime);
       return contactTime;
    }
 
@@ -303,6 +309,8 @@ public class Contact implements Comparable<Contact>, Named, Cloneable {
     * @return the after-contact times.
     */
    public ServiceTimes getAfterContactTimes() {
+      if (afterContactTime == null)
+         afterContactTime = new ServiceTimes (defaultAfterContactTime);
       return afterContactTime;
    }
 
@@ -366,6 +374,8 @@ public class Contact implements Comparable<Contact>, Named, Cloneable {
    }
    
    public double getDefaultContactTime() {
+      if (contactTime == null)
+         return defaultContactTime;
       return contactTime.getServiceTime ();
    }
 
@@ -375,7 +385,12 @@ public class Contact implements Comparable<Contact>, Named, Cloneable {
     @exception IllegalArgumentException if the contact time is negative or NaN.
     */
    public void setDefaultContactTime (double contactTime) {
-      this.contactTime.setServiceTime (contactTime);
+      if (this.contactTime != null)
+         this.contactTime.setServiceTime (contactTime);
+      else if (contactTime < 0 || Double.isNaN (contactTime))
+         throw new IllegalArgumentException ("serviceTime must be positive");
+      else
+         defaultContactTime = contactTime;
    }
 
    /**
@@ -385,6 +400,8 @@ public class Contact implements Comparable<Contact>, Named, Cloneable {
     @return the default after-contact time.
     */
    public double getDefaultAfterContactTime() {
+      if (afterContactTime == null)
+         return defaultAfterContactTime;
       return afterContactTime.getServiceTime ();
    }
 
@@ -394,7 +411,12 @@ public class Contact implements Comparable<Contact>, Named, Cloneable {
     @exception IllegalArgumentException if the after-contact time is negative or NaN.
     */
    public void setDefaultAfterContactTime (double afterContactTime) {
-      this.afterContactTime.setServiceTime (afterContactTime);
+      if (this.afterContactTime != null)
+         this.afterContactTime.setServiceTime (afterContactTime);
+      else if (afterContactTime < 0 || Double.isNaN (afterContactTime))
+         throw new IllegalArgumentException ("serviceTime must be positive");
+      else
+         defaultAfterContactTime = afterContactTime;
    }
 
    /**
@@ -407,6 +429,8 @@ public class Contact implements Comparable<Contact>, Named, Cloneable {
     * @return the contact time.
     */
    public double getDefaultContactTime (int i) {
+      if (contactTime == null)
+         return defaultContactTime;
       return contactTime.getServiceTime (i);
    }
 
@@ -418,7 +442,7 @@ public class Contact implements Comparable<Contact>, Named, Cloneable {
     * @return the result of the test.
     */
    public boolean isSetDefaultContactTime (int i) {
-      return contactTime.isSetServiceTime (i);
+      return contactTime != null && contactTime.isSetServiceTime (i);
    }
 
    /**
@@ -433,7 +457,7 @@ public class Contact implements Comparable<Contact>, Named, Cloneable {
     * @param t the new contact time.
     */
    public void setDefaultContactTime (int i, double t) {
-      contactTime.setServiceTime (i, t);
+      getContactTimes ().setServiceTime (i, t);
    }
 
    /**
@@ -446,7 +470,7 @@ public class Contact implements Comparable<Contact>, Named, Cloneable {
     * @param capacity the new capacity.
     */
    public void ensureCapacityForDefaultContactTime (int capacity) {
-      contactTime.ensureCapacityForServiceTime (capacity);
+      getContactTimes ().ensureCapacityForServiceTime (capacity);
    }
 
    /**
@@ -459,6 +483,8 @@ public class Contact implements Comparable<Contact>, Named, Cloneable {
     * @return the after-contact time.
     */
    public double getDefaultAfterContactTime (int i) {
+      if (afterContactTime == null)
+         return defaultAfterContactTime;
       return afterContactTime.getServiceTime (i);
    }
 
@@ -470,7 +496,7 @@ public class Contact implements Comparable<Contact>, Named, Cloneable {
     * @return the result of the test.
     */
    public boolean isSetDefaultAfterContactTime (int i) {
-      return afterContactTime.isSetServiceTime (i);
+      return afterContactTime != null && afterContactTime.isSetServiceTime (i);
    }
 
    /**
@@ -484,7 +510,7 @@ public class Contact implements Comparable<Contact>, Named, Cloneable {
     * @param t the new after-contact time.
     */
    public void setDefaultAfterContactTime (int i, double t) {
-      afterContactTime.setServiceTime (i, t);
+      getAfterContactTimes ().setServiceTime (i, t);
    }
 
    /**
@@ -497,7 +523,7 @@ public class Contact implements Comparable<Contact>, Named, Cloneable {
     * @param capacity the new capacity.
     */
    public void ensureCapacityForDefaultAfterContactTime (int capacity) {
-      afterContactTime.ensureCapacityForServiceTime (capacity);
+      getAfterContactTimes ().ensureCapacityForServiceTime (capacity);
    }
 
    /**
@@ -972,8 +998,10 @@ public class Contact implements Comparable<Contact>, Named, Cloneable {
       }
       if (attributes != null)
          cpy.attributes = new HashMap<Object,Object> (attributes);
-      cpy.contactTime = contactTime.clone ();
-      cpy.afterContactTime = afterContactTime.clone ();
+      if (contactTime != null)
+         cpy.contactTime = contactTime.clone ();
+      if (afterContactTime != null)
+         cpy.afterContactTime = afterContactTime.clone ();
       return cpy;
    }
 }
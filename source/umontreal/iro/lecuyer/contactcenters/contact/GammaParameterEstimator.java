@@ -1,5 +1,17 @@
 package umontreal.iro.lecuyer.contactcenters.contact;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+
 // import umontreal.ssj.randvar.GammaGen;
 import umontreal.ssj.randvar.GammaAcceptanceRejectionGen;
 import umontreal.ssj.randvar.RandomVariateGen;
@@ -8,8 +20,6 @@ import umontreal.ssj.rng.MRG32k3a;
 import umontreal.ssj.util.Num;
 import umontreal.ssj.probdist.NegativeBinomialDist;
 import umontreal.ssj.probdist.NormalDist;
-import umontreal.ssj.randvar.NormalGen;
-import umontreal.ssj.randvarmulti.MultinormalCholeskyGen;
 // import umontreal.ssj.probdistmulti.norta.*;
 
 import cern.colt.matrix.DoubleMatrix2D;
@@ -73,12 +83,36 @@ public class GammaParameterEstimator {
    private double pwr; // The power in the step size annealing sequence
    public double x[][]; // Optimization trace
    // These are for the use with the NORTA stochastic root finding
-   private RandomStream GaussGenStream; // Random stream for the Gaussian generator
-   private RandomStream PoissonGenStream;
+   private MRG32k3a GaussGenStream; // Random stream for the Gaussian generator
+   private MRG32k3a PoissonGenStream;
    private double[][] yGaussCorr;
+   private double[][] yGaussCorrCorrected; // Cached result of the POSDEF correction of yGaussCorr
+   // Fitted NORTA correlation of each pair, keeping the pairs of the last two estimations
+   @SuppressWarnings("serial")
+   private final Map<NortaPairKey, Double> nortaRhoCache = new LinkedHashMap<NortaPairKey, Double>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry (Map.Entry<NortaPairKey, Double> eldest) {
+         return size() > Math.max(1, numPeriods * (numPeriods - 1));
+      }
+   };
    private double[] Qout;
    private double[] LamOut;
 
+   private int numThreads = Runtime.getRuntime().availableProcessors(); // Number of threads for likelihood evaluation
+   private LikelihoodWorkspace[] workspaces; // Temporary arrays for each block of observations
+   private double[][] logXi; // Logarithms of the MC samples
+   private double[] Rvector; // Vector of sub-period Gamma parameters for the model with a single R
+   // Monte-Carlo terms of the likelihood function and its derivatives, for each observation
+   private double[] obsMaxW;
+   private double[] obsSumW;
+   private double[] obsDR;
+   private double[] obsD2R;
+   private double[] obsDQ;
+   private double[][] obsDLam;
+   private double[][] obsDRp;
+   private double[][] obsD2Rp;
+   private double[][] obsDPi;
+
    /**
     * Constructs a new estimator object with a given set of input data
     * @param data the matrix of input data $Y_{i,j}$ with $N$ rows corresponding to $N$
@@ -113,6 +147,7 @@ public class GammaParameterEstimator {
       
       xi = new double[M][N];
       xi_weights = new double[M][N];
+      logXi = new double[M][N];
       GammaGenStream = new MRG32k3a();
       GammaGenStreamAux = new MRG32k3a();
 
@@ -482,6 +517,393 @@ public class GammaParameterEstimator {
    }
    
 
+   /**
+    * Returns the maximal number of threads used to evaluate the
+    * log-likelihood function and its derivatives.
+    * @return the maximal number of threads.
+    */
+   public int getNumThreads () {
+      return numThreads;
+   }
+
+   /**
+    * Sets the maximal number of threads used to evaluate the
+    * log-likelihood function and its derivatives to \texttt{numThreads}.
+    * The Monte-Carlo terms of these functions are computed separately for each
+    * observation, and the observations are divided into at most \texttt{numThreads}
+    * contiguous blocks processed in parallel by the common fork-join pool,
+    * so the actual number of threads is also bounded by the parallelism of that pool.
+    * The NORTA correlations are fitted by a temporary pool of at most
+    * \texttt{numThreads} threads, which is shut down after the estimation.
+    * The contributions of the observations are then summed
+    * sequentially, in increasing order of observation index, so the results do not depend
+    * on the number of threads. A value of 1 disables parallelism.
+    * By default, the number of available processors is used.
+    * @param numThreads the maximal number of threads.
+    * @exception IllegalArgumentException if \texttt{numThreads} is smaller than 1.
+    */
+   public void setNumThreads (int numThreads) {
+      if (numThreads < 1)
+         throw new IllegalArgumentException ("numThreads must be greater than 0");
+      this.numThreads = numThreads;
+   }
+
+   // Generates the MC samples from Gamma(Q,Q), and their logarithms.
+   // If weights is true, also evaluates the log of the Gamma pdf for
+   // CRN importance weight calculation.
+   private void generateSamples (double Q, boolean weights) {
+      // RandomVariateGen gamRND = new GammaGen(GammaGenStream, Q, Q);
+      RandomVariateGen gamRND = new GammaAcceptanceRejectionGen(GammaGenStream, GammaGenStreamAux, Q, Q);
+      double logGammaQ = Num.lnGamma(Q);
+      double QlogQ;
+      QlogQ = Q * Math.log(Q);
+      for (int m = 0; m < numSamples; m++) {
+         for (int j = 0; j < numObs; j++) {
+            double temp;
+
+            temp = gamRND.nextDouble();
+            xi[m][j] = temp;
+            logXi[m][j] = Math.log(temp);
+            if (weights) {
+               // xi_weights[m][j] = GammaDist.density(Q, Q, temp);
+               xi_weights[m][j] = QlogQ + (Q - 1) * logXi[m][j] - Q * temp - logGammaQ;
+            }
+         }
+      }
+   }
+
+   // Returns a vector with all elements equal to R, for the methods
+   // using a single sub-period Gamma parameter.
+   private double[] getRVector (double R) {
+      if (Rvector == null)
+         Rvector = new double[numPeriods];
+      Arrays.fill(Rvector, R);
+      return Rvector;
+   }
+
+   // Calls ev.process for each observation, using parallel threads if
+   // numThreads is greater than 1.
+   private void evaluate (LikelihoodEvaluation ev) {
+      if (obsMaxW == null) {
+         obsMaxW = new double[numObs];
+         obsSumW = new double[numObs];
+         obsDR = new double[numObs];
+         obsD2R = new double[numObs];
+         obsDQ = new double[numObs];
+         obsDLam = new double[numObs][numPeriods];
+      }
+      if (ev.derivatives == LikelihoodEvaluation.SPLINE && obsD2Rp == null)
+         obsD2Rp = new double[numObs][numPeriods];
+      if ((ev.derivatives == LikelihoodEvaluation.SPLINE || ev.derivatives == LikelihoodEvaluation.EXTENDED_SPLINE)
+            && obsDRp == null)
+         obsDRp = new double[numObs][numPeriods];
+      if (ev.derivatives == LikelihoodEvaluation.EXTENDED_SPLINE && obsDPi == null)
+         obsDPi = new double[numObs][numPeriods];
+
+      final int numBlocks = Math.min(numThreads, numObs);
+      if (workspaces == null || workspaces.length < numBlocks) {
+         final LikelihoodWorkspace[] oldWorkspaces = workspaces;
+         workspaces = new LikelihoodWorkspace[numBlocks];
+         for (int b = 0; b < numBlocks; b++)
+            workspaces[b] = oldWorkspaces != null && b < oldWorkspaces.length ? oldWorkspaces[b] : new LikelihoodWorkspace();
+      }
+      if (numBlocks <= 1) {
+         for (int j = 0; j < numObs; j++)
+            ev.process(j, workspaces[0]);
+         return;
+      }
+      ForkJoinPool.commonPool().invoke(new ObservationBlocks(ev, 0, numBlocks, numBlocks));
+   }
+
+   // Temporary arrays used by one thread during the evaluation
+   // of the log-likelihood function.
+   private final class LikelihoodWorkspace {
+      // Importance weights for the current observation
+      final double[] weights = new double[numSamples];
+      // logRA[m*numPeriods + i] contains the logarithm of the rate for sample m
+      // and period i plus R[i]
+      final double[] logRA = new double[numSamples * numPeriods];
+      // For the extended model, scaled[m*numPeriods + i] contains
+      // the busyness factor for sample m exponentiated to the power p[i],
+      // divided by its mean
+      double[] scaled;
+   }
+
+   // Processes a range of blocks of observations, dividing the
+   // range in two parts processed in parallel if it contains more
+   // than one block.
+   private final class ObservationBlocks extends RecursiveAction {
+      private static final long serialVersionUID = 1L;
+      private final LikelihoodEvaluation ev;
+      private final int from;
+      private final int to;
+      private final int numBlocks;
+
+      ObservationBlocks (LikelihoodEvaluation ev, int from, int to, int numBlocks) {
+         this.ev = ev;
+         this.from = from;
+         this.to = to;
+         this.numBlocks = numBlocks;
+      }
+
+      @Override
+      protected void compute () {
+         if (to - from == 1) {
+            final int start = (int) ((long) numObs * from / numBlocks);
+            final int end = (int) ((long) numObs * (from + 1) / numBlocks);
+            for (int j = start; j < end; j++)
+               ev.process(j, workspaces[from]);
+         }
+         else {
+            final int mid = (from + to) >>> 1;
+            invokeAll(new ObservationBlocks(ev, from, mid, numBlocks),
+                  new ObservationBlocks(ev, mid, to, numBlocks));
+         }
+      }
+   }
+
+   // Computes the Monte-Carlo terms of the log-likelihood function and
+   // of its derivatives for a single observation.
+   // The terms for observation j are stored at index j of the obs arrays,
+   // so observations can be processed in parallel, and
+   // the terms are summed up sequentially by the caller.
+   private final class LikelihoodEvaluation {
+      static final int NONE = 0;
+      static final int DOUBLY_GAMMA = 1;
+      static final int SPLINE = 2;
+      static final int EXTENDED_SPLINE = 3;
+
+      private final double[] Lam;
+      private final double[] R;
+      private final double[] p;
+      private final double[] gammaPi;
+      private final double Q;
+      private final boolean correction;
+      private final double QlogQ;
+      private final double logGammaQ;
+      final int derivatives;
+      double[] dGammaPidPi;
+      double[] dGammaPidQ;
+
+      LikelihoodEvaluation (double[] Lam, double[] R, double[] p, double[] gammaPi,
+                            double Q, boolean correction, int derivatives) {
+         this.Lam = Lam;
+         this.R = R;
+         this.p = p;
+         this.gammaPi = gammaPi;
+         this.Q = Q;
+         this.correction = correction;
+         this.derivatives = derivatives;
+         logGammaQ = Num.lnGamma(Q);
+         QlogQ = Q * Math.log(Q);
+      }
+
+      void process (int j, LikelihoodWorkspace ws) {
+         final int[] y = arrivals[j];
+         final double[] W = ws.weights;
+         final boolean keep = derivatives != NONE;
+         if (p != null && keep && ws.scaled == null)
+            ws.scaled = new double[numSamples * numPeriods];
+
+         // Calculate log importance weights
+         double maxW = Double.NEGATIVE_INFINITY;
+         for (int m = 0; m < numSamples; m++) {
+            final double x = xi[m][j];
+            final int off = m * numPeriods;
+            if (correction)
+               // Correction for the importance weights based on the new distribution
+               W[m] = (QlogQ + (Q - 1) * logXi[m][j] - Q * x - logGammaQ) - xi_weights[m][j];
+            else
+               W[m] = 0;
+            for (int i = 0; i < numPeriods; i++) {
+               final double alpha_lam;
+               if (p == null)
+                  alpha_lam = x * Lam[i];
+               else {
+                  final double temp = Math.pow(x, p[i]) / gammaPi[i];
+                  if (keep)
+                     ws.scaled[off + i] = temp;
+                  alpha_lam = temp * Lam[i];
+               }
+               // A period without arrival does not contribute to the first term
+               if (y[i] != 0)
+                  W[m] += y[i] * Math.log(alpha_lam);
+               final double logRplusAlphaLam = Math.log(alpha_lam + R[i]);
+               if (keep)
+                  ws.logRA[off + i] = logRplusAlphaLam;
+               W[m] -= (y[i] + R[i]) * logRplusAlphaLam;
+            }
+            if (maxW < W[m]) {
+               maxW = W[m];
+            }
+         }
+         // Shift the log importance weights for numerical stability
+         // Exponentiate the log importance weights to obtain importance weights
+         double Wsum = 0;
+         for (int m = 0; m < numSamples; m++) {
+            W[m] = W[m] - maxW;
+            W[m] = Math.exp(W[m]);
+            Wsum += W[m];
+         }
+         obsMaxW[j] = maxW;
+         obsSumW[j] = Wsum;
+         if (!keep)
+            return;
+
+         // Normalize importance weights so they sum to 1 over m
+         Wsum = 1 / Wsum;
+         for (int m = 0; m < numSamples; m++) {
+            W[m] *= Wsum;
+         }
+         switch (derivatives) {
+         case DOUBLY_GAMMA:
+            processDoublyGamma(j, ws);
+            break;
+         case SPLINE:
+            processSpline(j, ws);
+            break;
+         case EXTENDED_SPLINE:
+            processExtendedSpline(j, ws);
+            break;
+         }
+      }
+
+      private void processDoublyGamma (int j, LikelihoodWorkspace ws) {
+         final int[] y = arrivals[j];
+         final double[] W = ws.weights;
+         final double r = R[0];
+         double temp1_dCdR = 0;
+         double temp1_d2CdR2 = 0;
+         double temp_dCdQ = 0;
+         final double[] temp_dCdLam = obsDLam[j];
+         Arrays.fill(temp_dCdLam, 0);
+
+         for (int m = 0; m < numSamples; m++) {
+            final double x = xi[m][j];
+            final int off = m * numPeriods;
+            double temp_dCdR = 0;
+            double temp_d2CdR2 = 0;
+
+            for (int i = 0; i < numPeriods; i++) {
+               double alpha_lam;
+               double OneOverRplusAlphaLam;
+               double RplusYoverRplusAlphaLam;
+               double AlphaLamMinusYoverRplusAlphaLam2;
+
+               alpha_lam = x * Lam[i];
+               OneOverRplusAlphaLam = 1 / (r + alpha_lam);
+               RplusYoverRplusAlphaLam = (r + y[i]) * OneOverRplusAlphaLam;
+               AlphaLamMinusYoverRplusAlphaLam2 = OneOverRplusAlphaLam * OneOverRplusAlphaLam;
+               AlphaLamMinusYoverRplusAlphaLam2 *= (alpha_lam - y[i]);
+
+               temp_dCdR += ws.logRA[off + i] + RplusYoverRplusAlphaLam;
+               temp_d2CdR2 += OneOverRplusAlphaLam + AlphaLamMinusYoverRplusAlphaLam2;
+
+               temp_dCdLam[i] -= RplusYoverRplusAlphaLam * x * W[m];
+            }
+            temp1_dCdR += temp_dCdR * W[m];
+            temp1_d2CdR2 += (temp_dCdR * temp_dCdR - temp_d2CdR2) * W[m];
+
+            temp_dCdQ += (logXi[m][j] - x) * W[m];
+         }
+         obsDR[j] = temp1_dCdR;
+         obsD2R[j] = temp1_d2CdR2;
+         obsDQ[j] = temp_dCdQ;
+      }
+
+      private void processSpline (int j, LikelihoodWorkspace ws) {
+         final int[] y = arrivals[j];
+         final double[] W = ws.weights;
+         final double[] temp1_dCdR = obsDRp[j];
+         final double[] temp1_d2CdR2 = obsD2Rp[j];
+         final double[] temp_dCdLam = obsDLam[j];
+         double temp_dCdQ = 0;
+         Arrays.fill(temp1_dCdR, 0);
+         Arrays.fill(temp1_d2CdR2, 0);
+         Arrays.fill(temp_dCdLam, 0);
+
+         for (int m = 0; m < numSamples; m++) {
+            final double x = xi[m][j];
+            final int off = m * numPeriods;
+
+            for (int i = 0; i < numPeriods; i++) {
+               double alpha_lam;
+               double OneOverRplusAlphaLam;
+               double RplusYoverRplusAlphaLam;
+               double AlphaLamMinusYoverRplusAlphaLam2;
+               double temp_dCdR = 0;
+               double temp_d2CdR2 = 0;
+
+               alpha_lam = x * Lam[i];
+               OneOverRplusAlphaLam = 1 / (R[i] + alpha_lam);
+               RplusYoverRplusAlphaLam = (R[i] + y[i]) * OneOverRplusAlphaLam;
+               AlphaLamMinusYoverRplusAlphaLam2 = OneOverRplusAlphaLam * OneOverRplusAlphaLam;
+               AlphaLamMinusYoverRplusAlphaLam2 *= (alpha_lam - y[i]);
+
+               temp_dCdR += ws.logRA[off + i] + RplusYoverRplusAlphaLam;
+               temp_d2CdR2 += OneOverRplusAlphaLam + AlphaLamMinusYoverRplusAlphaLam2;
+
+               temp_dCdLam[i] -= RplusYoverRplusAlphaLam * x * W[m];
+
+               temp1_dCdR[i] += temp_dCdR * W[m];
+               temp1_d2CdR2[i] += (temp_dCdR * temp_dCdR - temp_d2CdR2) * W[m];
+            }
+
+            temp_dCdQ += (logXi[m][j] - x) * W[m];
+         }
+         obsDQ[j] = temp_dCdQ;
+      }
+
+      private void processExtendedSpline (int j, LikelihoodWorkspace ws) {
+         final int[] y = arrivals[j];
+         final double[] W = ws.weights;
+         final double[] temp1_dCdR = obsDRp[j];
+         final double[] temp_dCdLam = obsDLam[j];
+         final double[] temp_dCdPi = obsDPi[j];
+         double temp_dCdQ = 0;
+         Arrays.fill(temp1_dCdR, 0);
+         Arrays.fill(temp_dCdLam, 0);
+         Arrays.fill(temp_dCdPi, 0);
+
+         for (int m = 0; m < numSamples; m++) {
+            final double x = xi[m][j];
+            final int off = m * numPeriods;
+
+            for (int i = 0; i < numPeriods; i++) {
+               double alpha_lam;
+               double OneOverRplusAlphaLam;
+               double RplusYoverRplusAlphaLam;
+               double temp1_dCdPi;
+               double temp1_dCdQ;
+               double temp;
+               double temp_dCdR = 0;
+
+               temp = ws.scaled[off + i];
+
+               alpha_lam = temp * Lam[i];
+               OneOverRplusAlphaLam = 1 / (R[i] + alpha_lam);
+               RplusYoverRplusAlphaLam = (R[i] + y[i]) * OneOverRplusAlphaLam;
+
+               temp_dCdR += ws.logRA[off + i] + RplusYoverRplusAlphaLam;
+
+               temp_dCdLam[i] -= RplusYoverRplusAlphaLam * temp * W[m];
+
+               temp1_dCdR[i] += temp_dCdR * W[m];
+
+               temp1_dCdPi = alpha_lam / gammaPi[i] * (logXi[m][j]*gammaPi[i] - dGammaPidPi[i]) *
+                       (y[i] /alpha_lam - (y[i] +R[i]) / (R[i] + alpha_lam) );
+               temp_dCdPi[i] += temp1_dCdPi * W[m];
+
+               temp1_dCdQ = alpha_lam / gammaPi[i] * dGammaPidQ[i] *
+                       (y[i] /alpha_lam - (y[i] +R[i]) / (R[i] + alpha_lam) );
+               temp_dCdQ -= temp1_dCdQ * W[m];
+            }
+            temp_dCdQ += (logXi[m][j] - x) * W[m];
+         }
+         obsDQ[j] = temp_dCdQ;
+      }
+   }
+
    /**
     * Calculates the values of the log-likelihood function and its derivatives for
     * the doubly Gamma-Poisson arrival process model.
@@ -525,8 +947,6 @@ public class GammaParameterEstimator {
     */
    public double[] getLikelihoodDerivativesDoublyGamma (double[] Lam, double R, double Q, String OutType) {
       double[] Output = new double[2 * (numPeriods + 2) + 1];
-      double[][] W = new double[numObs][numSamples];
-      double[] maxW = new double[numObs];
       double C = 0;
       double logPhiRY;
       double DlogPhiRY;
@@ -537,55 +957,19 @@ public class GammaParameterEstimator {
       double d2CdQ2;
       double[] dCdLam = new double[numPeriods];
       double[] d2CdLam2 = new double[numPeriods];
+      double[] Rvec = getRVector(R);
 
       if (OutType.equals("CostOnly")) {
-         double[][] xi_weights_new = new double[numSamples][numObs];
-
-         // Calculate the correction for the importance weights based on the new distribution
-         double logGammaQ = Num.lnGamma(Q);
-         double QlogQ;
-         QlogQ = Q * Math.log(Q);
-         for (int m = 0; m < numSamples; m++) {
-            for (int j = 0; j < numObs; j++) {
-               //xi_weights_new[m][j] = GammaDist.density(Q, Q, xi[m][j]);
-               xi_weights_new[m][j] = QlogQ + (Q - 1) * Math.log(xi[m][j]) - Q * xi[m][j] - logGammaQ;
-            }
-         }
-
-         // Calculate log importance weights
-         for (int j = 0; j < numObs; j++) {
-            maxW[j] = Double.NEGATIVE_INFINITY;
-            for (int m = 0; m < numSamples; m++) {
-               // W[j][m] = Math.log(xi_weights_new[m][j]) - Math.log(xi_weights[m][j]);
-               W[j][m] = xi_weights_new[m][j] - xi_weights[m][j];
-               for (int i = 0; i < numPeriods; i++) {
-                  W[j][m] += arrivals[j][i] * Math.log(xi[m][j] * Lam[i]);
-                  W[j][m] -= (arrivals[j][i] + R) * Math.log(xi[m][j] * Lam[i] + R);
-               }
-               if (maxW[j] < W[j][m]) {
-                  maxW[j] = W[j][m];
-               }
-            }
-         }
-         // Shift the log importance weights for numerical stability
-         // Exponentiate the log importance weights to obtain importance weights
-         for (int j = 0; j < numObs; j++) {
-            for (int m = 0; m < numSamples; m++) {
-               W[j][m] = W[j][m] - maxW[j];
-               W[j][m] = Math.exp(W[j][m]);
-            }
-         }
+         // Calculate log importance weights with the correction based on the new distribution,
+         // shift and exponentiate them
+         evaluate(new LikelihoodEvaluation(Lam, Rvec, null, null, Q, true, LikelihoodEvaluation.NONE));
          // Calculate the value of the likelihood function
          logPhiRY = numObs * numPeriods * R * Math.log(R) - numObs * numPeriods * Num.lnGamma(R);
          for (int j = 0; j < numObs; j++) {
-            double temp = 0;
-            for (int m = 0; m < numSamples; m++) {
-               temp += W[j][m];
-            }
             for (int i = 0; i < numPeriods; i++) {
                logPhiRY += Num.lnGamma(R + arrivals[j][i]);
             }
-            C += Math.log(temp) + maxW[j];
+            C += Math.log(obsSumW[j]) + obsMaxW[j];
          }
          C += logPhiRY;
 
@@ -596,111 +980,35 @@ public class GammaParameterEstimator {
 
       // Generate the MC samples from Gamma(Q,Q)
       // Evaluate Gamma pdf for CRN importance weight calculation
-      // RandomVariateGen gamRND = new GammaGen(GammaGenStream, Q, Q);
-      RandomVariateGen gamRND = new GammaAcceptanceRejectionGen(GammaGenStream, GammaGenStreamAux, Q, Q);
-      double logGammaQ = Num.lnGamma(Q);
-      double QlogQ;
-      QlogQ = Q * Math.log(Q);
-      for (int m = 0; m < numSamples; m++) {
-         for (int j = 0; j < numObs; j++) {
-            double temp;
-
-            temp = gamRND.nextDouble();
-            xi[m][j] = temp;
-            // xi_weights[m][j] = GammaDist.density(Q, Q, temp);
-            xi_weights[m][j] = QlogQ + (Q - 1) * Math.log(temp) - Q * temp - logGammaQ;
-         }
-      }
-      // Calculate log importance weights
-      for (int j = 0; j < numObs; j++) {
-         maxW[j] = Double.NEGATIVE_INFINITY;
-         for (int m = 0; m < numSamples; m++) {
-            W[j][m] = 0;
-            for (int i = 0; i < numPeriods; i++) {
-               W[j][m] += arrivals[j][i] * Math.log(xi[m][j] * Lam[i]);
-               W[j][m] -= (arrivals[j][i] + R) * Math.log(xi[m][j] * Lam[i] + R);
-            }
-            if (maxW[j] < W[j][m]) {
-               maxW[j] = W[j][m];
-            }
-         }
-      }
-      // Shift the log importance weights for numerical stability
-      // Exponentiate the log importance weights to obtain importance weights
-      for (int j = 0; j < numObs; j++) {
-         for (int m = 0; m < numSamples; m++) {
-            W[j][m] = W[j][m] - maxW[j];
-            W[j][m] = Math.exp(W[j][m]);
-         }
-      }
+      generateSamples(Q, true);
+      // Calculate log importance weights, shift and exponentiate them,
+      // and calculate the terms of the derivatives for each observation
+      evaluate(new LikelihoodEvaluation(Lam, Rvec, null, null, Q, false, LikelihoodEvaluation.DOUBLY_GAMMA));
       // Calculate the value of the likelihood function
       logPhiRY = numObs * numPeriods * R * Math.log(R) - numObs * numPeriods * Num.lnGamma(R);
       DlogPhiRY = numObs * numPeriods * (Math.log(R) + 1) - numObs * numPeriods * Num.digamma(R);
       D2logPhiRY = numObs * numPeriods / R - numObs * numPeriods * Num.trigamma(R);
       for (int j = 0; j < numObs; j++) {
-         double temp = 0;
-         for (int m = 0; m < numSamples; m++) {
-            temp += W[j][m];
-         }
          for (int i = 0; i < numPeriods; i++) {
             logPhiRY += Num.lnGamma(R + arrivals[j][i]);
             DlogPhiRY += Num.digamma(R + arrivals[j][i]);
             D2logPhiRY += Num.trigamma(R + arrivals[j][i]);
          }
-         C += Math.log(temp) + maxW[j];
+         C += Math.log(obsSumW[j]) + obsMaxW[j];
       }
       C += logPhiRY;
 
-      // Normalize importance weights so they sum to 1 over m
-      for (int j = 0; j < numObs; j++) {
-         double Wsum = 0;
-         for (int m = 0; m < numSamples; m++) {
-            Wsum += W[j][m];
-         }
-         Wsum = 1 / Wsum;
-         for (int m = 0; m < numSamples; m++) {
-            W[j][m] *= Wsum;
-         }
-      }
       // Calculate derivatives
       dCdR = DlogPhiRY;
       d2CdR2 = D2logPhiRY;
       dCdQ = numObs * (Math.log(Q) + 1 - Num.digamma(Q));
       d2CdQ2 = numObs * (1 / Q - Num.trigamma(Q));
       for (int j = 0; j < numObs; j++) {
-         double temp1_dCdR = 0;
-         double temp1_d2CdR2 = 0;
-         double temp_dCdQ = 0;
-         double[] temp_dCdLam = new double[numPeriods];
+         double temp1_dCdR = obsDR[j];
+         double temp1_d2CdR2 = obsD2R[j];
+         double temp_dCdQ = obsDQ[j];
+         double[] temp_dCdLam = obsDLam[j];
 
-         for (int m = 0; m < numSamples; m++) {
-            double temp_dCdR = 0;
-            double temp_d2CdR2 = 0;
-
-            for (int i = 0; i < numPeriods; i++) {
-               double alpha_lam;
-               double OneOverRplusAlphaLam;
-               double RplusYoverRplusAlphaLam;
-               double AlphaLamMinusYoverRplusAlphaLam2;
-
-               alpha_lam = xi[m][j] * Lam[i];
-               OneOverRplusAlphaLam = 1 / (R + alpha_lam);
-               RplusYoverRplusAlphaLam = (R + arrivals[j][i]) * OneOverRplusAlphaLam;
-               AlphaLamMinusYoverRplusAlphaLam2 = OneOverRplusAlphaLam * OneOverRplusAlphaLam;
-               AlphaLamMinusYoverRplusAlphaLam2 *= (alpha_lam - arrivals[j][i]);
-
-               temp_dCdR += Math.log(R + alpha_lam) + RplusYoverRplusAlphaLam;
-               temp_d2CdR2 += OneOverRplusAlphaLam + AlphaLamMinusYoverRplusAlphaLam2;
-
-               temp_dCdLam[i] -= RplusYoverRplusAlphaLam * xi[m][j] * W[j][m];
-
-            }
-            temp1_dCdR += temp_dCdR * W[j][m];
-            temp1_d2CdR2 += (temp_dCdR * temp_dCdR - temp_d2CdR2) * W[j][m];
-
-            temp_dCdQ += (Math.log(xi[m][j]) - xi[m][j]) * W[j][m];
-
-         }
          dCdR -= temp1_dCdR;
          d2CdR2 += -temp1_dCdR * temp1_dCdR + temp1_d2CdR2;
          dCdQ += temp_dCdQ;
@@ -772,8 +1080,6 @@ public class GammaParameterEstimator {
     * derivatives. 
     */
    public double getLikelihoodExtendedDoublyGammaSpline (double[] Lam, double[] R, double Q, double[] p) {
-      double[][] W = new double[numObs][numSamples];
-      double[] maxW = new double[numObs];
       double C = 0;
       double logPhiRY;
       
@@ -792,52 +1098,18 @@ public class GammaParameterEstimator {
       }
 
       // Generate the MC samples from Gamma(Q,Q)
-      // Evaluate Gamma pdf for CRN importance weight calculation
-      // RandomVariateGen gamRND = new GammaGen(GammaGenStream, Q, Q);
-      RandomVariateGen gamRND = new GammaAcceptanceRejectionGen(GammaGenStream, GammaGenStreamAux, Q, Q);
-      for (int m = 0; m < numSamples; m++) {
-         for (int j = 0; j < numObs; j++) {
-            double temp;
-
-            temp = gamRND.nextDouble();
-            xi[m][j] = temp;
-         }
-      }
-      // Calculate log importance weights
-      for (int j = 0; j < numObs; j++) {
-         maxW[j] = Double.NEGATIVE_INFINITY;
-         for (int m = 0; m < numSamples; m++) {
-            W[j][m] = 0;
-            for (int i = 0; i < numPeriods; i++) {
-               W[j][m] += arrivals[j][i] * Math.log( Math.pow(xi[m][j], p[i]) / gammaPi[i] * Lam[i]);
-               W[j][m] -= (arrivals[j][i] + R[i]) * Math.log( Math.pow(xi[m][j], p[i]) / gammaPi[i] * Lam[i] + R[i]);
-            }
-            if (maxW[j] < W[j][m]) {
-               maxW[j] = W[j][m];
-            }
-         }
-      }
-      // Shift the log importance weights for numerical stability
-      // Exponentiate the log importance weights to obtain importance weights
-      for (int j = 0; j < numObs; j++) {
-         for (int m = 0; m < numSamples; m++) {
-            W[j][m] = W[j][m] - maxW[j];
-            W[j][m] = Math.exp(W[j][m]);
-         }
-      }
+      generateSamples(Q, false);
+      // Calculate log importance weights, shift and exponentiate them
+      evaluate(new LikelihoodEvaluation(Lam, R, p, gammaPi, Q, false, LikelihoodEvaluation.NONE));
       // Calculate the value of the likelihood function
       logPhiRY = 0;
       for (int j = 0; j < numObs; j++) {
-         double temp = 0;
-         for (int m = 0; m < numSamples; m++) {
-            temp += W[j][m];
-         }
          for (int i = 0; i < numPeriods; i++) {
             logPhiRY += Num.lnGamma(R[i] + arrivals[j][i]);
             logPhiRY += R[i] * Math.log(R[i]) - Num.lnGamma(R[i]);
             
          }
-         C += Math.log(temp) + maxW[j];
+         C += Math.log(obsSumW[j]) + obsMaxW[j];
       }
       C += logPhiRY;
       
@@ -898,8 +1170,6 @@ public class GammaParameterEstimator {
     */
    public double[][] getLikelihoodDerivativesExtendedDoublyGammaSpline (double[] Lam, double[] R, double Q, double[] p, String OutType) {
       double[][] Output = new double[8][numPeriods];
-      double[][] W = new double[numObs][numSamples];
-      double[] maxW = new double[numObs];
       double C = 0;
       double logPhiRY;
       
@@ -927,58 +1197,17 @@ public class GammaParameterEstimator {
       }
 
       if (OutType.equals("CostOnly")) {
-         double[][] xi_weights_new = new double[numSamples][numObs];
-
-         // Calculate the correction for the importance weights based on the new distribution
-         double logGammaQ = Num.lnGamma(Q);
-         double QlogQ;
-         QlogQ = Q * Math.log(Q);
-         for (int m = 0; m < numSamples; m++) {
-            for (int j = 0; j < numObs; j++) {
-               //xi_weights_new[m][j] = GammaDist.density(Q, Q, xi[m][j]);
-               xi_weights_new[m][j] = QlogQ + (Q - 1) * Math.log(xi[m][j]) - Q * xi[m][j] - logGammaQ;
-            }
-         }
-
-         // Calculate log importance weights
-         for (int j = 0; j < numObs; j++) {
-            maxW[j] = Double.NEGATIVE_INFINITY;
-            for (int m = 0; m < numSamples; m++) {
-               // W[j][m] = Math.log(xi_weights_new[m][j]) - Math.log(xi_weights[m][j]);
-               W[j][m] = xi_weights_new[m][j] - xi_weights[m][j];
-               for (int i = 0; i < numPeriods; i++) {
-                   double temp;
-                   
-                   temp = Math.pow(xi[m][j], p[i]) / gammaPi[i] * Lam[i];
-                   
-                   W[j][m] += arrivals[j][i] * Math.log( temp );
-                   W[j][m] -= (arrivals[j][i] + R[i]) * Math.log( temp + R[i]);
-               }
-               if (maxW[j] < W[j][m]) {
-                  maxW[j] = W[j][m];
-               }
-            }
-         }
-         // Shift the log importance weights for numerical stability
-         // Exponentiate the log importance weights to obtain importance weights
-         for (int j = 0; j < numObs; j++) {
-            for (int m = 0; m < numSamples; m++) {
-               W[j][m] = W[j][m] - maxW[j];
-               W[j][m] = Math.exp(W[j][m]);
-            }
-         }
+         // Calculate log importance weights with the correction based on the new distribution,
+         // shift and exponentiate them
+         evaluate(new LikelihoodEvaluation(Lam, R, p, gammaPi, Q, true, LikelihoodEvaluation.NONE));
          // Calculate the value of the likelihood function
          logPhiRY = 0.0;
          for (int j = 0; j < numObs; j++) {
-            double temp = 0;
-            for (int m = 0; m < numSamples; m++) {
-               temp += W[j][m];
-            }
             for (int i = 0; i < numPeriods; i++) {
                logPhiRY += Num.lnGamma(R[i] + arrivals[j][i]);
                logPhiRY += R[i] * Math.log(R[i]) - Num.lnGamma(R[i]);
             }
-            C += Math.log(temp) + maxW[j];
+            C += Math.log(obsSumW[j]) + obsMaxW[j];
          }
          C += logPhiRY;
          
@@ -1012,54 +1241,16 @@ public class GammaParameterEstimator {
 
       // Generate the MC samples from Gamma(Q,Q)
       // Evaluate Gamma pdf for CRN importance weight calculation
-      // RandomVariateGen gamRND = new GammaGen(GammaGenStream, Q, Q);
-      RandomVariateGen gamRND = new GammaAcceptanceRejectionGen(GammaGenStream, GammaGenStreamAux, Q, Q);
-      double logGammaQ = Num.lnGamma(Q);
-      double QlogQ;
-      QlogQ = Q * Math.log(Q);
-      for (int m = 0; m < numSamples; m++) {
-         for (int j = 0; j < numObs; j++) {
-            double temp;
-
-            temp = gamRND.nextDouble();
-            xi[m][j] = temp;
-            // xi_weights[m][j] = GammaDist.density(Q, Q, temp);
-            xi_weights[m][j] = QlogQ + (Q - 1) * Math.log(temp) - Q * temp - logGammaQ;
-         }
-      }
-      // Calculate log importance weights
-      for (int j = 0; j < numObs; j++) {
-         maxW[j] = Double.NEGATIVE_INFINITY;
-         for (int m = 0; m < numSamples; m++) {
-            W[j][m] = 0;
-            for (int i = 0; i < numPeriods; i++) {
-                double temp;
-                
-                temp = Math.pow(xi[m][j], p[i]) / gammaPi[i] * Lam[i];
-                
-                W[j][m] += arrivals[j][i] * Math.log( temp );
-                W[j][m] -= (arrivals[j][i] + R[i]) * Math.log( temp + R[i]);
-            }
-            if (maxW[j] < W[j][m]) {
-               maxW[j] = W[j][m];
-            }
-         }
-      }
-      // Shift the log importance weights for numerical stability
-      // Exponentiate the log importance weights to obtain importance weights
-      for (int j = 0; j < numObs; j++) {
-         for (int m = 0; m < numSamples; m++) {
-            W[j][m] = W[j][m] - maxW[j];
-            W[j][m] = Math.exp(W[j][m]);
-         }
-      }
+      generateSamples(Q, true);
+      // Calculate log importance weights, shift and exponentiate them,
+      // and calculate the terms of the derivatives for each observation
+      final LikelihoodEvaluation ev = new LikelihoodEvaluation(Lam, R, p, gammaPi, Q, false, LikelihoodEvaluation.EXTENDED_SPLINE);
+      ev.dGammaPidPi = dGammaPidPi;
+      ev.dGammaPidQ = dGammaPidQ;
+      evaluate(ev);
       // Calculate the value of the likelihood function
       logPhiRY = 0;
       for (int j = 0; j < numObs; j++) {
-         double temp = 0;
-         for (int m = 0; m < numSamples; m++) {
-            temp += W[j][m];
-         }
          for (int i = 0; i < numPeriods; i++) {
             logPhiRY += Num.lnGamma(R[i] + arrivals[j][i]);
             logPhiRY += R[i] * Math.log(R[i]) - Num.lnGamma(R[i]);
@@ -1073,7 +1264,7 @@ public class GammaParameterEstimator {
             dCdR[i] += (Math.log(R[i]) + 1) - digamma(R[i]);
             
          }
-         C += Math.log(temp) + maxW[j];
+         C += Math.log(obsSumW[j]) + obsMaxW[j];
       }
       C += logPhiRY;
       
@@ -1082,60 +1273,15 @@ public class GammaParameterEstimator {
           C -= 2.0/3.0 *(1 - smoothingLambda) * smothnessPenalty.get(i, 0) * d.get(i, 0);
       }
 
-      // Normalize importance weights so they sum to 1 over m
-      for (int j = 0; j < numObs; j++) {
-         double Wsum = 0;
-         for (int m = 0; m < numSamples; m++) {
-            Wsum += W[j][m];
-         }
-         Wsum = 1 / Wsum;
-         for (int m = 0; m < numSamples; m++) {
-            W[j][m] *= Wsum;
-         }
-      }
       // Calculate derivatives
       /* dCdQ = numObs * (Math.log(Q) + 1 - Num.digamma(Q)); */
       dCdQ = numObs * (Math.log(Q) + 1 - digamma(Q));
       for (int j = 0; j < numObs; j++) {
-         double[] temp1_dCdR = new double[numPeriods];
-         double temp_dCdQ = 0;
-         double[] temp_dCdLam = new double[numPeriods];
-         double[] temp_dCdPi = new double[numPeriods];
+         double[] temp1_dCdR = obsDRp[j];
+         double temp_dCdQ = obsDQ[j];
+         double[] temp_dCdLam = obsDLam[j];
+         double[] temp_dCdPi = obsDPi[j];
 
-         for (int m = 0; m < numSamples; m++) {
-            double[] temp_dCdR = new double[numPeriods];
-
-            for (int i = 0; i < numPeriods; i++) {
-               double alpha_lam;
-               double OneOverRplusAlphaLam;
-               double RplusYoverRplusAlphaLam;
-               double temp1_dCdPi;
-               double temp1_dCdQ;
-               double temp;
-               
-               temp = Math.pow(xi[m][j], p[i]) / gammaPi[i];
-
-               alpha_lam = temp * Lam[i];
-               OneOverRplusAlphaLam = 1 / (R[i] + alpha_lam);
-               RplusYoverRplusAlphaLam = (R[i] + arrivals[j][i]) * OneOverRplusAlphaLam;
-
-               temp_dCdR[i] += Math.log(R[i] + alpha_lam) + RplusYoverRplusAlphaLam;
-
-               temp_dCdLam[i] -= RplusYoverRplusAlphaLam * temp * W[j][m];
-               
-               temp1_dCdR[i] += temp_dCdR[i] * W[j][m];
-               
-               temp1_dCdPi = alpha_lam / gammaPi[i] * (Math.log(xi[m][j])*gammaPi[i] - dGammaPidPi[i]) *
-                       (arrivals[j][i] /alpha_lam - (arrivals[j][i] +R[i]) / (R[i] + alpha_lam) );
-               temp_dCdPi[i] += temp1_dCdPi * W[j][m];
-               
-               temp1_dCdQ = alpha_lam / gammaPi[i] * dGammaPidQ[i] *
-                       (arrivals[j][i] /alpha_lam - (arrivals[j][i] +R[i]) / (R[i] + alpha_lam) );
-               temp_dCdQ -= temp1_dCdQ * W[j][m];
-
-            }
-            temp_dCdQ += (Math.log(xi[m][j]) - xi[m][j]) * W[j][m];
-         }
          dCdQ += temp_dCdQ;
 
          for (int i = 0; i < numPeriods; i++) {
@@ -1210,8 +1356,6 @@ public class GammaParameterEstimator {
     */
    public double[][] getLikelihoodDerivativesDoublyGammaSpline (double[] Lam, double[] R, double Q, String OutType) {
       double[][] Output = new double[7][numPeriods];
-      double[][] W = new double[numObs][numSamples];
-      double[] maxW = new double[numObs];
       double C = 0;
       double logPhiRY;
       // double[] DlogPhiRY = new double[numPeriods];
@@ -1231,54 +1375,17 @@ public class GammaParameterEstimator {
       QRQ.zMult(d, smothnessPenalty, 1.0, 0.0, false, false);
 
       if (OutType.equals("CostOnly")) {
-         double[][] xi_weights_new = new double[numSamples][numObs];
-
-         // Calculate the correction for the importance weights based on the new distribution
-         double logGammaQ = Num.lnGamma(Q);
-         double QlogQ;
-         QlogQ = Q * Math.log(Q);
-         for (int m = 0; m < numSamples; m++) {
-            for (int j = 0; j < numObs; j++) {
-               //xi_weights_new[m][j] = GammaDist.density(Q, Q, xi[m][j]);
-               xi_weights_new[m][j] = QlogQ + (Q - 1) * Math.log(xi[m][j]) - Q * xi[m][j] - logGammaQ;
-            }
-         }
-
-         // Calculate log importance weights
-         for (int j = 0; j < numObs; j++) {
-            maxW[j] = Double.NEGATIVE_INFINITY;
-            for (int m = 0; m < numSamples; m++) {
-               // W[j][m] = Math.log(xi_weights_new[m][j]) - Math.log(xi_weights[m][j]);
-               W[j][m] = xi_weights_new[m][j] - xi_weights[m][j];
-               for (int i = 0; i < numPeriods; i++) {
-                  W[j][m] += arrivals[j][i] * Math.log(xi[m][j] * Lam[i]);
-                  W[j][m] -= (arrivals[j][i] + R[i]) * Math.log(xi[m][j] * Lam[i] + R[i]);
-               }
-               if (maxW[j] < W[j][m]) {
-                  maxW[j] = W[j][m];
-               }
-            }
-         }
-         // Shift the log importance weights for numerical stability
-         // Exponentiate the log importance weights to obtain importance weights
-         for (int j = 0; j < numObs; j++) {
-            for (int m = 0; m < numSamples; m++) {
-               W[j][m] = W[j][m] - maxW[j];
-               W[j][m] = Math.exp(W[j][m]);
-            }
-         }
+         // Calculate log importance weights with the correction based on the new distribution,
+         // shift and exponentiate them
+         evaluate(new LikelihoodEvaluation(Lam, R, null, null, Q, true, LikelihoodEvaluation.NONE));
          // Calculate the value of the likelihood function
          logPhiRY = 0;
          for (int j = 0; j < numObs; j++) {
-            double temp = 0;
-            for (int m = 0; m < numSamples; m++) {
-               temp += W[j][m];
-            }
             for (int i = 0; i < numPeriods; i++) {
                logPhiRY += Num.lnGamma(R[i] + arrivals[j][i]);
                logPhiRY += R[i] * Math.log(R[i]) - Num.lnGamma(R[i]);
             }
-            C += Math.log(temp) + maxW[j];
+            C += Math.log(obsSumW[j]) + obsMaxW[j];
          }
          C += logPhiRY;
          
@@ -1294,50 +1401,13 @@ public class GammaParameterEstimator {
 
       // Generate the MC samples from Gamma(Q,Q)
       // Evaluate Gamma pdf for CRN importance weight calculation
-      // RandomVariateGen gamRND = new GammaGen(GammaGenStream, Q, Q);
-      RandomVariateGen gamRND = new GammaAcceptanceRejectionGen(GammaGenStream, GammaGenStreamAux, Q, Q);
-      double logGammaQ = Num.lnGamma(Q);
-      double QlogQ;
-      QlogQ = Q * Math.log(Q);
-      for (int m = 0; m < numSamples; m++) {
-         for (int j = 0; j < numObs; j++) {
-            double temp;
-
-            temp = gamRND.nextDouble();
-            xi[m][j] = temp;
-            // xi_weights[m][j] = GammaDist.density(Q, Q, temp);
-            xi_weights[m][j] = QlogQ + (Q - 1) * Math.log(temp) - Q * temp - logGammaQ;
-         }
-      }
-      // Calculate log importance weights
-      for (int j = 0; j < numObs; j++) {
-         maxW[j] = Double.NEGATIVE_INFINITY;
-         for (int m = 0; m < numSamples; m++) {
-            W[j][m] = 0;
-            for (int i = 0; i < numPeriods; i++) {
-               W[j][m] += arrivals[j][i] * Math.log(xi[m][j] * Lam[i]);
-               W[j][m] -= (arrivals[j][i] + R[i]) * Math.log(xi[m][j] * Lam[i] + R[i]);
-            }
-            if (maxW[j] < W[j][m]) {
-               maxW[j] = W[j][m];
-            }
-         }
-      }
-      // Shift the log importance weights for numerical stability
-      // Exponentiate the log importance weights to obtain importance weights
-      for (int j = 0; j < numObs; j++) {
-         for (int m = 0; m < numSamples; m++) {
-            W[j][m] = W[j][m] - maxW[j];
-            W[j][m] = Math.exp(W[j][m]);
-         }
-      }
+      generateSamples(Q, true);
+      // Calculate log importance weights, shift and exponentiate them,
+      // and calculate the terms of the derivatives for each observation
+      evaluate(new LikelihoodEvaluation(Lam, R, null, null, Q, false, LikelihoodEvaluation.SPLINE));
       // Calculate the value of the likelihood function
       logPhiRY = 0;
       for (int j = 0; j < numObs; j++) {
-         double temp = 0;
-         for (int m = 0; m < numSamples; m++) {
-            temp += W[j][m];
-         }
          for (int i = 0; i < numPeriods; i++) {
             logPhiRY += Num.lnGamma(R[i] + arrivals[j][i]);
             logPhiRY += R[i] * Math.log(R[i]) - Num.lnGamma(R[i]);
@@ -1348,7 +1418,7 @@ public class GammaParameterEstimator {
             d2CdR2[i] += Num.trigamma(R[i] + arrivals[j][i]);
             d2CdR2[i] += 1 / R[i] - Num.trigamma(R[i]);
          }
-         C += Math.log(temp) + maxW[j];
+         C += Math.log(obsSumW[j]) + obsMaxW[j];
       }
       C += logPhiRY;
       
@@ -1357,58 +1427,17 @@ public class GammaParameterEstimator {
           C -= 2.0/3.0 *(1 - smoothingLambda) * smothnessPenalty.get(i, 0) * d.get(i, 0);
       }
 
-      // Normalize importance weights so they sum to 1 over m
-      for (int j = 0; j < numObs; j++) {
-         double Wsum = 0;
-         for (int m = 0; m < numSamples; m++) {
-            Wsum += W[j][m];
-         }
-         Wsum = 1 / Wsum;
-         for (int m = 0; m < numSamples; m++) {
-            W[j][m] *= Wsum;
-         }
-      }
       // Calculate derivatives
       // dCdR = DlogPhiRY;
       // d2CdR2 = D2logPhiRY;
       dCdQ = numObs * (Math.log(Q) + 1 - Num.digamma(Q));
       d2CdQ2 = numObs * (1 / Q - Num.trigamma(Q));
       for (int j = 0; j < numObs; j++) {
-         double[] temp1_dCdR = new double[numPeriods];
-         double[] temp1_d2CdR2 = new double[numPeriods];
-         double temp_dCdQ = 0;
-         double[] temp_dCdLam = new double[numPeriods];
-
-         for (int m = 0; m < numSamples; m++) {
-            double[] temp_dCdR = new double[numPeriods];
-            double[] temp_d2CdR2 = new double[numPeriods];
-
-            for (int i = 0; i < numPeriods; i++) {
-               double alpha_lam;
-               double OneOverRplusAlphaLam;
-               double RplusYoverRplusAlphaLam;
-               double AlphaLamMinusYoverRplusAlphaLam2;
+         double[] temp1_dCdR = obsDRp[j];
+         double[] temp1_d2CdR2 = obsD2Rp[j];
+         double temp_dCdQ = obsDQ[j];
+         double[] temp_dCdLam = obsDLam[j];
 
-               alpha_lam = xi[m][j] * Lam[i];
-               OneOverRplusAlphaLam = 1 / (R[i] + alpha_lam);
-               RplusYoverRplusAlphaLam = (R[i] + arrivals[j][i]) * OneOverRplusAlphaLam;
-               AlphaLamMinusYoverRplusAlphaLam2 = OneOverRplusAlphaLam * OneOverRplusAlphaLam;
-               AlphaLamMinusYoverRplusAlphaLam2 *= (alpha_lam - arrivals[j][i]);
-
-               temp_dCdR[i] += Math.log(R[i] + alpha_lam) + RplusYoverRplusAlphaLam;
-               temp_d2CdR2[i] += OneOverRplusAlphaLam + AlphaLamMinusYoverRplusAlphaLam2;
-
-               temp_dCdLam[i] -= RplusYoverRplusAlphaLam * xi[m][j] * W[j][m];
-               
-               temp1_dCdR[i] += temp_dCdR[i] * W[j][m];
-               temp1_d2CdR2[i] += (temp_dCdR[i] * temp_dCdR[i] - temp_d2CdR2[i]) * W[j][m];
-
-            }
-            
-
-            temp_dCdQ += (Math.log(xi[m][j]) - xi[m][j]) * W[j][m];
-
-         }
          dCdQ += temp_dCdQ;
          d2CdQ2 -= temp_dCdQ * temp_dCdQ;
 
@@ -2264,6 +2293,18 @@ public class GammaParameterEstimator {
     * The parameters of the Gamma distribution are estimated using method {@link #getNegBinMLE}.
     * The entries of the copula correlation matrix are estimated using
     * method {@link #getNortaRhoStochasticRootFinding}.
+    * The pairs of periods are fitted in parallel using
+    * {@link #getNumThreads()} threads. Each call moves the random streams
+    * to a new substream for every pair, in the order of the pairs,
+    * so the results do not depend on the number of threads.
+    * The fitted correlation of each pair is memoized with the target
+    * correlation, the parameters of the two marginals, and the
+    * settings of the root finding algorithm, so a subsequent
+    * estimation skips the pairs whose parameters did not change,
+    * and reuses their earlier stochastic fits rather than computing
+    * new ones. The results thus depend on the estimations done previously
+    * by this object; {@link #clearNortaRhoCache()} can be used to avoid this.
+    * The fits of at most two estimations are kept.
     *
     */
    public void estimateNortaRateParamsStochasticRootFinding () {
@@ -2320,28 +2361,80 @@ public class GammaParameterEstimator {
          }
       }
       // Compute the Gaussian correlation matrix by using the stochastic root finding approach
-      // implemeted in getNortaRhoStochasticRootFinding
+      // implemeted in getNortaRhoStochasticRootFinding.
+      // Each pair of periods not found in the cache is fitted by a separate task
+      // using its own substreams, so the results do not depend on the number of threads.
+      final MRG32k3a gaussBase = GaussGenStream;
+      final MRG32k3a poissonBase = PoissonGenStream;
+      final NortaPairKey[][] keys = new NortaPairKey[numPeriods][numPeriods];
+      final Map<NortaPairKey, NortaPairFit> fits = new LinkedHashMap<NortaPairKey, NortaPairFit>();
+      final Map<NortaPairKey, Double> rhos = new HashMap<NortaPairKey, Double>();
       for (int k = 0; k < numPeriods; k++) {
-         for (int i = 0; i <= k; i++) {
-            double rhoTarget;
-            double rhoGauss;
+         for (int i = 0; i < k; i++) {
             double[][] NegBinParams = new double[2][2];
+            NegBinParams[0][0] = LamOut[k];
+            NegBinParams[1][0] = LamOut[i];
+            NegBinParams[0][1] = Qout[k] / (Qout[k] + 1);
+            NegBinParams[1][1] = Qout[i] / (Qout[i] + 1);
+            final NortaPairKey key = new NortaPairKey(yTransCorr[i][k], NegBinParams,
+                  maxit, tol, eta, pwr);
+            keys[i][k] = key;
+            // Each pair has its substreams, whether it is fitted or not,
+            // so the fits do not depend on which pairs are cached.
+            final Double cachedRho = nortaRhoCache.get(key);
+            if (cachedRho != null)
+               rhos.put(key, cachedRho);
+            else if (!fits.containsKey(key))
+               fits.put(key, new NortaPairFit(key, yTransCorr[i][k], NegBinParams,
+                     gaussBase.clone(), poissonBase.clone()));
+            gaussBase.resetNextSubstream();
+            poissonBase.resetNextSubstream();
+         }
+      }
+      final List<NortaPairFit> tasks = new ArrayList<NortaPairFit>(fits.values());
+      final List<Double> results = new ArrayList<Double>(tasks.size());
+      if (numThreads <= 1 || tasks.size() <= 1) {
+         for (final NortaPairFit task : tasks)
+            results.add(task.call());
+      }
+      else {
+         final ForkJoinPool pool = new ForkJoinPool(Math.min(numThreads, tasks.size()));
+         try {
+            for (final Future<Double> f : pool.invokeAll(tasks))
+               results.add(f.get());
+         }
+         catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while fitting NORTA correlations", ie);
+         }
+         catch (final ExecutionException ee) {
+            final Throwable cause = ee.getCause();
+            if (cause instanceof RuntimeException)
+               throw (RuntimeException) cause;
+            if (cause instanceof Error)
+               throw (Error) cause;
+            throw new IllegalStateException(cause);
+         }
+         finally {
+            pool.shutdown();
+         }
+      }
+      for (int t = 0; t < tasks.size(); t++) {
+         rhos.put(tasks.get(t).key, results.get(t));
+         nortaRhoCache.put(tasks.get(t).key, results.get(t));
+      }
+      if (!tasks.isEmpty())
+         // Optimization track of the last fitted pair
+         x = tasks.get(tasks.size() - 1).trace;
 
-            rhoTarget = yTransCorr[i][k];
-
-            if (i == k) {
-               rhoGauss = 1;
-            } else {
-               NegBinParams[0][0] = LamOut[k];
-               NegBinParams[1][0] = LamOut[i];
-               NegBinParams[0][1] = Qout[k] / (Qout[k] + 1);
-               NegBinParams[1][1] = Qout[i] / (Qout[i] + 1);
-               rhoGauss = getNortaRhoStochasticRootFinding (rhoTarget, NegBinParams, rhoTarget);
-            }
+      for (int k = 0; k < numPeriods; k++) {
+         for (int i = 0; i <= k; i++) {
+            final double rhoGauss = i == k ? 1 : rhos.get(keys[i][k]);
             yGaussCorr[i][k] = rhoGauss;
             yGaussCorr[k][i] = rhoGauss;
          }
       }
+      yGaussCorrCorrected = null;
    }
 
    /**
@@ -2434,79 +2527,51 @@ public class GammaParameterEstimator {
     * Estimates the Spearman correlation coefficient of counts in the Gamma-Poisson NORTA model
     * for rates using Monte-Carlo simulation.
     *
-    * @param NegBinParams Parameters of the marginal distribution. In the
+    * @param pair Marginal distributions of the pair of periods. In the
     * Gamma-Poisson NORTA model marginal distributions are negative binomial
     * @param rhoGauss Correlation coefficient of the Gaussian copula
+    * @param gaussStream Random stream for the Gaussian variates
+    * @param poissonStream Random stream for the Poisson variates
     * @return Estimated Spearman correlation coefficient of counts.
     */
-   private double getRhoGammaPoisson(double[][] NegBinParams, double rhoGauss) {
-      double rhoGP;
-      double[] Lam = new double[2];
-      double[] Q = new double[2];
-      MultinormalCholeskyGen ngen;
-      DoubleMatrix2D R;
-      double[][] NormalArray = new double[numSamples][2];
-      int[][] GammaPoissonArray = new int[numSamples][2];
-      GammaDist[] gamDist = new GammaDist[2];
-      NegativeBinomialDist[] NB = new NegativeBinomialDist[2];
+   private double getRhoGammaPoisson(NortaPair pair, double rhoGauss,
+                                     RandomStream gaussStream, RandomStream poissonStream) {
+      final double[][] NormalArray = pair.normalArray;
+      final int[][] GammaPoissonArray = pair.gammaPoissonArray;
       double[] Mean = new double[2];
       double Cov = 0;
       double[] Var = new double[2];
 
-      Lam[0] = NegBinParams[0][0];
-      Lam[1] = NegBinParams[1][0];
-      Q[0] = NegBinParams[0][1] / (1 - NegBinParams[0][1]);
-      Q[1] = NegBinParams[1][1] / (1 - NegBinParams[1][1]);
-
-      // Initialize correlated Gaussian generator
-      R = new DenseDoubleMatrix2D(2, 2);
-      R.set(0, 0, 1.0);
-      R.set(1, 1, 1.0);
-      R.set(0, 1, rhoGauss);
-      R.set(1, 0, rhoGauss);
-      final NormalGen ngen1 = new NormalGen(GaussGenStream, new NormalDist());
-      ngen = new MultinormalCholeskyGen (ngen1, new double[2], R);
-      // Generate correlated gaussians
-      ngen.nextArrayOfPoints(NormalArray, 0, numSamples);
-      // Initialize the Gamma distributions
-  //    if (Lam[0] <= 0.)
-  //    	gamDist[0] = null;
-  //    else
-         gamDist[0] = new GammaDist(Lam[0], Q[0]);
-  //    if (Lam[1] <= 0.)
-  //    	gamDist[1] = null;
-  //    else
-         gamDist[1] = new GammaDist(Lam[1], Q[1]);
+      // Generate correlated gaussians using the Cholesky factor
+      // (1, 0; rhoGauss, sqrt(1 - rhoGauss^2)) of the 2x2 correlation matrix
+      final double l11 = Math.sqrt(Math.max(1 - rhoGauss * rhoGauss, 0));
+      for (int i = 0; i < numSamples; i++) {
+         final double z0 = NormalDist.inverseF01(gaussStream.nextDouble());
+         final double z1 = NormalDist.inverseF01(gaussStream.nextDouble());
+         NormalArray[i][0] = z0;
+         NormalArray[i][1] = rhoGauss * z0 + l11 * z1;
+      }
       // Transform gaussians to the uniforms
       // Transform uniforms to Gammas
       for (int i = 0; i < numSamples; i++) {
          for (int j = 0; j < 2; j++) {
             NormalArray[i][j] = NormalDist.cdf01 (NormalArray[i][j]);
-            if (null != gamDist[j])
-               NormalArray[i][j] = gamDist[j].inverseF(NormalArray[i][j]);
-            else
-            	NormalArray[i][j] = 0.;
+            NormalArray[i][j] = pair.gamDist[j].inverseF(NormalArray[i][j]);
          }
       }
       for (int i = 0; i < numSamples; i++) {
          for (int j = 0; j < 2; j++) {
-           // PoissonGen poisRND;
             if (NormalArray[i][j] <= 0.) {
             	GammaPoissonArray[i][j] = 0;
             } else {
-            //   poisRND = new PoissonGen(PoissonGenStream, NormalArray[i][j]);
-            //   GammaPoissonArray[i][j] = poisRND.nextInt();
-            	GammaPoissonArray[i][j] = PoissonGen.nextInt(PoissonGenStream, NormalArray[i][j]);
+            	GammaPoissonArray[i][j] = PoissonGen.nextInt(poissonStream, NormalArray[i][j]);
             }
          }
       }
       // Calculate the Spearman correlation coefficient
-      // Initialize the negative binomial distribution
-      NB[0] = new NegativeBinomialDist(NegBinParams[0][0], NegBinParams[0][1]);
-      NB[1] = new NegativeBinomialDist(NegBinParams[1][0], NegBinParams[1][1]);
       for (int i = 0; i < numSamples; i++) {
          for (int j = 0; j < 2; j++) {
-            NormalArray[i][j] = NB[j].cdf(GammaPoissonArray[i][j]);
+            NormalArray[i][j] = pair.NB[j].cdf(GammaPoissonArray[i][j]);
             Mean[j] += NormalArray[i][j];
          }
       }
@@ -2518,10 +2583,7 @@ public class GammaParameterEstimator {
          }
          Cov += (NormalArray[i][1] - Mean[1]) * (NormalArray[i][0] - Mean[0]);
       }
-      rhoGP = Cov / (Math.sqrt(Var[0]) * Math.sqrt(Var[1]));
-
-      return rhoGP;
-      // return rhoGP;
+      return Cov / (Math.sqrt(Var[0]) * Math.sqrt(Var[1]));
    }
 
    /**
@@ -2539,16 +2601,22 @@ public class GammaParameterEstimator {
     * @return Fitted NORTA correlation coefficient
     */
    public double getNortaRhoStochasticRootFinding (double rhoTarget, double[][] NegBinParams, double rhoInit) {
+      // Initialize optimization track
+      x = new double[maxit][4];
+      return getNortaRhoStochasticRootFinding (new NortaPair(NegBinParams), rhoTarget,
+            rhoInit, GaussGenStream, PoissonGenStream, x);
+   }
+
+   // Stochastic root finding for one pair of periods, using the given
+   // streams, and storing the optimization track in trace.
+   private double getNortaRhoStochasticRootFinding (NortaPair pair, double rhoTarget,
+         double rhoInit, RandomStream gaussStream, RandomStream poissonStream, double[][] trace) {
       double xiter;
       double xiter_new;
       int iteration = 1;
       double fNew = 1;
       double f = 0;
 
-      // Initialize optimization track
-      x = new double[maxit][4];
-
-
       if (rhoInit >= 1) {
          xiter = 0.999;
       } else if (rhoInit <= -1) {
@@ -2560,13 +2628,13 @@ public class GammaParameterEstimator {
          double s;
 
          f = fNew;
-         fNew = getRhoGammaPoisson(NegBinParams, xiter);
+         fNew = getRhoGammaPoisson(pair, xiter, gaussStream, poissonStream);
          s = rhoTarget - fNew;
 
-         x[iteration - 1][0] = xiter;
-         x[iteration - 1][1] = fNew;
-         x[iteration - 1][2] = s;
-         x[iteration - 1][3] = Math.pow(iteration, -pwr) * eta;
+         trace[iteration - 1][0] = xiter;
+         trace[iteration - 1][1] = fNew;
+         trace[iteration - 1][2] = s;
+         trace[iteration - 1][3] = Math.pow(iteration, -pwr) * eta;
 
          xiter_new = xiter + Math.pow(iteration, -pwr) * eta * s;
 
@@ -2578,6 +2646,82 @@ public class GammaParameterEstimator {
 
       return xiter;
    }
+
+   // Marginal distributions of a pair of periods, constructed once
+   // for all the iterations of the root finding, and the arrays
+   // holding the Monte-Carlo samples.
+   private final class NortaPair {
+      final GammaDist[] gamDist = new GammaDist[2];
+      final NegativeBinomialDist[] NB = new NegativeBinomialDist[2];
+      final double[][] normalArray = new double[numSamples][2];
+      final int[][] gammaPoissonArray = new int[numSamples][2];
+
+      NortaPair (double[][] NegBinParams) {
+         for (int j = 0; j < 2; j++) {
+            final double Q = NegBinParams[j][1] / (1 - NegBinParams[j][1]);
+            gamDist[j] = new GammaDist(NegBinParams[j][0], Q);
+            NB[j] = new NegativeBinomialDist(NegBinParams[j][0], NegBinParams[j][1]);
+         }
+      }
+   }
+
+   /**
+    * Clears the fitted NORTA correlations memoized by
+    * {@link #estimateNortaRateParamsStochasticRootFinding()},
+    * so the next estimation fits every pair of periods.
+    */
+   public void clearNortaRhoCache () {
+      nortaRhoCache.clear();
+   }
+
+   // Key of the cache of fitted NORTA correlations, made of the
+   // target correlation, of the parameters of the two marginals,
+   // and of the settings of the stochastic root finding.
+   private static final class NortaPairKey {
+      private final double[] values;
+
+      NortaPairKey (double rhoTarget, double[][] NegBinParams, int maxit,
+                    double tol, double eta, double pwr) {
+         values = new double[] { rhoTarget, NegBinParams[0][0], NegBinParams[0][1],
+                                 NegBinParams[1][0], NegBinParams[1][1],
+                                 maxit, tol, eta, pwr };
+      }
+
+      @Override
+      public boolean equals (Object o) {
+         return o instanceof NortaPairKey && Arrays.equals (values, ((NortaPairKey) o).values);
+      }
+
+      @Override
+      public int hashCode () {
+         return Arrays.hashCode (values);
+      }
+   }
+
+   // Fits the NORTA correlation of one pair of periods, with its own
+   // random streams and optimization track.
+   private final class NortaPairFit implements Callable<Double> {
+      private final NortaPairKey key;
+      private final double rhoTarget;
+      private final double[][] NegBinParams;
+      private final RandomStream gaussStream;
+      private final RandomStream poissonStream;
+      final double[][] trace = new double[maxit][4];
+
+      NortaPairFit (NortaPairKey key, double rhoTarget, double[][] NegBinParams,
+                    RandomStream gaussStream, RandomStream poissonStream) {
+         this.key = key;
+         this.rhoTarget = rhoTarget;
+         this.NegBinParams = NegBinParams;
+         this.gaussStream = gaussStream;
+         this.poissonStream = poissonStream;
+      }
+
+      public Double call () {
+         return getNortaRhoStochasticRootFinding (new NortaPair(NegBinParams), rhoTarget,
+               rhoTarget, gaussStream, poissonStream, trace);
+      }
+   }
    
    public double digamma(double x) {
        double st, st1;
@@ -2627,8 +2771,11 @@ public class GammaParameterEstimator {
     * @return the estimated and corrected copula correlation matrix
     */
    public double[][] getNortaRateGaussCorrCorrected() {
-      CorrelationMatrixCorrector obj = new CorrelationMatrixCorrector(yGaussCorr);
-      return obj.calcCorrectedR();
+      if (yGaussCorrCorrected == null) {
+         CorrelationMatrixCorrector obj = new CorrelationMatrixCorrector(yGaussCorr);
+         yGaussCorrCorrected = obj.calcCorrectedR();
+      }
+      return yGaussCorrCorrected;
    }
 
    /**
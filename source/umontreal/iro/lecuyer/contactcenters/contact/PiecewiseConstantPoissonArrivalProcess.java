@@ -272,7 +272,9 @@ public class PiecewiseConstantPoissonArrivalProcess
          return;
       final int currentPeriod = pce.getCurrentPeriod();
       final double lam = getBaseArrivalRate (currentPeriod);
-      setLambda (lam);
+      // Avoids rescheduling the next arrival if the rate does not change
+      if (lam != getLambda())
+         setLambda (lam);
    }
 
    @Override
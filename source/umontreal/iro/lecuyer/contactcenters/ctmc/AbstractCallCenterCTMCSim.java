@@ -36,6 +36,7 @@ import umontreal.iro.lecuyer.contactcenters.msk.model.RandomStreams;
 import umontreal.iro.lecuyer.contactcenters.msk.params.CallCenterParams;
 import umontreal.iro.lecuyer.contactcenters.router.AgentsPrefRouter;
 import umontreal.iro.lecuyer.contactcenters.router.QueuePriorityRouter;
+import umontreal.ssj.rng.CloneableRandomStream;
 import umontreal.ssj.rng.RandomStream;
 import umontreal.ssj.stat.Tally;
 import umontreal.ssj.stat.TallyStore;
@@ -127,6 +128,43 @@ public abstract class AbstractCallCenterCTMCSim extends
       init ();
    }
 
+   /**
+    * Constructs a new simulator sharing the model, the
+    * experiment parameters, and the structure of the CTMC
+    * with the simulator \texttt{sim}.
+    * The new simulator uses the chain \texttt{ctmc}, which
+    * is usually a clone of the chain of \texttt{sim}, its own
+    * counters and statistical collectors, and a copy of the
+    * random stream of \texttt{sim}.
+    * The copy of the stream starts at the same state as the
+    * original stream, so the two simulators use common random numbers.
+    * Since the call center model is shared, the copy
+    * should not be reset.
+    * @param sim the original simulator.
+    * @param ctmc the CTMC used by the new simulator.
+    * @exception IllegalArgumentException if the random stream
+    * of \texttt{sim} cannot be cloned.
+    */
+   protected AbstractCallCenterCTMCSim (AbstractCallCenterCTMCSim sim,
+         CallCenterCTMC ctmc) {
+      if (!(sim.stream instanceof CloneableRandomStream))
+         throw new IllegalArgumentException
+         ("The random stream of the simulator cannot be cloned");
+      this.cc = sim.cc;
+      this.simParams = sim.simParams;
+      this.mp = sim.mp;
+      this.m_timeHorizon = sim.m_timeHorizon;
+      stream = ((CloneableRandomStream)sim.stream).clone ();
+      rateChange = new RateChangeTransitions (cc);
+      this.ctmc = ctmc;
+      awt = sim.awt;
+      counters = new CallCenterCounters (ctmc, awt,
+            false);
+      ccStat = new CallCenterStat (ctmc, sim.getNumMatricesOfAWT (), simParams.isKeepObs());
+      trace = null;
+      autoResetStartStream = sim.autoResetStartStream;
+   }
+
    private void init () throws CTMCCreationException {
       if (simParams.isSetTimeHorizon ())
          m_timeHorizon = cc.getTime (simParams.getTimeHorizon ());
@@ -30,6 +30,18 @@ public class BasicCallCenterCTMCSim extends AbstractCallCenterCTMCSim {
       super (ccParams, simParams, mp);
    }
 
+   /**
+    * Constructs a simulator sharing the model and the structure
+    * of the CTMC with \texttt{sim}, and using the chain
+    * \texttt{ctmc}; see
+    * {@link AbstractCallCenterCTMCSim#AbstractCallCenterCTMCSim(AbstractCallCenterCTMCSim,CallCenterCTMC)}.
+    * @param sim the original simulator.
+    * @param ctmc the CTMC used by the new simulator.
+    */
+   public BasicCallCenterCTMCSim (AbstractCallCenterCTMCSim sim, CallCenterCTMC ctmc) {
+      super (sim, ctmc);
+   }
+
    @Override
    public double getNumExpectedTransitions () {
       return numExpectedTransitions;
@@ -0,0 +1,177 @@
+package umontreal.iro.lecuyer.contactcenters.ctmc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import umontreal.iro.lecuyer.contactcenters.app.PerformanceMeasureType;
+
+/**
+ * Evaluates a CTMC simulator for several staffing vectors
+ * concurrently.
+ * For each staffing vector, a copy of the simulator is
+ * created by cloning the CTMC of the original simulator, which
+ * avoids constructing the chain from the model again, and shares
+ * its selectors and event tables.
+ * The maximal number of agents of every copy is set to the
+ * largest number of agents over all evaluated vectors, so
+ * all copies use the same uniformization rate, and thus the same
+ * number of transitions for each replication.
+ * Since each copy uses a clone of the random stream of
+ * the original simulator, the same uniforms are used
+ * for corresponding transitions, i.e., the staffing vectors are
+ * evaluated with common random numbers.
+ * The copies are simulated as tasks submitted to an executor service.
+ */
+public class StaffingSweep {
+   private final AbstractCallCenterCTMCSim sim;
+   private final ExecutorService executor;
+
+   /**
+    * Constructs a new staffing sweep evaluating
+    * the simulator \texttt{sim} using tasks submitted to
+    * \texttt{executor}.
+    * @param sim the simulator being copied.
+    * @param executor the executor service running the simulations.
+    */
+   public StaffingSweep (AbstractCallCenterCTMCSim sim, ExecutorService executor) {
+      if (sim == null || executor == null)
+         throw new NullPointerException();
+      this.sim = sim;
+      this.executor = executor;
+   }
+
+   /**
+    * Returns the simulator associated with this sweep.
+    * @return the associated simulator.
+    */
+   public AbstractCallCenterCTMCSim getSimulator () {
+      return sim;
+   }
+
+   /**
+    * Returns the executor service running the simulations.
+    * @return the executor service.
+    */
+   public ExecutorService getExecutor () {
+      return executor;
+   }
+
+   /**
+    * Simulates the model for each staffing vector in
+    * \texttt{staffings}, and returns an array whose
+    * element $j$ contains the statistical collectors
+    * obtained with staffing vector $j$.
+    * The state of the original simulator is not modified.
+    * @param staffings the evaluated staffing vectors.
+    * @return the statistical collectors for each staffing vector.
+    * @exception IllegalArgumentException if the length of a
+    * staffing vector does not correspond to the number of agent groups.
+    * @exception IllegalStateException if the calling thread is interrupted
+    * while waiting for the simulations.
+    */
+   public CallCenterStat[] eval (int[]... staffings) {
+      final CallCenterCTMC ctmc = sim.getCTMC ().clone ();
+      final int[] maxNumAgents = ctmc.getMaxNumAgentsArray ();
+      for (final int[] staffing : staffings) {
+         if (staffing.length != maxNumAgents.length)
+            throw new IllegalArgumentException
+            ("Invalid length of staffing vector");
+         for (int i = 0; i < staffing.length; i++)
+            if (staffing[i] > maxNumAgents[i])
+               maxNumAgents[i] = staffing[i];
+      }
+      ctmc.setMaxNumAgents (maxNumAgents);
+
+      final AbstractCallCenterCTMCSim[] sims = new AbstractCallCenterCTMCSim[staffings.length];
+      final List<Future<?>> futures = new ArrayList<Future<?>> (staffings.length);
+      for (int j = 0; j < staffings.length; j++) {
+         final CallCenterCTMC ctmcj = ctmc.clone ();
+         ctmcj.setNumAgents (staffings[j]);
+         final AbstractCallCenterCTMCSim simj = new BasicCallCenterCTMCSim (sim, ctmcj);
+         sims[j] = simj;
+         futures.add (executor.submit (new Runnable() {
+            public void run () {
+               simj.eval ();
+            }
+         }));
+      }
+      try {
+         for (final Future<?> f : futures)
+            f.get ();
+      }
+      catch (final InterruptedException ie) {
+         for (final Future<?> f : futures)
+            f.cancel (true);
+         Thread.currentThread ().interrupt ();
+         throw new IllegalStateException ("Interrupted while waiting for simulations", ie);
+      }
+      catch (final ExecutionException ee) {
+         for (final Future<?> f : futures)
+            f.cancel (true);
+         final Throwable cause = ee.getCause ();
+         if (cause instanceof RuntimeException)
+            throw (RuntimeException)cause;
+         if (cause instanceof Error)
+            throw (Error)cause;
+         throw new IllegalStateException (cause);
+      }
+
+      final CallCenterStat[] stats = new CallCenterStat[sims.length];
+      for (int j = 0; j < stats.length; j++)
+         stats[j] = sims[j].getStat ();
+      return stats;
+   }
+
+   /**
+    * Estimates the forward differences of the performance measure
+    * \texttt{pm} at row \texttt{row} and column \texttt{column}
+    * with respect to the number of agents in each group, for
+    * the staffing vector \texttt{staffing}.
+    * This method evaluates \texttt{staffing}, and
+    * \texttt{staffing} with one more agent in group $i$, for
+    * $i=0,\ldots,I-1$, using common random numbers, and
+    * returns an array whose element $i$ gives the difference
+    * between the average for the second staffing vector and
+    * the average for the first one.
+    * @param staffing the staffing vector.
+    * @param pm the type of performance measure.
+    * @param row the row of the performance measure.
+    * @param column the column of the performance measure.
+    * @return the estimated forward differences.
+    */
+   public double[] gradient (int[] staffing, PerformanceMeasureType pm, int row, int column) {
+      final int[][] staffings = new int[staffing.length + 1][];
+      staffings[0] = staffing.clone ();
+      for (int i = 0; i < staffing.length; i++) {
+         staffings[i + 1] = staffing.clone ();
+         ++staffings[i + 1][i];
+      }
+      return getForwardDifferences (eval (staffings), pm, row, column);
+   }
+
+   /**
+    * Returns the differences between the averages of the
+    * performance measure \texttt{pm} at row \texttt{row} and column
+    * \texttt{column} in \texttt{stats[i + 1]} and
+    * \texttt{stats[0]}, for $i=0,\ldots,\texttt{stats.length}-2$.
+    * @param stats the statistical collectors, as returned by
+    * {@link #eval(int[]...)}.
+    * @param pm the type of performance measure.
+    * @param row the row of the performance measure.
+    * @param column the column of the performance measure.
+    * @return the array of differences.
+    */
+   public static double[] getForwardDifferences (CallCenterStat[] stats,
+         PerformanceMeasureType pm, int row, int column) {
+      if (stats.length == 0)
+         throw new IllegalArgumentException ("No statistical collector");
+      final double base = stats[0].getMatrixOfStatProbes (pm).get (row, column).average ();
+      final double[] res = new double[stats.length - 1];
+      for (int i = 0; i < res.length; i++)
+         res[i] = stats[i + 1].getMatrixOfStatProbes (pm).get (row, column).average () - base;
+      return res;
+   }
+}
@@ -160,7 +160,7 @@ import cern.colt.list.IntArrayList;
  */
 public class AgentsMoveDialerPolicy implements DialerPolicy {
    private DialerList list;
-   private final ContactListenerDialerList list2 = new ContactListenerDialerList ();
+   private final IndexedDialerList list2 = new IndexedDialerList ();
    private Router router;
    private boolean makeInboundMode;
    private boolean makeOutboundMode;
@@ -17,7 +17,8 @@ import umontreal.iro.lecuyer.contactcenters.contact.ContactFactory;
  * factory to obtain contacts.
  * The {@link ContactListenerDialerList}, on the other hand,
  * is backed by a fixed list which is populated by a contact
- * listener.
+ * listener, while {@link IndexedDialerList} stores such
+ * contacts in one queue per contact type.
  * The contents of the dialer list could also change with time.
  * For example, during some time intervals of the day,
  * a limit on the maximal number of dialed contacts
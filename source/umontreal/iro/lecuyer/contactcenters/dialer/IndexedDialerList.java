@@ -0,0 +1,200 @@
+package umontreal.iro.lecuyer.contactcenters.dialer;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import umontreal.iro.lecuyer.contactcenters.contact.Contact;
+import umontreal.iro.lecuyer.contactcenters.contact.ContactInstantiationException;
+import umontreal.iro.lecuyer.contactcenters.contact.NewContactListener;
+
+/**
+ * Implements the {@link DialerList} interface for a finite
+ * dialer list whose elements are obtained from an external
+ * source, and indexed by contact type.
+ * Like {@link ContactListenerDialerList}, this class implements
+ * the {@link NewContactListener} interface, and
+ * removes contacts in the order they were notified.
+ * However, contacts are stored in one FIFO queue per contact type,
+ * and each contact is associated with a sequence number
+ * giving its insertion order.
+ * The number of contacts of each type is thus available
+ * in constant time, and
+ * {@link #removeFirst(int[])} only needs to compare the
+ * sequence numbers of the first contact in the queue
+ * of each desired type, instead of scanning the whole list.
+ * This can be used as a replacement for {@link ContactListenerDialerList}
+ * when the list contains many contacts and
+ * the dialer restricts the types of extracted contacts.
+ */
+public class IndexedDialerList implements DialerList, NewContactListener {
+   private TypeQueue[] queues;
+   private int size;
+   private long nextSeq;
+
+   /**
+    * Constructs a new empty indexed dialer list.
+    */
+   public IndexedDialerList () {
+      this (1);
+   }
+
+   /**
+    * Constructs a new empty indexed dialer list
+    * expecting contacts with type identifiers
+    * smaller than \texttt{numTypes}.
+    * Contacts with other types can still be added to the list,
+    * but this requires additional queues to be allocated.
+    @param numTypes the expected number of contact types.
+    @exception IllegalArgumentException if \texttt{numTypes} is negative.
+    */
+   public IndexedDialerList (int numTypes) {
+      if (numTypes < 0)
+         throw new IllegalArgumentException ("numTypes must not be negative");
+      queues = new TypeQueue[numTypes];
+   }
+
+   private TypeQueue getQueue (int type) {
+      if (type < 0)
+         throw new IllegalArgumentException ("Invalid contact type " + type);
+      if (type >= queues.length)
+         queues = Arrays.copyOf (queues, Math.max (type + 1, 2*queues.length));
+      TypeQueue q = queues[type];
+      if (q == null)
+         queues[type] = q = new TypeQueue ();
+      return q;
+   }
+
+   private static boolean isDuplicate (int[] contactTypes, int idx) {
+      for (int j = 0; j < idx; j++)
+         if (contactTypes[j] == contactTypes[idx])
+            return true;
+      return false;
+   }
+
+   /**
+    * Returns the number of contacts of type \texttt{type}
+    * in this dialer list.
+    @param type the tested contact type.
+    @return the number of contacts of the given type.
+    */
+   public int size (int type) {
+      if (type < 0 || type >= queues.length || queues[type] == null)
+         return 0;
+      return queues[type].size;
+   }
+
+   public int size (int[] contactTypes) {
+      if (contactTypes == null)
+         return size;
+      int s = 0;
+      for (int j = 0; j < contactTypes.length; j++)
+         if (!isDuplicate (contactTypes, j))
+            s += size (contactTypes[j]);
+      return s;
+   }
+
+   public Contact removeFirst (int[] contactTypes) {
+      TypeQueue best = null;
+      if (contactTypes == null) {
+         for (final TypeQueue q : queues)
+            if (q != null && q.size > 0
+                  && (best == null || q.firstSeq () < best.firstSeq ()))
+               best = q;
+      }
+      else
+         for (final int type : contactTypes) {
+            if (type < 0 || type >= queues.length)
+               continue;
+            final TypeQueue q = queues[type];
+            if (q != null && q.size > 0
+                  && (best == null || q.firstSeq () < best.firstSeq ()))
+               best = q;
+         }
+      if (best == null)
+         throw new NoSuchElementException ("The dialer list is empty");
+      --size;
+      return best.removeFirst ();
+   }
+
+   /**
+    * Adds the new contact \texttt{contact} to the dialer list.
+    @param contact the contact being added.
+    @exception NullPointerException if \texttt{contact} is \texttt{null}.
+    */
+   public void newContact (Contact contact) {
+      if (contact == null)
+         throw new NullPointerException ("The notified contact must not be null");
+      getQueue (contact.getTypeId ()).add (contact, nextSeq++);
+      ++size;
+   }
+
+   public Contact newInstance () {
+      if (size == 0)
+         throw new ContactInstantiationException
+         (this, "The dialer list is empty");
+      return removeFirst (null);
+   }
+
+   public void clear () {
+      for (final TypeQueue q : queues)
+         if (q != null)
+            q.clear ();
+      size = 0;
+      nextSeq = 0;
+   }
+
+   @Override
+   public String toString () {
+      final StringBuilder sb = new StringBuilder (getClass ().getSimpleName ());
+      sb.append ('[');
+      sb.append ("size: ").append (size);
+      sb.append (']');
+      return sb.toString ();
+   }
+
+   // Circular array of contacts with their sequence numbers
+   private static final class TypeQueue {
+      private Contact[] contacts = new Contact[8];
+      private long[] seq = new long[8];
+      private int head;
+      private int size;
+
+      long firstSeq () {
+         return seq[head];
+      }
+
+      void add (Contact contact, long s) {
+         if (size == contacts.length) {
+            final int n = contacts.length;
+            final Contact[] newContacts = new Contact[2*n];
+            final long[] newSeq = new long[2*n];
+            final int l = n - head;
+            System.arraycopy (contacts, head, newContacts, 0, l);
+            System.arraycopy (contacts, 0, newContacts, l, head);
+            System.arraycopy (seq, head, newSeq, 0, l);
+            System.arraycopy (seq, 0, newSeq, l, head);
+            contacts = newContacts;
+            seq = newSeq;
+            head = 0;
+         }
+         final int tail = (head + size) % contacts.length;
+         contacts[tail] = contact;
+         seq[tail] = s;
+         ++size;
+      }
+
+      Contact removeFirst () {
+         final Contact contact = contacts[head];
+         contacts[head] = null;
+         head = (head + 1) % contacts.length;
+         --size;
+         return contact;
+      }
+
+      void clear () {
+         Arrays.fill (contacts, null);
+         head = 0;
+         size = 0;
+      }
+   }
+}
@@ -47,6 +47,7 @@ import umontreal.iro.lecuyer.contactcenters.msk.stat.ChainCallCenterStat;
 import umontreal.iro.lecuyer.contactcenters.queue.WaitingQueue;
 import umontreal.iro.lecuyer.contactcenters.msk.stat.CallCenterMeasureManager;
 
+import umontreal.ssj.simevents.ProfilingSimulator;
 import umontreal.ssj.simevents.Simulator;
 import umontreal.ssj.simexp.BatchMeansSim;
 import umontreal.ssj.stat.matrix.MatrixOfFunctionOfMultipleMeansTallies;
@@ -70,6 +71,7 @@ public abstract class AbstractCallCenterSim extends AbstractContactCenterSim
    private CVCallCenterStat cvStat;
    private CallCenterStatProbes ccStat;
    private CallTracer tracer;
+   private SimProfiler profiler;
    private boolean initialized = false;
    protected CallCenterMeasureManager ccm;                     //Ajouter
 
@@ -86,7 +88,7 @@ public abstract class AbstractCallCenterSim extends AbstractContactCenterSim
     *           the simulation parameters.
     */
    public AbstractCallCenterSim (CallCenterParams ccParams, SimParams simParams) throws CallCenterCreationException {
-      this (new Simulator(), ccParams, simParams);
+      this (createSimulator (simParams), ccParams, simParams);
    }
 
    /**
@@ -106,7 +108,7 @@ public abstract class AbstractCallCenterSim extends AbstractContactCenterSim
     */
    public AbstractCallCenterSim (CallCenterParams ccParams,
          SimParams simParams, RandomStreams streams) throws CallCenterCreationException {
-      this (new Simulator(), ccParams, simParams, streams);
+      this (createSimulator (simParams), ccParams, simParams, streams);
    }
 
    /**
@@ -116,7 +118,7 @@ public abstract class AbstractCallCenterSim extends AbstractContactCenterSim
    public AbstractCallCenterSim (Simulator sim, CallCenterParams ccParams, SimParams simParams) throws CallCenterCreationException {
       this (sim, ccParams, simParams, new RandomStreams (
             new SimRandomStreamFactory (simParams.getRandomStreams()),
-            ccParams));
+            ccParams, SimRandomStreamFactory.isCallSubstreams (simParams.getRandomStreams ())));
    }
 
    /**
@@ -134,6 +136,23 @@ public abstract class AbstractCallCenterSim extends AbstractContactCenterSim
       this.simLogic = createSimLogic (cc, simParams);
    }
 
+   /**
+    * Constructs the simulator used by a model simulated
+    * with parameters \texttt{simParams}.
+    * This returns an instance of {@link ProfilingSimulator}
+    * if profiling is enabled in the simulation parameters, and
+    * an instance of {@link Simulator} otherwise.
+    *
+    * @param simParams
+    *           the simulation parameters.
+    * @return the constructed simulator.
+    */
+   public static Simulator createSimulator (SimParams simParams) {
+      if (simParams != null && simParams.isEnableProfiling ())
+         return new ProfilingSimulator();
+      return new Simulator();
+   }
+
    @Override
    public ReportParams getReportParams() {
       return getSimLogic().getSimParams ().getReport();
@@ -285,6 +304,46 @@ public abstract class AbstractCallCenterSim extends AbstractContactCenterSim
       }
    }
 
+   /**
+    * Creates or discards the simulation profiler,
+    * depending on the \texttt{enableProfiling} attribute of
+    * the simulation parameters.
+    * When a profiler is created, it is registered with the model,
+    * the simulation logic, and the platform MBean server.
+    */
+   public void initProfiler() {
+      final SimParams simParams = simLogic.getSimParams ();
+      if (!simParams.isEnableProfiling ())
+         removeProfiler();
+      else if (profiler == null) {
+         if (!(cc.simulator () instanceof ProfilingSimulator))
+            logger.warning ("Events cannot be counted, because the simulator of the model is not a ProfilingSimulator");
+         profiler = new SimProfiler (cc);
+         profiler.register ();
+         profiler.registerMBean ();
+         simLogic.addSimLogicListener (profiler);
+      }
+   }
+
+   private void removeProfiler() {
+      if (profiler == null)
+         return;
+      profiler.unregister ();
+      profiler.unregisterMBean ();
+      simLogic.removeSimLogicListener (profiler);
+      profiler = null;
+   }
+
+   /**
+    * Returns the simulation profiler used by this simulator,
+    * or \texttt{null} if profiling is disabled.
+    *
+    * @return the simulation profiler.
+    */
+   public SimProfiler getSimProfiler() {
+      return profiler;
+   }
+
    @Override
    public boolean isVerbose () {
       return simLogic.isVerbose ();
@@ -533,6 +592,7 @@ public abstract class AbstractCallCenterSim extends AbstractContactCenterSim
    }
 
    public void reset () {
+      removeProfiler();
       try {
          cc.reset (cc.getCallCenterParams (), cc.getRandomStreams ());
       }
@@ -554,6 +614,7 @@ public abstract class AbstractCallCenterSim extends AbstractContactCenterSim
    }
 
    public void reset (CallCenterParams ccParams, SimParams simParams) throws CallCenterCreationException {
+      removeProfiler();
       final RandomStreams streams = cc.getRandomStreams ();
       cc = createModel (cc.simulator (), ccParams, streams);
       pms = CallCenterSimUtil.initPerformanceMeasures (simParams);
@@ -576,6 +637,9 @@ public abstract class AbstractCallCenterSim extends AbstractContactCenterSim
    protected void prepareEvaluation () {
       initTimer();
       initTrace();
+      initProfiler();
+      if (profiler != null)
+         profiler.start ();
       synchronized (this) {
          simLogic.setAborted (false);
       }
@@ -597,6 +661,8 @@ public abstract class AbstractCallCenterSim extends AbstractContactCenterSim
       if (autoResetStartStream)
          resetStartStream ();
       cpuTime = timer == null ? 0 : timer.getSeconds ();
+      if (profiler != null)
+         profiler.stop ();
       formatReport();
    }
 
@@ -613,6 +679,12 @@ public abstract class AbstractCallCenterSim extends AbstractContactCenterSim
                isVerbose ());
       if (simLogic instanceof BatchMeansSim)
          nb *= ((BatchMeansSim)simLogic).getNumAggregates ();
+      if (simLogic instanceof BatchMeansLogic) {
+         // Each independent run simulates the requested number of
+         // batches, so the required batches are shared among the runs.
+         final int numRuns = ((BatchMeansLogic)simLogic).getNumRuns ();
+         nb = (int)(((long)nb + numRuns - 1) / numRuns);
+      }
       final SimStoppingCondition scond1 = getSimStoppingCondition ();
       if (scond1 != null)
          nb = scond1.check (this, nb);
@@ -759,7 +831,8 @@ public abstract class AbstractCallCenterSim extends AbstractContactCenterSim
 
    public void newSeeds () {
       cc.setRandomStreams (new RandomStreams (cc.getRandomStreams ()
-            .getRandomStreamFactory (), cc.getCallCenterParams()));
+            .getRandomStreamFactory (), cc.getCallCenterParams(),
+            cc.getRandomStreams ().isCallSubstreams ()));
       reset ();
    }
 
@@ -793,6 +866,8 @@ public abstract class AbstractCallCenterSim extends AbstractContactCenterSim
             getEvalInfo ().put (Messages.getString ("CallCenterSimUtil.TotalCPUTime"),
                   df.newDuration ((long)(cpuTime * 1000)));
       }
+      if (profiler != null)
+         profiler.formatReport (getEvalInfo ());
    }
 
    public static ControlVariable[] createControlVariables (
@@ -820,15 +895,22 @@ public abstract class AbstractCallCenterSim extends AbstractContactCenterSim
 
    public void enableControlVariables (ControlVariable... cvs) {
       if (cvStat != null)
-         cvStat = null;
-      if (!simLogic.getSimParams ().isKeepObs ())
+         disableControlVariables ();
+      final SimParams simParams = simLogic.getSimParams ();
+      if (!simParams.isKeepObs () && !simParams.isIncrementalCV ())
          throw new IllegalStateException (
          "Cannot use control variables while discarding observations");
+      // Without stored observations, the controlled estimators
+      // are updated with each new observation
+      final boolean incremental = !simParams.isKeepObs ();
       cvStat = new CVCallCenterStat (simLogic, getCallCenterStatProbes (),
-            true, cvs);
+            true, incremental, cvs);
+      cvStat.register ();
       ccStat = new ChainCallCenterStat (cvStat, simLogic.getCallCenterStatProbes());
       cvStat.initCV ();
-      if (getOneSimDone ())
+      // In incremental mode, the observations of a previous
+      // simulation were not seen by the controlled estimators
+      if (getOneSimDone () && !incremental)
          cvStat.applyControlVariables ();
    }
 
@@ -838,6 +920,8 @@ public abstract class AbstractCallCenterSim extends AbstractContactCenterSim
    }
 
    public void disableControlVariables() {
+      if (cvStat != null)
+         cvStat.unregister ();
       cvStat = null;
       ccStat = simLogic.getCallCenterStatProbes();
    }
@@ -850,7 +934,7 @@ public abstract class AbstractCallCenterSim extends AbstractContactCenterSim
          cvTypes[idx++] = ControlVariableType.valueOf (cvp.getName ());
       if (cvTypes == null || cvTypes.length == 0)
          disableControlVariables ();
-      else if (!simParams.isKeepObs ()) {
+      else if (!simParams.isKeepObs () && !simParams.isIncrementalCV ()) {
          logger.warning ("Observations must be kept to use control variables");
          disableControlVariables ();
       }
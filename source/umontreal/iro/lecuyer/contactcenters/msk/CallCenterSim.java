@@ -7,6 +7,9 @@ import java.io.FileOutputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.net.URL;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.xml.bind.JAXBException;
 
@@ -34,6 +37,8 @@ import umontreal.ssj.stat.Tally;
 import umontreal.ssj.stat.TallyStore;
 import umontreal.ssj.stat.matrix.MatrixOfTallies;
 import umontreal.iro.lecuyer.util.ExceptionUtil;
+import umontreal.iro.lecuyer.xmlbind.DistributionCreationException;
+import umontreal.iro.lecuyer.xmlbind.ParamsSnapshot;
 import java.util.ArrayList;  //Ajouter
 
 /**
@@ -144,12 +149,97 @@ public class CallCenterSim extends AbstractCallCenterSim implements
       return mta.get (row, column).numberObs ();
    }
 
+   /**
+    * Reads the call center parameters from the file \texttt{ccParamsFn},
+    * and exits the VM if an error occurs.
+    * If the \texttt{cc.novalidation} system property is set,
+    * the file is not validated against the schema, and
+    * is read using a streaming parser; see
+    * {@link CallCenterParamsConverter#unmarshalStreaming(java.io.InputStream,String)}.
+    * @param ccParamsFn the name of the parameter file.
+    * @return the call center parameters.
+    */
    public static CallCenterParams readCallCenterParams (String ccParamsFn) {
-      return new CallCenterParamsConverter().unmarshalOrExit (new File (ccParamsFn));
+      final CallCenterParamsConverter cnv = new CallCenterParamsConverter();
+      if (System.getProperty ("cc.novalidation") != null)
+         cnv.setValidating (false);
+      final File file = new File (ccParamsFn);
+      if (System.getProperty ("cc.snapshot") != null)
+         return readCallCenterParams (cnv, file, new File (ccParamsFn + ".snap"));
+      return cnv.unmarshalOrExit (file);
    }
 
+   /**
+    * Reads the call center parameters from the file \texttt{file}
+    * using the snapshot file \texttt{snapshotFile}, and exits the
+    * VM if an error occurs.
+    * If the snapshot exists and was created from the current contents
+    * of \texttt{file}, with the same version of the library
+    * and of the XML schemas, the parameters are read from the snapshot using
+    * {@link ParamsSnapshot#read(Class,byte[],File)}.
+    * Otherwise, the parameters are unmarshalled from \texttt{file} using
+    * \texttt{cnv}, the parameters of distributions and arrival processes
+    * are estimated from data using
+    * {@link ParameterEstimator#estimateParameters(CallCenterParams)},
+    * and the resulting parameters are written to the snapshot file.
+    * If the snapshot cannot be written, a warning is logged, and
+    * the parameters are returned.
+    * @param cnv the converter used to unmarshal the parameter file.
+    * @param file the parameter file.
+    * @param snapshotFile the snapshot file.
+    * @return the call center parameters.
+    */
+   public static CallCenterParams readCallCenterParams (CallCenterParamsConverter cnv,
+         File file, File snapshotFile) {
+      final byte[] hash;
+      try {
+         hash = ParamsSnapshot.computeHash (file,
+               CallCenterParams.class.getPackage ().getImplementationVersion (),
+               getSchemaResources ());
+      }
+      catch (final IOException ioe) {
+         return cnv.unmarshalOrExit (file);
+      }
+      final CallCenterParams snapshot = ParamsSnapshot.read (CallCenterParams.class, hash, snapshotFile);
+      if (snapshot != null)
+         return snapshot;
+      final CallCenterParams ccParams = cnv.unmarshalOrExit (file);
+      try {
+         ParameterEstimator.estimateParameters (ccParams);
+      }
+      catch (final DistributionCreationException dce) {
+         // The error will be reported when creating the model
+         return ccParams;
+      }
+      try {
+         ParamsSnapshot.write (ccParams, hash, snapshotFile);
+      }
+      catch (final IOException ioe) {
+         Logger.getLogger ("umontreal.iro.lecuyer.contactcenters.msk").log
+         (Level.WARNING, "Cannot write snapshot file " + snapshotFile.getName (), ioe);
+      }
+      return ccParams;
+   }
+
+   private static URL[] getSchemaResources () {
+      final String[] names = { "ccmsk.xsd", "ccapp.xsd", "cc.xsd", "ssj.xsd" };
+      final URL[] urls = new URL[names.length];
+      for (int i = 0; i < names.length; i++)
+         urls[i] = CallCenterSim.class.getResource ("/umontreal/iro/lecuyer/schemas/" + names[i]);
+      return urls;
+   }
+
+   /**
+    * Similar to {@link #readCallCenterParams(String)}, for
+    * simulation parameters.
+    * @param simParamsFn the name of the parameter file.
+    * @return the simulation parameters.
+    */
    public static SimParams readSimParams (String simParamsFn) {
-      return new SimParamsConverter().unmarshalOrExit (new File (simParamsFn));
+      final SimParamsConverter cnv = new SimParamsConverter();
+      if (System.getProperty ("cc.novalidation") != null)
+         cnv.setValidating (false);
+      return cnv.unmarshalOrExit (new File (simParamsFn));
    }
 
    public static void write (CallCenterParams ccParams, String outputFn) {
@@ -240,7 +330,7 @@ public class CallCenterSim extends AbstractCallCenterSim implements
       SimRandomStreamFactory.initSeed (simParams.getRandomStreams ());
       Simulator.defaultSimulator = new UnusableSimulator();
       try {
-         final CallCenterSim sim = new CallCenterSim (new Simulator(), ccParams, simParams);
+         final CallCenterSim sim = new CallCenterSim (createSimulator (simParams), ccParams, simParams);
          // Requires setting a property using -D option.
          // Another possibility would be to allow a --no-progress-bar
          // argument to the CallCenterSim program.
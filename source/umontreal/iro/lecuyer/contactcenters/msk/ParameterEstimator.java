@@ -2,7 +2,16 @@ package umontreal.iro.lecuyer.contactcenters.msk;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.xml.bind.JAXBException;
 import javax.xml.parsers.ParserConfigurationException;
@@ -21,10 +30,12 @@ import umontreal.iro.lecuyer.contactcenters.msk.params.InboundTypeParams;
 import umontreal.iro.lecuyer.contactcenters.msk.params.ArrivalProcessParams;
 import umontreal.iro.lecuyer.contactcenters.msk.params.OutboundTypeParams;
 import umontreal.iro.lecuyer.contactcenters.msk.params.ServiceTimeParams;
+import umontreal.iro.lecuyer.contactcenters.params.MultiPeriodGenParams;
 import umontreal.iro.lecuyer.util.ExceptionUtil;
 import umontreal.ssj.util.TimeUnit;
 import umontreal.iro.lecuyer.xmlbind.DistributionCreationException;
 import umontreal.iro.lecuyer.xmlbind.ParamReadHelper;
+import umontreal.iro.lecuyer.xmlbind.params.RandomVariateGenParams;
 
 /**
  * Estimates the parameters of a call center model. This class defines a main
@@ -33,6 +44,7 @@ import umontreal.iro.lecuyer.xmlbind.ParamReadHelper;
  * with the estimated parameters.
  */
 public class ParameterEstimator {
+   private static final Logger logger = Logger.getLogger ("umontreal.iro.lecuyer.contactcenters.msk");
 	
 	/**
 	 * If the basic parameters of arrival process \texttt{par} are not set,
@@ -73,12 +85,56 @@ public class ParameterEstimator {
     * Returns \texttt{true} if at least one
     * parameter has been estimated by this
     * method.
+    * This is equivalent to calling
+    * {@link #estimateParameters(CallCenterParams,ExecutorService)}
+    * with a \texttt{null} executor service.
     * @param ccParams the call center parameters.
     * @return true if method was successfull.
     * @throws DistributionCreationException if an error
     * occurs during the creation of a distribution.
     */
    public static boolean estimateParameters (CallCenterParams ccParams) throws DistributionCreationException {
+      return estimateParameters (ccParams, null);
+   }
+
+   /**
+    * Estimates the parameters for each element
+    * in the call center parameter objects for
+    * which raw observations are specified, using
+    * the executor service \texttt{executor} to
+    * perform independent estimations concurrently.
+    * The distributions of patience, service, reach and
+    * failure times, the busyness factor, and the
+    * parameters of agent groups are
+    * estimated by tasks submitted to the executor, while
+    * the calling thread estimates the parameters of the
+    * arrival processes, in the order they appear in
+    * \texttt{ccParams}, since these estimations
+    * share some static state and can
+    * update the busyness factor.
+    * Each task only modifies its own parameter object, so
+    * the resulting parameters are the same as with a
+    * sequential estimation.
+    * If \texttt{executor} is \texttt{null},
+    * a temporary thread pool with one thread per
+    * available processor is created and shut down
+    * before this method returns.
+    * The time spent on each estimation task is logged
+    * at level {@link Level#FINE}.
+    * Returns \texttt{true} if at least one
+    * parameter has been estimated by this
+    * method.
+    * @param ccParams the call center parameters.
+    * @param executor the executor service used to
+    * run estimation tasks.
+    * @return true if method was successfull.
+    * @throws DistributionCreationException if an error
+    * occurs during the creation of a distribution.
+    * @exception IllegalStateException if the calling thread is interrupted
+    * while waiting for the estimation tasks.
+    */
+   public static boolean estimateParameters (CallCenterParams ccParams,
+         ExecutorService executor) throws DistributionCreationException {
       boolean res = false;
       String name;
       ArrivalProcessParams defArr, arr;
@@ -91,61 +147,181 @@ public class ParameterEstimator {
       final double periodDurationMillis = ccParams.getPeriodDuration ().getTimeInMillis (new Date());
       final TimeUnit defaultUnit = TimeUnit.valueOf (ccParams.getDefaultUnit ().name ()); 
       final double periodDuration = TimeUnit.convert (periodDurationMillis, TimeUnit.MILLISECOND, defaultUnit);
-      res |= ParamReadHelper.estimateParameters (ccParams.getBusynessGen ());
+
+      final List<EstimationTask> tasks = new ArrayList<EstimationTask> ();
+      tasks.add (new BusynessEstimationTask ("busyness factor", ccParams.getBusynessGen ()));
+      int k = 0;
       for (final InboundTypeParams par : ccParams.getInboundTypes ()) {
-         res |= CCParamReadHelper.estimateParameters (par.getPatienceTime ());
-         for (final ServiceTimeParams sp : par.getServiceTimes ())
-            res |= CCParamReadHelper.estimateParameters (sp);
-         if (par.isSetArrivalProcess()) {
-         	arr = par.getArrivalProcess();
-            name = arr.getType();
-            if (null == name)
-            	setParamsFromDefault(arr, defArr);
-            	
-            ArrivalProcessManager.s_bgenParams = null;
-            res |= ArrivalProcessManager.estimateParameters (ccParams,
-            		arr, numPeriods, periodDuration);
-            if (ArrivalProcessManager.s_bgenParams != null) {
-            	/*   if (ccParams.isSetBusynessGen ())
-            	    throw new IllegalArgumentException
-                  ("The busyness factor must be specified or estimated only once");*/
-               ccParams.setBusynessGen (ArrivalProcessManager.s_bgenParams);
-            }
-            arr.setData (null);
-            arr.unsetEstimateBusyness ();
-        }
+         addTasks (tasks, "inbound type " + k, par.getPatienceTime (), par.getServiceTimes ());
+         ++k;
       }
+      k = 0;
       for (final OutboundTypeParams par : ccParams.getOutboundTypes ()) {
-         res |= CCParamReadHelper.estimateParameters (par.getPatienceTime ());
-         for (final ServiceTimeParams sp : par.getServiceTimes ())
-            res |= CCParamReadHelper.estimateParameters (sp);
-         res |= CCParamReadHelper.estimateParameters (par.getReachTime ());
-         res |= CCParamReadHelper.estimateParameters (par.getFailTime ());
+         final String prefix = "outbound type " + k;
+         addTasks (tasks, prefix, par.getPatienceTime (), par.getServiceTimes ());
+         tasks.add (new GenEstimationTask (prefix + ", reach time", par.getReachTime ()));
+         tasks.add (new GenEstimationTask (prefix + ", failure time", par.getFailTime ()));
+         ++k;
       }
+      int i = 0;
       for (final AgentGroupParams par : ccParams.getAgentGroups ())
-         res |= AgentGroupManager.estimateParameters (par); 
-      for (final ArrivalProcessParams par : ccParams.getArrivalProcesses ()) {
-         name = par.getType();
-         if (null == name)
-         	setParamsFromDefault(par, defArr);
-         ArrivalProcessManager.s_bgenParams = null;
-         res |= ArrivalProcessManager.estimateParameters (ccParams, par, 
-         		numPeriods, periodDuration);
-         if (ArrivalProcessManager.s_bgenParams != null) {
-          /*  if (ccParams.isSetBusynessGen ())
-               throw new IllegalArgumentException
-               ("The busyness factor must be specified or estimated only once");*/
-            ccParams.setBusynessGen (ArrivalProcessManager.s_bgenParams);
+         tasks.add (new AgentGroupEstimationTask ("agent group " + i++, par));
+
+      final ExecutorService exec = executor == null ? Executors
+            .newFixedThreadPool (Runtime.getRuntime ().availableProcessors ()) : executor;
+      final List<Future<Boolean>> futures = new ArrayList<Future<Boolean>> (tasks.size ());
+      try {
+         for (final EstimationTask task : tasks)
+            futures.add (exec.submit (task));
+
+         k = 0;
+         for (final InboundTypeParams par : ccParams.getInboundTypes ()) {
+            if (par.isSetArrivalProcess()) {
+            	arr = par.getArrivalProcess();
+               name = arr.getType();
+               if (null == name)
+               	setParamsFromDefault(arr, defArr);
+               res |= estimateArrivalProcess (ccParams, arr, numPeriods,
+                     periodDuration, "inbound type " + k + ", arrival process");
+            }
+            ++k;
+         }
+         int p = 0;
+         for (final ArrivalProcessParams par : ccParams.getArrivalProcesses ()) {
+            name = par.getType();
+            if (null == name)
+            	setParamsFromDefault(par, defArr);
+            res |= estimateArrivalProcess (ccParams, par, numPeriods,
+                  periodDuration, "arrival process " + p++);
          }
-         
-         par.unsetEstimateBusyness ();
-         par.setData (null);
+         ArrivalProcessManager.s_bgenParams = null;
+         if (defArr != null)
+            defArr.unsetEstimateBusyness ();
+
+         for (final Future<Boolean> f : futures)
+            res |= f.get ();
+      }
+      catch (final InterruptedException ie) {
+         Thread.currentThread ().interrupt ();
+         throw new IllegalStateException ("Interrupted while waiting for parameter estimation", ie);
+      }
+      catch (final ExecutionException ee) {
+         final Throwable cause = ee.getCause ();
+         if (cause instanceof DistributionCreationException)
+            throw (DistributionCreationException)cause;
+         if (cause instanceof RuntimeException)
+            throw (RuntimeException)cause;
+         if (cause instanceof Error)
+            throw (Error)cause;
+         throw new IllegalStateException (cause);
+      }
+      finally {
+         for (final Future<Boolean> f : futures)
+            f.cancel (true);
+         if (exec != executor)
+            exec.shutdown ();
       }
+      return res;
+   }
+
+   private static void addTasks (List<EstimationTask> tasks, String prefix,
+         MultiPeriodGenParams patienceTime, List<ServiceTimeParams> serviceTimes) {
+      tasks.add (new GenEstimationTask (prefix + ", patience time", patienceTime));
+      int s = 0;
+      for (final ServiceTimeParams sp : serviceTimes)
+         tasks.add (new GenEstimationTask (prefix + ", service time " + s++, sp));
+   }
+
+   private static boolean estimateArrivalProcess (CallCenterParams ccParams,
+         ArrivalProcessParams arr, int numPeriods, double periodDuration,
+         String taskName) {
+      final long start = System.nanoTime ();
       ArrivalProcessManager.s_bgenParams = null;
-      if (defArr != null)
-         defArr.unsetEstimateBusyness ();
+      final boolean res = ArrivalProcessManager.estimateParameters (ccParams,
+            arr, numPeriods, periodDuration);
+      if (ArrivalProcessManager.s_bgenParams != null) {
+         /*   if (ccParams.isSetBusynessGen ())
+          throw new IllegalArgumentException
+          ("The busyness factor must be specified or estimated only once");*/
+         ccParams.setBusynessGen (ArrivalProcessManager.s_bgenParams);
+      }
+      arr.setData (null);
+      arr.unsetEstimateBusyness ();
+      logTime (taskName, start, res);
       return res;
    }
+
+   private static void logTime (String taskName, long start, boolean estimated) {
+      if (!logger.isLoggable (Level.FINE))
+         return;
+      final double ms = (System.nanoTime () - start) / 1.0e6;
+      logger.fine ("Parameter estimation for " + taskName + ": "
+            + (estimated ? "estimated" : "unchanged") + ", "
+            + String.format ("%.3f", ms) + " ms");
+   }
+
+   /**
+    * Represents a task estimating the parameters of a single
+    * object, and logging the time spent on the estimation.
+    */
+   private static abstract class EstimationTask implements Callable<Boolean> {
+      private final String taskName;
+
+      public EstimationTask (String taskName) {
+         this.taskName = taskName;
+      }
+
+      protected abstract boolean estimate () throws DistributionCreationException;
+
+      public Boolean call () throws DistributionCreationException {
+         final long start = System.nanoTime ();
+         final boolean res = estimate ();
+         logTime (taskName, start, res);
+         return res;
+      }
+   }
+
+   private static final class GenEstimationTask extends EstimationTask {
+      private final MultiPeriodGenParams par;
+
+      public GenEstimationTask (String taskName, MultiPeriodGenParams par) {
+         super (taskName);
+         this.par = par;
+      }
+
+      @Override
+      protected boolean estimate () throws DistributionCreationException {
+         return CCParamReadHelper.estimateParameters (par);
+      }
+   }
+
+   private static final class BusynessEstimationTask extends EstimationTask {
+      private final RandomVariateGenParams par;
+
+      public BusynessEstimationTask (String taskName, RandomVariateGenParams par) {
+         super (taskName);
+         this.par = par;
+      }
+
+      @Override
+      protected boolean estimate () throws DistributionCreationException {
+         return ParamReadHelper.estimateParameters (par);
+      }
+   }
+
+   private static final class AgentGroupEstimationTask extends EstimationTask {
+      private final AgentGroupParams par;
+
+      public AgentGroupEstimationTask (String taskName, AgentGroupParams par) {
+         super (taskName);
+         this.par = par;
+      }
+
+      @Override
+      protected boolean estimate () throws DistributionCreationException {
+         return AgentGroupManager.estimateParameters (par);
+      }
+   }
    
    /**
     * Main method of this class taking, as arguments, the names of the input and
@@ -0,0 +1,355 @@
+package umontreal.iro.lecuyer.contactcenters.msk;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import umontreal.iro.lecuyer.contactcenters.msk.model.CallCenter;
+import umontreal.iro.lecuyer.contactcenters.msk.simlogic.SimLogic;
+import umontreal.iro.lecuyer.contactcenters.msk.simlogic.SimLogicListener;
+import umontreal.iro.lecuyer.contactcenters.queue.DequeueEvent;
+import umontreal.iro.lecuyer.contactcenters.queue.WaitingQueue;
+import umontreal.iro.lecuyer.contactcenters.queue.WaitingQueueListener;
+import umontreal.iro.lecuyer.contactcenters.router.Router;
+import umontreal.ssj.simevents.ProfilingSimulator;
+import umontreal.ssj.simevents.ProfilingSimulator.EventCounter;
+import umontreal.ssj.simevents.Simulator;
+
+/**
+ * Collects profiling information about a simulation
+ * of a call center.
+ * A profiler counts the events executed by the simulator,
+ * and the time spent in each class of event, if the
+ * simulator of the model is an instance of
+ * {@link ProfilingSimulator}.
+ * It also enables profiling in the router of the model
+ * (see {@link Router#setProfiling(boolean)}), records the maximal
+ * size of each waiting queue, counts the completed simulation steps,
+ * and estimates the number of bytes allocated during evaluations when the
+ * virtual machine supports it.
+ *
+ * The profiler is enabled by the \texttt{enableProfiling}
+ * attribute of the simulation parameters.
+ * When profiling is disabled, no profiler is
+ * created and the simulator does not time events,
+ * so there is no overhead.
+ * The collected information is added to the
+ * simulation report by {@link #formatReport(Map)}, and
+ * can be queried during the simulation through the
+ * {@link SimProfilerMBean} management interface,
+ * after {@link #registerMBean()} is called.
+ */
+public class SimProfiler implements SimProfilerMBean, SimLogicListener {
+   private final Logger logger = Logger
+         .getLogger ("umontreal.iro.lecuyer.contactcenters.msk.sim");
+   private final CallCenter cc;
+   private final QueueSizeListener ql = new QueueSizeListener ();
+   private final int[] maxQueueSizes;
+   private volatile long numSteps;
+   private volatile long elapsedTime;
+   private volatile long startTime = -1;
+   private volatile long threadId = -1;
+   private volatile long allocStart;
+   private volatile long allocBytes;
+   private ObjectName name;
+
+   /**
+    * Constructs a new profiler for the model \texttt{cc}.
+    * @param cc the profiled model.
+    */
+   public SimProfiler (CallCenter cc) {
+      this.cc = cc;
+      maxQueueSizes = new int[cc.getNumWaitingQueues ()];
+   }
+
+   /**
+    * Returns the model associated with this profiler.
+    * @return the profiled model.
+    */
+   public CallCenter getCallCenter () {
+      return cc;
+   }
+
+   /**
+    * Registers the listeners required by this profiler
+    * with the waiting queues of the model, and enables
+    * profiling in the router.
+    */
+   public void register () {
+      for (final WaitingQueue queue : cc.getWaitingQueues ())
+         queue.addWaitingQueueListener (ql);
+      cc.getRouter ().setProfiling (true);
+   }
+
+   /**
+    * Disconnects the listeners registered by {@link #register()},
+    * and disables profiling in the router.
+    */
+   public void unregister () {
+      for (final WaitingQueue queue : cc.getWaitingQueues ())
+         queue.removeWaitingQueueListener (ql);
+      cc.getRouter ().setProfiling (false);
+   }
+
+   /**
+    * Registers this profiler with the platform MBean server,
+    * which makes the profiling information available
+    * to JMX clients.
+    * If the registration fails, a warning is logged.
+    */
+   public void registerMBean () {
+      if (name != null)
+         return;
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer ();
+      try {
+         name = new ObjectName ("umontreal.iro.lecuyer.contactcenters:type=SimProfiler,id="
+               + System.identityHashCode (this));
+         server.registerMBean (this, name);
+      }
+      catch (final JMException je) {
+         logger.log (Level.WARNING, "Could not register the simulation profiler", je);
+         name = null;
+      }
+   }
+
+   /**
+    * Unregisters this profiler from the platform MBean server.
+    */
+   public void unregisterMBean () {
+      if (name == null)
+         return;
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer ();
+      try {
+         server.unregisterMBean (name);
+      }
+      catch (final JMException je) {
+         logger.log (Level.WARNING, "Could not unregister the simulation profiler", je);
+      }
+      name = null;
+   }
+
+   /**
+    * Indicates that an evaluation starts.
+    * This method must be called by the thread performing
+    * the simulation.
+    */
+   public void start () {
+      if (startTime >= 0)
+         return;
+      threadId = Thread.currentThread ().getId ();
+      allocStart = getThreadAllocatedBytes (threadId);
+      startTime = System.nanoTime ();
+   }
+
+   /**
+    * Indicates that the current evaluation is finished.
+    */
+   public void stop () {
+      if (startTime < 0)
+         return;
+      elapsedTime += System.nanoTime () - startTime;
+      startTime = -1;
+      if (allocStart >= 0) {
+         final long alloc = getThreadAllocatedBytes (threadId);
+         if (alloc >= 0)
+            allocBytes += alloc - allocStart;
+      }
+   }
+
+   public void stepDone (SimLogic sim) {
+      ++numSteps;
+   }
+
+   public void resetCounters () {
+      final Simulator sim = cc.simulator ();
+      if (sim instanceof ProfilingSimulator)
+         ((ProfilingSimulator) sim).resetCounters ();
+      cc.getRouter ().resetProfilingCounters ();
+      Arrays.fill (maxQueueSizes, 0);
+      numSteps = 0;
+      elapsedTime = 0;
+      allocBytes = 0;
+      if (startTime >= 0) {
+         startTime = System.nanoTime ();
+         allocStart = getThreadAllocatedBytes (threadId);
+      }
+   }
+
+   private static long getThreadAllocatedBytes (long id) {
+      final ThreadMXBean bean = ManagementFactory.getThreadMXBean ();
+      if (!(bean instanceof com.sun.management.ThreadMXBean))
+         return -1;
+      final com.sun.management.ThreadMXBean sbean = (com.sun.management.ThreadMXBean) bean;
+      if (!sbean.isThreadAllocatedMemorySupported ()
+            || !sbean.isThreadAllocatedMemoryEnabled ())
+         return -1;
+      return sbean.getThreadAllocatedBytes (id);
+   }
+
+   private List<EventCounter> getSortedEventCounters () {
+      final Simulator sim = cc.simulator ();
+      if (!(sim instanceof ProfilingSimulator))
+         return Collections.emptyList ();
+      final List<EventCounter> counters = ((ProfilingSimulator) sim)
+            .getEventCounters ();
+      Collections.sort (counters, new Comparator<EventCounter> () {
+         public int compare (EventCounter c1, EventCounter c2) {
+            return c1.getEventClass ().getName ().compareTo (
+                  c2.getEventClass ().getName ());
+         }
+      });
+      return counters;
+   }
+
+   public long getNumEvents () {
+      final Simulator sim = cc.simulator ();
+      if (!(sim instanceof ProfilingSimulator))
+         return 0;
+      return ((ProfilingSimulator) sim).getNumEvents ();
+   }
+
+   public double getEventsPerSecond () {
+      final double t = getElapsedTime ();
+      return t > 0 ? getNumEvents () / t : 0;
+   }
+
+   public String[] getEventTypes () {
+      final List<EventCounter> counters = getSortedEventCounters ();
+      final String[] res = new String[counters.size ()];
+      for (int i = 0; i < res.length; i++)
+         res[i] = counters.get (i).getEventClass ().getName ();
+      return res;
+   }
+
+   public long[] getEventCounts () {
+      final List<EventCounter> counters = getSortedEventCounters ();
+      final long[] res = new long[counters.size ()];
+      for (int i = 0; i < res.length; i++)
+         res[i] = counters.get (i).getCount ();
+      return res;
+   }
+
+   public double[] getEventTimes () {
+      final List<EventCounter> counters = getSortedEventCounters ();
+      final double[] res = new double[counters.size ()];
+      for (int i = 0; i < res.length; i++)
+         res[i] = counters.get (i).getTime () / 1e9;
+      return res;
+   }
+
+   public long getNumSteps () {
+      return numSteps;
+   }
+
+   public double getStepsPerSecond () {
+      final double t = getElapsedTime ();
+      return t > 0 ? numSteps / t : 0;
+   }
+
+   public double getElapsedTime () {
+      long t = elapsedTime;
+      final long st = startTime;
+      if (st >= 0)
+         t += System.nanoTime () - st;
+      return t / 1e9;
+   }
+
+   public long getNumAgentSelections () {
+      return cc.getRouter ().getNumAgentSelections ();
+   }
+
+   public double getMeanAgentSelectionCandidates () {
+      final Router router = cc.getRouter ();
+      final long n = router.getNumAgentSelections ();
+      return n > 0 ? (double) router.getNumAgentSelectionCandidates () / n : 0;
+   }
+
+   public long getNumContactSelections () {
+      return cc.getRouter ().getNumContactSelections ();
+   }
+
+   public double getMeanContactSelectionCandidates () {
+      final Router router = cc.getRouter ();
+      final long n = router.getNumContactSelections ();
+      return n > 0 ? (double) router.getNumContactSelectionCandidates () / n : 0;
+   }
+
+   public int[] getMaxQueueSizes () {
+      return maxQueueSizes.clone ();
+   }
+
+   public long getAllocatedBytes () {
+      if (allocStart < 0)
+         return -1;
+      long b = allocBytes;
+      if (startTime >= 0) {
+         final long alloc = getThreadAllocatedBytes (threadId);
+         if (alloc >= 0)
+            b += alloc - allocStart;
+      }
+      return b;
+   }
+
+   /**
+    * Adds the information collected by this profiler
+    * into the evaluation information map \texttt{evalInfo}.
+    * The event classes are listed in decreasing order
+    * of cumulative execution time.
+    * @param evalInfo the evaluation information map.
+    */
+   public void formatReport (Map<String, Object> evalInfo) {
+      final List<EventCounter> counters = getSortedEventCounters ();
+      if (!counters.isEmpty ()) {
+         evalInfo.put (Messages.getString ("SimProfiler.NumEvents"), getNumEvents ());
+         evalInfo.put (Messages.getString ("SimProfiler.EventsPerSecond"),
+               String.format ("%.1f", getEventsPerSecond ()));
+         Collections.sort (counters, new Comparator<EventCounter> () {
+            public int compare (EventCounter c1, EventCounter c2) {
+               return c1.getTime () > c2.getTime () ? -1
+                     : c1.getTime () < c2.getTime () ? 1 : 0;
+            }
+         });
+         for (final EventCounter c : counters)
+            evalInfo.put (Messages.getString ("SimProfiler.EventType") + " "
+                  + c.getEventClass ().getName (),
+                  String.format ("%d (%.3f s)", c.getCount (), c.getTime () / 1e9));
+      }
+      evalInfo.put (Messages.getString ("SimProfiler.StepsPerSecond"),
+            String.format ("%.3f", getStepsPerSecond ()));
+      evalInfo.put (Messages.getString ("SimProfiler.AgentSelections"),
+            String.format ("%d (%.2f)", getNumAgentSelections (),
+                  getMeanAgentSelectionCandidates ()));
+      evalInfo.put (Messages.getString ("SimProfiler.ContactSelections"),
+            String.format ("%d (%.2f)", getNumContactSelections (),
+                  getMeanContactSelectionCandidates ()));
+      evalInfo.put (Messages.getString ("SimProfiler.MaxQueueSizes"),
+            Arrays.toString (maxQueueSizes));
+      final long alloc = getAllocatedBytes ();
+      if (alloc >= 0)
+         evalInfo.put (Messages.getString ("SimProfiler.AllocatedBytes"), alloc);
+   }
+
+   private final class QueueSizeListener implements WaitingQueueListener {
+      public void enqueued (DequeueEvent ev) {
+         final WaitingQueue queue = ev.getWaitingQueue ();
+         final int q = queue.getId ();
+         final int size = queue.size ();
+         if (q >= 0 && q < maxQueueSizes.length && size > maxQueueSizes[q])
+            maxQueueSizes[q] = size;
+      }
+
+      public void dequeued (DequeueEvent ev) {}
+
+      public void init (WaitingQueue queue) {}
+   }
+}
@@ -0,0 +1,113 @@
+package umontreal.iro.lecuyer.contactcenters.msk;
+
+/**
+ * Management interface of the simulation profiler, used
+ * to expose profiling information through JMX.
+ * See {@link SimProfiler} for more information about
+ * the collected values.
+ */
+public interface SimProfilerMBean {
+   /**
+    * Returns the total number of events executed by the simulator.
+    * @return the number of executed events.
+    */
+   public long getNumEvents ();
+
+   /**
+    * Returns the number of executed events per second of elapsed time.
+    * @return the event rate.
+    */
+   public double getEventsPerSecond ();
+
+   /**
+    * Returns the names of the classes of executed events.
+    * The arrays returned by {@link #getEventCounts()} and
+    * {@link #getEventTimes()} are in the same order
+    * as this array.
+    * @return the names of the classes of events.
+    */
+   public String[] getEventTypes ();
+
+   /**
+    * Returns the number of executed events, for each
+    * class of event.
+    * @return the number of events for each class.
+    */
+   public long[] getEventCounts ();
+
+   /**
+    * Returns the cumulative time, in seconds,
+    * spent executing events, for each class of event.
+    * @return the execution time for each class.
+    */
+   public double[] getEventTimes ();
+
+   /**
+    * Returns the number of completed simulation steps, i.e.,
+    * replications or batches.
+    * @return the number of completed steps.
+    */
+   public long getNumSteps ();
+
+   /**
+    * Returns the number of completed simulation steps per second
+    * of elapsed time.
+    * @return the step rate.
+    */
+   public double getStepsPerSecond ();
+
+   /**
+    * Returns the elapsed time, in seconds, spent
+    * in evaluations since the profiler was reset.
+    * @return the elapsed time.
+    */
+   public double getElapsedTime ();
+
+   /**
+    * Returns the number of agent selections performed by the router
+    * for new contacts.
+    * @return the number of agent selections.
+    */
+   public long getNumAgentSelections ();
+
+   /**
+    * Returns the mean number of candidate agent groups per
+    * agent selection.
+    * @return the mean number of candidate agent groups.
+    */
+   public double getMeanAgentSelectionCandidates ();
+
+   /**
+    * Returns the number of contact selections performed by the router
+    * for free agents.
+    * @return the number of contact selections.
+    */
+   public long getNumContactSelections ();
+
+   /**
+    * Returns the mean number of candidate queued contacts per
+    * contact selection.
+    * @return the mean number of candidate contacts.
+    */
+   public double getMeanContactSelectionCandidates ();
+
+   /**
+    * Returns the maximal size observed for each waiting queue.
+    * @return the maximal queue sizes.
+    */
+   public int[] getMaxQueueSizes ();
+
+   /**
+    * Returns an estimate of the number of bytes allocated by
+    * the simulation thread during evaluations,
+    * or -1 if this information is not
+    * available in the virtual machine.
+    * @return the number of allocated bytes.
+    */
+   public long getAllocatedBytes ();
+
+   /**
+    * Resets every counter of the profiler.
+    */
+   public void resetCounters ();
+}
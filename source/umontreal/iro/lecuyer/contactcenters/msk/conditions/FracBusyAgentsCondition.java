@@ -42,9 +42,9 @@ public class FracBusyAgentsCondition extends TwoIndicesInfo implements Condition
    
    public boolean applies (Contact contact) {
       final AgentGroup grp1 = cc.getAgentGroup (getFirstIndex ());
-      final double f1 = grp1.getNumBusyAgents () / (grp1.getNumAgents () + grp1.getNumGhostAgents ());
+      final double f1 = grp1.getNumBusyAgents () / (double) (grp1.getNumAgents () + grp1.getNumGhostAgents ());
       final AgentGroup grp2 = cc.getAgentGroup (getSecondIndex ());
-      final double f2 = grp2.getNumBusyAgents () / (grp2.getNumAgents () + grp2.getNumGhostAgents ());
+      final double f2 = grp2.getNumBusyAgents () / (double) (grp2.getNumAgents () + grp2.getNumGhostAgents ());
       return ConditionUtil.applies (f1, f2, getRelationship ());
    }
 }
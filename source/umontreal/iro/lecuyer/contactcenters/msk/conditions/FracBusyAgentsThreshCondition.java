@@ -47,7 +47,7 @@ public class FracBusyAgentsThreshCondition extends IndexThreshInfo implements Co
    
    public boolean applies (Contact contact) {
       final AgentGroup grp = cc.getAgentGroup (getIndex ());
-      final double f = grp.getNumBusyAgents () / (grp.getNumAgents () + grp.getNumGhostAgents ());
+      final double f = grp.getNumBusyAgents () / (double) (grp.getNumAgents () + grp.getNumGhostAgents ());
       return ConditionUtil.applies (f, getThreshold (), getRelationship ());
    }
 }
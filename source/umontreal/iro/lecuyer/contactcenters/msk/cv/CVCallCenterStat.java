@@ -6,17 +6,24 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 
+import cern.colt.list.DoubleArrayList;
 import cern.colt.matrix.DoubleMatrix2D;
 import cern.colt.matrix.impl.DenseDoubleMatrix2D;
 
 import umontreal.iro.lecuyer.contactcenters.app.EstimationType;
 import umontreal.iro.lecuyer.contactcenters.app.PerformanceMeasureType;
 import umontreal.iro.lecuyer.contactcenters.msk.simlogic.SimLogic;
+import umontreal.iro.lecuyer.contactcenters.msk.simlogic.SimLogicListener;
+import umontreal.iro.lecuyer.contactcenters.msk.stat.CallCenterMeasureManager;
 import umontreal.iro.lecuyer.contactcenters.msk.stat.CallCenterStatProbes;
+import umontreal.iro.lecuyer.contactcenters.msk.stat.SpillTallyStore;
 
 import umontreal.iro.lecuyer.collections.DenseMatrix;
 import umontreal.iro.lecuyer.collections.Matrix;
 import umontreal.ssj.stat.FunctionOfMultipleMeansTally;
+import umontreal.ssj.stat.ObservationListener;
+import umontreal.ssj.stat.StatProbe;
+import umontreal.ssj.stat.Tally;
 import umontreal.ssj.stat.TallyStore;
 import umontreal.ssj.stat.list.lincv.FunctionOfMultipleMeansTallyWithCV;
 import umontreal.ssj.stat.list.lincv.ListOfTalliesWithCV;
@@ -33,6 +40,25 @@ import umontreal.ssj.stat.matrix.MatrixOfTallies;
  * observations are added to the encapsulated probes. This way, control
  * variables are applied after the simulation is finished and do not require
  * modifying the simulator.
+ *
+ * By default, this requires the inner probes to store
+ * their observations, i.e., to be instances of {@link TallyStore}.
+ * In incremental mode, the controlled estimators are rather updated
+ * each time a step of the simulation is done, using every observation
+ * added to the inner probes since the last update.
+ * The inner probes then do not need to store observations,
+ * and the controlled estimators maintain sums and cross-products
+ * of the responses and control variables only,
+ * so $\boldbeta$ is estimated from the sample covariances when
+ * {@link #applyControlVariables()} is called.
+ * The incremental mode requires every control variable to implement
+ * {@link IncrementalControlVariable}, and
+ * every inner probe to receive the same number of observations.
+ * If the inner probes are reset and receive new observations,
+ * e.g., when batches are aggregated, the controlled estimators are
+ * reset and updated with the new observations.
+ * Listeners must be registered by
+ * {@link #register()} before the simulation starts.
  */
 public class CVCallCenterStat implements CallCenterStatProbes {
    private SimLogic sim;
@@ -46,6 +72,13 @@ public class CVCallCenterStat implements CallCenterStatProbes {
    private final Map<PerformanceMeasureType, DoubleMatrix2D[][]> betaMapFmm = new EnumMap<PerformanceMeasureType, DoubleMatrix2D[][]> (
          PerformanceMeasureType.class);
    private PerformanceMeasureType[] pms;
+   private final boolean incremental;
+   private final Map<PerformanceMeasureType, DoubleArrayList[][]> newObsMap = new EnumMap<PerformanceMeasureType, DoubleArrayList[][]> (
+         PerformanceMeasureType.class);
+   private final List<NewObsListener> newObsListeners = new ArrayList<NewObsListener> ();
+   private final StepListener stepListener = new StepListener ();
+   private int numProcessedObs;
+   private int newObsOffset;
 
    /**
     * Constructs a new CV call center statistical object using the simulation
@@ -66,11 +99,55 @@ public class CVCallCenterStat implements CallCenterStatProbes {
     */
    public CVCallCenterStat (SimLogic sim, CallCenterStatProbes inStat,
          boolean fmm, ControlVariable... cvs) {
+      this (sim, inStat, fmm, false, cvs);
+   }
+
+   /**
+    * Similar to {@link #CVCallCenterStat(SimLogic,CallCenterStatProbes,boolean,ControlVariable...)},
+    * with the incremental mode enabled if \texttt{incremental} is
+    * \texttt{true}.
+    *
+    * @param sim
+    *           the simulation logic.
+    * @param inStat
+    *           the call center statistics.
+    * @param fmm
+    *           if control variables are applied on functions of multiple
+    *           averages.
+    * @param incremental
+    *           determines if the incremental mode is used.
+    * @param cvs
+    *           the array of control variables to apply.
+    * @exception IllegalArgumentException if \texttt{incremental} is
+    *            \texttt{true} but at least one control variable does
+    *            not implement {@link IncrementalControlVariable}.
+    */
+   public CVCallCenterStat (SimLogic sim, CallCenterStatProbes inStat,
+         boolean fmm, boolean incremental, ControlVariable... cvs) {
       if (sim == null || inStat == null || cvs == null)
          throw new NullPointerException ();
       this.sim = sim;
       this.inStat = inStat;
       this.cvs = cvs;
+      this.incremental = incremental;
+      if (incremental) {
+         for (final ControlVariable cv : cvs)
+            if (!(cv instanceof IncrementalControlVariable))
+               throw new IllegalArgumentException
+               ("Control variable " + cv.getClass ().getName () + " does not support the incremental mode");
+         for (final PerformanceMeasureType pm : inStat.getPerformanceMeasures ()) {
+            // Tallies of quantiles skip the replications without observation
+            if (pm.getEstimationType () != EstimationType.EXPECTATION
+                  || CallCenterMeasureManager.isQuantile (pm))
+               continue;
+            final MatrixOfTallies<?> mta = inStat.getMatrixOfTallies (pm);
+            final DoubleArrayList[][] newObs = new DoubleArrayList[mta.rows ()][mta.columns ()];
+            for (final DoubleArrayList[] row : newObs)
+               for (int c = 0; c < row.length; c++)
+                  row[c] = new DoubleArrayList (1);
+            newObsMap.put (pm, newObs);
+         }
+      }
       for (final PerformanceMeasureType pm : inStat.getPerformanceMeasures ()) {
          boolean useCv = false;
          for (int j = 0; j < cvs.length && !useCv; j++)
@@ -130,6 +207,50 @@ public class CVCallCenterStat implements CallCenterStatProbes {
       return cvs.clone();
    }
 
+   /**
+    * Determines if this object uses the incremental mode.
+    * @return the status of the incremental mode.
+    */
+   public boolean isIncremental () {
+      return incremental;
+   }
+
+   /**
+    * Registers the listeners required by the incremental mode
+    * with the inner probes and the simulation logic.
+    * This method does nothing if the incremental mode is disabled.
+    */
+   public void register () {
+      if (!incremental || !newObsListeners.isEmpty ())
+         return;
+      for (final Map.Entry<PerformanceMeasureType, DoubleArrayList[][]> e : newObsMap.entrySet ()) {
+         final MatrixOfTallies<?> mta = inStat.getMatrixOfTallies (e.getKey ());
+         final DoubleArrayList[][] newObs = e.getValue ();
+         for (int r = 0; r < newObs.length; r++)
+            for (int c = 0; c < newObs[r].length; c++) {
+               newObs[r][c].clear ();
+               final NewObsListener l = new NewObsListener (mta.get (r, c), newObs[r][c]);
+               l.tally.setBroadcasting (true);
+               l.tally.addObservationListener (l);
+               newObsListeners.add (l);
+            }
+      }
+      sim.addSimLogicListener (stepListener);
+      numProcessedObs = getNumInObs ();
+   }
+
+   /**
+    * Disconnects the listeners registered by {@link #register()}.
+    */
+   public void unregister () {
+      for (final NewObsListener l : newObsListeners) {
+         l.tally.removeObservationListener (l);
+         l.newObs.clear ();
+      }
+      newObsListeners.clear ();
+      sim.removeSimLogicListener (stepListener);
+   }
+
    public void init () {
       for (final Matrix<ListOfTalliesWithCV<?>> m : outTallyMap.values ())
          for (final ListOfTalliesWithCV<?> l : m)
@@ -139,6 +260,7 @@ public class CVCallCenterStat implements CallCenterStatProbes {
             .values ())
          m.init ();
       betaMapFmm.clear ();
+      numProcessedObs = 0;
    }
 
    public PerformanceMeasureType[] getPerformanceMeasures () {
@@ -517,6 +639,10 @@ public class CVCallCenterStat implements CallCenterStatProbes {
     * \texttt{(null)}.
     */
    public void applyControlVariables () {
+      if (incremental) {
+         estimateBetasIncremental (null);
+         return;
+      }
       for (final PerformanceMeasureType pm : inStat.getPerformanceMeasures ())
          if (pm.getEstimationType () == EstimationType.FUNCTIONOFEXPECTATIONS)
             applyControlVariables (pm, inStat
@@ -534,8 +660,17 @@ public class CVCallCenterStat implements CallCenterStatProbes {
     * 
     * @param cvBeta
     *           the beta function calculator, or \texttt{null}.
+    * @exception UnsupportedOperationException if \texttt{cvBeta}
+    * is non-\texttt{null} while the incremental mode is used.
     */
    public void applyControlVariables (CVBetaFunction cvBeta) {
+      if (incremental) {
+         if (cvBeta != null)
+            throw new UnsupportedOperationException
+            ("Beta functions cannot be used in incremental mode");
+         estimateBetasIncremental (null);
+         return;
+      }
       for (final PerformanceMeasureType pm : inStat.getPerformanceMeasures ())
          if (pm.getEstimationType () == EstimationType.FUNCTIONOFEXPECTATIONS)
             applyControlVariables (pm, inStat
@@ -547,6 +682,10 @@ public class CVCallCenterStat implements CallCenterStatProbes {
 
    public void applyControlVariables (
          Map<PerformanceMeasureType, double[][][]> betas) {
+      if (incremental) {
+         estimateBetasIncremental (betas);
+         return;
+      }
       for (final PerformanceMeasureType pm : inStat.getPerformanceMeasures ())
          if (pm.getEstimationType () == EstimationType.FUNCTIONOFEXPECTATIONS)
             applyControlVariables (pm, inStat
@@ -582,66 +721,37 @@ public class CVCallCenterStat implements CallCenterStatProbes {
       }
    }
 
+   private double getInObs (PerformanceMeasureType pm, int row, int col, int obs) {
+      if (incremental)
+         return newObsMap.get (pm)[row][col].getQuick (obs + newObsOffset);
+      final MatrixOfTallies<TallyStore> inTarget = inStat.getMatrixOfTallyStores (pm);
+      return SpillTallyStore.getObs (inTarget.get (row, col), obs);
+   }
+
    private double getFmmElement (PerformanceMeasureType pm, int row, int col,
          int index, int obs) {
-      MatrixOfTallies<TallyStore> inTarget;
-      TallyStore inTargetTally;
-      double a;
       switch (index) {
       case NUMERATOR:
          switch (pm) {
          case SERVICELEVEL:
-            inTarget = inStat
-                  .getMatrixOfTallyStores (PerformanceMeasureType.RATEOFSERVICESBEFOREAWT);
-            inTargetTally = inTarget.get (row, col);
-            return inTargetTally.getArray ()[obs];
+            return getInObs (PerformanceMeasureType.RATEOFSERVICESBEFOREAWT, row, col, obs);
          case SERVICELEVEL2:
-            inTarget = inStat
-                  .getMatrixOfTallyStores (PerformanceMeasureType.RATEOFSERVICESBEFOREAWT);
-            inTargetTally = inTarget.get (row, col);
-            final MatrixOfTallies<TallyStore> inAbandonedBeforeAwt = inStat
-                  .getMatrixOfTallyStores (PerformanceMeasureType.RATEOFABANDONMENTBEFOREAWT);
-            final TallyStore inAbandonedBeforeAwtTally = inAbandonedBeforeAwt
-                  .get (row, col);
-            return inTargetTally.getArray ()[obs]
-                  + inAbandonedBeforeAwtTally.getArray ()[obs];
+            return getInObs (PerformanceMeasureType.RATEOFSERVICESBEFOREAWT, row, col, obs)
+                  + getInObs (PerformanceMeasureType.RATEOFABANDONMENTBEFOREAWT, row, col, obs);
          case WAITINGTIME:
          case WAITINGTIMEWAIT:
-            final MatrixOfTallies<TallyStore> inSumWaitingTime = inStat
-                  .getMatrixOfTallyStores (PerformanceMeasureType.SUMWAITINGTIMES);
-            final TallyStore inSumWaitingTimeTally = inSumWaitingTime.get (row,
-                  col);
-            return inSumWaitingTimeTally.getArray ()[obs];
+            return getInObs (PerformanceMeasureType.SUMWAITINGTIMES, row, col, obs);
          case DELAYRATIO:
-            final MatrixOfTallies<TallyStore> inPosWait = inStat
-            .getMatrixOfTallyStores (PerformanceMeasureType.RATEOFDELAY);
-            final TallyStore inPosWaitTally = inPosWait.get (row, col);
-            return inPosWaitTally.getArray ()[obs];
+            return getInObs (PerformanceMeasureType.RATEOFDELAY, row, col, obs);
          case ABANDONMENTRATIO:
-            final MatrixOfTallies<TallyStore> inAbandonments = inStat
-            .getMatrixOfTallyStores (PerformanceMeasureType.RATEOFABANDONMENT);
-            final TallyStore inAbandonmentsTally = inAbandonments.get (row,
-                  col);
-            return inAbandonmentsTally.getArray ()[obs];
+            return getInObs (PerformanceMeasureType.RATEOFABANDONMENT, row, col, obs);
          case ABANDONMENTRATIOBEFOREAWT:
-            final MatrixOfTallies<TallyStore> inAbandonmentsB = inStat
-            .getMatrixOfTallyStores (PerformanceMeasureType.RATEOFABANDONMENTBEFOREAWT);
-            final TallyStore inAbandonmentsTallyB = inAbandonmentsB.get (row,
-                  col);
-            return inAbandonmentsTallyB.getArray ()[obs];
+            return getInObs (PerformanceMeasureType.RATEOFABANDONMENTBEFOREAWT, row, col, obs);
          case ABANDONMENTRATIOAFTERAWT:
-            final MatrixOfTallies<TallyStore> inAbandonmentsA = inStat
-            .getMatrixOfTallyStores (PerformanceMeasureType.RATEOFABANDONMENTAFTERAWT);
-            final TallyStore inAbandonmentsTallyA = inAbandonmentsA.get (row,
-                  col);
-            return inAbandonmentsTallyA.getArray ()[obs];
+            return getInObs (PerformanceMeasureType.RATEOFABANDONMENTAFTERAWT, row, col, obs);
          case OCCUPANCY:
          case OCCUPANCY2:
-            final MatrixOfTallies<TallyStore> inBusyAgents = inStat
-            .getMatrixOfTallyStores (PerformanceMeasureType.AVGBUSYAGENTS);
-            final TallyStore inBusyAgentsTally = inBusyAgents.get (row,
-                  col);
-            return inBusyAgentsTally.getArray ()[obs];
+            return getInObs (PerformanceMeasureType.AVGBUSYAGENTS, row, col, obs);
          }
          break;
       case DENOMINATOR:
@@ -652,40 +762,191 @@ public class CVCallCenterStat implements CallCenterStatProbes {
          case ABANDONMENTRATIOBEFOREAWT:
          case ABANDONMENTRATIOAFTERAWT:
          case DELAYRATIO:
-            final MatrixOfTallies<TallyStore> inArv = inStat
-                  .getMatrixOfTallyStores (PerformanceMeasureType.RATEOFARRIVALS);
-            final TallyStore inArvTally = inArv.get (row, col);
-            return inArvTally.getArray ()[obs];
+            return getInObs (PerformanceMeasureType.RATEOFARRIVALS, row, col, obs);
          case WAITINGTIMEWAIT:
-            final MatrixOfTallies<TallyStore> inPosWait = inStat
-                  .getMatrixOfTallyStores (PerformanceMeasureType.RATEOFDELAY);
-            final TallyStore inPosWaitTally = inPosWait.get (row, col);
-            return inPosWaitTally.getArray ()[obs];
+            return getInObs (PerformanceMeasureType.RATEOFDELAY, row, col, obs);
          case SERVICELEVEL:
-            a = arv.getNonCenteredObs (sim, inStat,
-                  PerformanceMeasureType.SERVICELEVEL, row, col, obs);
-            final MatrixOfTallies<TallyStore> inAbandonedBeforeAwt = inStat
-                  .getMatrixOfTallyStores (PerformanceMeasureType.RATEOFABANDONMENTBEFOREAWT);
-            final TallyStore inAbandonedBeforeAwtTally = inAbandonedBeforeAwt
-                  .get (row, col);
-            return a - inAbandonedBeforeAwtTally.getArray ()[obs];
+            return getInObs (PerformanceMeasureType.RATEOFARRIVALSIN,
+                  arv.getObservedRow (sim, pm, row), col, obs)
+                  - getInObs (PerformanceMeasureType.RATEOFABANDONMENTBEFOREAWT, row, col, obs);
          case SERVICELEVEL2:
-            a = arv.getNonCenteredObs (sim, inStat,
-                  PerformanceMeasureType.SERVICELEVEL2, row, col, obs);
-            return a;
+            return getInObs (PerformanceMeasureType.RATEOFARRIVALSIN,
+                  arv.getObservedRow (sim, pm, row), col, obs);
          case OCCUPANCY:
-            final MatrixOfTallies<TallyStore> inNumScheduledAgents = inStat
-            .getMatrixOfTallyStores (PerformanceMeasureType.AVGSCHEDULEDAGENTS);
-            final TallyStore inNumScheduledAgentsTally = inNumScheduledAgents.get (row, col);
-            return inNumScheduledAgentsTally.getArray ()[obs];
+            return getInObs (PerformanceMeasureType.AVGSCHEDULEDAGENTS, row, col, obs);
          case OCCUPANCY2:
-            final MatrixOfTallies<TallyStore> inNumWorkingAgents = inStat
-            .getMatrixOfTallyStores (PerformanceMeasureType.AVGWORKINGAGENTS);
-            final TallyStore inNumWorkingAgentsTally = inNumWorkingAgents.get (row, col);
-            return inNumWorkingAgentsTally.getArray ()[obs];
+            return getInObs (PerformanceMeasureType.AVGWORKINGAGENTS, row, col, obs);
          }
          break;
       }
       throw new IllegalArgumentException ();
    }
+
+   private int getNumInObs () {
+      return newObsListeners.isEmpty () ? 0 : newObsListeners.get (0).tally
+            .numberObs ();
+   }
+
+   private int getNumNewObs () {
+      return newObsListeners.isEmpty () ? 0 : newObsListeners.get (0).newObs
+            .size ();
+   }
+
+   private boolean[] getUsedCvs (PerformanceMeasureType pm, int r, int c) {
+      final boolean[] useCvs = new boolean[cvs.length];
+      for (int i = 0; i < cvs.length; i++)
+         useCvs[i] = cvs[i].appliesTo (sim, pm, r, c);
+      return useCvs;
+   }
+
+   private double getCvObs (PerformanceMeasureType pm, int r, int c, int i, int obs) {
+      final IncrementalControlVariable cv = (IncrementalControlVariable) cvs[i];
+      final double x = newObsMap.get (cv.getObservedMeasure ())[cv
+            .getObservedRow (sim, pm, r)][c].getQuick (obs + newObsOffset);
+      return cv.getObs (sim, pm, r, c, obs, x);
+   }
+
+   /**
+    * Adds the observations received by the inner probes since
+    * the last update to
+    * the controlled estimators.
+    * If the inner probes were reset since the last update, the controlled estimators
+    * are reset too, and only the observations added after the reset
+    * are used.
+    */
+   private void updateIncremental () {
+      final int n = getNumInObs ();
+      final int nb = getNumNewObs ();
+      int m = nb;
+      if (n != numProcessedObs + nb) {
+         for (final Matrix<ListOfTalliesWithCV<?>> mOut : outTallyMap.values ())
+            for (final ListOfTalliesWithCV<?> l : mOut)
+               if (l != null)
+                  l.init ();
+         for (final MatrixOfFunctionOfMultipleMeansTallies<?> mOut : outFmmTallyMap
+               .values ())
+            mOut.init ();
+         // The inner probes contain at most the last n buffered observations
+         m = Math.min (n, nb);
+      }
+      // Observation j of the inner probes is at index j + newObsOffset
+      // in the buffers
+      newObsOffset = nb - n;
+      for (int j = n - m; j < n; j++)
+         addIncremental (j);
+      for (final NewObsListener l : newObsListeners)
+         l.newObs.clear ();
+      numProcessedObs = n;
+   }
+
+   private void addIncremental (int j) {
+      for (final Map.Entry<PerformanceMeasureType, Matrix<ListOfTalliesWithCV<?>>> e : outTallyMap.entrySet ()) {
+         final PerformanceMeasureType pm = e.getKey ();
+         final Matrix<ListOfTalliesWithCV<?>> mtaOut = e.getValue ();
+         for (int r = 0; r < mtaOut.rows (); r++)
+            for (int c = 0; c < mtaOut.columns (); c++) {
+               final boolean[] useCvs = getUsedCvs (pm, r, c);
+               int ncv = 0;
+               for (final boolean u : useCvs)
+                  if (u)
+                     ++ncv;
+               ListOfTalliesWithCV<?> lstOut = mtaOut.get (r, c);
+               if (lstOut == null || lstOut.getNumControlVariables () != ncv)
+                  mtaOut.set (r, c, lstOut = ListOfTalliesWithCV.createWithTally (
+                        1, ncv));
+               final double[] cv = new double[ncv];
+               for (int i = 0, icv = 0; i < cvs.length; i++)
+                  if (useCvs[i])
+                     cv[icv++] = getCvObs (pm, r, c, i, j);
+               lstOut.add (getInObs (pm, r, c, j), cv);
+            }
+      }
+      for (final Map.Entry<PerformanceMeasureType, MatrixOfFunctionOfMultipleMeansTallies<FunctionOfMultipleMeansTallyWithCV>> e : outFmmTallyMap.entrySet ()) {
+         final PerformanceMeasureType pm = e.getKey ();
+         final MatrixOfFunctionOfMultipleMeansTallies<FunctionOfMultipleMeansTallyWithCV> mtaOut = e.getValue ();
+         final MatrixOfFunctionOfMultipleMeansTallies<?> mta = inStat
+               .getMatrixOfFunctionOfMultipleMeansTallies (pm);
+         for (int r = 0; r < mtaOut.rows (); r++)
+            for (int c = 0; c < mtaOut.columns (); c++) {
+               final FunctionOfMultipleMeansTally ta = mta.get (r, c);
+               final boolean[] useCvs = getUsedCvs (pm, r, c);
+               int ncv = 0;
+               for (final boolean u : useCvs)
+                  if (u)
+                     ++ncv;
+               final int d = ta.getDimension ();
+               FunctionOfMultipleMeansTallyWithCV taOut = mtaOut.get (r, c);
+               if (taOut == null || taOut.getNumControlVariables () != ncv)
+                  mtaOut.set (r, c, taOut = new FunctionOfMultipleMeansTallyWithCV (ta.getFunction (), d, ncv));
+               final double[] tmp = new double[d + ncv];
+               for (int i = 0; i < d; i++)
+                  tmp[i] = getFmmElement (pm, r, c, i, j);
+               for (int i = 0, icv = d; i < cvs.length; i++)
+                  if (useCvs[i])
+                     tmp[icv++] = getCvObs (pm, r, c, i, j);
+               taOut.add (tmp);
+            }
+      }
+   }
+
+   private void estimateBetasIncremental (Map<PerformanceMeasureType, double[][][]> betas) {
+      updateIncremental ();
+      for (final Map.Entry<PerformanceMeasureType, Matrix<ListOfTalliesWithCV<?>>> e : outTallyMap.entrySet ()) {
+         final double[][][] b = betas == null ? null : betas.get (e.getKey ());
+         final Matrix<ListOfTalliesWithCV<?>> mtaOut = e.getValue ();
+         for (int r = 0; r < mtaOut.rows (); r++)
+            for (int c = 0; c < mtaOut.columns (); c++) {
+               final ListOfTalliesWithCV<?> lstOut = mtaOut.get (r, c);
+               if (lstOut == null)
+                  continue;
+               if (b != null && b[r][c] != null) {
+                  final DoubleMatrix2D betaMatrix = new DenseDoubleMatrix2D (
+                        b[r][c].length, 1);
+                  betaMatrix.viewColumn (0).assign (b[r][c]);
+                  lstOut.setBeta (betaMatrix);
+               }
+               else
+                  lstOut.estimateBeta ();
+            }
+      }
+      for (final Map.Entry<PerformanceMeasureType, MatrixOfFunctionOfMultipleMeansTallies<FunctionOfMultipleMeansTallyWithCV>> e : outFmmTallyMap.entrySet ()) {
+         final PerformanceMeasureType pm = e.getKey ();
+         final double[][][] b = betas == null ? null : betas.get (pm);
+         final MatrixOfFunctionOfMultipleMeansTallies<FunctionOfMultipleMeansTallyWithCV> mtaOut = e.getValue ();
+         initBetaMapFmm (pm, mtaOut.rows (), mtaOut.columns ());
+         for (int r = 0; r < mtaOut.rows (); r++)
+            for (int c = 0; c < mtaOut.columns (); c++) {
+               final FunctionOfMultipleMeansTallyWithCV taOut = mtaOut.get (r, c);
+               if (taOut == null)
+                  continue;
+               if (b != null && b[r][c] != null)
+                  taOut.setBeta (b[r][c]);
+               else {
+                  taOut.estimateBeta ();
+                  putInBetaMapFmm (pm, r, c, taOut.getListOfTalliesWithCV ()
+                        .getBeta ().copy ());
+               }
+            }
+      }
+   }
+
+   private static final class NewObsListener implements ObservationListener {
+      private final Tally tally;
+      private final DoubleArrayList newObs;
+
+      public NewObsListener (Tally tally, DoubleArrayList newObs) {
+         this.tally = tally;
+         this.newObs = newObs;
+      }
+
+      public void newObservation (StatProbe probe, double x) {
+         newObs.add (x);
+      }
+   }
+
+   private final class StepListener implements SimLogicListener {
+      public void stepDone (SimLogic sim1) {
+         updateIncremental ();
+      }
+   }
 }
@@ -0,0 +1,66 @@
+package umontreal.iro.lecuyer.contactcenters.msk.cv;
+
+import umontreal.iro.lecuyer.contactcenters.app.PerformanceMeasureType;
+import umontreal.iro.lecuyer.contactcenters.msk.simlogic.SimLogic;
+
+/**
+ * Represents a control variable whose observations can be
+ * computed from the last observation of a single statistical collector,
+ * without accessing stored observations.
+ * Such control variables can be used by {@link CVCallCenterStat}
+ * in incremental mode, where the controlled estimators are
+ * updated each time new observations are available, and
+ * the observations are not kept after the update.
+ */
+public interface IncrementalControlVariable extends ControlVariable {
+   /**
+    * Returns the type of performance measure whose observations
+    * are used to compute the (non-centered) observations of this
+    * control variable.
+    *
+    * @return the type of performance measure of the observed collectors.
+    */
+   public PerformanceMeasureType getObservedMeasure ();
+
+   /**
+    * Returns the row, in the matrix of collectors for
+    * {@link #getObservedMeasure()}, containing the
+    * observations of this control variable when it is
+    * applied to the performance measure of type \texttt{pm}, at
+    * row \texttt{row}.
+    * The column of the observed collector is the same as the column
+    * of the performance measure.
+    *
+    * @param sim
+    *           the simulation logic.
+    * @param pm
+    *           the type of performance measure.
+    * @param row
+    *           the row index.
+    * @return the row of the observed collector.
+    */
+   public int getObservedRow (SimLogic sim, PerformanceMeasureType pm, int row);
+
+   /**
+    * Returns the centered observation with index \texttt{index} of the control
+    * variable used for the type of performance measure \texttt{pm} at row
+    * \texttt{row} and column \texttt{col}, the non-centered
+    * observation being \texttt{x}.
+    *
+    * @param sim
+    *           the simulation logic.
+    * @param pm
+    *           the type of performance measure.
+    * @param row
+    *           the row index.
+    * @param col
+    *           the column index.
+    * @param index
+    *           the index of the observation.
+    * @param x
+    *           the non-centered observation.
+    * @return the centered observation.
+    */
+   public double getObs (SimLogic sim, PerformanceMeasureType pm, int row,
+         int col, int index, double x);
+}
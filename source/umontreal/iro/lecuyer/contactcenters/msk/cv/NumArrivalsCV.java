@@ -5,7 +5,9 @@ import umontreal.iro.lecuyer.contactcenters.app.ColumnType;
 import umontreal.iro.lecuyer.contactcenters.app.PerformanceMeasureType;
 import umontreal.iro.lecuyer.contactcenters.msk.model.CallCenter;
 import umontreal.iro.lecuyer.contactcenters.msk.simlogic.SimLogic;
+import umontreal.iro.lecuyer.contactcenters.msk.stat.CallCenterMeasureManager;
 import umontreal.iro.lecuyer.contactcenters.msk.stat.CallCenterStatProbes;
+import umontreal.iro.lecuyer.contactcenters.msk.stat.SpillTallyStore;
 import umontreal.ssj.stat.TallyStore;
 import umontreal.ssj.stat.matrix.MatrixOfTallies;
 import cern.colt.matrix.DoubleMatrix2D;
@@ -18,7 +20,7 @@ import cern.colt.matrix.impl.DenseDoubleMatrix2D;
  * contacts of type $k$ during period $p$. For outbound contact types, the total
  * number of arrived inbound contacts is used.
  */
-public class NumArrivalsCV implements ControlVariable {
+public class NumArrivalsCV implements IncrementalControlVariable {
    private double b = 1;
    private double[] bs;
    private DoubleMatrix2D expArrivals;
@@ -31,6 +33,10 @@ public class NumArrivalsCV implements ControlVariable {
       }
       if (pm.getColumnType () != ColumnType.MAINPERIOD)
          return false;
+      // Replications without observation give no quantile,
+      // so these measures cannot be paired with the CV
+      if (CallCenterMeasureManager.isQuantile (pm))
+         return false;
 //      switch (pm.getRowType ()) {
 //      case CONTACTTYPE:
 //      case INBOUNDTYPEAWT:
@@ -63,11 +69,24 @@ public class NumArrivalsCV implements ControlVariable {
    public double getObs (SimLogic sim, CallCenterStatProbes inStat,
          PerformanceMeasureType pm, int row, int col, int index) {
       final double x = getNonCenteredObs (sim, inStat, pm, row, col, index);
+      return getObs (sim, pm, row, col, index, x);
+   }
+
+   public double getObs (SimLogic sim, PerformanceMeasureType pm, int row,
+         int col, int index, double x) {
       final double e = getExpectation (sim, pm, row, col);
       final double bf = bs == null ? b : bs[index];
       return x - e * bf;
    }
 
+   public PerformanceMeasureType getObservedMeasure () {
+      return PerformanceMeasureType.RATEOFARRIVALSIN;
+   }
+
+   public int getObservedRow (SimLogic sim, PerformanceMeasureType pm, int row) {
+      return getRow (pm, row, sim.getCallCenter ().getNumInContactTypes ());
+   }
+
    public double getNonCenteredObs (SimLogic sim, CallCenterStatProbes inStat,
          PerformanceMeasureType pm, int row, int col, int index) {
       final MatrixOfTallies<TallyStore> mta = inStat
@@ -80,7 +99,7 @@ public class NumArrivalsCV implements ControlVariable {
 //            sum += mta.get (r, col).getArray ().get (index);
 //         return sum;
 //      }
-      return mta.get (qRow, col).getArray ()[index];
+      return SpillTallyStore.getObs (mta.get (qRow, col), index);
    }
 
    private static double getExpectedArrivalRate (SimLogic sim, boolean norm, int k, int p) {
@@ -34,6 +34,7 @@ public class Call extends Contact {
    private ServiceTimes transferTimes;
    private double uTransfer;
    private double uTransferWait;
+   private double uTransferTarget;
    private double uVQ;
    private double uVQCallBack;
    private int kBeforeVQ = -1;
@@ -277,6 +278,36 @@ public class Call extends Contact {
       uTransfer = transfer;
    }
 
+   /**
+    * Returns the uniform used to select the type of the
+    * call resulting from a transfer.
+    * This uniform is generated by the call factory
+    * when the call is created, only if call transfers
+    * are supported and the factory uses call substreams;
+    * see {@link CallFactory#isUsingCallSubstreams()}.
+    * Otherwise, the type is selected at the time of the transfer,
+    * and this method returns 0.
+    * @return the uniform for selecting the type of the
+    * transferred call.
+    */
+   public double getUTransferTarget () {
+      return uTransferTarget;
+   }
+
+   /**
+    * Sets the uniform for selecting the type of the
+    * transferred call to \texttt{transferTarget}.
+    * @param transferTarget the new uniform.
+    * @exception IllegalArgumentException if \texttt{transferTarget} is out of
+    * $[0,1]$.
+    * @see #getUTransferTarget()
+    */
+   public void setUTransferTarget (double transferTarget) {
+      if (transferTarget < 0 || transferTarget > 1)
+         throw new IllegalArgumentException ("transferTarget not in [0,1]");
+      uTransferTarget = transferTarget;
+   }
+
    /**
     * Returns the uniform used to decide if the primary agent
     * waits for a secondary agent after a transfer.
@@ -614,7 +614,8 @@ public class CallCenter extends AbstractContactCenterInfo {
 	public void create(boolean recreateStreams)
 			throws CallCenterCreationException {
             if (recreateStreams)
-                    streams = new RandomStreams(streams.getRandomStreamFactory(), ccParams);
+                    streams = new RandomStreams(streams.getRandomStreamFactory(), ccParams,
+                                    streams.isCallSubstreams());
             else
                     streams.createStreams(ccParams);
             properties = ParamReadHelper
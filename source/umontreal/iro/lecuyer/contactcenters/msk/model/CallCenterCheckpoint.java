@@ -0,0 +1,512 @@
+package umontreal.iro.lecuyer.contactcenters.msk.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import umontreal.iro.lecuyer.contactcenters.PeriodChangeEvent;
+import umontreal.iro.lecuyer.contactcenters.PeriodChangeListener;
+import umontreal.iro.lecuyer.contactcenters.SwitchEvent;
+import umontreal.iro.lecuyer.contactcenters.ToggleElement;
+import umontreal.iro.lecuyer.contactcenters.contact.Contact;
+import umontreal.iro.lecuyer.contactcenters.contact.ContactArrivalProcess;
+import umontreal.iro.lecuyer.contactcenters.dialer.Dialer;
+import umontreal.iro.lecuyer.contactcenters.msk.params.CallCenterParams;
+import umontreal.iro.lecuyer.contactcenters.queue.DequeueEvent;
+import umontreal.iro.lecuyer.contactcenters.queue.WaitingQueue;
+import umontreal.iro.lecuyer.contactcenters.router.OverflowAndPriorityRouter;
+import umontreal.iro.lecuyer.contactcenters.router.Router;
+import umontreal.iro.lecuyer.contactcenters.server.AgentGroup;
+import umontreal.iro.lecuyer.contactcenters.server.EndServiceEvent;
+import umontreal.ssj.simevents.Event;
+import umontreal.ssj.simevents.Simulator;
+
+/**
+ * Represents a snapshot of the state of a call center model at a given
+ * simulation time, from which several continuations of the simulation
+ * can be forked.
+ * This can be used, e.g., to evaluate candidate decisions taken
+ * during the day, such as changes to the staffing of agent groups:
+ * the common part of the day is simulated once, a checkpoint is
+ * taken, and each candidate continuation is simulated from
+ * the checkpoint instead of from time~0.
+ *
+ * A checkpoint is constructed from a model whose simulation was
+ * interrupted at time~$t$, e.g., using an event calling
+ * {@link Simulator#stop()}.
+ * It stores the simulation time, the busyness factor, the
+ * current period, the calls waiting in queues and
+ * served by agents, with their scheduled abandonment
+ * and service termination times, the time of the
+ * next arrival of each arrival process,
+ * the status of dialers, and
+ * a copy of the random streams of the model at time~$t$.
+ * The stored information does not refer to any object of the
+ * original model, so the simulation of the original model can be
+ * resumed or restarted after the checkpoint is taken.
+ *
+ * The method {@link #fork(Simulator)} creates a new
+ * model with its own copy of the saved random streams,
+ * and restores the saved state into that model
+ * using {@link #restore(CallCenter)}.
+ * Continuations forked from the same checkpoint thus use
+ * common random numbers.
+ * Since each continuation has its own model, simulator, and random streams,
+ * continuations can be simulated on separate threads.
+ *
+ * The state of the model is restored by constructing new calls,
+ * and scheduling new events, similarly to {@link StartingState}.
+ * The restored calls are not counted as arrivals
+ * in the continuation, and
+ * calls in after-contact work end their contact at time~$t$.
+ * Calls being dialed, rerouting events, as well as random
+ * arrival rates generated at the beginning of the replication
+ * are not saved:
+ * dialers restart at time~$t$, waiting calls are not rerouted, and
+ * arrival processes generating random rates
+ * draw new rates from the saved random streams,
+ * these rates being the same for
+ * every continuation.
+ * Calls with an infinite service time are saved only if
+ * their agent group keeps track of end-service events; see
+ * {@link AgentGroup#setKeepingEndServiceEvents(boolean)}.
+ * Checkpoints are not supported for models with
+ * agent groups using schedules,
+ * call transfers, or virtual holding, and
+ * cannot be taken while calls are waiting in queues
+ * if the model uses an {@link OverflowAndPriorityRouter}.
+ */
+public class CallCenterCheckpoint {
+   private final CallCenterParams ccParams;
+   private final RandomStreams streams;
+   private final double time;
+   private final double busynessFactor;
+   private final int currentPeriod;
+   private final int numAgentGroups;
+   private final int numWaitingQueues;
+   private final List<SavedCall> queuedCalls = new ArrayList<SavedCall> ();
+   private final List<SavedCall> servedCalls = new ArrayList<SavedCall> ();
+   private final boolean[] arvProcStarted;
+   private final double[] nextArrivalTimes;
+   private final boolean[] dialerStarted;
+
+   /**
+    * Constructs a new checkpoint holding the
+    * state of the model \texttt{cc} at the current
+    * simulation time.
+    *
+    * @param cc
+    *           the model being saved.
+    * @exception IllegalArgumentException
+    *               if the model uses agent groups with schedules,
+    *               call transfers, or virtual holding, or
+    *               if calls are waiting in queues of a model using an
+    *               {@link OverflowAndPriorityRouter}.
+    */
+   public CallCenterCheckpoint (CallCenter cc) {
+      checkSupported (cc);
+      ccParams = cc.getCallCenterParams ();
+      streams = cc.getRandomStreams ().clone ();
+      time = cc.simulator ().time ();
+      busynessFactor = cc.getBusynessFactor ();
+      currentPeriod = cc.getPeriodChangeEvent ().getCurrentPeriod ();
+      numAgentGroups = cc.getNumAgentGroups ();
+      numWaitingQueues = cc.getNumWaitingQueues ();
+
+      for (int q = 0; q < numWaitingQueues; q++)
+         for (final DequeueEvent ev : cc.getWaitingQueue (q))
+            queuedCalls.add (new SavedCall (ev, q, numAgentGroups));
+      for (int i = 0; i < numAgentGroups; i++) {
+         final AgentGroup group = cc.getAgentGroup (i);
+         if (group.isKeepingEndServiceEvents ())
+            for (final EndServiceEvent ev : group.getEndServiceEvents ())
+               servedCalls.add (new SavedCall (ev, i, numAgentGroups, time));
+      }
+      // For agent groups not keeping track of end-service events,
+      // these events are found in the event list.
+      for (final Event ev : cc.simulator ().getEventList ()) {
+         if (!(ev instanceof EndServiceEvent))
+            continue;
+         final EndServiceEvent es = (EndServiceEvent) ev;
+         final AgentGroup group = es.getAgentGroup ();
+         final int i = group.getId ();
+         if (i >= 0 && i < numAgentGroups && cc.getAgentGroup (i) == group
+               && !group.isKeepingEndServiceEvents ())
+            servedCalls.add (new SavedCall (es, i, numAgentGroups, time));
+      }
+
+      if (!queuedCalls.isEmpty ()
+            && cc.getRouter () instanceof OverflowAndPriorityRouter)
+         // This router associates routing information with
+         // each queued contact, which cannot be restored.
+         throw new IllegalArgumentException
+         ("Checkpoints with queued calls are not supported for the overflow and priority router");
+
+      final ArrivalProcessManager[] arvProcs = cc.getArrivalProcesManagers ();
+      arvProcStarted = new boolean[arvProcs.length];
+      nextArrivalTimes = new double[arvProcs.length];
+      for (int j = 0; j < arvProcs.length; j++) {
+         if (arvProcs[j] == null)
+            continue;
+         final ContactArrivalProcess ap = arvProcs[j].getArrivalProcess ();
+         arvProcStarted[j] = ap.isStarted ();
+         nextArrivalTimes[j] = ap.getNextArrivalTime ();
+      }
+      final Dialer[] dialers = cc.getDialers ();
+      dialerStarted = new boolean[dialers.length];
+      for (int d = 0; d < dialers.length; d++)
+         dialerStarted[d] = dialers[d] != null && dialers[d].isStarted ();
+   }
+
+   private static void checkSupported (CallCenter cc) {
+      for (final AgentGroupManager agm : cc.getAgentGroupManagers ())
+         if (agm instanceof AgentGroupManagerWithSchedule
+               || agm instanceof AgentGroupManagerWithAgents)
+            throw new IllegalArgumentException
+            ("Checkpoints are not supported for agent groups with schedules");
+      if (cc.isCallTransferSupported ())
+         throw new IllegalArgumentException
+         ("Checkpoints are not supported for models with call transfers");
+      if (cc.isVirtualHoldSupported ())
+         throw new IllegalArgumentException
+         ("Checkpoints are not supported for models with virtual holding");
+   }
+
+   /**
+    * Returns the simulation time at which this
+    * checkpoint was taken.
+    *
+    * @return the time of the checkpoint.
+    */
+   public double getTime () {
+      return time;
+   }
+
+   /**
+    * Returns the busyness factor used by the
+    * saved model.
+    *
+    * @return the saved busyness factor.
+    */
+   public double getBusynessFactor () {
+      return busynessFactor;
+   }
+
+   /**
+    * Returns the index of the period
+    * at the time the checkpoint was taken.
+    *
+    * @return the saved period index.
+    */
+   public int getCurrentPeriod () {
+      return currentPeriod;
+   }
+
+   /**
+    * Returns the call center parameters of the saved model.
+    *
+    * @return the call center parameters.
+    */
+   public CallCenterParams getCallCenterParams () {
+      return ccParams;
+   }
+
+   /**
+    * Returns the total number of calls waiting in queues
+    * at the time the checkpoint was taken.
+    *
+    * @return the number of queued calls.
+    */
+   public int getNumQueuedCalls () {
+      return queuedCalls.size ();
+   }
+
+   /**
+    * Returns the total number of calls served by
+    * agents at the time the checkpoint was taken.
+    *
+    * @return the number of calls in service.
+    */
+   public int getNumCallsInService () {
+      return servedCalls.size ();
+   }
+
+   /**
+    * Returns a new copy of the random streams
+    * of the saved model, at the time the
+    * checkpoint was taken.
+    * Each call to this method returns a different
+    * copy, with the same state.
+    *
+    * @return the copy of the saved random streams.
+    */
+   public RandomStreams getRandomStreams () {
+      synchronized (streams) {
+         return streams.clone ();
+      }
+   }
+
+   /**
+    * Constructs a new model with the saved call center parameters,
+    * the simulator \texttt{sim}, and a copy of the saved random
+    * streams, restores the saved state into this model using
+    * {@link #restore(CallCenter)}, and returns the model.
+    * The simulation of the continuation can then be resumed
+    * by calling {@link Simulator#start()} on \texttt{sim}.
+    * Parameters of the returned model, e.g., the staffing
+    * of agent groups, can be changed before resuming the
+    * simulation; changes to staffing take effect at the
+    * next period change.
+    * Alternatively, {@link #createModel(Simulator)} can be
+    * used to create the model, and
+    * {@link #restore(CallCenter)} can be called after the
+    * model is modified, and listeners
+    * collecting statistics are registered.
+    *
+    * @param sim
+    *           the simulator of the new model.
+    * @return the new model, in the saved state.
+    * @exception CallCenterCreationException
+    *               if an error occurs during the creation of the model.
+    */
+   public CallCenter fork (Simulator sim) throws CallCenterCreationException {
+      final CallCenter cc = createModel (sim);
+      restore (cc);
+      return cc;
+   }
+
+   /**
+    * Constructs and returns a new model with the saved call center
+    * parameters, the simulator \texttt{sim}, and a copy of the
+    * saved random streams.
+    * The state of the returned model is not restored; this is
+    * done by {@link #restore(CallCenter)}.
+    * Models are created one at a time, since they share the call center
+    * parameters.
+    *
+    * @param sim
+    *           the simulator of the new model.
+    * @return the new model.
+    * @exception CallCenterCreationException
+    *               if an error occurs during the creation of the model.
+    */
+   public synchronized CallCenter createModel (Simulator sim)
+         throws CallCenterCreationException {
+      final CallCenter cc = new CallCenter (sim, ccParams, getRandomStreams ());
+      cc.create ();
+      return cc;
+   }
+
+   /**
+    * Restores the saved state into the model \texttt{cc}.
+    * This method initializes the simulator of the model,
+    * advances its clock to the time of the checkpoint,
+    * initializes the model with the saved busyness factor, and
+    * puts the saved calls in waiting queues and agent groups.
+    * It then notifies the period-change listeners of the
+    * current period, which sets the staffing of agent groups,
+    * starts the arrival processes and dialers
+    * which were started in the saved model,
+    * and schedules the next period changes.
+    * If the number of agents in a group is smaller
+    * than the number of calls in service, the remaining
+    * agents become ghost agents leaving
+    * the group after their service.
+    *
+    * The model should have the same structure as the saved
+    * model, and use the same random streams to
+    * simulate the continuation with the saved random
+    * numbers; see {@link #createModel(Simulator)}.
+    *
+    * @param cc
+    *           the model to restore.
+    * @exception IllegalArgumentException
+    *               if the number of agent groups, waiting queues,
+    *               arrival processes, or dialers of
+    *               \texttt{cc} differs from the saved model,
+    *               or if \texttt{cc} is not supported.
+    */
+   public void restore (CallCenter cc) {
+      checkSupported (cc);
+      if (cc.getNumAgentGroups () != numAgentGroups
+            || cc.getNumWaitingQueues () != numWaitingQueues
+            || cc.getArrivalProcesManagers ().length != arvProcStarted.length
+            || cc.getDialers ().length != dialerStarted.length)
+         throw new IllegalArgumentException
+         ("The structure of the model does not correspond to the checkpoint");
+      final Simulator sim = cc.simulator ();
+      sim.init ();
+      if (time > 0) {
+         new Event (sim) {
+            @Override
+            public void actions () {
+               simulator ().stop ();
+            }
+         }.schedule (time);
+         sim.start ();
+      }
+
+      final PeriodChangeEvent pce = cc.getPeriodChangeEvent ();
+      pce.init (time);
+      cc.initSim (busynessFactor);
+
+      final int[] numServed = new int[numAgentGroups];
+      for (final SavedCall call : servedCalls)
+         ++numServed[call.index];
+      for (int i = 0; i < numAgentGroups; i++) {
+         // With an efficiency smaller than 1, more agents
+         // are needed to serve the saved calls.
+         final AgentGroup group = cc.getAgentGroup (i);
+         final double eff = group.getEfficiency ();
+         int n = numServed[i];
+         while (eff > 0 && Math.round (n * eff) < numServed[i])
+            ++n;
+         group.setNumAgents (n);
+      }
+      final Router router = cc.getRouter ();
+      for (final SavedCall call : servedCalls) {
+         final Contact contact = call.createCall (pce, router);
+         final AgentGroup group = cc.getAgentGroup (call.index);
+         if (call.contactDone)
+            group.serve (contact, 0, call.endContactType, call.delay, call.endServiceType);
+         else
+            group.serve (contact, call.delay, call.endContactType);
+      }
+      for (final SavedCall call : queuedCalls) {
+         final Contact contact = call.createCall (pce, router);
+         final WaitingQueue queue = cc.getWaitingQueue (call.index);
+         // The maximal queue time is counted from the current time.
+         queue.add (contact, call.enqueueTime,
+               Math.max (call.enqueueTime + call.delay - time, 0), call.dequeueType);
+      }
+      for (final PeriodChangeListener l : pce.getPeriodChangeListeners ())
+         l.changePeriod (pce);
+
+      final ArrivalProcessManager[] arvProcs = cc.getArrivalProcesManagers ();
+      for (int j = 0; j < arvProcs.length; j++) {
+         if (arvProcs[j] == null)
+            continue;
+         final ContactArrivalProcess ap = arvProcs[j].getArrivalProcess ();
+         if (arvProcStarted[j] && !ap.isStarted ())
+            ap.start (nextArrivalTimes[j] < time ? Double.POSITIVE_INFINITY
+                  : nextArrivalTimes[j] - time);
+         if (arvProcs[j].isSourceEnabled ())
+            scheduleSwitch (cc, ap, arvProcs[j].getSourceToggleTimes ());
+      }
+      final DialerManager[] dialers = cc.getDialerManagers ();
+      for (int d = 0; d < dialers.length; d++) {
+         if (dialers[d] == null)
+            continue;
+         final Dialer dialer = dialers[d].getDialer ();
+         if (dialerStarted[d] && !dialer.isStarted ())
+            dialer.start ();
+         if (dialers[d].isSourceEnabled ())
+            scheduleSwitch (cc, dialer, dialers[d].getSourceToggleTimes ());
+      }
+      pce.start ();
+   }
+
+   private static void scheduleSwitch (CallCenter cc,
+         ToggleElement el, double[] times) {
+      double[] usedTimes;
+      if (times == null) {
+         final double start = cc.getPeriodChangeEvent ().getPeriodStartingTime (1);
+         final double end = cc.getPeriodChangeEvent ().getPeriodEndingTime (cc.getNumMainPeriods ());
+         usedTimes = new double[] { start, end };
+      }
+      else
+         usedTimes = times;
+      // The switch event skips the toggle times preceding the
+      // checkpoint, so it only affects the continuation.
+      final SwitchEvent ev = new SwitchEvent (cc.simulator (), el, usedTimes);
+      ev.setPriority (PeriodChangeEvent.PRIORITY * 2);
+      ev.schedule ();
+   }
+
+   /**
+    * Stores the information needed to recreate
+    * a waiting or served call.
+    */
+   private static final class SavedCall {
+      // Index of the waiting queue or agent group
+      final int index;
+      final int typeId;
+      final double priority;
+      final double arrivalTime;
+      final int arrivalPeriod;
+      final double patienceTime;
+      final double contactTime;
+      final double afterContactTime;
+      final double[] contactTimes;
+      final double[] afterContactTimes;
+      // For queued calls, the maximal queue time, and for served calls,
+      // the remaining contact or after-contact time
+      final double delay;
+      double enqueueTime;
+      int dequeueType;
+      boolean contactDone;
+      int endContactType;
+      int endServiceType;
+
+      SavedCall (DequeueEvent ev, int q, int numGroups) {
+         final Contact contact = ev.getContact ();
+         index = q;
+         typeId = contact.getTypeId ();
+         priority = contact.getPriority ();
+         arrivalTime = contact.getArrivalTime ();
+         arrivalPeriod = contact instanceof Call ? ((Call) contact).getArrivalPeriod () : -1;
+         patienceTime = contact.getDefaultPatienceTime ();
+         contactTime = contact.getDefaultContactTime ();
+         afterContactTime = contact.getDefaultAfterContactTime ();
+         contactTimes = new double[numGroups];
+         afterContactTimes = new double[numGroups];
+         for (int i = 0; i < numGroups; i++) {
+            contactTimes[i] = contact.getDefaultContactTime (i);
+            afterContactTimes[i] = contact.getDefaultAfterContactTime (i);
+         }
+         enqueueTime = ev.getEnqueueTime ();
+         delay = ev.getScheduledQueueTime ();
+         dequeueType = ev.getScheduledDequeueType ();
+      }
+
+      SavedCall (EndServiceEvent ev, int i, int numGroups, double time) {
+         final Contact contact = ev.getContact ();
+         index = i;
+         typeId = contact.getTypeId ();
+         priority = contact.getPriority ();
+         arrivalTime = contact.getArrivalTime ();
+         arrivalPeriod = contact instanceof Call ? ((Call) contact).getArrivalPeriod () : -1;
+         patienceTime = contact.getDefaultPatienceTime ();
+         contactTime = contact.getDefaultContactTime ();
+         afterContactTime = contact.getDefaultAfterContactTime ();
+         contactTimes = null;
+         afterContactTimes = null;
+         contactDone = ev.contactDone ();
+         if (contactDone) {
+            endContactType = ev.getEffectiveEndContactType ();
+            endServiceType = ev.getScheduledEndServiceType ();
+            delay = ev.getBeginServiceTime () + ev.getEffectiveContactTime ()
+                  + ev.getScheduledAfterContactTime () - time;
+         }
+         else {
+            endContactType = ev.getScheduledEndContactType ();
+            delay = ev.getBeginServiceTime () + ev.getScheduledContactTime () - time;
+         }
+      }
+
+      Contact createCall (PeriodChangeEvent pce, Router router) {
+         final Call call = new Call (pce, arrivalPeriod < 0 ? pce.getCurrentPeriod () : arrivalPeriod,
+               priority, typeId);
+         call.setArrivalTime (arrivalTime);
+         call.setDefaultPatienceTime (patienceTime);
+         call.setDefaultContactTime (contactTime);
+         call.setDefaultAfterContactTime (afterContactTime);
+         if (contactTimes != null)
+            for (int i = 0; i < contactTimes.length; i++) {
+               call.setDefaultContactTime (i, contactTimes[i]);
+               call.setDefaultAfterContactTime (i, afterContactTimes[i]);
+            }
+         call.setRouter (router);
+         return call;
+      }
+   }
+}
@@ -1,11 +1,13 @@
 package umontreal.iro.lecuyer.contactcenters.msk.model;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 import javax.xml.datatype.Duration;
 
 import umontreal.iro.lecuyer.contactcenters.CCParamReadHelper;
+import umontreal.iro.lecuyer.contactcenters.CallSubstreamRandomStream;
 import umontreal.iro.lecuyer.contactcenters.MultiPeriodGen;
 import umontreal.iro.lecuyer.contactcenters.PeriodChangeEvent;
 import umontreal.iro.lecuyer.contactcenters.ValueGenerator;
@@ -51,6 +53,7 @@ public class CallFactory extends SingleTypeContactFactory {
    private double[][] probTransferWait;
    private RandomStream ptStream;
    private RandomStream vqStream;
+   private CallSubstreamRandomStream[] callStreams;
    private boolean disableCallSource = false;
    private boolean excludedFromStatTotal = false;
    private int vqTarget = -1;
@@ -169,6 +172,7 @@ public class CallFactory extends SingleTypeContactFactory {
             "The probTransferWait matrix must have 1 or P columns");
       }
       vqStream = cc.getRandomStreams ().getCallFactoryStream2 (k, CallFactoryStreamType2.VQUEUE);
+      initCallStreams (cc.getRandomStreams (), k);
       if (par.isSetVirtualQueueTargetType ())
          vqTarget = par.getVirtualQueueTargetType ();
       if (par.isSetExpectedWaitingTimeThresh ()) {
@@ -209,6 +213,37 @@ public class CallFactory extends SingleTypeContactFactory {
       }
    }
 
+   private void initCallStreams (RandomStreams streams, int k) {
+      final List<CallSubstreamRandomStream> list = new ArrayList<CallSubstreamRandomStream> ();
+      for (final CallFactoryStreamType s : CallFactoryStreamType.values ()) {
+         final RandomStream stream = streams.getCallFactoryStream (k, s);
+         if (stream instanceof CallSubstreamRandomStream)
+            list.add ((CallSubstreamRandomStream) stream);
+      }
+      for (final CallFactoryStreamType2 s : CallFactoryStreamType2.values ()) {
+         final RandomStream stream = streams.getCallFactoryStream2 (k, s);
+         if (stream instanceof CallSubstreamRandomStream)
+            list.add ((CallSubstreamRandomStream) stream);
+      }
+      callStreams = list.isEmpty () ? null : list.toArray (new CallSubstreamRandomStream[list.size ()]);
+   }
+
+   /**
+    * Determines if each call produced by this factory
+    * uses its own substreams to generate its random variates.
+    * This is the case if call substreams were enabled
+    * for the random streams of the model; see
+    * {@link RandomStreams#isCallSubstreams()}.
+    * Conference and pre-service times, and the uniform
+    * selecting the type of transferred calls, are then
+    * generated when the call is created rather than
+    * when it is transferred.
+    * @return the call substreams indicator.
+    */
+   public boolean isUsingCallSubstreams () {
+      return callStreams != null;
+   }
+
    /**
     * Constructs a contact factory used to generate calls
     * resulting from transfers after service termination.
@@ -508,6 +543,27 @@ public class CallFactory extends SingleTypeContactFactory {
       return transferTargetFactory;
    }
 
+   /**
+    * Creates the call resulting from the transfer of
+    * call \texttt{call} produced by this factory,
+    * using the contact factory returned by
+    * {@link #getTransferTargetFactory()}.
+    * If {@link #isUsingCallSubstreams()} returns \texttt{true},
+    * the type of the new call is selected using the uniform
+    * generated when \texttt{call} was created; see
+    * {@link Call#getUTransferTarget()}.
+    * @param call the transferred call.
+    * @return the new call.
+    * @exception IllegalStateException if no call type can be
+    * selected for the transferred call.
+    */
+   public Call newTransferTarget (Call call) {
+      if (callStreams != null && transferTargetFactory instanceof RandomTypeCallFactory)
+         return (Call) ((RandomTypeCallFactory) transferTargetFactory)
+               .newInstance (call.getUTransferTarget ());
+      return (Call) transferTargetFactory.newInstance ();
+   }
+
    /**
     * Returns the multiplier for patience times for callers
     * arrived during main period \texttt{mp}, and
@@ -735,6 +791,9 @@ public class CallFactory extends SingleTypeContactFactory {
 
    @Override
    public void setRandomVariables (Contact contact) {
+      if (callStreams != null)
+         for (final CallSubstreamRandomStream stream : callStreams)
+            stream.nextCallSubstream ();
       super.setRandomVariables (contact);
       final Call call = (Call) contact;
       if (isCallTransferSupported ()) {
@@ -744,6 +803,10 @@ public class CallFactory extends SingleTypeContactFactory {
             call.setUTransfer (u1);
          if (probTransferWait != null)
             call.setUTransferWait (u2);
+         if (callStreams != null && transferTargetFactory instanceof RandomTypeCallFactory)
+            // Use the substream of the call rather than
+            // the one of the last created call
+            call.setUTransferTarget (ptStream.nextDouble ());
 
          transGen.generate (call.getTransferTimes ());
       }
@@ -751,16 +814,26 @@ public class CallFactory extends SingleTypeContactFactory {
          call.setUVQ (vqStream.nextDouble ());
          call.setUVQCallBack (vqStream.nextDouble ());
       }
+      if (callStreams != null) {
+         // Use the substreams of the call rather than
+         // those of the last created call
+         confGen.generate (call.getConferenceTimes ());
+         psGen.generate (call.getPreServiceTimesNoConf ());
+      }
    }
 
    /**
     * Generates conference times for the given call
     * \texttt{call}, and adds these conference times
     * to the regular service times.
+    * If {@link #isUsingCallSubstreams()} returns \texttt{true},
+    * the conference times were generated when the call was created,
+    * and are only added to the service times.
     * @param call the call being processed.
     */
    public void setConferenceTimes (Call call) {
-      confGen.generate (call.getConferenceTimes ());
+      if (callStreams == null)
+         confGen.generate (call.getConferenceTimes ());
       call.getContactTimes ().add (call.getConferenceTimes ());
    }
 
@@ -771,7 +844,8 @@ public class CallFactory extends SingleTypeContactFactory {
     * @param call the call being processed.
     */
    public void setPreServiceTimesNoConf (Call call) {
-      psGen.generate (call.getPreServiceTimesNoConf ());
+      if (callStreams == null)
+         psGen.generate (call.getPreServiceTimesNoConf ());
       call.getContactTimes ().add (call.getPreServiceTimesNoConf ());
    }
 
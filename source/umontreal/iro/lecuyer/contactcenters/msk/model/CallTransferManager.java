@@ -154,7 +154,7 @@ public class CallTransferManager {
          // Create the object representing the transferred call
          final Call call2;
          try {
-            call2 = (Call) cc.getCallFactory (k).getTransferTargetFactory ().newInstance ();
+            call2 = cc.getCallFactory (k).newTransferTarget (call);
          }
          catch (final IllegalStateException ise) {
             ev.endContact (0);
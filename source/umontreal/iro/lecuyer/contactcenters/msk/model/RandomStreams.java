@@ -6,9 +6,11 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Set;
 
+import umontreal.iro.lecuyer.contactcenters.CallSubstreamRandomStream;
 import umontreal.iro.lecuyer.contactcenters.RandomStreamUtil;
 import umontreal.iro.lecuyer.contactcenters.msk.params.CallCenterParams;
 import umontreal.ssj.rng.CloneableRandomStream;
+import umontreal.ssj.rng.MRG32k3a;
 import umontreal.ssj.rng.RandomStream;
 import umontreal.ssj.rng.RandomStreamFactory;
 import umontreal.iro.lecuyer.util.ArrayUtil;
@@ -39,6 +41,17 @@ import umontreal.iro.lecuyer.util.ArrayUtil;
  * each instance should have its own random streams.
  * The {@link #clone()} method can be used if seeds must be shared between
  * two instances of this class.
+ *
+ * If call substreams are enabled at construction time, the
+ * streams used by call factories, i.e., for
+ * patience times, service times, transfer and virtual queueing,
+ * are wrapped into instances of {@link CallSubstreamRandomStream}, and
+ * {@link CallFactory} moves them to a new substream before
+ * generating the random variates of each call.
+ * The variates of the $n$th call of type~$k$ during a replication
+ * then depend only on $k$ and $n$, which keeps
+ * calls synchronized when comparing scenarios with
+ * common random numbers.
  */
 public class RandomStreams implements Cloneable
 {
@@ -74,6 +87,8 @@ public class RandomStreams implements Cloneable
    private Set<RandomStream> streamsSim = new HashSet<RandomStream> ();
    // Factory class used to create random streams
    private RandomStreamFactory rsf;
+   // Determines if each call uses its own substream of call factory streams
+   private boolean callSubstreams;
 
    // A field is needed for every type of random stream
    // The method createStreams must
@@ -114,11 +129,34 @@ public class RandomStreams implements Cloneable
     * or \texttt{ccParams} are \texttt{null}.
     */
    public RandomStreams (RandomStreamFactory rsf, CallCenterParams ccParams)
+   {
+      this (rsf, ccParams, false);
+   }
+
+   /**
+    * Similar to {@link #RandomStreams(RandomStreamFactory,CallCenterParams)},
+    * but if \texttt{callSubstreams} is \texttt{true}, the streams
+    * used by call factories give a distinct substream to each call.
+    * In that case, the streams created by \texttt{rsf} must be
+    * instances of {@link MRG32k3a}.
+    * Streams of other classes are used as if \texttt{callSubstreams}
+    * was \texttt{false}.
+    * @param rsf the random stream factory used to
+    * create each {@link RandomStream} instance.
+    * @param ccParams the parameters of the call center
+    * for which random streams are created.
+    * @param callSubstreams determines if each call uses its own substreams.
+    * @exception NullPointerException if \texttt{rsf}
+    * or \texttt{ccParams} are \texttt{null}.
+    */
+   public RandomStreams (RandomStreamFactory rsf, CallCenterParams ccParams,
+                         boolean callSubstreams)
    {
       if (rsf == null)
          throw new NullPointerException (
             "The random stream factory must not be null");
       this.rsf = rsf;
+      this.callSubstreams = callSubstreams;
       createStreams (ccParams);
    }
 
@@ -142,11 +180,16 @@ public class RandomStreams implements Cloneable
       // to the appropriate sets.
       //final RandomStreamFactory rssrfInit = new RSSFactory (rsf, streamsInit);
       final RandomStreamFactory rssrfSim = new RSSFactory (rsf, streamsSim);
+      final RandomStreamFactory rssrfFactory;
+      if (callSubstreams)
+         rssrfFactory = new RSSFactory (new CallSubstreamRSFactory (rsf), streamsSim);
+      else
+         rssrfFactory = rssrfSim;
       if (rsmCt == null)
          rsmCt = rssrfSim.newInstance ();
       factoryStreams = RandomStreamUtil.createRandomStreamMatrix
                        (factoryStreams, ccParams.getInboundTypes().size() + ccParams.getOutboundTypes().size(),
-                        NUMFACTORYSTREAMS, rssrfSim);
+                        NUMFACTORYSTREAMS, rssrfFactory);
       apStreams = RandomStreamUtil.createRandomStreamMatrix
                   (apStreams, ccParams.getInboundTypes().size() + ccParams.getArrivalProcesses().size(),
                    NUMAPSTREAMS, rssrfSim);
@@ -168,7 +211,7 @@ public class RandomStreams implements Cloneable
       probCTDialersStreams = RandomStreamUtil.createRandomStreamArray (probCTDialersStreams, numDialersMT, rssrfSim);
       factoryStreams2 = RandomStreamUtil.createRandomStreamMatrix
                         (factoryStreams2, ccParams.getInboundTypes().size() + ccParams.getOutboundTypes().size(),
-                         NUMFACTORYSTREAMS2, rssrfSim);
+                         NUMFACTORYSTREAMS2, rssrfFactory);
       moveToInit ();
 
       for (int i = 0;i < ccParams.getAgentGroups().size();i++) {  
@@ -245,6 +288,17 @@ public class RandomStreams implements Cloneable
       return rsf;
    }
 
+   /**
+    * Determines if each call uses its own substream
+    * of the streams of call factories.
+    *
+    * @return the call substreams indicator.
+    */
+   public boolean isCallSubstreams ()
+   {
+      return callSubstreams;
+   }
+
    /**
     * Sets the associated random stream factory to \texttt{rsf}.
     * The new factory will only affect streams created
@@ -460,6 +514,26 @@ public class RandomStreams implements Cloneable
       }
    }
 
+   // Wraps streams created by inner into streams giving
+   // a substream to each call, if they are MRG32k3a streams.
+   private static final class CallSubstreamRSFactory implements RandomStreamFactory
+   {
+      private RandomStreamFactory inner;
+
+      public CallSubstreamRSFactory (RandomStreamFactory inner)
+      {
+         this.inner = inner;
+      }
+
+      public RandomStream newInstance ()
+      {
+         final RandomStream stream = inner.newInstance ();
+         if (stream instanceof MRG32k3a)
+            return new CallSubstreamRandomStream ((MRG32k3a)stream);
+         return stream;
+      }
+   }
+
    /**
     * Creates a clone of this object and all
     * the contained random streams.
@@ -101,6 +101,23 @@ public class RandomTypeCallFactory implements ContactFactory {
     * Generates and returns a new type identifier.
     */
    public int nextIndex() {
+      final double sum = computeWeights ();
+      return selectIndex (stream.nextDouble (), sum);
+   }
+
+   /**
+    * Similar to {@link #nextIndex()}, but uses the
+    * uniform \texttt{u} instead of generating a
+    * random number from the stream of this factory.
+    * @param u the uniform used to select the type.
+    * @return the selected type identifier.
+    */
+   public int nextIndex (double u) {
+      return selectIndex (u, computeWeights ());
+   }
+
+   // Stores the weights of the call types in temp, and returns their sum
+   private double computeWeights () {
       final int cp = cc.getPeriodChangeEvent ().getCurrentMainPeriod ();
       double sum;
       if (checkAgents) {
@@ -124,7 +141,10 @@ public class RandomTypeCallFactory implements ContactFactory {
       if (sum == 0)
          throw new IllegalStateException
          ("Cannot create calls during main period " + cp);
-      double u = stream.nextDouble ();
+      return sum;
+   }
+
+   private int selectIndex (double u, double sum) {
       for (int k = 0; k < factories.length; k++) {
          final double prob = temp[k] / sum;
          if (u <= prob)
@@ -138,6 +158,17 @@ public class RandomTypeCallFactory implements ContactFactory {
       return factories[nextIndex()].newInstance ();
    }
 
+   /**
+    * Similar to {@link #newInstance()}, but
+    * selects the type of the new contact using
+    * the uniform \texttt{u}.
+    * @param u the uniform used to select the type.
+    * @return the new contact.
+    */
+   public Contact newInstance (double u) {
+      return factories[nextIndex (u)].newInstance ();
+   }
+
    /**
     * Returns a copy of the $K\times P$ 2D array giving
     * the values of $p_{k,p}$.
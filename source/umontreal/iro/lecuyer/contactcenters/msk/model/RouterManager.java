@@ -93,6 +93,9 @@ public class RouterManager {
          throws RouterCreationException {
       this.cc = cc;
       router = createRouter (par);
+      if (par.isSetReroutingTimeResolution ())
+         router.setReroutingTimeResolution (cc.getTime (par
+               .getReroutingTimeResolution ()));
 
       final int I = cc.getNumAgentGroups();
       for (int i = 0; i < I; i++) {
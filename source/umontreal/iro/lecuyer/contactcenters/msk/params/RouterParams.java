@@ -104,6 +104,8 @@ public class RouterParams {
     protected AgentSelectionScore agentSelectionScore;
     @XmlAttribute(name = "contactSelectionScore")
     protected ContactSelectionScore contactSelectionScore;
+    @XmlAttribute(name = "reroutingTimeResolution")
+    protected Duration reroutingTimeResolution;
 
     /**
      * Gets the value of the properties property.
@@ -1179,4 +1181,32 @@ public class RouterParams {
         return (this.contactSelectionScore!= null);
     }
 
+    /**
+     * Gets the value of the reroutingTimeResolution property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Duration }
+     *     
+     */
+    public Duration getReroutingTimeResolution() {
+        return reroutingTimeResolution;
+    }
+
+    /**
+     * Sets the value of the reroutingTimeResolution property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Duration }
+     *     
+     */
+    public void setReroutingTimeResolution(Duration value) {
+        this.reroutingTimeResolution = value;
+    }
+
+    public boolean isSetReroutingTimeResolution() {
+        return (this.reroutingTimeResolution!= null);
+    }
+
 }
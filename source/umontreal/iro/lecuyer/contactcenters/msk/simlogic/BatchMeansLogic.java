@@ -1,12 +1,18 @@
 package umontreal.iro.lecuyer.contactcenters.msk.simlogic;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import cern.colt.function.DoubleDoubleFunction;
+import cern.colt.list.DoubleArrayList;
 import cern.colt.matrix.DoubleMatrix2D;
 import cern.colt.matrix.impl.DenseDoubleMatrix2D;
 import cern.jet.math.Functions;
@@ -21,12 +27,15 @@ import umontreal.iro.lecuyer.contactcenters.msk.model.AgentGroupManagerWithStaff
 import umontreal.iro.lecuyer.contactcenters.msk.model.ArrivalProcessManager;
 import umontreal.iro.lecuyer.contactcenters.msk.model.Call;
 import umontreal.iro.lecuyer.contactcenters.msk.model.CallCenter;
+import umontreal.iro.lecuyer.contactcenters.msk.model.CallCenterCreationException;
 import umontreal.iro.lecuyer.contactcenters.msk.model.CallFactory;
 import umontreal.iro.lecuyer.contactcenters.msk.model.DialerManager;
 import umontreal.iro.lecuyer.contactcenters.msk.model.RandomStreams;
+import umontreal.iro.lecuyer.contactcenters.msk.params.CallCenterParams;
 import umontreal.iro.lecuyer.contactcenters.msk.stat.CallCenterMeasureManager;
 import umontreal.iro.lecuyer.contactcenters.msk.stat.CallCenterStatProbes;
 import umontreal.iro.lecuyer.contactcenters.msk.stat.MeasureType;
+import umontreal.iro.lecuyer.contactcenters.msk.stat.ObsSpillManager;
 import umontreal.iro.lecuyer.contactcenters.msk.stat.SimCallCenterStat;
 import umontreal.iro.lecuyer.contactcenters.msk.stat.StatPeriod;
 import umontreal.iro.lecuyer.contactcenters.queue.DequeueEvent;
@@ -36,6 +45,7 @@ import umontreal.iro.lecuyer.contactcenters.server.AgentGroup;
 
 import umontreal.ssj.randvar.RandomVariateGen;
 import umontreal.ssj.rng.RandomStream;
+import umontreal.ssj.simevents.Simulator;
 import umontreal.ssj.simexp.BatchMeansSim;
 import umontreal.ssj.stat.TallyStore;
 import umontreal.ssj.stat.list.ListOfTallies;
@@ -57,6 +67,14 @@ import umontreal.ssj.stat.mperiods.MeasureMatrix;
  * such as the maximal number of busy agents, maximal queue size, and maximal
  * waiting time. For more information about batch aggregation, see the
  * documentation of the super class {@link BatchMeansSim}.
+ *
+ * If the \texttt{numRuns} attribute of the simulation parameters is
+ * greater than 1, the logic also manages independent runs, each using
+ * its own model, simulator, and random streams. Each call to
+ * {@link #simulate(int)} then simulates the additional runs on worker
+ * threads while this logic simulates its own run on the calling thread,
+ * and the effective batches of all runs are added to the statistical
+ * collectors returned by {@link #getCallCenterStatProbes()}.
  */
 public class BatchMeansLogic extends BatchMeansSim implements SimLogic {
    private final Logger logger = Logger
@@ -65,7 +83,9 @@ public class BatchMeansLogic extends BatchMeansSim implements SimLogic {
    private SimLogicBase base;
    private BatchSimParams simParams;
    private SimCallCenterStat stat;
+   private ObsSpillManager spill;
    private CallCenterMeasureManager ccm;
+   private PerformanceMeasureType[] pms;
 
    // Contains a probability for each call type, to
    // initialize the system in a non-empty state
@@ -83,6 +103,18 @@ public class BatchMeansLogic extends BatchMeansSim implements SimLogic {
    private int s, h;
    private double l;
 
+   // Variables for automatic warmup truncation and batch size selection
+   private boolean warmupChecked;
+   private int truncatedBatches;
+   private double lag1Correlation = Double.NaN;
+
+   // Variables for independent runs simulated in parallel
+   private BatchMeansLogic[] runs;
+   private ExecutorService executor;
+   private boolean recordBatches;
+   private final List<RecordedBatch> recordedBatches = new ArrayList<RecordedBatch> ();
+   private RecordedBatch replayedBatch;
+
    // List of statistical probes containing the V_j's when
    // batch aggregation is turned on.
    private final Map<MeasureType, ListOfTallies<TallyStore>> rpMap = new EnumMap<MeasureType, ListOfTallies<TallyStore>> (
@@ -108,12 +140,20 @@ public class BatchMeansLogic extends BatchMeansSim implements SimLogic {
             simParams.getWarmupBatches ()
                   * cc.getTime (simParams.getBatchSize ()));
       base = new SimLogicBase ();
+      if (!simParams.isAggregation ()
+            && (simParams.isAutoWarmup () || simParams.isSetMaxLag1Correlation ()))
+         throw new IllegalArgumentException
+            ("Automatic warmup truncation and batch size selection require batch aggregation");
       setBatchAggregation (simParams.isAggregation ());
       this.simParams = simParams;
       this.cc = cc;
+      this.pms = pms.clone ();
       ccm = new BatchMeansCMM (cc, this, simParams.isEstimateContactTypeAgentGroup (), pms);
+      ccm.setQuantileRelativeAccuracy (simParams.getQuantileRelativeAccuracy ());
       ccm.registerListeners ();
-      stat = new SimCallCenterStat (cc, ccm, simParams.isKeepObs (), simParams.isNormalizeToDefaultUnit (), pms);
+      spill = ObsSpillManager.prepare (spill, simParams.isKeepObs ()
+            && simParams.isSpillObs ());
+      stat = new SimCallCenterStat (cc, ccm, simParams.isKeepObs (), spill, simParams.isNormalizeToDefaultUnit (), pms);
       createRealBatchProbes ();
       cc.setAwtPeriod (this);
    }
@@ -183,13 +223,17 @@ public class BatchMeansLogic extends BatchMeansSim implements SimLogic {
       for (final MeasureType mt : ccm.getMeasures ()) {
          final ListOfTallies<TallyStore> a = rpMap.get (mt);
          double[] tmp = getValuesForRealBatch (mt);
-         a.add (tmp);
+         // ListOfTallies.add ignores NaN, and undefined quantiles
+         // must be kept to align the series of real batches
+         for (int j = 0; j < tmp.length; j++)
+            a.get (j).add (tmp[j]);
       }
    }
 
    @Override
    public void initEffectiveBatchProbes () {
       stat.init ();
+      recordedBatches.clear ();
    }
 
    @Override
@@ -208,15 +252,27 @@ public class BatchMeansLogic extends BatchMeansSim implements SimLogic {
       // The addObs method calls back getValues in this class to
       // obtain the matrices of observations.
       stat.addObs ();
+      if (recordBatches) {
+         final Map<MeasureType, DoubleMatrix2D> values = new EnumMap<MeasureType, DoubleMatrix2D> (
+               MeasureType.class);
+         for (final MeasureType mt : ccm.getMeasures ())
+            values.put (mt, ccm.getValues (mt, false));
+         recordedBatches.add (new RecordedBatch (values, ell));
+      }
    }
 
    public void reset (PerformanceMeasureType... pms) {
+      this.pms = pms.clone ();
+      runs = null;
       setTargetBatches (simParams.getMinBatches ());
       setBatchSize (cc.getTime (simParams.getBatchSize ()));
       ccm.unregisterListeners ();
       ccm = new BatchMeansCMM (cc, this, simParams.isEstimateContactTypeAgentGroup (), pms);
+      ccm.setQuantileRelativeAccuracy (simParams.getQuantileRelativeAccuracy ());
       ccm.registerListeners ();
-      stat = new SimCallCenterStat (cc, ccm, simParams.isKeepObs (), simParams.isNormalizeToDefaultUnit (), pms);
+      spill = ObsSpillManager.prepare (spill, simParams.isKeepObs ()
+            && simParams.isSpillObs ());
+      stat = new SimCallCenterStat (cc, ccm, simParams.isKeepObs (), spill, simParams.isNormalizeToDefaultUnit (), pms);
       createRealBatchProbes ();
    }
 
@@ -336,6 +392,21 @@ public class BatchMeansLogic extends BatchMeansSim implements SimLogic {
       evalInfo
             .put (
                   Messages.getString ("BatchMeansLogic.NumBatches"), getCompletedRealBatches ()); //$NON-NLS-1$
+      if (simParams.isAutoWarmup ())
+         evalInfo.put (Messages.getString ("BatchMeansLogic.TruncatedBatches"),
+               truncatedBatches);
+      if (!Double.isNaN (lag1Correlation))
+         evalInfo.put (Messages.getString ("BatchMeansLogic.Lag1Correlation"),
+               lag1Correlation);
+      if (runs != null) {
+         evalInfo.put (Messages.getString ("BatchMeansLogic.NumRuns"),
+               runs.length + 1);
+         int numBatches = getCompletedRealBatches ();
+         for (final BatchMeansLogic run : runs)
+            numBatches += run.getCompletedRealBatches ();
+         evalInfo.put (Messages.getString ("BatchMeansLogic.TotalNumBatches"),
+               numBatches);
+      }
    }
 
    public int[] getStaffing () {
@@ -547,7 +618,107 @@ public class BatchMeansLogic extends BatchMeansSim implements SimLogic {
       }
       setTargetBatches (getMinBatches ());
       setAborted (false);
+      warmupChecked = false;
+      truncatedBatches = 0;
+      lag1Correlation = Double.NaN;
+      recordedBatches.clear ();
       super.init ();
+      initRuns ();
+   }
+
+   /**
+    * Creates or discards the independent runs depending on the
+    * \texttt{numRuns} attribute of the simulation parameters, copies the
+    * staffing of this logic's model to the model of each run, and
+    * initializes the runs.
+    */
+   private void initRuns () {
+      final int numRuns = recordBatches ? 1 : simParams.getNumRuns ();
+      if (numRuns <= 1) {
+         runs = null;
+         return;
+      }
+      if (runs == null || runs.length != numRuns - 1) {
+         runs = new BatchMeansLogic[numRuns - 1];
+         for (int r = 0; r < runs.length; r++)
+            runs[r] = createRun ();
+      }
+      final int mp = getCurrentMainPeriod ();
+      for (final BatchMeansLogic run : runs) {
+         for (int i = 0; i < cc.getNumAgentGroups (); i++) {
+            final AgentGroupManager group = run.cc.getAgentGroupManager (i);
+            if (group instanceof AgentGroupManagerWithStaffing)
+               ((AgentGroupManagerWithStaffing) group).setEffectiveStaffing (mp,
+                     cc.getAgentGroupManager (i).getEffectiveStaffing (mp));
+         }
+         run.setVerbose (isVerbose ());
+         run.init ();
+      }
+   }
+
+   /**
+    * Constructs a logic for an independent run. The model of
+    * the run is created from the parameters of this logic's model,
+    * with a new simulator and new random streams obtained from
+    * the same random stream factory. This must be called
+    * from the thread owning this logic, because creating random streams
+    * is not thread-safe.
+    */
+   private BatchMeansLogic createRun () {
+      final CallCenterParams ccParams = cc.getCallCenterParams ();
+      final RandomStreams streams = cc.getRandomStreams ();
+      final CallCenter runCc = new CallCenter (new Simulator (), ccParams,
+            new RandomStreams (streams.getRandomStreamFactory (), ccParams,
+                  streams.isCallSubstreams ()));
+      try {
+         runCc.create (false);
+      }
+      catch (final CallCenterCreationException cce) {
+         final IllegalStateException ise = new IllegalStateException
+         ("Could not create the model for an independent run");
+         ise.initCause (cce);
+         throw ise;
+      }
+      final BatchMeansLogic run = new BatchMeansLogic (runCc, simParams, pms);
+      run.recordBatches = true;
+      return run;
+   }
+
+   /**
+    * Returns the number of independent runs managed by this logic,
+    * including the run simulated by this logic itself.
+    * This is 1 unless the \texttt{numRuns} attribute of the
+    * simulation parameters is greater than 1 and {@link #init()}
+    * has been called.
+    *
+    * @return the number of independent runs.
+    */
+   public int getNumRuns () {
+      return runs == null ? 1 : runs.length + 1;
+   }
+
+   /**
+    * Returns the executor service used to simulate independent runs,
+    * or \texttt{null} if a temporary thread pool is created
+    * for each call to {@link #simulate(int)}.
+    *
+    * @return the executor service.
+    */
+   public ExecutorService getExecutor () {
+      return executor;
+   }
+
+   /**
+    * Sets the executor service used to simulate independent runs
+    * to \texttt{executor}. If \texttt{executor} is \texttt{null},
+    * a temporary thread pool with one thread per additional run
+    * is created each time {@link #simulate(int)} is called.
+    *
+    * @param executor
+    *           the new executor service.
+    */
+   public void setExecutor (ExecutorService executor) {
+      this.executor = executor;
    }
 
    @Override
@@ -588,6 +759,10 @@ public class BatchMeansLogic extends BatchMeansSim implements SimLogic {
          throw new IllegalArgumentException ("numBatches < 0");
       if (numBatches == 0)
          return;
+      if (runs != null) {
+         simulateRuns (numBatches);
+         return;
+      }
       adjustTargetBatches (numBatches);
       if (!isWarmupDone ())
          warmup ();
@@ -596,8 +771,84 @@ public class BatchMeansLogic extends BatchMeansSim implements SimLogic {
       stat.addObsRawStatistics ();
    }
 
+   /**
+    * Simulates \texttt{numBatches} additional batches for each
+    * independent run, and adds the effective batches of the
+    * additional runs to the collectors of this logic.
+    * Statistics computed at the end of the simulation, e.g.,
+    * the queue size at the end, are obtained from the run
+    * of this logic only.
+    */
+   private void simulateRuns (final int numBatches) {
+      final ExecutorService exec = executor == null ? Executors
+            .newFixedThreadPool (runs.length) : executor;
+      final List<Future<?>> futures = new ArrayList<Future<?>> (runs.length);
+      boolean completed = false;
+      try {
+         for (final BatchMeansLogic run : runs)
+            futures.add (exec.submit (new Runnable() {
+               public void run () {
+                  run.simulate (numBatches);
+               }
+            }));
+         adjustTargetBatches (numBatches);
+         if (!isWarmupDone ())
+            warmup ();
+         simulateBatches ();
+         for (final Future<?> f : futures)
+            f.get ();
+         completed = true;
+      }
+      catch (final InterruptedException ie) {
+         Thread.currentThread ().interrupt ();
+         throw new IllegalStateException ("Interrupted while waiting for independent runs", ie);
+      }
+      catch (final ExecutionException ee) {
+         final Throwable cause = ee.getCause ();
+         if (cause instanceof RuntimeException)
+            throw (RuntimeException)cause;
+         if (cause instanceof Error)
+            throw (Error)cause;
+         throw new IllegalStateException (cause);
+      }
+      finally {
+         // The runs still pending are cancelled if this logic's
+         // own run or any other run failed.
+         if (!completed)
+            for (final Future<?> f : futures)
+               f.cancel (true);
+         if (exec != executor)
+            exec.shutdown ();
+      }
+      // Without aggregation, the effective batches of previous calls are already
+      // in the collectors, and the recorded batches only contain new ones.
+      // With aggregation, the collectors were reinitialized, and
+      // the runs recorded all their effective batches again.
+      for (final BatchMeansLogic run : runs) {
+         for (final RecordedBatch rb : run.recordedBatches) {
+            replayedBatch = rb;
+            l = rb.l;
+            try {
+               stat.addObs ();
+            }
+            finally {
+               replayedBatch = null;
+            }
+         }
+         run.recordedBatches.clear ();
+      }
+      stat.initRawStatistics ();
+      stat.addObsRawStatistics ();
+   }
+
    public boolean seemsUnstable () {
-      return seemsUnstable;
+      if (seemsUnstable)
+         return true;
+      if (runs != null)
+         for (final BatchMeansLogic run : runs)
+            if (run.seemsUnstable ())
+               return true;
+      return false;
    }
 
    /**
@@ -658,9 +909,212 @@ public class BatchMeansLogic extends BatchMeansSim implements SimLogic {
          simulateBatch (getBatchSize () * getBatchFraction ());
          for (final SimLogicListener ell : getSimLogicListeners ())
             ell.stepDone (this);
+         if (getBatchAggregation ()
+               && getCompletedRealBatches () == getTargetBatches ())
+            adaptBatches ();
       }
    }
 
+   /**
+    * Called when the target number of real batches is reached, before
+    * the effective batches are formed, to apply the automatic warmup
+    * truncation and batch size selection. If the MSER-5 rule
+    * truncates some real batches, these are dropped, and the target number
+    * of batches is increased to replace them. Otherwise, if
+    * the lag-1 autocorrelation of the effective batch means
+    * is too large, the target number of real batches is increased
+    * to double the size of the effective batches.
+    */
+   private void adaptBatches () {
+      if (simParams.isAutoWarmup () && !warmupChecked) {
+         warmupChecked = true;
+         final int d = getMSERTruncation ();
+         if (d > 0) {
+            dropRealBatches (d);
+            truncatedBatches += d;
+            final long target = (long)getTargetBatches () + d;
+            setTargetBatches ((int)Math.min (target, getMaxBatches ()));
+            if (isVerbose ())
+               logger.info ("MSER-5 rule: dropping the first " + d
+                     + " real batches");
+            if (getCompletedRealBatches () < getTargetBatches ())
+               return;
+         }
+      }
+      if (simParams.isSetMaxLag1Correlation ()) {
+         final int numStored = getCompletedRealBatches ()
+               - getDroppedRealBatches ();
+         lag1Correlation = getLag1Correlation (numStored);
+         if (lag1Correlation > simParams.getMaxLag1Correlation ()
+               && (long)getTargetBatches () + numStored <= getMaxBatches ()) {
+            setTargetBatches (getTargetBatches () + numStored);
+            if (isVerbose ())
+               logger.info ("Lag-1 autocorrelation of batch means "
+                     + lag1Correlation
+                     + " too large, doubling the size of effective batches");
+         }
+      }
+   }
+
+   /**
+    * Drops the first \texttt{d} stored real batches, and removes
+    * the corresponding values from the lists of real batches.
+    */
+   private void dropRealBatches (int d) {
+      dropFirstRealBatches (d);
+      // The kept values are copied into a single buffer shared by
+      // all the tallies, and the lists keep their capacity.
+      double[] kept = null;
+      for (final ListOfTallies<TallyStore> a : rpMap.values ())
+         for (final TallyStore t : a) {
+            final DoubleArrayList list = t.getDoubleArrayList ();
+            final int n = Math.max (list.size () - d, 0);
+            if (kept == null || kept.length < n)
+               kept = new double[n];
+            System.arraycopy (list.elements (), list.size () - n, kept, 0, n);
+            t.init ();
+            for (int j = 0; j < n; j++)
+               t.add (kept[j]);
+         }
+   }
+
+   /**
+    * Returns the series of stored real batches obtained by summing
+    * the values of all measures of type \texttt{mt}, or
+    * \texttt{null} if no such measure is collected.
+    */
+   private double[] getRealBatchSeries (MeasureType mt, int n) {
+      final ListOfTallies<TallyStore> a = rpMap.get (mt);
+      if (a == null || a.size () == 0)
+         return null;
+      final double[] res = new double[n];
+      for (final TallyStore t : a) {
+         final double[] values = t.getArray ();
+         for (int j = 0; j < n; j++)
+            res[j] += values[j];
+      }
+      return res;
+   }
+
+   /**
+    * Returns the number of real batches to truncate, which is the
+    * maximal truncation point given by the MSER-5 rule for the
+    * series of total queue size, and the series of fraction
+    * of calls served before the acceptable waiting time.
+    */
+   private int getMSERTruncation () {
+      final int n = getCompletedRealBatches () - getDroppedRealBatches ();
+      int d = 0;
+      final double[] qs = getRealBatchSeries (MeasureType.QUEUESIZE, n);
+      if (qs != null)
+         d = Math.max (d, getMSERTruncation (qs, 5));
+      final double[] sb = getRealBatchSeries (MeasureType.NUMSERVEDBEFOREAWT, n);
+      final double[] arv = getRealBatchSeries (MeasureType.NUMARRIVALS, n);
+      if (sb != null && arv != null) {
+         for (int j = 0; j < n; j++)
+            sb[j] = arv[j] > 0 ? sb[j] / arv[j] : 0;
+         d = Math.max (d, getMSERTruncation (sb, 5));
+      }
+      return d;
+   }
+
+   /**
+    * Computes the truncation point given by the MSER-$m$ rule for the
+    * series \texttt{x}. The series is divided into consecutive groups
+    * of \texttt{m} observations, and the number $d$ of groups to drop
+    * minimizes the ratio of the sum of squared deviations of the
+    * remaining group averages over the square of the number of remaining
+    * groups. The truncation point is searched for in the first half
+    * of the series only, and the number of dropped observations,
+    * $md$, is returned.
+    *
+    * @param x
+    *           the series of observations.
+    * @param m
+    *           the number of observations in each group.
+    * @return the number of observations to truncate.
+    */
+   public static int getMSERTruncation (double[] x, int m) {
+      final int ng = x.length / m;
+      if (ng < 4)
+         return 0;
+      final double[] z = new double[ng];
+      for (int j = 0; j < ng; j++) {
+         double sum = 0;
+         for (int i = 0; i < m; i++)
+            sum += x[j*m + i];
+         z[j] = sum / m;
+      }
+      // Sums of the group averages from the end of the series
+      double s1 = 0, s2 = 0;
+      final double[] mser = new double[ng / 2 + 1];
+      for (int j = ng - 1; j >= 0; j--) {
+         s1 += z[j];
+         s2 += z[j]*z[j];
+         if (j < mser.length) {
+            final int r = ng - j;
+            mser[j] = (s2 - s1*s1/r) / ((double)r*r);
+         }
+      }
+      int best = 0;
+      for (int j = 1; j < mser.length; j++)
+         if (mser[j] < mser[best])
+            best = j;
+      return best*m;
+   }
+
+   /**
+    * Estimates the lag-1 autocorrelation of the effective batch means
+    * for the total queue size, from the \texttt{n} stored real batches.
+    * Returns \texttt{Double.NaN} if the queue size is not collected
+    * or if there are less than three effective batches.
+    */
+   private double getLag1Correlation (int n) {
+      final double[] qs = getRealBatchSeries (MeasureType.QUEUESIZE, n);
+      if (qs == null)
+         return Double.NaN;
+      int nb = getMinBatches ();
+      int nAgr = n / nb;
+      if (nAgr == 0) {
+         nAgr = 1;
+         nb = n;
+      }
+      final double[] x = new double[nb];
+      for (int j = 0; j < nb; j++)
+         for (int i = 0; i < nAgr; i++)
+            x[j] += qs[j*nAgr + i];
+      return getLag1Correlation (x);
+   }
+
+   /**
+    * Returns the estimated lag-1 autocorrelation of
+    * the series \texttt{x}, or \texttt{Double.NaN}
+    * if the series contains less than three values, or
+    * if all values are equal.
+    *
+    * @param x
+    *           the series of observations.
+    * @return the estimated lag-1 autocorrelation.
+    */
+   public static double getLag1Correlation (double[] x) {
+      if (x.length < 3)
+         return Double.NaN;
+      double mean = 0;
+      for (final double v : x)
+         mean += v;
+      mean /= x.length;
+      double num = 0, den = 0;
+      for (int j = 0; j < x.length; j++) {
+         final double dv = x[j] - mean;
+         den += dv*dv;
+         if (j > 0)
+            num += dv*(x[j - 1] - mean);
+      }
+      if (den == 0)
+         return Double.NaN;
+      return num / den;
+   }
+
    private final class StabilityChecker implements WaitingQueueListener {
 
       public void dequeued (DequeueEvent ev) {
@@ -704,6 +1158,9 @@ public class BatchMeansLogic extends BatchMeansSim implements SimLogic {
 
    public void setAborted (boolean aborted) {
       base.setAborted (aborted);
+      if (runs != null)
+         for (final BatchMeansLogic run : runs)
+            run.setAborted (aborted);
    }
 
    public void addSimLogicListener (SimLogicListener ell) {
@@ -722,6 +1179,20 @@ public class BatchMeansLogic extends BatchMeansSim implements SimLogic {
       base.removeSimLogicListener (ell);
    }
    
+   /**
+    * Stores the unnormalized matrices of values for an effective batch
+    * of an independent run, along with the duration of the batch.
+    */
+   private static final class RecordedBatch {
+      final Map<MeasureType, DoubleMatrix2D> values;
+      final double l;
+
+      RecordedBatch (Map<MeasureType, DoubleMatrix2D> values, double l) {
+         this.values = values;
+         this.l = l;
+      }
+   }
+
    private class BatchMeansCMM extends CallCenterMeasureManager {
       public BatchMeansCMM (CallCenter cc, StatPeriod statP, boolean contactTypeAgentGroup, Collection<MeasureType> measures) {
          super (cc, statP, contactTypeAgentGroup, measures);
@@ -746,18 +1217,37 @@ public class BatchMeansLogic extends BatchMeansSim implements SimLogic {
        * Returns the matrix of observations corresponding to measure type
        * \texttt{mt}. If batch aggregation is enabled, this sums up the values in
        * real batches corresponding to the current effective batch.
+       * For quantiles, which cannot be summed, this
+       * computes the average of the quantiles estimated for
+       * the real batches having observations, or
+       * \texttt{Double.NaN} if no real batch has observations.
        */
       public DoubleMatrix2D getValues (MeasureType mt, boolean norm) {
          DoubleMatrix2D m;
          DoubleDoubleFunction func = mt.getAggregationFunction ();
-         if (getBatchAggregation ()) {
+         if (replayedBatch != null)
+            m = replayedBatch.values.get (mt).copy ();
+         else if (getBatchAggregation ()) {
             final ListOfTallies<TallyStore> a = rpMap.get (mt);
             m = new DenseDoubleMatrix2D (a.size (), 1);
             for (int j = 0; j < a.size (); j++) {
                final double[] ell = a.get (j).getArray ();
                double v = 0;
-               for (int k = s; k < s + h; k++)
-                  v = func.apply (v, ell[k - getDroppedRealBatches ()]);
+               if (mt.isQuantile ()) {
+                  // Real batches without observation have undefined quantiles
+                  int nd = 0;
+                  for (int k = s; k < s + h; k++) {
+                     final double x = ell[k - getDroppedRealBatches ()];
+                     if (!Double.isNaN (x)) {
+                        v += x;
+                        ++nd;
+                     }
+                  }
+                  v = nd == 0 ? Double.NaN : v / nd;
+               }
+               else
+                  for (int k = s; k < s + h; k++)
+                     v = func.apply (v, ell[k - getDroppedRealBatches ()]);
                m.setQuick (j, 0, v);
             }
          }
@@ -26,6 +26,7 @@ import umontreal.iro.lecuyer.contactcenters.msk.model.StartingState;
 import umontreal.iro.lecuyer.contactcenters.msk.stat.CallCenterMeasureManager;
 import umontreal.iro.lecuyer.contactcenters.msk.stat.CallCenterStatProbes;
 import umontreal.iro.lecuyer.contactcenters.msk.stat.MeasureType;
+import umontreal.iro.lecuyer.contactcenters.msk.stat.ObsSpillManager;
 import umontreal.iro.lecuyer.contactcenters.msk.stat.SimCallCenterStat;
 import umontreal.iro.lecuyer.contactcenters.msk.stat.StatPeriod;
 import umontreal.iro.lecuyer.contactcenters.queue.WaitingQueue;
@@ -48,6 +49,7 @@ public class RepLogic extends RepSim implements SimLogic {
    private SimLogicBase base;
    private RepSimParams simParams;
    private SimCallCenterStat stat;
+   private ObsSpillManager spill;
    private CallCenterMeasureManager ccm;
    private IntegralMeasureUpdater miu;
 
@@ -73,8 +75,11 @@ public class RepLogic extends RepSim implements SimLogic {
       this.cc = cc;
       this.simParams = simParams;
       ccm = new RepCMM (cc, this, simParams.isEstimateContactTypeAgentGroup (), pms);
+      ccm.setQuantileRelativeAccuracy (simParams.getQuantileRelativeAccuracy ());
       ccm.registerListeners ();
-      stat = new SimCallCenterStat (cc, ccm, simParams.isKeepObs (), simParams.isNormalizeToDefaultUnit (), pms);
+      spill = ObsSpillManager.prepare (spill, simParams.isKeepObs ()
+            && simParams.isSpillObs ());
+      stat = new SimCallCenterStat (cc, ccm, simParams.isKeepObs (), spill, simParams.isNormalizeToDefaultUnit (), pms);
       miu = new IntegralMeasureUpdater (ccm);
       cc.getPeriodChangeEvent ().addPeriodChangeListener (miu);
       cc.setAwtPeriod (this);
@@ -311,8 +316,11 @@ public class RepLogic extends RepSim implements SimLogic {
       ccm.unregisterListeners ();
       cc.getPeriodChangeEvent ().removePeriodChangeListener (miu);
       ccm = new RepCMM (cc, this, simParams.isEstimateContactTypeAgentGroup (), pms);
+      ccm.setQuantileRelativeAccuracy (simParams.getQuantileRelativeAccuracy ());
       ccm.registerListeners ();
-      stat = new SimCallCenterStat (cc, ccm, simParams.isKeepObs (), simParams.isNormalizeToDefaultUnit (), pms);
+      spill = ObsSpillManager.prepare (spill, simParams.isKeepObs ()
+            && simParams.isSpillObs ());
+      stat = new SimCallCenterStat (cc, ccm, simParams.isKeepObs (), spill, simParams.isNormalizeToDefaultUnit (), pms);
       miu = new IntegralMeasureUpdater (ccm);
       cc.getPeriodChangeEvent ().addPeriodChangeListener (miu);
       cc.setAwtPeriod (this);
@@ -693,6 +701,7 @@ public class RepLogic extends RepSim implements SimLogic {
        * This gives a $R\times P'$ matrix which is returned.
        *
        * For measure types depending on an acceptable waiting time,
+       * and for quantiles,
        * matrices of counters already have $P'$ columns so the columns
        * are not transformed in this case.
        * This exception is due to the fact that columns in such matrix
@@ -724,6 +733,12 @@ public class RepLogic extends RepSim implements SimLogic {
          case NUMABANDONEDAFTERAWT:
          case SUMEXCESSTIMESABANDONED:
          case SUMEXCESSTIMESSERVED:
+         case WAITINGTIMEABANDONEDQ80:
+         case WAITINGTIMEABANDONEDQ90:
+         case WAITINGTIMEABANDONEDQ95:
+         case WAITINGTIMESERVEDQ80:
+         case WAITINGTIMESERVEDQ90:
+         case WAITINGTIMESERVEDQ95:
             // The matrix contains P' columns, so do not transform it
             break;
          default: // Preliminary and wrap-up periods are ignored
@@ -69,6 +69,10 @@ public class CallByCallMeasureManager implements ExitedContactListener
 
    private SumMatrix sumServiceTimes;
    private SumMatrix sumServed;
+   private HistogramMatrix histWaitingTimesServed;
+   private HistogramMatrix histWaitingTimesAbandoned;
+   private MeasureMatrix[] quantWaitingTimesServed;
+   private MeasureMatrix[] quantWaitingTimesAbandoned;
    private boolean contactTypeAgentGroup;
 
 
@@ -194,6 +198,45 @@ public class CallByCallMeasureManager implements ExitedContactListener
          sumExcessTimesServed = createSumMatrix (nsl * cgp, npAwt);
       if (measures == null || measures.contains (MeasureType.SUMSERVED))
          sumServed = new SumMatrix (K * I, 1);
+
+      final int Kp = K > 1 ? K + 1 + cc.getNumContactTypeSegments () : K;
+      if (measures == null || measures.contains (MeasureType.WAITINGTIMESERVEDQ80)
+            || measures.contains (MeasureType.WAITINGTIMESERVEDQ90)
+            || measures.contains (MeasureType.WAITINGTIMESERVEDQ95)) {
+         histWaitingTimesServed = new HistogramMatrix (Kp, npAwt, statP.needsSlidingWindows ());
+         quantWaitingTimesServed = createQuantileMatrices (histWaitingTimesServed);
+      }
+      if (measures == null || measures.contains (MeasureType.WAITINGTIMEABANDONEDQ80)
+            || measures.contains (MeasureType.WAITINGTIMEABANDONEDQ90)
+            || measures.contains (MeasureType.WAITINGTIMEABANDONEDQ95)) {
+         histWaitingTimesAbandoned = new HistogramMatrix (Kp, npAwt, statP.needsSlidingWindows ());
+         quantWaitingTimesAbandoned = createQuantileMatrices (histWaitingTimesAbandoned);
+      }
+   }
+
+   private static MeasureMatrix[] createQuantileMatrices (HistogramMatrix hm)
+   {
+      return new MeasureMatrix[] {
+                hm.getQuantileMatrix (0.8),
+                hm.getQuantileMatrix (0.9),
+                hm.getQuantileMatrix (0.95) };
+   }
+
+   /**
+    * Sets the relative accuracy of the histograms used
+    * to estimate quantiles of waiting times to
+    * \texttt{relativeAccuracy}; see
+    * {@link HistogramMatrix#setRelativeAccuracy(double)}.
+    * The histograms are emptied, so this should be called
+    * before the simulation starts.
+    * @param relativeAccuracy the relative accuracy of the histograms.
+    */
+   public void setQuantileRelativeAccuracy (double relativeAccuracy)
+   {
+      if (histWaitingTimesServed != null)
+         histWaitingTimesServed.setRelativeAccuracy (relativeAccuracy);
+      if (histWaitingTimesAbandoned != null)
+         histWaitingTimesAbandoned.setRelativeAccuracy (relativeAccuracy);
    }
 
    private SumMatrix createSumMatrix (int nr, int nc)
@@ -297,6 +340,17 @@ public class CallByCallMeasureManager implements ExitedContactListener
 
       if (sumServed != null)
          measureMap.put (MeasureType.SUMSERVED, sumServed);
+
+      if (quantWaitingTimesServed != null) {
+         measureMap.put (MeasureType.WAITINGTIMESERVEDQ80, quantWaitingTimesServed[0]);
+         measureMap.put (MeasureType.WAITINGTIMESERVEDQ90, quantWaitingTimesServed[1]);
+         measureMap.put (MeasureType.WAITINGTIMESERVEDQ95, quantWaitingTimesServed[2]);
+      }
+      if (quantWaitingTimesAbandoned != null) {
+         measureMap.put (MeasureType.WAITINGTIMEABANDONEDQ80, quantWaitingTimesAbandoned[0]);
+         measureMap.put (MeasureType.WAITINGTIMEABANDONEDQ90, quantWaitingTimesAbandoned[1]);
+         measureMap.put (MeasureType.WAITINGTIMEABANDONEDQ95, quantWaitingTimesAbandoned[2]);
+      }
    }
 
    // Ajouter pour recuperer les Listes des distributions dans un Map
@@ -332,7 +386,9 @@ public class CallByCallMeasureManager implements ExitedContactListener
              || sumWaitingTimesVQAbandoned != null
              || sumSEWaitingTimesVQAbandoned != null    //Ajouter
              || numServedAfterAWT != null ||
-             sumServed != null;
+             sumServed != null
+             || histWaitingTimesServed != null
+             || histWaitingTimesAbandoned != null;
    }
 
    public boolean hasMeasureMse()
@@ -371,6 +427,10 @@ public class CallByCallMeasureManager implements ExitedContactListener
       init (sumServed);
       init (sumExcessTimesServed);
       init (sumExcessTimesAbandoned);
+      if (histWaitingTimesServed != null)
+         histWaitingTimesServed.init ();
+      if (histWaitingTimesAbandoned != null)
+         histWaitingTimesAbandoned.init ();
    }
 
    private void init (MeasureMatrix m)
@@ -425,13 +485,15 @@ public class CallByCallMeasureManager implements ExitedContactListener
    public void newWaitingTimeAbandoned (Contact contact, int period, double t)
    {   // Modifier
       if (sumWaitingTimesAbandoned == null && maxWaitingTimeAbandoned == null &&
-            sumSEWaitingTimesAbandoned == null )
+            sumSEWaitingTimesAbandoned == null && histWaitingTimesAbandoned == null)
          return ;
       final int type = contact.getTypeId ();
       if (sumWaitingTimesAbandoned != null)
          addK (contact, sumWaitingTimesAbandoned, type, period, t);
       if (maxWaitingTimeAbandoned != null)
          maxK (contact, maxWaitingTimeAbandoned, type, period, t);
+      if (histWaitingTimesAbandoned != null)
+         addHist (contact, histWaitingTimesAbandoned, type, t);
 
       if (sumSEWaitingTimesAbandoned != null)              //  Ajouter
       { double diff = contact.getWaitingTimeEstimate() - t;
@@ -468,7 +530,7 @@ for (Integer mapKey : hashMap.keySet()) {
    public void newWaitingTimeServed (Contact contact, int period, double t)
    {  //Modifier
       if (sumWaitingTimesServed == null && maxWaitingTimeServed == null &&
-            sumSEWaitingTimesServed == null)
+            sumSEWaitingTimesServed == null && histWaitingTimesServed == null)
          return ;
       final int type = contact.getTypeId ();
       final int group = contact.getLastAgentGroup ().getId ();
@@ -476,6 +538,8 @@ for (Integer mapKey : hashMap.keySet()) {
          addKI (contact, sumWaitingTimesServed, type, group, period, t);
       if (maxWaitingTimeServed != null)
          maxKI (contact, maxWaitingTimeServed, type, group, period, t);
+      if (histWaitingTimesServed != null)
+         addHist (contact, histWaitingTimesServed, type, t);
 
       if (sumSEWaitingTimesServed != null)     //Ajouter
       { double diff = contact.getWaitingTimeEstimate() - t;
@@ -859,6 +923,45 @@ for (Integer mapKey : hashMap.keySet()) {
       }
    }
 
+   /**
+    * Adds the waiting time \texttt{qt} to the histograms concerning
+    * the call type \texttt{type}, the segments of call types containing
+    * this type, the statistical period of the call, and the segments
+    * of main periods containing this period.
+    * Since quantiles cannot be aggregated, the histograms
+    * are updated for each segment, in a way similar to
+    * counters using acceptable waiting times.
+    */
+   private void addHist (Contact contact, HistogramMatrix hm, int type, double qt)
+   {
+      final int statPeriod = statP.getStatPeriodAwt (contact);
+      if (statPeriod < 0)
+         return ;
+      final boolean countedInSum = !cc.getCallFactory (type).isExcludedFromStatTotal ();
+      final int nsegType = K > 1 ? cc.getNumContactTypeSegments () : 0;
+      final int nsegPeriod;
+      if (hm.getNumPeriods () > 1 && statP.needsStatForPeriodSegmentsAwt ())
+         nsegPeriod = cc.getNumMainPeriodSegments ();
+      else
+         nsegPeriod = -1;
+      final int P = cc.getNumMainPeriods ();
+      for (int segType = -1; segType <= nsegType; segType++) {
+         if (segType == nsegType && !countedInSum)
+            continue;
+         if (segType >= 0 && segType < nsegType && !cc.getContactTypeSegment (segType).containsValue (type))
+            continue;
+         final int typeIndex = segType == -1 ? type : K + segType;
+         if (K <= 1 && typeIndex > 0)
+            continue;
+         hm.add (typeIndex, statPeriod, qt);
+         for (int segPeriod = 0; segPeriod <= nsegPeriod; segPeriod++) {
+            if (segPeriod < nsegPeriod && !cc.getMainPeriodSegment (segPeriod).containsValue (statPeriod))
+               continue;
+            hm.add (typeIndex, P + segPeriod, qt);
+         }
+      }
+   }
+
    private void addGoodAndBad (int offset, int type, int group,
                                double qt, double s, int statPeriod, SumMatrix good, SumMatrix bad)
    {
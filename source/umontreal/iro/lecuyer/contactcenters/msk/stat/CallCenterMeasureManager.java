@@ -97,6 +97,7 @@ public abstract class CallCenterMeasureManager
    private MeasureSet qs;
    private QueueSizeChecker sc;
    private BusyAgentsChecker bc;
+   private boolean tracingQueueSizes;
    private MeasureType[] measureTypes;
 
    @SuppressWarnings ("unchecked")
@@ -498,6 +499,24 @@ public abstract class CallCenterMeasureManager
          case MAXWAITINGTIMESERVEDG:
             putMeasures (pm, MeasureType.MAXWAITINGTIMESERVED);
             break;
+         case WAITINGTIMEABANDONEDQ80:
+            putMeasures (pm, MeasureType.WAITINGTIMEABANDONEDQ80);
+            break;
+         case WAITINGTIMEABANDONEDQ90:
+            putMeasures (pm, MeasureType.WAITINGTIMEABANDONEDQ90);
+            break;
+         case WAITINGTIMEABANDONEDQ95:
+            putMeasures (pm, MeasureType.WAITINGTIMEABANDONEDQ95);
+            break;
+         case WAITINGTIMESERVEDQ80:
+            putMeasures (pm, MeasureType.WAITINGTIMESERVEDQ80);
+            break;
+         case WAITINGTIMESERVEDQ90:
+            putMeasures (pm, MeasureType.WAITINGTIMESERVEDQ90);
+            break;
+         case WAITINGTIMESERVEDQ95:
+            putMeasures (pm, MeasureType.WAITINGTIMESERVEDQ95);
+            break;
          case SUMWAITINGTIMESVQ:
             putMeasures (pm, MeasureType.SUMWAITINGTIMESVQSERVED,
                          MeasureType.SUMWAITINGTIMESVQABANDONED);
@@ -553,6 +572,36 @@ public abstract class CallCenterMeasureManager
       return pmMeasures.get (pm);                                              // Specifier eple m1-m2-m3-m4
    }
 
+   /**
+    * Determines if the type of performance measure \texttt{pm}
+    * is estimated using quantiles of observations, i.e., if
+    * its counters have a type for which {@link MeasureType#isQuantile()}
+    * returns \texttt{true}.
+    * The observation of such a measure is undefined, and
+    * equal to \texttt{Double.NaN}, for a replication or batch
+    * without any observation concerning the measure.
+    * @param pm the tested type of performance measure.
+    * @return \texttt{true} if and only if \texttt{pm} is based on quantiles.
+    */
+   public static boolean isQuantile (PerformanceMeasureType pm)
+   {
+      final MeasureType[] mt = pmMeasures.get (pm);
+      return mt != null && mt.length > 0 && mt[0].isQuantile ();
+   }
+
+   /**
+    * Sets the relative accuracy of the histograms used
+    * to estimate quantiles to \texttt{relativeAccuracy}.
+    * See {@link CallByCallMeasureManager#setQuantileRelativeAccuracy(double)}
+    * for more information.
+    * @param relativeAccuracy the relative accuracy of the histograms.
+    */
+   public void setQuantileRelativeAccuracy (double relativeAccuracy)
+   {
+      if (cm != null)
+         cm.setQuantileRelativeAccuracy (relativeAccuracy);
+   }
+
 
    /**
     * Returns the types of counters needed to estimate
@@ -778,8 +827,14 @@ for (final MeasureMatrix m : measureMap.values ())
     */
    public void registerListeners ()
    {
-      if (cm != null)
+      if (cm != null) {
          cc.getRouter ().addExitedContactListener (cm);
+         // Only these measures use the queue sizes stored in contacts
+         if (cm.hasMeasureMse () && !tracingQueueSizes) {
+            cc.getRouter ().startTracingSharedTypeQueueSizes ();
+            tracingQueueSizes = true;
+         }
+      }
       if (outCounter != null)
 for (final Dialer dialer : cc.getDialers ()) {
             if (dialer == null)
@@ -808,8 +863,13 @@ for (final Dialer dialer : cc.getDialers ()) {
     */
    public void unregisterListeners ()
    {
-      if (cm != null)
+      if (cm != null) {
          cc.getRouter ().removeExitedContactListener (cm);
+         if (tracingQueueSizes) {
+            cc.getRouter ().stopTracingSharedTypeQueueSizes ();
+            tracingQueueSizes = false;
+         }
+      }
       if (outCounter != null)
 for (final Dialer dialer : cc.getDialers ()) {
             if (dialer == null)
@@ -0,0 +1,200 @@
+package umontreal.iro.lecuyer.contactcenters.msk.stat;
+
+import umontreal.ssj.stat.mperiods.MeasureMatrix;
+
+/**
+ * Matrix of histograms with one row per measure and one
+ * column per period, used to estimate quantiles of
+ * observations without storing them.
+ * Each element of the matrix is a {@link LogHistogram} which
+ * is updated using {@link #add(int,int,double)}.
+ * Since quantiles cannot be aggregated, observations
+ * must be added to every element concerned by the observation,
+ * e.g., to the row of the call type and the rows of segments containing
+ * this type.
+ *
+ * Quantiles are converted to measures by
+ * using the measure matrices returned by
+ * {@link #getQuantileMatrix(double)}.
+ * These matrices share the histograms of this object, so
+ * several quantiles can be estimated from the same histograms.
+ *
+ * If sliding windows are enabled, the matrix stores the histograms for
+ * the last periods only, in a way similar to
+ * {@link umontreal.ssj.stat.mperiods.SumMatrixSW}:
+ * when an observation is added for a period following the last
+ * stored period, the window is shifted and the histograms for
+ * the first periods are discarded.
+ */
+public class HistogramMatrix {
+   private final LogHistogram[][] hist;
+   private final boolean slidingWindows;
+   private int firstRealPeriod;
+
+   /**
+    * Constructs a new matrix of histograms with
+    * \texttt{numMeasures} rows and \texttt{numPeriods}
+    * columns.
+    * The boolean \texttt{slidingWindows} determines if
+    * sliding windows are used.
+    * @param numMeasures the number of measures.
+    * @param numPeriods the number of periods.
+    * @param slidingWindows determines if sliding windows are used.
+    */
+   public HistogramMatrix (int numMeasures, int numPeriods, boolean slidingWindows) {
+      hist = new LogHistogram[numPeriods][numMeasures];
+      final LogHistogram h0 = new LogHistogram ();
+      for (int p = 0; p < numPeriods; p++)
+         for (int i = 0; i < numMeasures; i++)
+            hist[p][i] = new LogHistogram (h0);
+      this.slidingWindows = slidingWindows;
+   }
+
+   /**
+    * Replaces every histogram of this matrix with an empty
+    * histogram using the default minimal and maximal values, and
+    * relative accuracy \texttt{relativeAccuracy}.
+    * Since the number of buckets of each histogram is
+    * proportional to $1/\log(1+2\epsilon)$, where $\epsilon$ is the
+    * relative accuracy, decreasing the accuracy reduces the memory
+    * used by the histograms.
+    * @param relativeAccuracy the relative accuracy of the histograms.
+    * @exception IllegalArgumentException if \texttt{relativeAccuracy}
+    * is not in $(0,1)$.
+    */
+   public void setRelativeAccuracy (double relativeAccuracy) {
+      final LogHistogram h0 = new LogHistogram (LogHistogram.DEFAULT_MIN_VALUE,
+            LogHistogram.DEFAULT_MAX_VALUE, relativeAccuracy);
+      for (final LogHistogram[] col : hist)
+         for (int i = 0; i < col.length; i++)
+            col[i] = new LogHistogram (h0);
+   }
+
+   /**
+    * Returns the number of measures, i.e., rows,
+    * in this matrix.
+    * @return the number of measures.
+    */
+   public int getNumMeasures () {
+      return hist.length == 0 ? 0 : hist[0].length;
+   }
+
+   /**
+    * Returns the number of periods, i.e., columns,
+    * in this matrix.
+    * @return the number of periods.
+    */
+   public int getNumPeriods () {
+      return hist.length;
+   }
+
+   /**
+    * Removes all the observations from the histograms.
+    */
+   public void init () {
+      for (final LogHistogram[] col : hist)
+         for (final LogHistogram h : col)
+            h.init ();
+      firstRealPeriod = 0;
+   }
+
+   /**
+    * Adds the observation \texttt{x} to the histogram
+    * for measure \texttt{i} and period \texttt{p}.
+    * If sliding windows are not used and \texttt{p} is greater
+    * than or equal to the number of periods, the
+    * observation is ignored.
+    * @param i the index of the measure.
+    * @param p the index of the period.
+    * @param x the observation.
+    */
+   public void add (int i, int p, double x) {
+      if (slidingWindows) {
+         final int np = hist.length;
+         if (p < firstRealPeriod)
+            return;
+         if (p >= firstRealPeriod + np)
+            shiftWindow (p - np + 1);
+         hist[p - firstRealPeriod][i].add (x);
+      }
+      else if (p < hist.length)
+         hist[p][i].add (x);
+   }
+
+   private void shiftWindow (int newFirst) {
+      final int np = hist.length;
+      final int shift = newFirst - firstRealPeriod;
+      final LogHistogram[][] old = hist.clone ();
+      for (int p = 0; p < np; p++) {
+         hist[p] = old[(p + shift) % np];
+         if (p >= np - shift)
+            for (final LogHistogram h : hist[p])
+               h.init ();
+      }
+      firstRealPeriod = newFirst;
+   }
+
+   /**
+    * Returns the histogram for measure \texttt{i} and
+    * stored period \texttt{p}.
+    * @param i the index of the measure.
+    * @param p the index of the stored period.
+    * @return the histogram.
+    */
+   public LogHistogram get (int i, int p) {
+      return hist[p][i];
+   }
+
+   /**
+    * Returns a measure matrix whose elements are
+    * the quantiles of probability \texttt{q}
+    * estimated by the histograms of this matrix.
+    * Elements corresponding to empty histograms are
+    * \texttt{Double.NaN}.
+    * Initializing the returned matrix resets
+    * the histograms of this object.
+    * @param q the probability of the quantiles.
+    * @return the measure matrix of quantiles.
+    */
+   public MeasureMatrix getQuantileMatrix (double q) {
+      if (q < 0 || q > 1)
+         throw new IllegalArgumentException ("q must be in [0,1]");
+      return new QuantileMatrix (q);
+   }
+
+   private final class QuantileMatrix implements MeasureMatrix {
+      private final double q;
+
+      public QuantileMatrix (double q) {
+         this.q = q;
+      }
+
+      public void init () {
+         HistogramMatrix.this.init ();
+      }
+
+      public double getMeasure (int i, int p) {
+         return hist[p][i].quantile (q);
+      }
+
+      public int getNumMeasures () {
+         return HistogramMatrix.this.getNumMeasures ();
+      }
+
+      public int getNumPeriods () {
+         return hist.length;
+      }
+
+      public void regroupPeriods (int x) {
+         throw new UnsupportedOperationException ();
+      }
+
+      public void setNumMeasures (int nm) {
+         throw new UnsupportedOperationException ();
+      }
+
+      public void setNumPeriods (int np) {
+         throw new UnsupportedOperationException ();
+      }
+   }
+}
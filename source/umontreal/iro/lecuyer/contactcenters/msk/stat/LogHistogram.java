@@ -0,0 +1,228 @@
+package umontreal.iro.lecuyer.contactcenters.msk.stat;
+
+import java.util.Arrays;
+
+/**
+ * Represents a histogram with logarithmically-spaced buckets,
+ * used to estimate quantiles of non-negative observations
+ * without storing them.
+ * The histogram contains one bucket for observations
+ * smaller than or equal to a minimal value $x_0$, and
+ * buckets $[x_0\gamma^{j-1}, x_0\gamma^j)$ for
+ * $j=1,\ldots,m-1$, where $\gamma=1+2\epsilon$ and $\epsilon$ is
+ * the relative accuracy of the histogram.
+ * The last bucket also contains every observation greater than
+ * the maximal value.
+ * A quantile estimated by this histogram is the geometric
+ * midpoint of the bucket containing the corresponding observation,
+ * which gives a relative error of at most $\epsilon$ for
+ * observations between the minimal and maximal values,
+ * and an absolute error of at most $x_0$ for observations smaller than $x_0$.
+ *
+ * The memory used by a histogram depends on the relative accuracy
+ * and on the range of values only, not on the number of observations.
+ * The array of counters is allocated when the first observation
+ * is added, so unused histograms take a small amount of memory.
+ * Two histograms with the same parameters
+ * can be merged using {@link #add(LogHistogram)}, which
+ * gives the same counters as if all the observations had been
+ * added to a single histogram.
+ */
+public class LogHistogram {
+   /**
+    * Default minimal value $x_0$.
+    */
+   public static final double DEFAULT_MIN_VALUE = 1e-6;
+
+   /**
+    * Default maximal value.
+    */
+   public static final double DEFAULT_MAX_VALUE = 1e6;
+
+   /**
+    * Default relative accuracy $\epsilon$.
+    */
+   public static final double DEFAULT_RELATIVE_ACCURACY = 0.005;
+
+   private final double minValue;
+   private final double logGamma;
+   private final int numBuckets;
+   private int[] counts;
+   private long numObs;
+   private double min;
+   private double max;
+
+   /**
+    * Constructs a new histogram with the default minimal
+    * value, maximal value, and relative accuracy.
+    */
+   public LogHistogram () {
+      this (DEFAULT_MIN_VALUE, DEFAULT_MAX_VALUE, DEFAULT_RELATIVE_ACCURACY);
+   }
+
+   /**
+    * Constructs a new histogram for values in
+    * $[$\texttt{minValue}, \texttt{maxValue}$]$, with
+    * relative accuracy \texttt{relativeAccuracy}.
+    * @param minValue the minimal value $x_0$.
+    * @param maxValue the maximal value.
+    * @param relativeAccuracy the relative accuracy $\epsilon$.
+    * @exception IllegalArgumentException if \texttt{minValue} is
+    * negative or 0, \texttt{maxValue} is smaller than or equal to
+    * \texttt{minValue}, or \texttt{relativeAccuracy} is not in $(0,1)$.
+    */
+   public LogHistogram (double minValue, double maxValue, double relativeAccuracy) {
+      if (minValue <= 0)
+         throw new IllegalArgumentException ("minValue must be positive");
+      if (maxValue <= minValue)
+         throw new IllegalArgumentException ("maxValue must be greater than minValue");
+      if (relativeAccuracy <= 0 || relativeAccuracy >= 1)
+         throw new IllegalArgumentException ("relativeAccuracy must be in (0,1)");
+      this.minValue = minValue;
+      logGamma = Math.log1p (2*relativeAccuracy);
+      numBuckets = 2 + (int)Math.ceil (Math.log (maxValue / minValue) / logGamma);
+      init ();
+   }
+
+   /**
+    * Constructs a histogram with the same parameters as \texttt{h},
+    * and no observation.
+    * @param h the histogram whose parameters are copied.
+    */
+   public LogHistogram (LogHistogram h) {
+      minValue = h.minValue;
+      logGamma = h.logGamma;
+      numBuckets = h.numBuckets;
+      init ();
+   }
+
+   /**
+    * Removes every observation from this histogram.
+    */
+   public void init () {
+      if (counts != null)
+         Arrays.fill (counts, 0);
+      numObs = 0;
+      min = Double.POSITIVE_INFINITY;
+      max = Double.NEGATIVE_INFINITY;
+   }
+
+   /**
+    * Returns the number of buckets in this histogram.
+    * @return the number of buckets.
+    */
+   public int getNumBuckets () {
+      return numBuckets;
+   }
+
+   /**
+    * Returns the number of observations added to this histogram.
+    * @return the number of observations.
+    */
+   public long numberObs () {
+      return numObs;
+   }
+
+   /**
+    * Returns the smallest observation added to this histogram,
+    * or \texttt{Double.POSITIVE\_INFINITY} if the histogram
+    * is empty.
+    * @return the minimum.
+    */
+   public double min () {
+      return min;
+   }
+
+   /**
+    * Returns the largest observation added to this histogram,
+    * or \texttt{Double.NEGATIVE\_INFINITY} if the histogram
+    * is empty.
+    * @return the maximum.
+    */
+   public double max () {
+      return max;
+   }
+
+   private int getBucket (double x) {
+      if (x <= minValue)
+         return 0;
+      final int j = 1 + (int)(Math.log (x / minValue) / logGamma);
+      return j < numBuckets ? j : numBuckets - 1;
+   }
+
+   /**
+    * Adds the observation \texttt{x} to this histogram.
+    * Negative observations are counted in the first bucket.
+    * @param x the new observation.
+    */
+   public void add (double x) {
+      if (counts == null)
+         counts = new int[numBuckets];
+      ++counts[getBucket (x)];
+      ++numObs;
+      if (x < min)
+         min = x;
+      if (x > max)
+         max = x;
+   }
+
+   /**
+    * Adds the counters of histogram \texttt{h} to the counters
+    * of this histogram.
+    * @param h the histogram to be merged.
+    * @exception IllegalArgumentException if the parameters of
+    * \texttt{h} differ from the parameters of this histogram.
+    */
+   public void add (LogHistogram h) {
+      if (h.minValue != minValue || h.logGamma != logGamma || h.numBuckets != numBuckets)
+         throw new IllegalArgumentException ("Incompatible histograms");
+      if (h.numObs == 0)
+         return;
+      if (counts == null)
+         counts = new int[numBuckets];
+      for (int j = 0; j < numBuckets; j++)
+         counts[j] += h.counts[j];
+      numObs += h.numObs;
+      if (h.min < min)
+         min = h.min;
+      if (h.max > max)
+         max = h.max;
+   }
+
+   /**
+    * Returns an estimate of the quantile of probability \texttt{p}
+    * of the observations, i.e., the smallest observation $x$ such that
+    * the fraction of observations smaller than or equal to $x$
+    * is at least \texttt{p}.
+    * This returns \texttt{Double.NaN} if the histogram contains
+    * no observation, because the quantile is undefined in this case.
+    * @param p the probability.
+    * @return the estimated quantile, or \texttt{Double.NaN}.
+    * @exception IllegalArgumentException if \texttt{p} is not in $[0,1]$.
+    */
+   public double quantile (double p) {
+      if (p < 0 || p > 1)
+         throw new IllegalArgumentException ("p must be in [0,1]");
+      if (numObs == 0)
+         return Double.NaN;
+      final long rank = Math.max (1, (long)Math.ceil (p*numObs));
+      long n = 0;
+      int j = 0;
+      while (j < numBuckets - 1) {
+         n += counts[j];
+         if (n >= rank)
+            break;
+         ++j;
+      }
+      final double x;
+      if (j == 0)
+         x = 0;
+      else
+         x = minValue * Math.exp ((j - 0.5)*logGamma);
+      if (x < min)
+         return min;
+      if (x > max)
+         return max;
+      return x;
+   }
+}
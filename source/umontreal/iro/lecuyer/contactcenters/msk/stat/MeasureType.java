@@ -42,6 +42,14 @@ import umontreal.iro.lecuyer.contactcenters.app.RowType;
  * getRowType} \texttt{(false)}. The matrix type is AWT-based
  * only if its associated row type is {@link RowType#INBOUNDTYPEAWT}.
  *
+ * Matrices of quantiles, e.g., {@link #WAITINGTIMESERVEDQ90}, cannot
+ * be aggregated either. Such matrices are computed from histograms
+ * updated for each call type and segment of call types, and
+ * contain $P'$ columns, like matrices based on acceptable waiting
+ * times.
+ * The method {@link #isQuantile()} can be used to test if
+ * a measure type corresponds to quantiles.
+ *
  * The operator used for aggregation is often the sum, but this
  * can also be the maximum for some types of measures.
  * This operator can be obtained using the {@link #getAggregationFunction()}.
@@ -105,7 +113,19 @@ public enum MeasureType {
    SUMSEWAITINGTIMESSERVED (RowType.CONTACTTYPEAGENTGROUP, TimeNormalizeType.CONDITIONAL, Functions.plus),   //ajout pour MSE
    SUMSEWAITINGTIMESABANDONED (RowType.CONTACTTYPE, TimeNormalizeType.CONDITIONAL, Functions.plus),          //ajout pour MSE
    SUMSEWAITINGTIMESVQABANDONED (RowType.CONTACTTYPE, TimeNormalizeType.CONDITIONAL, Functions.plus),        //ajout pour MSE
-   SUMSEWAITINGTIMESVQSERVED (RowType.CONTACTTYPEAGENTGROUP, TimeNormalizeType.CONDITIONAL, Functions.plus); //ajout pour MSE
+   SUMSEWAITINGTIMESVQSERVED (RowType.CONTACTTYPEAGENTGROUP, TimeNormalizeType.CONDITIONAL, Functions.plus), //ajout pour MSE
+
+   WAITINGTIMEABANDONEDQ80 (RowType.CONTACTTYPE, TimeNormalizeType.NEVER, Functions.max),
+
+   WAITINGTIMEABANDONEDQ90 (RowType.CONTACTTYPE, TimeNormalizeType.NEVER, Functions.max),
+
+   WAITINGTIMEABANDONEDQ95 (RowType.CONTACTTYPE, TimeNormalizeType.NEVER, Functions.max),
+
+   WAITINGTIMESERVEDQ80 (RowType.CONTACTTYPE, TimeNormalizeType.NEVER, Functions.max),
+
+   WAITINGTIMESERVEDQ90 (RowType.CONTACTTYPE, TimeNormalizeType.NEVER, Functions.max),
+
+   WAITINGTIMESERVEDQ95 (RowType.CONTACTTYPE, TimeNormalizeType.NEVER, Functions.max);
 
    private DoubleDoubleFunction aggrFunc;
    private RowType rowType;
@@ -158,6 +178,29 @@ public enum MeasureType {
       return contactTypeAgentGroup ? rowTypeGroup : rowType;
    }
 
+   /**
+    * Determines if matrices of this type contain quantiles
+    * estimated using histograms, for each call type,
+    * segment of call types, and segment of main periods.
+    * Such matrices cannot be aggregated, and
+    * already contain one row for each segment of call types.
+    * @return \texttt{true} if and only if this type corresponds
+    * to quantiles.
+    */
+   public boolean isQuantile () {
+      switch (this) {
+      case WAITINGTIMEABANDONEDQ80:
+      case WAITINGTIMEABANDONEDQ90:
+      case WAITINGTIMEABANDONEDQ95:
+      case WAITINGTIMESERVEDQ80:
+      case WAITINGTIMESERVEDQ90:
+      case WAITINGTIMESERVEDQ95:
+         return true;
+      default:
+         return false;
+      }
+   }
+
    /**
     * Returns a constant indicating how time normalization
     * should be perform on matrix of counters of this type.
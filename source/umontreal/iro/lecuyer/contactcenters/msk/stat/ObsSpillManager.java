@@ -0,0 +1,302 @@
+package umontreal.iro.lecuyer.contactcenters.msk.stat;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.MemoryPoolMXBean;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import umontreal.iro.lecuyer.util.LowMemoryListener;
+import umontreal.iro.lecuyer.util.LowMemoryNotifier;
+
+/**
+ * Manages statistical collectors whose observations can
+ * be moved from the heap to a temporary file when memory
+ * becomes low.
+ * Collectors are created using {@link #createTallyStore()}, and
+ * store their observations in memory, like
+ * any {@link umontreal.ssj.stat.TallyStore}.
+ * This manager registers itself as a low-memory listener with
+ * a {@link LowMemoryNotifier}, which is shared by default
+ * among all the managers.
+ * When memory becomes low, the manager records the
+ * request, and the observations are moved
+ * to a temporary file the next time
+ * {@link #spillIfRequested()} is called.
+ * The observations are not moved from the thread
+ * sending the low-memory notification, because
+ * collectors are not thread-safe.
+ *
+ * The temporary file is created when observations are spilled
+ * for the first time, and deleted by {@link #close()}
+ * or when the virtual machine exits.
+ * Observations are written to and read from the file
+ * at given positions through a reused direct buffer,
+ * so the file is never memory-mapped.
+ */
+public class ObsSpillManager implements LowMemoryListener {
+   private static final int BUFFER_SIZE = 1 << 16;
+   private static LowMemoryNotifier sharedNotifier;
+   private final Logger logger = Logger
+         .getLogger ("umontreal.iro.lecuyer.contactcenters.msk.stat");
+   private final LowMemoryNotifier notifier;
+   private final List<SpillTallyStore> tallies = new ArrayList<SpillTallyStore> ();
+   private int minBlockSize = 256;
+   private volatile boolean spillRequested;
+   private File file;
+   private RandomAccessFile raf;
+   private FileChannel channel;
+   private ByteBuffer buffer;
+   private long size;
+   private boolean failed;
+
+   /**
+    * Constructs a new spill manager using the
+    * low-memory notifier returned by {@link #getSharedNotifier()}.
+    */
+   public ObsSpillManager () {
+      this (getSharedNotifier ());
+   }
+
+   /**
+    * Constructs a new spill manager registering
+    * with the low-memory notifier \texttt{notifier}.
+    * @param notifier the low-memory notifier.
+    */
+   public ObsSpillManager (LowMemoryNotifier notifier) {
+      this.notifier = notifier;
+      notifier.addLowMemoryListener (this);
+   }
+
+   /**
+    * Returns the low-memory notifier shared by the spill managers
+    * constructed without an explicit notifier.
+    * This notifier uses the default usage threshold, and
+    * is created the first time this method is called.
+    * @return the shared low-memory notifier.
+    */
+   public static synchronized LowMemoryNotifier getSharedNotifier () {
+      if (sharedNotifier == null)
+         sharedNotifier = new LowMemoryNotifier ();
+      return sharedNotifier;
+   }
+
+   /**
+    * Returns the spill manager to use for a new simulation,
+    * given the manager \texttt{spill} used previously, which
+    * may be \texttt{null}.
+    * If \texttt{enabled} is \texttt{true}, this returns
+    * \texttt{spill} after clearing it, or a new manager if
+    * \texttt{spill} is \texttt{null}.
+    * Otherwise, \texttt{spill} is closed if it is non-\texttt{null},
+    * and this returns \texttt{null}.
+    * @param spill the previous spill manager, or \texttt{null}.
+    * @param enabled determines if observations can be spilled.
+    * @return the spill manager, or \texttt{null}.
+    */
+   public static ObsSpillManager prepare (ObsSpillManager spill, boolean enabled) {
+      if (enabled) {
+         if (spill == null)
+            return new ObsSpillManager ();
+         spill.clear ();
+         return spill;
+      }
+      if (spill != null)
+         spill.close ();
+      return null;
+   }
+
+   /**
+    * Returns the minimal number of observations a collector
+    * must have in memory for these observations to be spilled.
+    * The default value is 256.
+    * @return the minimal size of spilled blocks.
+    */
+   public int getMinBlockSize () {
+      return minBlockSize;
+   }
+
+   /**
+    * Sets the minimal size of spilled blocks to
+    * \texttt{minBlockSize}.
+    * @param minBlockSize the new minimal size of blocks.
+    * @exception IllegalArgumentException if \texttt{minBlockSize}
+    * is smaller than 1.
+    */
+   public void setMinBlockSize (int minBlockSize) {
+      if (minBlockSize < 1)
+         throw new IllegalArgumentException ("minBlockSize must be at least 1");
+      this.minBlockSize = minBlockSize;
+   }
+
+   /**
+    * Constructs and returns a new statistical collector
+    * managed by this object.
+    * @return the new collector.
+    */
+   public SpillTallyStore createTallyStore () {
+      final SpillTallyStore ta = new SpillTallyStore (this);
+      tallies.add (ta);
+      return ta;
+   }
+
+   /**
+    * Returns the number of bytes currently used by spilled observations
+    * in the temporary file.
+    * @return the size of the temporary file.
+    */
+   public long getSpilledBytes () {
+      return size;
+   }
+
+   public void lowMemory (LowMemoryNotifier source, MemoryPoolMXBean pool, double fraction) {
+      spillRequested = true;
+   }
+
+   /**
+    * Spills the observations of the managed collectors
+    * if a low-memory notification was received since
+    * the last call to this method.
+    * This method should be called regularly by the thread
+    * adding observations to the collectors, e.g., after each
+    * replication.
+    */
+   public void spillIfRequested () {
+      if (!spillRequested)
+         return;
+      spillRequested = false;
+      spill ();
+   }
+
+   /**
+    * Moves the observations stored in memory by the managed
+    * collectors to the temporary file.
+    * Collectors having less than {@link #getMinBlockSize()}
+    * observations in memory are not affected.
+    * If an I/O error occurs, a warning is logged, and
+    * observations stay in memory.
+    */
+   public void spill () {
+      if (failed)
+         return;
+      final long oldSize = size;
+      try {
+         for (final SpillTallyStore ta : tallies)
+            ta.spill (minBlockSize);
+      }
+      catch (final IOException ioe) {
+         logger.log (Level.WARNING, "Could not spill observations to disk", ioe);
+         failed = true;
+      }
+      if (size > oldSize)
+         logger.info ("Spilled " + (size - oldSize) + " bytes of observations to "
+               + file);
+   }
+
+   long write (double[] values, int n) throws IOException {
+      if (channel == null) {
+         file = File.createTempFile ("obs", ".bin");
+         file.deleteOnExit ();
+         raf = new RandomAccessFile (file, "rw");
+         channel = raf.getChannel ();
+      }
+      final ByteBuffer buf = getBuffer ();
+      final long offset = size;
+      long pos = offset;
+      for (int i = 0; i < n; ) {
+         final int m = Math.min (n - i, buf.capacity () / 8);
+         // Buffer casts keep the code linkable on Java 8
+         ((Buffer) buf).clear ();
+         buf.asDoubleBuffer ().put (values, i, m);
+         ((Buffer) buf).limit (8*m);
+         while (buf.hasRemaining ())
+            pos += channel.write (buf, pos);
+         i += m;
+      }
+      size += 8L*n;
+      return offset;
+   }
+
+   void read (long offset, double[] values, int pos, int n) {
+      final ByteBuffer buf = getBuffer ();
+      long fpos = offset;
+      try {
+         for (int i = 0; i < n; ) {
+            final int m = Math.min (n - i, buf.capacity () / 8);
+            ((Buffer) buf).clear ();
+            ((Buffer) buf).limit (8*m);
+            while (buf.hasRemaining ()) {
+               final int r = channel.read (buf, fpos);
+               if (r < 0)
+                  throw new EOFException ();
+               fpos += r;
+            }
+            ((Buffer) buf).flip ();
+            buf.asDoubleBuffer ().get (values, pos + i, m);
+            i += m;
+         }
+      }
+      catch (final IOException ioe) {
+         throw new IllegalStateException ("Could not read spilled observations from " + file, ioe);
+      }
+   }
+
+   private ByteBuffer getBuffer () {
+      if (buffer == null)
+         buffer = ByteBuffer.allocateDirect (BUFFER_SIZE).order (ByteOrder.nativeOrder ());
+      return buffer;
+   }
+
+   /**
+    * Forgets every collector created by this manager,
+    * and discards the observations in the temporary file.
+    * This should be called when the collectors are not used
+    * anymore.
+    */
+   public void clear () {
+      tallies.clear ();
+      size = 0;
+      failed = false;
+      spillRequested = false;
+      if (channel != null)
+         try {
+            channel.truncate (0);
+         }
+         catch (final IOException ioe) {
+            logger.log (Level.WARNING, "Could not truncate " + file, ioe);
+         }
+   }
+
+   /**
+    * Unregisters this manager from the low-memory notifier,
+    * and deletes the temporary file.
+    * The collectors created by this manager cannot
+    * be used after this method is called.
+    */
+   public void close () {
+      notifier.removeLowMemoryListener (this);
+      tallies.clear ();
+      size = 0;
+      if (channel != null) {
+         try {
+            raf.close ();
+         }
+         catch (final IOException ioe) {
+            logger.log (Level.WARNING, "Could not close " + file, ioe);
+         }
+         file.delete ();
+         channel = null;
+         raf = null;
+         file = null;
+      }
+      buffer = null;
+   }
+}
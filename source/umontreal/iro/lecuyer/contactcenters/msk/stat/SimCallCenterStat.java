@@ -38,6 +38,7 @@ public class SimCallCenterStat extends AbstractCallCenterStatProbes {
    private CallCenter cc;
    private CallCenterMeasureManager ccm;
    private boolean keepObs;
+   private ObsSpillManager spill;
    private boolean normalizeToDefaultUnit;
 
    private MatrixCache cache;
@@ -52,9 +53,28 @@ public class SimCallCenterStat extends AbstractCallCenterStatProbes {
     */
    public SimCallCenterStat (CallCenter cc, CallCenterMeasureManager ccm, boolean keepObs,
          boolean normalizeToDefaultUnit, PerformanceMeasureType... pms) {
+      this (cc, ccm, keepObs, null, normalizeToDefaultUnit, pms);
+   }
+
+   /**
+    * Similar to {@link #SimCallCenterStat(CallCenter,CallCenterMeasureManager,boolean,boolean,PerformanceMeasureType...)},
+    * but if \texttt{keepObs} is \texttt{true} and
+    * \texttt{spill} is non-\texttt{null}, the observations are stored
+    * by collectors created by the spill manager \texttt{spill}, and
+    * can be moved to disk when memory becomes low.
+    * The observations are spilled, if requested by the manager,
+    * each time {@link #addObs(int,int)} is called.
+    *
+    * @param ccm
+    *           the simulation logic.
+    * @param spill the manager for spilled observations, or \texttt{null}.
+    */
+   public SimCallCenterStat (CallCenter cc, CallCenterMeasureManager ccm, boolean keepObs,
+         ObsSpillManager spill, boolean normalizeToDefaultUnit, PerformanceMeasureType... pms) {
       this.cc = cc;
       this.ccm = ccm;
       this.keepObs = keepObs;
+      this.spill = keepObs ? spill : null;
       this.normalizeToDefaultUnit = normalizeToDefaultUnit;
       final Set<PerformanceMeasureType> pmSet = EnumSet
             .noneOf (PerformanceMeasureType.class);
@@ -158,8 +178,7 @@ public class SimCallCenterStat extends AbstractCallCenterStatProbes {
                final int nseg = cc.getNumInContactTypeSegments ();
                for (int s = 0; s <= nseg; s++)
                   for (int mp = 0; mp < np; mp++)
-                     mta.set (KI + s, mp, keepObs ? new TallyStore ()
-                           : new Tally ());
+                     mta.set (KI + s, mp, createTally ());
 
             }
             tallyMap.put (PerformanceMeasureType.RATEOFARRIVALSIN, mta);
@@ -176,7 +195,14 @@ public class SimCallCenterStat extends AbstractCallCenterStatProbes {
       if (!ccm.hasMeasureMatricesFor (pm))
          return null;
       final MatrixOfTallies<?> mta;
-      if (keepObs)
+      if (spill != null) {
+         final MatrixOfTallies<TallyStore> mts = new MatrixOfTallies<TallyStore> (numRows, numColumns);
+         for (int r = 0; r < numRows; r++)
+            for (int c = 0; c < numColumns; c++)
+               mts.set (r, c, spill.createTallyStore ());
+         mta = mts;
+      }
+      else if (keepObs)
          mta = MatrixOfTallies.createWithTallyStore (numRows, numColumns);
       else
          mta = MatrixOfTallies.createWithTally (numRows, numColumns);
@@ -185,6 +211,12 @@ public class SimCallCenterStat extends AbstractCallCenterStatProbes {
       return mta;
    }
 
+   private Tally createTally () {
+      if (spill != null)
+         return spill.createTallyStore ();
+      return keepObs ? new TallyStore () : new Tally ();
+   }
+
    private MatrixOfFunctionOfMultipleMeansTallies<FunctionOfMultipleMeansTally> createRatioProbes (
          Set<PerformanceMeasureType> pmSet, PerformanceMeasureType pm,
          int numRows, int numColumns, double zeroOverZero) {
@@ -214,7 +246,37 @@ public class SimCallCenterStat extends AbstractCallCenterStatProbes {
          throw new IllegalArgumentException ("The measure type " + pm.name ()
                + " does not estimate an expectation");
       final MatrixOfTallies<?> mta = getMatrixOfTallies (pm);
-      addObs (mta, mo, startingMainPeriod, endingMainPeriod);
+      if (CallCenterMeasureManager.isQuantile (pm))
+         addDefinedObs (mta, mo, startingMainPeriod, endingMainPeriod);
+      else
+         addObs (mta, mo, startingMainPeriod, endingMainPeriod);
+   }
+
+   /**
+    * Similar to {@link #addObs(MatrixOfTallies,DoubleMatrix2D,int,int)},
+    * but skips the elements of \texttt{mo} which are \texttt{Double.NaN}.
+    * This is used for quantiles, which are undefined when
+    * no observation concerns an element during a replication,
+    * so each tally counts only the replications defining its quantile.
+    */
+   private static void addDefinedObs (MatrixOfTallies<?> mt, DoubleMatrix2D mo,
+         int startingMainPeriod, int endingMainPeriod) {
+      if (mt == null || mo == null)
+         return;
+      assert mt.rows () == mo.rows ();
+      assert mt.columns () == mo.columns ();
+      final int nr = mt.rows ();
+      final int nc;
+      if (startingMainPeriod == 0 && endingMainPeriod + 1 == mt.columns ())
+         nc = mt.columns ();
+      else
+         nc = endingMainPeriod;
+      for (int mp = startingMainPeriod; mp < nc; mp++)
+         for (int r = 0; r < nr; r++) {
+            final double x = mo.getQuick (r, mp);
+            if (!Double.isNaN (x))
+               mt.get (r, mp).add (x);
+         }
    }
 
    private static void addObs (MatrixOfTallies<?> mt, DoubleMatrix2D mo,
@@ -392,6 +454,8 @@ public class SimCallCenterStat extends AbstractCallCenterStatProbes {
    }
 
    public void addObs (int startingMainPeriod, int endingMainPeriod) {
+      if (spill != null)
+         spill.spillIfRequested ();
       cache.clear ();
       for (final PerformanceMeasureType pm : getPerformanceMeasures ()) {
          if (pm.getEstimationType () != EstimationType.EXPECTATION)
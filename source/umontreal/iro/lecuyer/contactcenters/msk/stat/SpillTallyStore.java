@@ -0,0 +1,241 @@
+package umontreal.iro.lecuyer.contactcenters.msk.stat;
+
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+
+import umontreal.ssj.stat.TallyStore;
+import cern.colt.list.DoubleArrayList;
+
+/**
+ * Statistical collector storing its observations
+ * in memory and in the temporary file of an {@link ObsSpillManager}.
+ * Observations are added in memory, like with
+ * {@link TallyStore}.
+ * When the spill manager detects that memory is low,
+ * the observations in memory are written as a block at the
+ * end of the temporary file, and removed from the heap.
+ *
+ * The methods {@link #numberObs()}, {@link #getObs(int)},
+ * {@link #getArray()}, and {@link #covariance(TallyStore)}
+ * use every observation, including the spilled ones,
+ * without moving them back into the internal list.
+ * {@link #getObs(int)} keeps the last block read from the file
+ * in memory, so reading the observations in order reads each block once,
+ * while {@link #getArray()} reads every block at each call.
+ * Methods requiring the internal list of observations,
+ * e.g., {@link #getDoubleArrayList()} or {@link #quickSort()},
+ * first read the spilled observations back into memory.
+ */
+public class SpillTallyStore extends TallyStore {
+   private final ObsSpillManager manager;
+   private long[] blockOffsets = new long[0];
+   private int[] blockSizes = new int[0];
+   private int[] blockStarts = new int[0];
+   private int numBlocks;
+   private int numSpilled;
+   private SoftReference<double[]> cachedBlock;
+   private int cachedBlockIndex = -1;
+
+   SpillTallyStore (ObsSpillManager manager) {
+      super ();
+      this.manager = manager;
+   }
+
+   /**
+    * Returns the number of observations stored in the temporary
+    * file.
+    * @return the number of spilled observations.
+    */
+   public int getNumSpilledObs () {
+      return numSpilled;
+   }
+
+   @Override
+   public void init () {
+      super.init ();
+      numBlocks = 0;
+      numSpilled = 0;
+      clearCache ();
+   }
+
+   private void clearCache () {
+      cachedBlock = null;
+      cachedBlockIndex = -1;
+   }
+
+   void spill (int minBlockSize) throws IOException {
+      final DoubleArrayList array = super.getDoubleArrayList ();
+      final int n = array.size ();
+      if (n < minBlockSize)
+         return;
+      final long offset = manager.write (array.elements (), n);
+      if (numBlocks == blockOffsets.length) {
+         final int newLength = Math.max (4, 2*numBlocks);
+         final long[] newOffsets = new long[newLength];
+         final int[] newSizes = new int[newLength];
+         final int[] newStarts = new int[newLength];
+         System.arraycopy (blockOffsets, 0, newOffsets, 0, numBlocks);
+         System.arraycopy (blockSizes, 0, newSizes, 0, numBlocks);
+         System.arraycopy (blockStarts, 0, newStarts, 0, numBlocks);
+         blockOffsets = newOffsets;
+         blockSizes = newSizes;
+         blockStarts = newStarts;
+      }
+      blockOffsets[numBlocks] = offset;
+      blockSizes[numBlocks] = n;
+      blockStarts[numBlocks] = numSpilled;
+      ++numBlocks;
+      numSpilled += n;
+      array.clear ();
+      array.trimToSize ();
+   }
+
+   /**
+    * Returns observation \texttt{index} of this collector,
+    * reading it from the temporary file if it was spilled.
+    * The block containing the observation is kept in memory,
+    * through a soft reference,
+    * until another block is read.
+    * @param index the index of the observation.
+    * @return the value of the observation.
+    * @exception IndexOutOfBoundsException if \texttt{index} is negative
+    * or greater than or equal to {@link #numberObs()}.
+    */
+   public double getObs (int index) {
+      if (index >= numSpilled) {
+         final DoubleArrayList array = super.getDoubleArrayList ();
+         if (index - numSpilled >= array.size ())
+            throw new IndexOutOfBoundsException ("Invalid index: " + index);
+         return array.getQuick (index - numSpilled);
+      }
+      if (index < 0)
+         throw new IndexOutOfBoundsException ("Invalid index: " + index);
+      double[] block = cachedBlock == null ? null : cachedBlock.get ();
+      if (block == null || index < blockStarts[cachedBlockIndex]
+            || index >= blockStarts[cachedBlockIndex] + blockSizes[cachedBlockIndex]) {
+         int b = Arrays.binarySearch (blockStarts, 0, numBlocks, index);
+         if (b < 0)
+            b = -b - 2;
+         block = new double[blockSizes[b]];
+         manager.read (blockOffsets[b], block, 0, blockSizes[b]);
+         cachedBlock = new SoftReference<double[]> (block);
+         cachedBlockIndex = b;
+      }
+      return block[index - blockStarts[cachedBlockIndex]];
+   }
+
+   /**
+    * Returns observation \texttt{index} of the collector
+    * \texttt{ta}. If \texttt{ta} is a {@link SpillTallyStore},
+    * this calls {@link #getObs(int)}, so the spilled observations
+    * are not copied.
+    * @param ta the collector.
+    * @param index the index of the observation.
+    * @return the value of the observation.
+    */
+   public static double getObs (TallyStore ta, int index) {
+      if (ta instanceof SpillTallyStore)
+         return ((SpillTallyStore) ta).getObs (index);
+      return ta.getDoubleArrayList ().get (index);
+   }
+
+   /**
+    * Returns an array containing every observation added to
+    * this collector, including the observations stored in the temporary
+    * file.
+    * If no observation was spilled, this returns
+    * the internal array, as {@link TallyStore#getArray()}.
+    */
+   @Override
+   public double[] getArray () {
+      if (numBlocks == 0)
+         return super.getArray ();
+      final DoubleArrayList array = super.getDoubleArrayList ();
+      final double[] res = new double[numSpilled + array.size ()];
+      int pos = 0;
+      for (int b = 0; b < numBlocks; b++) {
+         manager.read (blockOffsets[b], res, pos, blockSizes[b]);
+         pos += blockSizes[b];
+      }
+      System.arraycopy (array.elements (), 0, res, pos, array.size ());
+      return res;
+   }
+
+   private void restore () {
+      if (numBlocks == 0)
+         return;
+      final double[] all = getArray ();
+      super.getDoubleArrayList ().elements (all);
+      numBlocks = 0;
+      numSpilled = 0;
+      clearCache ();
+   }
+
+   /**
+    * Reads the spilled observations back into memory,
+    * and returns the internal list of observations.
+    */
+   @Override
+   public DoubleArrayList getDoubleArrayList () {
+      restore ();
+      return super.getDoubleArrayList ();
+   }
+
+   @Override
+   public void quickSort () {
+      restore ();
+      super.quickSort ();
+   }
+
+   /**
+    * Computes the covariance as {@link TallyStore#covariance(TallyStore)},
+    * reading the spilled observations of this collector and
+    * \texttt{t2} block by block instead of moving them back into memory.
+    */
+   @Override
+   public double covariance (TallyStore t2) {
+      final int n = numberObs ();
+      final boolean spilled2 = t2 instanceof SpillTallyStore
+            && ((SpillTallyStore) t2).numBlocks > 0;
+      if ((numBlocks == 0 && !spilled2) || n < 2 || n != t2.numberObs ())
+         return super.covariance (t2);
+      // Same one-pass algorithm as Descriptive.covariance in Colt
+      double sumx = getObs (0);
+      double sumy = getObs (t2, 0);
+      double sxy = 0;
+      for (int i = 1; i < n; i++) {
+         final double x = getObs (i);
+         final double y = getObs (t2, i);
+         sumx += x;
+         sxy += (x - sumx / (i + 1)) * (y - sumy / i);
+         sumy += y;
+      }
+      return sxy / (n - 1);
+   }
+
+   @Override
+   public TallyStore extractSubrange (double a, double b) {
+      restore ();
+      return super.extractSubrange (a, b);
+   }
+
+   @Override
+   public TallyStore aggregate (int gsize) {
+      restore ();
+      return super.aggregate (gsize);
+   }
+
+   @Override
+   public SpillTallyStore clone () {
+      final SpillTallyStore ta = (SpillTallyStore) super.clone ();
+      // The clone is not managed, so it keeps every observation in memory,
+      // while this collector keeps its spilled observations in the file.
+      ta.clearCache ();
+      ta.restore ();
+      ta.blockOffsets = new long[0];
+      ta.blockSizes = new int[0];
+      ta.blockStarts = new int[0];
+      return ta;
+   }
+}
@@ -75,7 +75,8 @@ public final class DequeueEvent extends Event implements
       if (queue.size() > 0)                                                   //    Ajouter
          contact.setPositionInWaitingQueue(queue.size());               //    Ajouter
       //Router router=contact.getRouter();
-      if (contact.getRouter() != null) {
+      if (contact.getRouter() != null
+            && contact.getRouter().isTracingSharedTypeQueueSizes()) {
          HashSet<Integer> rec = listeDesTypeMemeAgents(contact);               //   Ajouter
          HashMap<Integer, Double> listeHashMap = new HashMap<Integer, Double>();
          double tailleFile;
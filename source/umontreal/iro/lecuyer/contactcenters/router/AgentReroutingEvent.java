@@ -65,12 +65,15 @@ public final class AgentReroutingEvent extends Event {
       if (router.agentReroutingEvents != null)
          router.agentReroutingEvents.remove (agent);
       --router.numAgentReroutingEvents;
+      if (router.removeFromTimerWheel (this))
+         return true;
       return super.cancel ();
    }
 
    @Override
    public void schedule (double delay) {
-      super.schedule (delay);
+      if (!router.scheduleOnTimerWheel (this, delay))
+         super.schedule (delay);
       if (router.agentReroutingEvents != null)
          router.agentReroutingEvents.put (agent, this);
       ++router.numAgentReroutingEvents;
@@ -124,7 +127,8 @@ public final class AgentReroutingEvent extends Event {
          if (delay >= 0 && !Double.isInfinite (delay)
                && !Double.isNaN (delay)) {
             ++numReroutingsDone;
-            super.schedule (delay);
+            if (!router.scheduleOnTimerWheel (this, delay))
+               super.schedule (delay);
             return;
          }
       }
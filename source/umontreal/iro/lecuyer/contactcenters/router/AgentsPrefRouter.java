@@ -125,6 +125,22 @@ public class AgentsPrefRouter extends Router {
    protected double[][] ranksGT;
    protected double[][] weightsTG;
    protected double[][] weightsGT;
+   /**
+    * Sparse version of {@link #ranksTG}, giving the agent groups with
+    * a finite rank for each contact type.
+    * This table is updated by {@link #updateSparseRanks()}.
+    */
+   protected SparseRoutingTable sparseRanksTG;
+   /**
+    * Sparse version of {@link #ranksGT}, giving the contact types with
+    * a finite rank for each agent group.
+    * This table is updated by {@link #updateSparseRanks()}.
+    */
+   protected SparseRoutingTable sparseRanksGT;
+   // servedTypes[i] contains the contact types k for which canServe (i, k) is true,
+   // servingGroups[k] contains the agent groups i for which canServe (i, k) is true.
+   private int[][] servedTypes;
+   private int[][] servingGroups;
    private AgentSelectionScore agentSelectionScore = AgentSelectionScore.LONGESTIDLETIME;
    private ContactSelectionScore contactSelectionScore = ContactSelectionScore.LONGESTWAITINGTIME;
    private RandomStream streamAgentSelection;
@@ -160,6 +176,34 @@ public class AgentsPrefRouter extends Router {
       qCandidates = new boolean[ranksTG.length];
       scores = new double[candidates.length];
       qScores = new double[qCandidates.length];
+      updateSparseRanks ();
+   }
+
+   /**
+    * Updates the sparse tables {@link #sparseRanksTG} and
+    * {@link #sparseRanksGT} after the matrices of ranks were changed.
+    * The default agent and contact selection methods only consider
+    * the agent groups and contact types with a finite rank in these
+    * tables, so
+    * their running time is proportional to the number
+    * of agent groups able to serve a contact, or of contact types
+    * an agent can serve.
+    * Subclasses overriding {@link #getRankForAgentSelection(int,int)}
+    * or {@link #getRankForContactSelection(int,int)} to return
+    * finite ranks for pairs with an infinite rank in
+    * {@link #ranksTG} or {@link #ranksGT} must override
+    * this method to include these pairs in the sparse tables.
+    */
+   protected void updateSparseRanks () {
+      sparseRanksTG = new SparseRoutingTable (ranksTG);
+      sparseRanksGT = new SparseRoutingTable (ranksGT);
+      final boolean[][] m = new boolean[ranksGT.length][ranksTG.length];
+      for (int i = 0; i < m.length; i++)
+         for (int k = 0; k < m[i].length; k++)
+            m[i][k] = !Double.isInfinite (ranksTG[k][i])
+                  || !Double.isInfinite (ranksGT[i][k]);
+      servedTypes = RoutingTableUtils.getGroupToTypeMap (m);
+      servingGroups = RoutingTableUtils.getTypeToGroupMap (m);
    }
 
    private void initDefaultWeights (int K, int I) {
@@ -298,6 +342,7 @@ public class AgentsPrefRouter extends Router {
          throw new IllegalArgumentException (
                "Invalid number of columns in the matrix of ranks");
       this.ranksTG = ArrayUtil.deepClone (ranksTG, true);
+      updateSparseRanks ();
    }
 
    /**
@@ -331,6 +376,7 @@ public class AgentsPrefRouter extends Router {
          throw new IllegalArgumentException (
                "Invalid number of columns in the matrix of ranks");
       this.ranksGT = ArrayUtil.deepClone (ranksGT, true);
+      updateSparseRanks ();
    }
 
    /**
@@ -620,8 +666,10 @@ public class AgentsPrefRouter extends Router {
       final int k = ct.getTypeId ();
       double bestRank = Double.POSITIVE_INFINITY;
       int numCandidates = 0;
-      final int I = getNumAgentGroups ();
-      for (int i = 0; i < I; i++) {
+      final int start = sparseRanksTG.getRowStart (k);
+      final int end = sparseRanksTG.getRowEnd (k);
+      for (int idx = start; idx < end; idx++) {
+         final int i = sparseRanksTG.getColumn (idx);
          candidates[i] = false;
          final double rank = getRankForAgentSelection (k, i);
          if (Double.isInfinite (rank) || rank > bestRank)
@@ -635,8 +683,8 @@ public class AgentsPrefRouter extends Router {
                // We have found a candidate whose rank is lower
                // than the ranks of all preceding candidates, so
                // reset the list of candidates.
-               for (int j = 0; j < i; j++)
-                  candidates[j] = false;
+               for (int j = start; j < idx; j++)
+                  candidates[sparseRanksTG.getColumn (j)] = false;
             }
             bestRank = rank;
             candidates[i] = true;
@@ -651,6 +699,8 @@ public class AgentsPrefRouter extends Router {
          return null;
       assert !Double.isInfinite (bestRank);
       selectAgent (ct, bestRank, candidates, numCandidates);
+      for (int idx = start; idx < end; idx++)
+         candidates[sparseRanksTG.getColumn (idx)] = false;
       if (bestGroup == null)
          return null;
       final EndServiceEvent es;
@@ -695,7 +745,10 @@ public class AgentsPrefRouter extends Router {
     *
     * The default implementation computes a score for each candidate using
     * {@link #getScoreForAgentSelection(Contact,AgentGroup,Agent)} and takes the
-    * candidate with the best score. This method can be overridden to implement
+    * candidate with the best score. Only the agent groups
+    * in row~$k$ of {@link #sparseRanksTG} are examined, where $k$ is the
+    * type of \texttt{ct}.
+    * This method can be overridden to implement
     * a different selection scheme, e.g., randomly selecting a free agent.
     *
     * @param ct
@@ -712,8 +765,11 @@ public class AgentsPrefRouter extends Router {
       bestAgent = null;
       double bestScore = Double.NEGATIVE_INFINITY;
       double sumScores = 0;
-      final int I = getNumAgentGroups ();
-      for (int i = 0; i < I; i++) {
+      final int k = ct.getTypeId ();
+      final int start = sparseRanksTG.getRowStart (k);
+      final int end = sparseRanksTG.getRowEnd (k);
+      for (int idx = start; idx < end; idx++) {
+         final int i = sparseRanksTG.getColumn (idx);
          if (!candidates1[i]) {
             scores[i] = 0;
             continue;
@@ -742,12 +798,13 @@ public class AgentsPrefRouter extends Router {
       }
       if (bestGroup != null && streamAgentSelection != null
             && sumScores > bestScore) {
-         for (int i = 0; i < I; i++)
-            scores[i] /= sumScores;
+         for (int idx = start; idx < end; idx++)
+            scores[sparseRanksTG.getColumn (idx)] /= sumScores;
          double u = streamAgentSelection.nextDouble ();
          bestGroup = null;
          bestAgent = null;
-         for (int i = 0; i < I && bestGroup == null; i++)
+         for (int idx = start; idx < end && bestGroup == null; idx++) {
+            final int i = sparseRanksTG.getColumn (idx);
             if (u < scores[i]) {
                bestGroup = getAgentGroup (i);
                if (bestGroup instanceof DetailedAgentGroup)
@@ -758,6 +815,7 @@ public class AgentsPrefRouter extends Router {
             }
             else
                u -= scores[i];
+         }
       }
    }
 
@@ -840,10 +898,13 @@ public class AgentsPrefRouter extends Router {
    protected DequeueEvent selectContact (AgentGroup group, Agent agent) {
       double bestRank = Double.POSITIVE_INFINITY;
       int numCandidates = 0;
-      final int K = getNumContactTypes ();
-      for (int k = 0; k < K; k++) {
+      final int gid = group.getId ();
+      final int start = sparseRanksGT.getRowStart (gid);
+      final int end = sparseRanksGT.getRowEnd (gid);
+      for (int idx = start; idx < end; idx++) {
+         final int k = sparseRanksGT.getColumn (idx);
          qCandidates[k] = false;
-         final double rank = getRankForContactSelection (group.getId (), k);
+         final double rank = getRankForContactSelection (gid, k);
          if (Double.isInfinite (rank) || rank > bestRank)
             continue;
          final WaitingQueue queue = getWaitingQueue (k);
@@ -851,8 +912,8 @@ public class AgentsPrefRouter extends Router {
             continue;
          if (rank < bestRank) {
             if (!Double.isInfinite (bestRank))
-               for (int j = 0; j < k; j++)
-                  qCandidates[j] = false;
+               for (int j = start; j < idx; j++)
+                  qCandidates[sparseRanksGT.getColumn (j)] = false;
             bestRank = rank;
             qCandidates[k] = true;
             numCandidates = 1;
@@ -867,6 +928,8 @@ public class AgentsPrefRouter extends Router {
       assert !Double.isInfinite (bestRank);
 
       selectWaitingQueue (group, agent, bestRank, qCandidates, numCandidates);
+      for (int idx = start; idx < end; idx++)
+         qCandidates[sparseRanksGT.getColumn (idx)] = false;
       if (bestQueue == null)
          return null;
       final DequeueEvent ev;
@@ -911,7 +974,10 @@ public class AgentsPrefRouter extends Router {
     * The default implementation selects the waiting queue with the greatest
     * score as computed by
     * {@link #getScoreForContactSelection(AgentGroup,DequeueEvent)}, and the
-    * best queued contact is always \texttt{null}. This method can be overridden
+    * best queued contact is always \texttt{null}.
+    * Only the contact types in row~$i$ of {@link #sparseRanksGT}
+    * are examined, where $i$ is the identifier of \texttt{group}.
+    * This method can be overridden
     * to use an alternate selection scheme, e.g., randomly selecting a queued
     * contact.
     *
@@ -929,9 +995,12 @@ public class AgentsPrefRouter extends Router {
       bestQueue = null;
       bestQueuedContact = null;
       double bestScore = Double.NEGATIVE_INFINITY;
-      final int K = getNumContactTypes ();
+      final int gid = group.getId ();
+      final int start = sparseRanksGT.getRowStart (gid);
+      final int end = sparseRanksGT.getRowEnd (gid);
       double sumScores = 0;
-      for (int k = 0; k < K; k++) {
+      for (int idx = start; idx < end; idx++) {
+         final int k = sparseRanksGT.getColumn (idx);
          if (!qCandidates1[k]) {
             qScores[k] = 0;
             continue;
@@ -956,15 +1025,17 @@ public class AgentsPrefRouter extends Router {
       }
       if (bestQueue != null && streamContactSelection != null
             && sumScores > bestScore) {
-         for (int k = 0; k < K; k++)
-            qScores[k] /= sumScores;
+         for (int idx = start; idx < end; idx++)
+            qScores[sparseRanksGT.getColumn (idx)] /= sumScores;
          double u = streamContactSelection.nextDouble ();
          bestQueue = null;
-         for (int k = 0; k < K && bestQueue == null; k++)
+         for (int idx = start; idx < end && bestQueue == null; idx++) {
+            final int k = sparseRanksGT.getColumn (idx);
             if (u < qScores[k])
                bestQueue = getWaitingQueue (k);
             else
                u -= qScores[k];
+         }
       }
    }
 
@@ -1015,17 +1086,13 @@ public class AgentsPrefRouter extends Router {
    @Override
    protected void checkWaitingQueues (AgentGroup group) {
       final int gid = group.getId ();
-      for (int k = 0; k < getNumContactTypes (); k++) {
-         if (!canServe (gid, k))
-            continue;
+      for (final int k : servedTypes[gid]) {
          final WaitingQueue queue = getWaitingQueue (k);
          if (queue == null || !mustClearWaitingQueue (k) || queue.size () == 0)
             continue;
          boolean clear = true;
-         for (int i = 0; clear && i < getNumAgentGroups (); i++) {
-            if (!canServe (i, k))
-               continue;
-            final AgentGroup tgroup = getAgentGroup (i);
+         for (int idx = 0; clear && idx < servingGroups[k].length; idx++) {
+            final AgentGroup tgroup = getAgentGroup (servingGroups[k][idx]);
             if (tgroup.getNumAgents () > 0)
                clear = false;
          }
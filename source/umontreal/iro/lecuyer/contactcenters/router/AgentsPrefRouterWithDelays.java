@@ -344,6 +344,26 @@ public class AgentsPrefRouterWithDelays extends AgentsPrefRouter {
          throw new IllegalArgumentException (
                "Invalid number of columns in the matrix of ranks");
       ranksGTDelayMap.put (minWaitingTime, ArrayUtil.deepClone (ranksGT));
+      updateSparseRanks ();
+   }
+
+   @Override
+   protected void updateSparseRanks () {
+      super.updateSparseRanks ();
+      // This method is called by the constructor of the superclass,
+      // before the map is initialized.
+      if (ranksGTDelayMap == null || ranksGTDelayMap.isEmpty ())
+         return;
+      // A contact type with an infinite rank in ranksGT can
+      // be selected if it has a finite rank in one of the matrices
+      // used for long waiting times.
+      final double[][] ranks = ArrayUtil.deepClone (ranksGT, true);
+      for (final double[][] r : ranksGTDelayMap.values ())
+         for (int i = 0; i < ranks.length; i++)
+            for (int k = 0; k < ranks[i].length; k++)
+               if (Double.isInfinite (ranks[i][k]))
+                  ranks[i][k] = r[i][k];
+      sparseRanksGT = new SparseRoutingTable (ranks);
    }
 
    private double getTestDelay (int k, int step) {
@@ -582,8 +602,9 @@ public class AgentsPrefRouterWithDelays extends AgentsPrefRouter {
       bestQueue = null;
       bestQueuedContact = null;
       double bestScore = Double.NEGATIVE_INFINITY;
-      final int K = getNumContactTypes ();
-      for (int k = 0; k < K; k++) {
+      final int gid = group.getId ();
+      for (int idx = sparseRanksGT.getRowStart (gid); idx < sparseRanksGT.getRowEnd (gid); idx++) {
+         final int k = sparseRanksGT.getColumn (idx);
          if (!qCandidates[k])
             continue;
          //final double minDelay = delaysGT[i][k];
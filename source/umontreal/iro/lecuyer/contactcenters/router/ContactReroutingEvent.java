@@ -65,12 +65,15 @@ public final class ContactReroutingEvent extends Event {
       if (router.contactReroutingEvents != null)
          router.contactReroutingEvents.remove (dqEv);
       --router.numContactReroutingEvents;
+      if (router.removeFromTimerWheel (this))
+         return true;
       return super.cancel ();
    }
 
    @Override
    public void schedule (double delay) {
-      super.schedule (delay);
+      if (!router.scheduleOnTimerWheel (this, delay))
+         super.schedule (delay);
       if (router.contactReroutingEvents != null)
          router.contactReroutingEvents.put (dqEv, this);
       ++router.numContactReroutingEvents;
@@ -137,7 +140,8 @@ public final class ContactReroutingEvent extends Event {
             if (delay >= 0 && !Double.isInfinite (delay)
                   && !Double.isNaN (delay)) {
                ++numReroutingsDone;
-               super.schedule (delay);
+               if (!router.scheduleOnTimerWheel (this, delay))
+                  super.schedule (delay);
                return;
             }
          }
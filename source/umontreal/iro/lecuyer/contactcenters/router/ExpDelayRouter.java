@@ -62,6 +62,9 @@ import umontreal.iro.lecuyer.util.ArrayUtil;
  */
 public class ExpDelayRouter extends Router {
    private double[][] weightsTG;
+   // For each contact type k, the agent groups i with wTG(k, i) > 0,
+   // in increasing order of index
+   private int[][] groupsTG;
    private RandomStream streamAgentSelection;
    private WaitingTimePredictor pred;
    private double[] expDelays;
@@ -92,11 +95,12 @@ public class ExpDelayRouter extends Router {
     */
    public ExpDelayRouter (double[][] weightsTG, RandomStream stream, WaitingTimePredictor pred) {
       super (weightsTG.length, weightsTG[0].length, weightsTG[0].length);
-      if (pred != null)
+      if (pred == null)
          throw new NullPointerException
          ("Null waiting time predictor specified");
       ArrayUtil.checkRectangularMatrix (weightsTG);
       this.weightsTG = ArrayUtil.deepClone (weightsTG);
+      groupsTG = getGroupsTG (this.weightsTG);
       streamAgentSelection = stream;
       expDelays = new double[weightsTG[0].length];
       this.pred = pred;
@@ -133,6 +137,22 @@ public class ExpDelayRouter extends Router {
             weightsTG[0].length != getNumAgentGroups())
          throw new IllegalArgumentException ("Invalid dimensions of weightsTG");
       this.weightsTG = ArrayUtil.deepClone (weightsTG, true);
+      groupsTG = getGroupsTG (this.weightsTG);
+   }
+
+   private static int[][] getGroupsTG (double[][] weightsTG) {
+      final int[][] groupsTG = new int[weightsTG.length][];
+      for (int k = 0; k < weightsTG.length; k++) {
+         int n = 0;
+         for (final double w : weightsTG[k])
+            if (w > 0)
+               ++n;
+         groupsTG[k] = new int[n];
+         for (int i = 0, idx = 0; i < weightsTG[k].length; i++)
+            if (weightsTG[k][i] > 0)
+               groupsTG[k][idx++] = i;
+      }
+      return groupsTG;
    }
 
    /**
@@ -185,49 +205,48 @@ public class ExpDelayRouter extends Router {
    @Override
    protected EndServiceEvent selectAgent (Contact contact) {
       final int k = contact.getTypeId ();
-      final int I = getNumAgentGroups ();
-      int bestQueue = -1;
+      // Only the groups with a positive weight are visited, and
+      // expDelays[j] concerns agent group groups[j].
+      final int[] groups = groupsTG[k];
+      int bestIdx = -1;
       double smallestDelay = Double.POSITIVE_INFINITY;
-      for (int i = 0; i < I; i++) {
-         final double w = weightsTG[k][i];
-         if (Double.isNaN (w) || w <= 0) {
-            expDelays[i] = Double.NaN;
-            continue;
-         }
-         expDelays[i] = pred.getWaitingTime (contact, getWaitingQueue (i)) / w;
-         if (expDelays[i] < smallestDelay) {
-            smallestDelay = expDelays[i];
-            bestQueue = i;
+      for (int j = 0; j < groups.length; j++) {
+         final int i = groups[j];
+         expDelays[j] = pred.getWaitingTime (contact, getWaitingQueue (i)) / weightsTG[k][i];
+         if (expDelays[j] < smallestDelay) {
+            smallestDelay = expDelays[j];
+            bestIdx = j;
          }
       }
-      if (bestQueue == -1)
+      if (bestIdx == -1)
          return null;
       int bestQueueRand;
       if (streamAgentSelection == null)
-         bestQueueRand = bestQueue;
+         bestQueueRand = groups[bestIdx];
       else {
          double sum = 0;
-         for (int i = 0; i < expDelays.length; i++) {
-            if (Double.isNaN (expDelays[i]))
-               expDelays[i] = 0;
+         for (int j = 0; j < groups.length; j++) {
+            if (Double.isNaN (expDelays[j]))
+               expDelays[j] = 0;
             else
-               expDelays[i] = 1 / expDelays[i];
-            sum += expDelays[i];
+               expDelays[j] = 1 / expDelays[j];
+            sum += expDelays[j];
          }
          if (sum == 0)
             return null;
          if (Double.isInfinite (sum))
-            bestQueueRand = bestQueue;
+            bestQueueRand = groups[bestIdx];
          else {
-            for (int i = 0; i < expDelays.length; i++)
-               expDelays[i] /= sum;
+            for (int j = 0; j < groups.length; j++)
+               expDelays[j] /= sum;
 
             double u = streamAgentSelection.nextDouble ();
-            bestQueueRand = 0;
-            while (u > expDelays[bestQueueRand]) {
-               u -= expDelays[bestQueueRand];
-               ++bestQueueRand;
+            int j = 0;
+            while (j < groups.length - 1 && u > expDelays[j]) {
+               u -= expDelays[j];
+               ++j;
             }
+            bestQueueRand = groups[j];
          }
       }
 
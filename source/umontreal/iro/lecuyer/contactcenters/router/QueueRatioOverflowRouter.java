@@ -125,6 +125,7 @@ import umontreal.iro.lecuyer.util.ArrayUtil;
  */
 public class QueueRatioOverflowRouter extends Router {
    private double[][] ranksTG;
+   private SparseRoutingTable sparseRanksTG;
    // overflowList[k][j] contains the jth list of agent groups
    // to consider when trying to route a contact of type k.
    private int[][][] overflowList;
@@ -165,7 +166,8 @@ public class QueueRatioOverflowRouter extends Router {
       this.targetQueueRatio = targetQueueRatio.clone ();
       this.allowCopies = allowCopies;
       this.overflowTransfer = overflowTransfer;
-      overflowList = RoutingTableUtils.getOverflowLists (ranksTG);
+      sparseRanksTG = new SparseRoutingTable (ranksTG);
+      overflowList = RoutingTableUtils.getOverflowLists (sparseRanksTG);
    }
 
    /**
@@ -199,7 +201,8 @@ public class QueueRatioOverflowRouter extends Router {
          throw new IllegalArgumentException
             ("Invalid number of columns in the ranks matrix");
       this.ranksTG = ArrayUtil.deepClone (ranksTG, true);
-      overflowList = RoutingTableUtils.getOverflowLists (ranksTG);
+      sparseRanksTG = new SparseRoutingTable (ranksTG);
+      overflowList = RoutingTableUtils.getOverflowLists (sparseRanksTG);
    }
 
    /**
@@ -359,9 +362,8 @@ public class QueueRatioOverflowRouter extends Router {
       // Search for the queue with the best queue ratio
       double smallestQueueRatio = Double.POSITIVE_INFINITY;
       int bestQueue = -1;
-      for (int i = 0; i < ranksTG[k].length; i++) {
-         if (Double.isInfinite (ranksTG[k][i]))
-            continue;
+      for (int idx = sparseRanksTG.getRowStart (k); idx < sparseRanksTG.getRowEnd (k); idx++) {
+         final int i = sparseRanksTG.getColumn (idx);
          if (allowCopies && !overflowTransfer)
             // Promotion mode: queue in all waiting queues
             getRoutingAttributes (contact, true).queues[i] = true;
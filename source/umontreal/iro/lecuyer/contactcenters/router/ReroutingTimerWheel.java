@@ -0,0 +1,288 @@
+package umontreal.iro.lecuyer.contactcenters.router;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import umontreal.ssj.simevents.Event;
+import umontreal.ssj.simevents.Simulator;
+
+/**
+ * Timer wheel holding the rerouting events of a router
+ * whose rerouting time resolution is positive; see
+ * {@link Router#setReroutingTimeResolution(double)}.
+ * The time is divided into ticks whose length is the resolution, and
+ * every rerouting event is delayed until the end of the tick
+ * containing its exact time.
+ * The events occurring during the same tick are
+ * stored in a slot of a circular array covering
+ * the next {@link #NUMSLOTS} ticks, while events
+ * farther in the future are stored in an
+ * overflow map sorted by tick, and moved
+ * into the wheel as time advances.
+ * This wheel is itself an event scheduled at the
+ * first non-empty tick only, and occurring once
+ * for all rerouting events of that tick, which
+ * are executed in the order they were scheduled.
+ * The main event list thus contains at most one
+ * event for all the rerouting events of the router.
+ *
+ * The events stored in the wheel are not scheduled in the
+ * sense of SSJ, i.e., their {@link Event#time()} method
+ * returns a negative value, so they can be rescheduled
+ * from their own {@link Event#actions()} method, e.g., for
+ * multi-stage rerouting.
+ * The time of an event in the wheel is
+ * given by {@link #time(Event)}.
+ */
+final class ReroutingTimerWheel extends Event {
+   /**
+    * Number of slots in the wheel, which must be a power of 2.
+    */
+   static final int NUMSLOTS = 256;
+   private static final int MASK = NUMSLOTS - 1;
+
+   private final Router router;
+   private final double resolution;
+   private final List<Event>[] slots;
+   private final TreeMap<Long, List<Event>> overflow = new TreeMap<Long, List<Event>> ();
+   // Tick of each stored event
+   private final Map<Event, Long> ticks = new IdentityHashMap<Event, Long> ();
+   // First tick covered by the slots
+   private long baseTick;
+   // Tick of the next occurrence of this event, or -1
+   private long scheduledTick = -1;
+   // Tick whose events are being executed, or -1
+   private long processingTick = -1;
+   private int numInSlots;
+   private int size;
+
+   /**
+    * Constructs a new timer wheel for router \texttt{router},
+    * using simulator \texttt{sim}, and
+    * ticks of length \texttt{resolution}.
+    *
+    * @param router
+    *           the router owning the wheel.
+    * @param sim
+    *           the simulator used to schedule the wheel.
+    * @param resolution
+    *           the length of a tick.
+    */
+   @SuppressWarnings ({ "unchecked", "rawtypes" })
+   ReroutingTimerWheel (Router router, Simulator sim, double resolution) {
+      super (sim);
+      this.router = router;
+      this.resolution = resolution;
+      slots = new List[NUMSLOTS];
+      for (int s = 0; s < NUMSLOTS; s++)
+         slots[s] = new ArrayList<Event> ();
+      baseTick = (long) Math.floor (sim.time () / resolution);
+   }
+
+   /**
+    * Returns the length of the ticks of this wheel.
+    *
+    * @return the resolution of this wheel.
+    */
+   double getResolution () {
+      return resolution;
+   }
+
+   /**
+    * Returns the number of events stored in this wheel.
+    *
+    * @return the number of stored events.
+    */
+   int size () {
+      return size;
+   }
+
+   /**
+    * Returns the time at which the event \texttt{ev}
+    * stored in this wheel will happen, i.e., the end of
+    * its tick, or a negative value if the
+    * event is not stored in this wheel.
+    *
+    * @param ev
+    *           the queried event.
+    * @return the time of the event.
+    */
+   double time (Event ev) {
+      final Long tick = ticks.get (ev);
+      return tick == null ? -1 : tick * resolution;
+   }
+
+   /**
+    * Adds the event \texttt{ev} to this wheel, for it
+    * to happen at the end of the tick containing
+    * the current simulation time plus \texttt{delay}.
+    * If this is called while the wheel executes the events of
+    * a tick, e.g., by an event rescheduling itself, the
+    * event is executed during the current occurrence of the
+    * wheel if it falls into the current tick, and
+    * the wheel is rescheduled once all the events of the tick
+    * are executed.
+    *
+    * @param ev
+    *           the event being added.
+    * @param delay
+    *           the delay of the event.
+    */
+   void add (Event ev, double delay) {
+      final double t = simulator ().time () + delay;
+      long tick = (long) Math.ceil (t / resolution);
+      if (tick < baseTick)
+         tick = baseTick;
+      if (processingTick >= 0 && tick < processingTick)
+         tick = processingTick;
+      ticks.put (ev, tick);
+      ++size;
+      if (processingTick >= 0) {
+         // Executed during the current occurrence of the wheel, or
+         // scheduled by actions once the current tick is done
+         if (tick == processingTick) {
+            slots[(int) (tick & MASK)].add (ev);
+            ++numInSlots;
+         }
+         else
+            insert (ev, tick);
+         return;
+      }
+      insert (ev, tick);
+      if (scheduledTick < 0 || tick < scheduledTick) {
+         if (scheduledTick >= 0)
+            cancel ();
+         scheduleAt (tick);
+      }
+   }
+
+   /**
+    * Removes the event \texttt{ev} from this wheel,
+    * and returns \texttt{true} if the event was found.
+    *
+    * @param ev
+    *           the event being removed.
+    * @return the success indicator of the operation.
+    */
+   boolean remove (Event ev) {
+      final Long t = ticks.remove (ev);
+      if (t == null)
+         return false;
+      final long tick = t;
+      if (tick < baseTick + NUMSLOTS) {
+         final List<Event> slot = slots[(int) (tick & MASK)];
+         final int idx = indexOf (slot, ev);
+         assert idx >= 0;
+         if (tick == processingTick)
+            // Keep the indices of the slot being executed
+            slot.set (idx, null);
+         else
+            slot.remove (idx);
+         --numInSlots;
+      }
+      else {
+         final List<Event> list = overflow.get (tick);
+         list.remove (indexOf (list, ev));
+         if (list.isEmpty ())
+            overflow.remove (tick);
+      }
+      --size;
+      return true;
+   }
+
+   // Events compare by time in SSJ, so lookups use identity
+   private static int indexOf (List<Event> list, Event ev) {
+      for (int i = 0; i < list.size (); i++)
+         if (list.get (i) == ev)
+            return i;
+      return -1;
+   }
+
+   private void insert (Event ev, long tick) {
+      if (tick < baseTick + NUMSLOTS) {
+         slots[(int) (tick & MASK)].add (ev);
+         ++numInSlots;
+      }
+      else {
+         List<Event> list = overflow.get (tick);
+         if (list == null) {
+            list = new ArrayList<Event> ();
+            overflow.put (tick, list);
+         }
+         list.add (ev);
+      }
+   }
+
+   private void scheduleAt (long tick) {
+      scheduledTick = tick;
+      super.schedule (Math.max (0, tick * resolution - simulator ().time ()));
+   }
+
+   private void advance (long tick) {
+      baseTick = tick;
+      final Iterator<Map.Entry<Long, List<Event>>> it = overflow.entrySet ()
+            .iterator ();
+      while (it.hasNext ()) {
+         final Map.Entry<Long, List<Event>> e = it.next ();
+         if (e.getKey () >= baseTick + NUMSLOTS)
+            break;
+         slots[(int) (e.getKey () & MASK)].addAll (e.getValue ());
+         numInSlots += e.getValue ().size ();
+         it.remove ();
+      }
+   }
+
+   private long nextTick () {
+      if (numInSlots > 0)
+         for (long tick = baseTick; tick < baseTick + NUMSLOTS; tick++)
+            if (!slots[(int) (tick & MASK)].isEmpty ())
+               return tick;
+      return overflow.isEmpty () ? -1 : overflow.firstKey ();
+   }
+
+   @Override
+   public void actions () {
+      if (router.timerWheel != this)
+         // The router was initialized since this event was scheduled
+         return;
+      final long tick = scheduledTick;
+      scheduledTick = -1;
+      advance (tick);
+      processingTick = tick;
+      final List<Event> slot = slots[(int) (tick & MASK)];
+      for (int i = 0; i < slot.size (); i++) {
+         final Event ev = slot.get (i);
+         if (ev == null)
+            continue;
+         slot.set (i, null);
+         --numInSlots;
+         --size;
+         ticks.remove (ev);
+         ev.actions ();
+         if (router.timerWheel != this)
+            // The router was initialized by the event
+            return;
+      }
+      slot.clear ();
+      processingTick = -1;
+      if (scheduledTick < 0) {
+         final long next = nextTick ();
+         if (next >= 0)
+            scheduleAt (next);
+      }
+   }
+
+   @Override
+   public String toString () {
+      final StringBuilder sb = new StringBuilder (getClass ().getName ());
+      sb.append ('[');
+      sb.append ("resolution: ").append (resolution);
+      sb.append (", number of events: ").append (size);
+      sb.append (']');
+      return sb.toString ();
+   }
+}
@@ -23,6 +23,7 @@ import umontreal.iro.lecuyer.contactcenters.server.AgentGroup;
 import umontreal.iro.lecuyer.contactcenters.server.AgentGroupListener;
 import umontreal.iro.lecuyer.contactcenters.server.EndServiceEvent;
 import umontreal.iro.lecuyer.contactcenters.server.EndServiceEventDetailed;
+import umontreal.ssj.simevents.Event;
 
 /**
  * Represents a contact router which can perform agent and contact selections. A
@@ -127,6 +128,13 @@ public abstract class Router implements NewContactListener {
    private int totalQueueSize = 0;
    private final RouterListener rl = new RouterListener ();
    private boolean[] clearQueue;
+   private boolean profiling;
+   private int numSharedTypeQueueSizeTracers;
+   // Read by the JMX threads through the profiler
+   private volatile long numAgentSelections;
+   private volatile long numAgentSelectionCandidates;
+   private volatile long numContactSelections;
+   private volatile long numContactSelectionCandidates;
 
    Map<DequeueEvent, ContactReroutingEvent> contactReroutingEvents;
    Map<Agent, AgentReroutingEvent> agentReroutingEvents;
@@ -134,6 +142,8 @@ public abstract class Router implements NewContactListener {
    int numAgentReroutingEvents = 0;
    private Map<DequeueEvent, ContactReroutingEvent> umContactReroutingEvents;
    private Map<Agent, AgentReroutingEvent> umAgentReroutingEvents;
+   private double reroutingTimeResolution = 0;
+   ReroutingTimerWheel timerWheel;
 
    /**
     * Contact blocking type occurring when there is no communication channel
@@ -267,6 +277,60 @@ public abstract class Router implements NewContactListener {
       }
    }
 
+   /**
+    * Determines if the contacts routed by this router
+    * record the sizes of the waiting queues of the
+    * contact types sharing agents with them.
+    * When this is \texttt{true}, each time a contact
+    * is queued, the size of the waiting queue of every
+    * other contact type that can be served by an
+    * agent group able to serve the queued contact is stored in
+    * the map returned by
+    * {@link Contact#getListeDesTraitesParLesMemeAgents()}.
+    * This requires a look-up of the routing table and
+    * a new map for each queued contact, so
+    * queue sizes are recorded only while at least one
+    * statistical collector using these maps
+    * has called {@link #startTracingSharedTypeQueueSizes()}
+    * without calling {@link #stopTracingSharedTypeQueueSizes()}
+    * afterward.
+    *
+    * @return \texttt{true} if the queue sizes are recorded,
+    *         \texttt{false} otherwise.
+    */
+   public boolean isTracingSharedTypeQueueSizes () {
+      return numSharedTypeQueueSizeTracers > 0;
+   }
+
+   /**
+    * Indicates that a new statistical collector
+    * needs the queue sizes recorded by contacts.
+    * Each call to this method must be matched by
+    * a call to {@link #stopTracingSharedTypeQueueSizes()} when
+    * the collector does not need the queue sizes anymore,
+    * so several collectors can share this router.
+    */
+   public void startTracingSharedTypeQueueSizes () {
+      ++numSharedTypeQueueSizeTracers;
+   }
+
+   /**
+    * Indicates that a statistical collector
+    * which called {@link #startTracingSharedTypeQueueSizes()}
+    * does not need the queue sizes recorded by contacts anymore.
+    * Queue sizes stop being recorded when every such
+    * collector has called this method.
+    *
+    * @exception IllegalStateException if this method is called
+    * more times than {@link #startTracingSharedTypeQueueSizes()}.
+    */
+   public void stopTracingSharedTypeQueueSizes () {
+      if (numSharedTypeQueueSizeTracers == 0)
+         throw new IllegalStateException
+            ("Queue sizes are not being traced");
+      --numSharedTypeQueueSizeTracers;
+   }
+
    /**
     * Constructs and returns an iterator for the contact rerouting events. If
     * {@link #isKeepingReroutingEvents()} returns \texttt{true}, the iterator is
@@ -359,6 +423,104 @@ public abstract class Router implements NewContactListener {
       return umAgentReroutingEvents;
    }
 
+   /**
+    * Returns the time resolution of the rerouting events
+    * scheduled by this router.
+    * By default, this is 0, and rerouting events are
+    * scheduled at their exact times.
+    *
+    * @return the rerouting time resolution.
+    */
+   public double getReroutingTimeResolution () {
+      return reroutingTimeResolution;
+   }
+
+   /**
+    * Sets the time resolution of the rerouting events to
+    * \texttt{resolution}.
+    * If the resolution is 0, each contact or agent rerouting event
+    * is inserted into the event list of the simulator
+    * at its exact time.
+    * Otherwise, the time is divided into ticks of length
+    * \texttt{resolution}, and the rerouting events
+    * are stored in a timer wheel owned by this router
+    * rather than in the event list.
+    * The wheel is scheduled as a single event at the end
+    * of the first tick containing rerouting events,
+    * and performs all the reroutings of that tick
+    * in the order they were scheduled.
+    * This way, each rerouting happens at most \texttt{resolution}
+    * time units after its exact time, and
+    * the event list contains at most one event for all the reroutings,
+    * which reduces the cost of event-list operations when many
+    * contacts are queued and rerouted, e.g., with multi-stage overflow.
+    * Events scheduled with
+    * {@link Event#scheduleNext()}, {@link Event#scheduleBefore(Event)}, or
+    * {@link Event#scheduleAfter(Event)} are still inserted into
+    * the event list, at their exact positions.
+    * When using a positive resolution,
+    * {@link #init()} must be called at the beginning of
+    * each replication to clear the wheel.
+    * Rerouting events stored in the wheel are not in the event list,
+    * so {@link Event#time()} returns a negative value for them.
+    *
+    * @param resolution
+    *           the new rerouting time resolution.
+    * @exception IllegalArgumentException
+    *               if \texttt{resolution} is negative or NaN.
+    * @exception IllegalStateException
+    *               if rerouting events are stored in the
+    *               timer wheel of this router.
+    */
+   public void setReroutingTimeResolution (double resolution) {
+      if (!(resolution >= 0))
+         throw new IllegalArgumentException
+         ("The rerouting time resolution must not be negative or NaN");
+      if (timerWheel != null && timerWheel.size () > 0)
+         throw new IllegalStateException
+         ("Cannot change the rerouting time resolution while rerouting events are scheduled");
+      reroutingTimeResolution = resolution;
+      timerWheel = null;
+   }
+
+   /**
+    * Schedules the rerouting event \texttt{ev} to happen
+    * in \texttt{delay} time units using the timer wheel of this router,
+    * and returns \texttt{true}, or returns \texttt{false} if the
+    * rerouting time resolution is 0.
+    */
+   final boolean scheduleOnTimerWheel (Event ev, double delay) {
+      if (reroutingTimeResolution == 0)
+         return false;
+      if (timerWheel == null || timerWheel.simulator () != ev.simulator ())
+         timerWheel = new ReroutingTimerWheel (this, ev.simulator (),
+               reroutingTimeResolution);
+      timerWheel.add (ev, delay);
+      return true;
+   }
+
+   /**
+    * Removes the rerouting event \texttt{ev} from the timer wheel of this
+    * router, and returns \texttt{true} if the event was found.
+    */
+   final boolean removeFromTimerWheel (Event ev) {
+      return timerWheel != null && timerWheel.remove (ev);
+   }
+
+   /**
+    * Returns the time at which the rerouting event \texttt{ev}
+    * will happen, whether it is stored in the timer wheel of this router
+    * or in the event list.
+    */
+   final double getReroutingTime (Event ev) {
+      if (timerWheel != null) {
+         final double time = timerWheel.time (ev);
+         if (time >= 0)
+            return time;
+      }
+      return ev.time ();
+   }
+
    /**
     * Saves the state of this router, and returns the resulting state object.
     *
@@ -378,6 +540,105 @@ public abstract class Router implements NewContactListener {
       state.restore (this);
    }
 
+   /**
+    * Determines if this router counts its agent and contact
+    * selections.
+    * By default, profiling is disabled.
+    *
+    * @return \texttt{true} if profiling is enabled, \texttt{false}
+    *         otherwise.
+    */
+   public boolean isProfiling () {
+      return profiling;
+   }
+
+   /**
+    * Sets the profiling indicator to \texttt{profiling}.
+    * When profiling is enabled, the router counts
+    * the number of times it performs agent selection for a new
+    * contact, and the number of times it
+    * performs contact selection for free agents.
+    * For each agent selection, the number of candidate agent groups, i.e.,
+    * groups with free agents capable of serving the new contact, is also
+    * counted.
+    * For each contact selection, the number of
+    * candidate contacts is the total number of queued contacts.
+    * Counting candidate groups requires testing
+    * every agent group, which adds some overhead to
+    * routing.
+    *
+    * @param profiling
+    *           the value of the indicator.
+    */
+   public void setProfiling (boolean profiling) {
+      this.profiling = profiling;
+   }
+
+   /**
+    * Resets the counters updated when profiling is enabled.
+    */
+   public void resetProfilingCounters () {
+      numAgentSelections = 0;
+      numAgentSelectionCandidates = 0;
+      numContactSelections = 0;
+      numContactSelectionCandidates = 0;
+   }
+
+   /**
+    * Returns the number of agent selections performed for new contacts
+    * since the last call to {@link #resetProfilingCounters()}, while
+    * profiling was enabled.
+    *
+    * @return the number of agent selections.
+    */
+   public long getNumAgentSelections () {
+      return numAgentSelections;
+   }
+
+   /**
+    * Returns the total number of candidate agent groups
+    * over all agent selections counted by {@link #getNumAgentSelections()}.
+    *
+    * @return the total number of candidate agent groups.
+    */
+   public long getNumAgentSelectionCandidates () {
+      return numAgentSelectionCandidates;
+   }
+
+   /**
+    * Returns the number of contact selections performed for free agents
+    * since the last call to {@link #resetProfilingCounters()}, while
+    * profiling was enabled.
+    *
+    * @return the number of contact selections.
+    */
+   public long getNumContactSelections () {
+      return numContactSelections;
+   }
+
+   /**
+    * Returns the total number of candidate queued contacts
+    * over all contact selections counted by {@link #getNumContactSelections()}.
+    *
+    * @return the total number of candidate contacts.
+    */
+   public long getNumContactSelectionCandidates () {
+      return numContactSelectionCandidates;
+   }
+
+   private void countAgentSelection (int k) {
+      ++numAgentSelections;
+      for (int i = 0; i < groups.length; i++)
+         if (groups[i] != null && groups[i].getNumFreeAgents () > 0
+               && canServe (i, k))
+            ++numAgentSelectionCandidates;
+   }
+
+   private void countContactSelection () {
+      ++numContactSelections;
+      numContactSelectionCandidates += totalQueueSize;
+   }
+
    /**
     * Returns the total capacity of the waiting queues for this router. This
     * capacity determines the maximal number of contacts that can be queued
@@ -786,6 +1047,8 @@ public abstract class Router implements NewContactListener {
             !tg.take (contact))
          exitBlocked (contact, BLOCKTYPE_NOLINE);
       else {
+         if (profiling)
+            countAgentSelection (type);
          final EndServiceEvent es = selectAgent (contact);
          if (es == null)
             if (totalQueueSize >= queueCapacity)
@@ -1024,8 +1287,13 @@ public abstract class Router implements NewContactListener {
     * This method is called at the beginning of the
     * simulation to reset the state of
     * this router.
+    * Subclasses overriding this method must
+    * call \texttt{super.init()}.
     */
-   public void init() {}
+   public void init() {
+      // Pending rerouting events are discarded
+      timerWheel = null;
+   }
 
    /**
     * Begins the service of the contact \texttt{contact} by trying to assign it
@@ -1397,6 +1665,8 @@ public abstract class Router implements NewContactListener {
       public void agentGroupChange (AgentGroup agentGroup) {
          final int gid = agentGroup.getId ();
          if (agentGroup == groups[gid]) {
+            if (profiling)
+               countContactSelection ();
             checkFreeAgents (agentGroup, null);
             if (agentGroup.getNumAgents () == 0)
                checkWaitingQueues (agentGroup);
@@ -1426,6 +1696,8 @@ public abstract class Router implements NewContactListener {
          final int gid = agentGroup.getId ();
          if (agentGroup == groups[gid]) {
             Router.this.endService (ev);
+            if (profiling)
+               countContactSelection ();
             if (!checkFreeAgents (agentGroup, agent) && agent != null) {
                final double delay = getReroutingDelay (agent, -1);
                if (delay >= 0 && !Double.isInfinite (delay)
@@ -60,7 +60,7 @@ public class RouterState {
             for (final DequeueEvent dqev : router.getWaitingQueue (q)) {
                final ContactReroutingEvent ev = rev.get (dqev);
                if (ev != null) {
-                  final double time = ev.time ();
+                  final double time = router.getReroutingTime (ev);
                   final int nr = ev.getNumReroutingsDone ();
                   if (time > 0)
                      contactReroutingInfo.put (dqevs[j], new ReroutingState (
@@ -81,7 +81,7 @@ public class RouterState {
             for (final AgentState agent : idleAgents) {
                final AgentReroutingEvent ev = rev2.get (agent);
                if (ev != null) {
-                  final double time = ev.time ();
+                  final double time = router.getReroutingTime (ev);
                   final int nr = ev.getNumReroutingsDone ();
                   if (time > 0)
                      agentReroutingInfo.put (agent, new ReroutingState (nr,
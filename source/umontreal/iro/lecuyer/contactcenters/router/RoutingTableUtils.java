@@ -1,10 +1,5 @@
 package umontreal.iro.lecuyer.contactcenters.router;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
-
 import umontreal.iro.lecuyer.util.ArrayUtil;
 import cern.colt.Sorting;
 import cern.colt.function.IntComparator;
@@ -627,29 +622,38 @@ public final class RoutingTableUtils {
     * @return the overflow lists.
     */
    public static int[][][] getOverflowLists (double[][] ranksTG) {
-      int[][][] overflowLists = new int[ranksTG.length][][];
+      return getOverflowLists (new SparseRoutingTable (ranksTG));
+   }
+
+   /**
+    * Similar to {@link #getOverflowLists(double[][])}, but
+    * uses a sparse matrix of ranks.
+    * Since the agent groups of each overflow chain are already
+    * sorted in the sparse table, this method runs in
+    * a time proportional to the number of finite ranks.
+    *
+    * @param ranksTG the input sparse matrix of ranks.
+    * @return the overflow lists.
+    */
+   public static int[][][] getOverflowLists (SparseRoutingTable ranksTG) {
+      final int[][][] overflowLists = new int[ranksTG.getNumRows ()][][];
       for (int k = 0; k < overflowLists.length; k++) {
-         final Map<Double, List<Integer>> overflowMap = new TreeMap<Double, List<Integer>>();
-         for (int i = 0; i < ranksTG[k].length; i++) {
-            final double r = ranksTG[k][i];
-            if (Double.isInfinite (r))
-               continue;
-            List<Integer> list = overflowMap.get (r);
-            if (list == null) {
-               list = new ArrayList<Integer>();
-               overflowMap.put (r, list);
-            }
-            list.add (i);
-         }
-         overflowLists[k] = new int[overflowMap.size ()][];
+         final int[] chain = ranksTG.getOrderedColumns (k);
+         int numSets = 0;
+         for (int j = 0; j < chain.length; j++)
+            if (j == 0 || ranksTG.getRank (k, chain[j]) != ranksTG.getRank (k, chain[j - 1]))
+               ++numSets;
+         overflowLists[k] = new int[numSets][];
          int idx = 0;
-         for (final List<Integer> list : overflowMap.values ()) {
-            overflowLists[k][idx] = new int[list.size ()];
-            int idx2 = 0;
-            for (final Integer in : list)
-               overflowLists[k][idx][idx2++] = in;
-            ++idx;
-         }
+         int first = 0;
+         for (int j = 1; j <= chain.length; j++)
+            if (j == chain.length
+                  || ranksTG.getRank (k, chain[j]) != ranksTG.getRank (k, chain[j - 1])) {
+               overflowLists[k][idx] = new int[j - first];
+               System.arraycopy (chain, first, overflowLists[k][idx], 0, j - first);
+               ++idx;
+               first = j;
+            }
       }
       return overflowLists;
    }
@@ -0,0 +1,290 @@
+package umontreal.iro.lecuyer.contactcenters.router;
+
+import java.util.Arrays;
+
+import umontreal.iro.lecuyer.util.ArrayUtil;
+import cern.colt.Sorting;
+import cern.colt.function.IntComparator;
+
+/**
+ * Represents a matrix of ranks in a compressed sparse row format
+ * storing only the finite ranks.
+ * Such a matrix can give $\rTG(k, i)$ or $\rGT(i, k)$, and
+ * is usually sparse in large contact centers,
+ * since each contact type is served by a small number of
+ * agent groups.
+ * For each row~$r$ of the matrix, the entries with indices
+ * \texttt{getRowStart (r)}, \ldots, \texttt{getRowEnd (r) - 1}
+ * give the columns with finite ranks, sorted in increasing
+ * order of column index, and the associated ranks.
+ * This permits routers to iterate over the
+ * agent groups able to serve a contact type, or over the
+ * contact types an agent group can serve, in a time
+ * proportional to the number of such groups or types,
+ * rather than to $I$ or $K$.
+ *
+ * For each row, the table also stores the same columns sorted in
+ * increasing order of rank, with ties broken by column index.
+ * For a matrix of ranks $\rTG(k, i)$,
+ * this gives the overflow chain of contact type~$k$,
+ * i.e., the row~$k$ of the type-to-group map
+ * returned by {@link RoutingTableUtils#getTypeToGroupMap(double[][])}.
+ * For a matrix of ranks $\rGT(i, k)$, this gives the
+ * priority list of agent group~$i$, i.e., the row~$i$
+ * of the group-to-type map returned by
+ * {@link RoutingTableUtils#getGroupToTypeMap(double[][])}.
+ * Objects of this class are immutable.
+ */
+public final class SparseRoutingTable {
+   private final int numColumns;
+   private final int[] rowStart;
+   private final int[] columns;
+   private final double[] ranks;
+   private final int[] orderedColumns;
+
+   /**
+    * Constructs a new sparse routing table
+    * from the dense matrix of ranks \texttt{ranks}.
+    * Every infinite element of the matrix
+    * is omitted from the sparse table.
+    * The given matrix must be rectangular.
+    *
+    * @param ranks
+    *           the dense matrix of ranks.
+    * @exception NullPointerException
+    *               if \texttt{ranks} is \texttt{null}.
+    * @exception IllegalArgumentException
+    *               if \texttt{ranks} is not rectangular.
+    */
+   public SparseRoutingTable (double[][] ranks) {
+      ArrayUtil.checkRectangularMatrix (ranks);
+      numColumns = ranks.length == 0 ? 0 : ranks[0].length;
+      rowStart = new int[ranks.length + 1];
+      int n = 0;
+      for (int r = 0; r < ranks.length; r++) {
+         rowStart[r] = n;
+         for (int c = 0; c < numColumns; c++)
+            if (!Double.isInfinite (ranks[r][c]))
+               ++n;
+      }
+      rowStart[ranks.length] = n;
+      columns = new int[n];
+      this.ranks = new double[n];
+      orderedColumns = new int[n];
+      for (int r = 0, idx = 0; r < ranks.length; r++)
+         for (int c = 0; c < numColumns; c++)
+            if (!Double.isInfinite (ranks[r][c])) {
+               columns[idx] = c;
+               this.ranks[idx] = ranks[r][c];
+               orderedColumns[idx] = c;
+               ++idx;
+            }
+      for (int r = 0; r < ranks.length; r++) {
+         final double[] row = ranks[r];
+         Sorting.quickSort (orderedColumns, rowStart[r], rowStart[r + 1],
+               new IntComparator() {
+                  public int compare (int c1, int c2) {
+                     if (row[c1] < row[c2])
+                        return -1;
+                     if (row[c1] > row[c2])
+                        return 1;
+                     return c1 - c2;
+                  }
+               });
+      }
+   }
+
+   /**
+    * Returns the number of rows in this table.
+    *
+    * @return the number of rows.
+    */
+   public int getNumRows () {
+      return rowStart.length - 1;
+   }
+
+   /**
+    * Returns the number of columns in this table.
+    *
+    * @return the number of columns.
+    */
+   public int getNumColumns () {
+      return numColumns;
+   }
+
+   /**
+    * Returns the total number of finite ranks stored
+    * in this table.
+    *
+    * @return the number of finite ranks.
+    */
+   public int getNumEntries () {
+      return columns.length;
+   }
+
+   /**
+    * Returns the index of the first entry
+    * of row \texttt{r}.
+    *
+    * @param r
+    *           the row index.
+    * @return the index of the first entry.
+    */
+   public int getRowStart (int r) {
+      return rowStart[r];
+   }
+
+   /**
+    * Returns the index following the last entry
+    * of row \texttt{r}.
+    *
+    * @param r
+    *           the row index.
+    * @return the index following the last entry.
+    */
+   public int getRowEnd (int r) {
+      return rowStart[r + 1];
+   }
+
+   /**
+    * Returns the number of finite ranks in row \texttt{r}.
+    *
+    * @param r
+    *           the row index.
+    * @return the number of entries in the row.
+    */
+   public int getRowLength (int r) {
+      return rowStart[r + 1] - rowStart[r];
+   }
+
+   /**
+    * Returns the column index of entry \texttt{idx}.
+    * Within a row, the entries are sorted
+    * in increasing order of column index.
+    *
+    * @param idx
+    *           the index of the entry.
+    * @return the column index.
+    */
+   public int getColumn (int idx) {
+      return columns[idx];
+   }
+
+   /**
+    * Returns the rank stored in entry \texttt{idx}.
+    *
+    * @param idx
+    *           the index of the entry.
+    * @return the rank.
+    */
+   public double getRank (int idx) {
+      return ranks[idx];
+   }
+
+   /**
+    * Returns the column index of entry \texttt{idx}
+    * in the rank-ordered list of each row.
+    * For a row~$r$, the indices
+    * \texttt{getRowStart (r)}, \ldots, \texttt{getRowEnd (r) - 1}
+    * give the columns with finite ranks sorted in
+    * increasing order of rank.
+    *
+    * @param idx
+    *           the index of the entry.
+    * @return the column index.
+    */
+   public int getOrderedColumn (int idx) {
+      return orderedColumns[idx];
+   }
+
+   /**
+    * Returns the rank associated with row \texttt{r} and
+    * column \texttt{c}, or {@link Double#POSITIVE_INFINITY}
+    * if the table does not contain such an entry.
+    * This uses a binary search in row~\texttt{r}.
+    *
+    * @param r
+    *           the row index.
+    * @param c
+    *           the column index.
+    * @return the rank.
+    */
+   public double getRank (int r, int c) {
+      int low = rowStart[r];
+      int high = rowStart[r + 1] - 1;
+      while (low <= high) {
+         final int mid = (low + high) >>> 1;
+         if (columns[mid] < c)
+            low = mid + 1;
+         else if (columns[mid] > c)
+            high = mid - 1;
+         else
+            return ranks[mid];
+      }
+      return Double.POSITIVE_INFINITY;
+   }
+
+   /**
+    * Returns the columns with a finite rank in
+    * row \texttt{r}, sorted in increasing order of
+    * column index.
+    *
+    * @param r
+    *           the row index.
+    * @return the columns with a finite rank.
+    */
+   public int[] getColumns (int r) {
+      final int[] res = new int[getRowLength (r)];
+      System.arraycopy (columns, rowStart[r], res, 0, res.length);
+      return res;
+   }
+
+   /**
+    * Returns the columns with a finite rank in
+    * row \texttt{r}, sorted in increasing order of
+    * rank.
+    *
+    * @param r
+    *           the row index.
+    * @return the ordered list of columns.
+    */
+   public int[] getOrderedColumns (int r) {
+      final int[] res = new int[getRowLength (r)];
+      System.arraycopy (orderedColumns, rowStart[r], res, 0, res.length);
+      return res;
+   }
+
+   /**
+    * Returns the ordered lists of all rows
+    * as returned by {@link #getOrderedColumns(int)}.
+    * For a matrix of ranks $\rTG(k, i)$, this
+    * returns a type-to-group map while
+    * for a matrix of ranks $\rGT(i, k)$, this returns
+    * a group-to-type map.
+    *
+    * @return the ordered lists.
+    */
+   public int[][] getOrderedLists () {
+      final int[][] res = new int[getNumRows ()][];
+      for (int r = 0; r < res.length; r++)
+         res[r] = getOrderedColumns (r);
+      return res;
+   }
+
+   /**
+    * Returns the dense matrix of ranks represented by this
+    * table, with {@link Double#POSITIVE_INFINITY} for
+    * each missing entry.
+    *
+    * @return the dense matrix of ranks.
+    */
+   public double[][] toDenseRanks () {
+      final double[][] res = new double[getNumRows ()][numColumns];
+      for (int r = 0; r < res.length; r++) {
+         Arrays.fill (res[r], Double.POSITIVE_INFINITY);
+         for (int idx = rowStart[r]; idx < rowStart[r + 1]; idx++)
+            res[r][columns[idx]] = ranks[idx];
+      }
+      return res;
+   }
+}
@@ -6,12 +6,12 @@ import java.lang.management.MemoryNotificationInfo;
 import java.lang.management.MemoryPoolMXBean;
 import java.lang.management.MemoryType;
 import java.lang.management.MemoryUsage;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.management.ListenerNotFoundException;
 import javax.management.Notification;
@@ -54,7 +54,9 @@ public class LowMemoryNotifier {
    private MemoryMXBean memory;   
    private final Map<String, MemoryPoolMXBean> memoryPools = new HashMap<String, MemoryPoolMXBean>();
    private double usageThreshold = 0.75;
-   private final List<LowMemoryListener> listeners = new ArrayList<LowMemoryListener>();
+   // Listeners can be added by simulation threads while the
+   // notification thread iterates over them
+   private final List<LowMemoryListener> listeners = new CopyOnWriteArrayList<LowMemoryListener>();
    private final MemoryNotificationListener listener = new MemoryNotificationListener();
    
    /**
@@ -139,7 +141,7 @@ public class LowMemoryNotifier {
     * \texttt{listener}.
     * @param listener1 the new low-memory listener to be registered.
     * @exception NullPointerException if \texttt{listener} is \texttt{null}.    */
-   public void addLowMemoryListener (LowMemoryListener listener1) {
+   public synchronized void addLowMemoryListener (LowMemoryListener listener1) {
       if (listener1 == null)
          throw new NullPointerException();
       if (listeners.isEmpty ())
@@ -152,7 +154,7 @@ public class LowMemoryNotifier {
     * Unregisters the low-memory listener \texttt{listener}.
     * @param listener1 the low-memory listener to be unregistered.
     */
-   public void removeLowMemoryListener (LowMemoryListener listener1) {
+   public synchronized void removeLowMemoryListener (LowMemoryListener listener1) {
       final boolean modified = listeners.remove (listener1);
       if (modified && listeners.isEmpty ())
          unregister();
@@ -162,7 +164,7 @@ public class LowMemoryNotifier {
     * Removes all low-memory listeners registered
     * with this object.
     */
-   public void removeLowMemoryListeners() {
+   public synchronized void removeLowMemoryListeners() {
       final boolean modified = !listeners.isEmpty ();
       listeners.clear ();
       if (modified)
@@ -0,0 +1,571 @@
+package umontreal.iro.lecuyer.util;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a workbook in the Office Open XML format (\texttt{.xlsx})
+ * used by Microsoft Excel 2007 and later, as well as
+ * OpenOffice.org Calc.
+ * Contrary to JExcel API which constructs a complete
+ * workbook in memory before writing it,
+ * this class writes rows sequentially to
+ * a ZIP stream as they are produced, so the memory
+ * used does not depend on the number of rows.
+ * As a result, sheets must be written one after the other,
+ * and rows and cells must be written in increasing order.
+ *
+ * A sheet is started with {@link #newSheet(String)}.
+ * Each row is started with {@link #newRow()}, and
+ * cells are then added from left to right using
+ * the \texttt{writeCell} methods, or skipped using
+ * {@link #skipCell()}. A sheet is finished when the next
+ * one is started, or when the workbook is closed using
+ * {@link #close()}.
+ * A sheet can contain at most {@link #MAX_ROWS} rows
+ * and {@link #MAX_COLUMNS} columns.
+ *
+ * A few cell styles identified by integers are available;
+ * see {@link #STYLE_DEFAULT} and the following constants.
+ * Strings are stored inline in cells rather than in
+ * a shared string table which would have to be kept
+ * in memory.
+ */
+public class XlsxWriter implements Closeable {
+   /**
+    * Maximal number of rows in a sheet.
+    */
+   public static final int MAX_ROWS = 1048576;
+
+   /**
+    * Maximal number of columns in a sheet.
+    */
+   public static final int MAX_COLUMNS = 16384;
+
+   /**
+    * Maximal length of the name of a sheet.
+    */
+   public static final int MAX_SHEET_NAME_LENGTH = 31;
+
+   /**
+    * Default cell style, with the general number format.
+    */
+   public static final int STYLE_DEFAULT = 0;
+
+   /**
+    * Style for integers.
+    */
+   public static final int STYLE_INTEGER = 1;
+
+   /**
+    * Style for numbers formatted as percentages with two decimal
+    * digits.
+    */
+   public static final int STYLE_PERCENT = 2;
+
+   /**
+    * Style for dates, with numbers representing the number of days
+    * since December 30, 1899.
+    */
+   public static final int STYLE_DATE = 3;
+
+   /**
+    * Style for durations in hours, minutes, and seconds,
+    * with numbers representing fractions of a day.
+    */
+   public static final int STYLE_TIME = 4;
+
+   /**
+    * Style for centered titles.
+    */
+   public static final int STYLE_TITLE = 5;
+
+   /**
+    * Style for bold headers.
+    */
+   public static final int STYLE_BOLD = 6;
+
+   private static final String NS_MAIN = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+   private static final String NS_REL = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+   private static final String NS_PKG_REL = "http://schemas.openxmlformats.org/package/2006/relationships";
+   private static final Charset UTF8 = Charset.forName ("UTF-8");
+   private static final String CT_PREFIX = "application/vnd.openxmlformats-officedocument.spreadsheetml.";
+
+   private final ZipOutputStream zip;
+   private final Writer out;
+   private final List<String> sheetNames = new ArrayList<String> ();
+   private final Set<String> usedNames = new HashSet<String> ();
+   private final List<String> columnWidths = new ArrayList<String> ();
+   private final List<String> mergedCells = new ArrayList<String> ();
+   private boolean sheetOpen;
+   private boolean dataStarted;
+   private boolean rowOpen;
+   private int row;
+   private int column;
+   private boolean closed;
+
+   /**
+    * Constructs a new workbook writer sending its output
+    * to the stream \texttt{stream}.
+    * The stream is closed when this writer is closed.
+    *
+    * @param stream
+    *           the output stream.
+    */
+   public XlsxWriter (OutputStream stream) {
+      if (stream == null)
+         throw new NullPointerException ();
+      zip = new ZipOutputStream (stream);
+      // The writer must not close the ZIP stream when entries are
+      // finished, so it is attached to a filter whose close
+      // method does nothing.
+      out = new BufferedWriter (new OutputStreamWriter (new FilterOutputStream (zip) {
+         @Override
+         public void write (byte[] b, int off, int len) throws IOException {
+            out.write (b, off, len);
+         }
+
+         @Override
+         public void close () {}
+      }, UTF8));
+   }
+
+   /**
+    * Starts a new sheet with name \texttt{name}, and
+    * finishes the current sheet, if any.
+    * Characters not allowed in sheet names are replaced
+    * with underscores, and the name is truncated to
+    * {@link #MAX_SHEET_NAME_LENGTH} characters.
+    * If a sheet with the resulting name already exists,
+    * a number is appended to the name, and incremented
+    * until the name is unused.
+    *
+    * @param name
+    *           the name of the new sheet.
+    * @return the name of the created sheet.
+    * @throws IOException
+    *            if an I/O error occurs.
+    */
+   public String newSheet (String name) throws IOException {
+      checkClosed ();
+      finishSheet ();
+      String baseName = name == null ? "" : name.replaceAll ("[\\[\\]:*?/\\\\]", "_");
+      if (baseName.length () == 0)
+         baseName = "Sheet";
+      if (baseName.length () > MAX_SHEET_NAME_LENGTH)
+         baseName = baseName.substring (0, MAX_SHEET_NAME_LENGTH);
+      String sn = baseName;
+      int n = 1;
+      while (usedNames.contains (sn.toLowerCase ())) {
+         final String suffix = "_" + n++;
+         sn = baseName.substring (0, Math.min (baseName.length (), MAX_SHEET_NAME_LENGTH
+               - suffix.length ()))
+               + suffix;
+      }
+      usedNames.add (sn.toLowerCase ());
+      sheetNames.add (sn);
+      zip.putNextEntry (new ZipEntry ("xl/worksheets/sheet" + sheetNames.size () + ".xml"));
+      out.write ("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+      out.write ("<worksheet xmlns=\"" + NS_MAIN + "\" xmlns:r=\"" + NS_REL + "\">");
+      sheetOpen = true;
+      dataStarted = false;
+      rowOpen = false;
+      row = -1;
+      column = 0;
+      columnWidths.clear ();
+      mergedCells.clear ();
+      return sn;
+   }
+
+   /**
+    * Returns the number of sheets written or being written.
+    *
+    * @return the number of sheets.
+    */
+   public int getNumSheets () {
+      return sheetNames.size ();
+   }
+
+   /**
+    * Returns the number of rows started in the current sheet.
+    * This corresponds to the index of the next row
+    * started by {@link #newRow()}.
+    *
+    * @return the number of rows in the current sheet.
+    */
+   public int getNumRows () {
+      return row + 1;
+   }
+
+   /**
+    * Returns the index of the column of the next
+    * cell written in the current row.
+    *
+    * @return the index of the current column.
+    */
+   public int getCurrentColumn () {
+      return column;
+   }
+
+   /**
+    * Sets the width of column \texttt{col}
+    * in the current sheet to \texttt{width}
+    * characters.
+    * This must be called before the first
+    * row of the sheet is started.
+    *
+    * @param col
+    *           the index of the column.
+    * @param width
+    *           the width of the column.
+    * @exception IllegalStateException
+    *               if no sheet is open, or rows were already written.
+    */
+   public void setColumnWidth (int col, double width) {
+      checkSheet ();
+      if (dataStarted)
+         throw new IllegalStateException
+         ("Column widths must be set before the first row");
+      if (col < 0 || col >= MAX_COLUMNS)
+         throw new IllegalArgumentException ("Invalid column index: " + col);
+      columnWidths.add ("<col min=\"" + (col + 1) + "\" max=\"" + (col + 1)
+            + "\" width=\"" + width + "\" customWidth=\"1\"/>");
+   }
+
+   /**
+    * Merges the cells of the current sheet in the
+    * rectangle going from row \texttt{firstRow} and column
+    * \texttt{firstColumn} to row \texttt{lastRow} and
+    * column \texttt{lastColumn}, inclusively.
+    * Merged regions are kept in memory until the sheet is
+    * finished.
+    *
+    * @param firstRow
+    *           the first row of the region.
+    * @param firstColumn
+    *           the first column of the region.
+    * @param lastRow
+    *           the last row of the region.
+    * @param lastColumn
+    *           the last column of the region.
+    */
+   public void mergeCells (int firstRow, int firstColumn, int lastRow, int lastColumn) {
+      checkSheet ();
+      mergedCells.add (getCellReference (firstRow, firstColumn) + ":"
+            + getCellReference (lastRow, lastColumn));
+   }
+
+   /**
+    * Starts a new row in the current sheet.
+    *
+    * @throws IOException
+    *            if an I/O error occurs.
+    * @exception IllegalStateException
+    *               if no sheet is open, or if the sheet already
+    *               contains {@link #MAX_ROWS} rows.
+    */
+   public void newRow () throws IOException {
+      checkSheet ();
+      if (!dataStarted) {
+         if (!columnWidths.isEmpty ()) {
+            out.write ("<cols>");
+            for (final String c : columnWidths)
+               out.write (c);
+            out.write ("</cols>");
+         }
+         out.write ("<sheetData>");
+         dataStarted = true;
+      }
+      endRow ();
+      if (row + 1 >= MAX_ROWS)
+         throw new IllegalStateException ("Maximal number of rows reached");
+      ++row;
+      column = 0;
+   }
+
+   /**
+    * Skips the next cell of the current row.
+    */
+   public void skipCell () {
+      ++column;
+   }
+
+   /**
+    * Writes a cell containing the number \texttt{value} with
+    * style \texttt{style} at the current position.
+    * If the value is NaN or infinite, an empty cell is written.
+    *
+    * @param value
+    *           the value of the cell.
+    * @param style
+    *           the style of the cell.
+    * @throws IOException
+    *            if an I/O error occurs.
+    */
+   public void writeCell (double value, int style) throws IOException {
+      startCell (style);
+      if (!Double.isNaN (value) && !Double.isInfinite (value)) {
+         out.write ("><v>");
+         out.write (value == Math.rint (value) && Math.abs (value) < 1e15 ? Long
+               .toString ((long) value) : Double.toString (value));
+         out.write ("</v></c>");
+      }
+      else
+         out.write ("/>");
+   }
+
+   /**
+    * Writes a cell containing the string \texttt{value} with
+    * style \texttt{style} at the current position.
+    * If the string is \texttt{null}, an empty cell is written.
+    *
+    * @param value
+    *           the value of the cell.
+    * @param style
+    *           the style of the cell.
+    * @throws IOException
+    *            if an I/O error occurs.
+    */
+   public void writeCell (String value, int style) throws IOException {
+      startCell (style);
+      if (value == null) {
+         out.write ("/>");
+         return;
+      }
+      out.write (" t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+      escape (value);
+      out.write ("</t></is></c>");
+   }
+
+   /**
+    * Writes a cell containing the boolean \texttt{value} with
+    * the default style at the current position.
+    *
+    * @param value
+    *           the value of the cell.
+    * @throws IOException
+    *            if an I/O error occurs.
+    */
+   public void writeCell (boolean value) throws IOException {
+      startCell (STYLE_DEFAULT);
+      out.write (" t=\"b\"><v>");
+      out.write (value ? "1" : "0");
+      out.write ("</v></c>");
+   }
+
+   private void startCell (int style) throws IOException {
+      checkSheet ();
+      if (row < 0)
+         throw new IllegalStateException ("No row started");
+      if (column >= MAX_COLUMNS)
+         throw new IllegalStateException ("Maximal number of columns reached");
+      if (style < STYLE_DEFAULT || style > STYLE_BOLD)
+         throw new IllegalArgumentException ("Invalid style: " + style);
+      if (!rowOpen) {
+         out.write ("<row r=\"");
+         out.write (Integer.toString (row + 1));
+         out.write ("\">");
+         rowOpen = true;
+      }
+      out.write ("<c r=\"");
+      out.write (getCellReference (row, column++));
+      out.write ('"');
+      if (style != STYLE_DEFAULT) {
+         out.write (" s=\"");
+         out.write (Integer.toString (style));
+         out.write ('"');
+      }
+   }
+
+   private void endRow () throws IOException {
+      if (rowOpen) {
+         out.write ("</row>");
+         rowOpen = false;
+      }
+   }
+
+   private void finishSheet () throws IOException {
+      if (!sheetOpen)
+         return;
+      if (!dataStarted) {
+         out.write ("<sheetData>");
+         dataStarted = true;
+      }
+      endRow ();
+      out.write ("</sheetData>");
+      if (!mergedCells.isEmpty ()) {
+         out.write ("<mergeCells count=\"" + mergedCells.size () + "\">");
+         for (final String m : mergedCells)
+            out.write ("<mergeCell ref=\"" + m + "\"/>");
+         out.write ("</mergeCells>");
+      }
+      out.write ("</worksheet>");
+      out.flush ();
+      zip.closeEntry ();
+      sheetOpen = false;
+   }
+
+   /**
+    * Finishes the current sheet, writes the parts
+    * describing the workbook, and closes the underlying
+    * stream.
+    * If no sheet was written, an empty sheet is created,
+    * because a workbook must contain at least one sheet.
+    *
+    * @throws IOException
+    *            if an I/O error occurs.
+    */
+   public void close () throws IOException {
+      if (closed)
+         return;
+      if (sheetNames.isEmpty ())
+         newSheet ("Sheet1");
+      finishSheet ();
+      final int ns = sheetNames.size ();
+
+      putEntry ("[Content_Types].xml");
+      out.write ("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">");
+      out.write ("<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>");
+      out.write ("<Default Extension=\"xml\" ContentType=\"application/xml\"/>");
+      out.write ("<Override PartName=\"/xl/workbook.xml\" ContentType=\"" + CT_PREFIX + "sheet.main+xml\"/>");
+      out.write ("<Override PartName=\"/xl/styles.xml\" ContentType=\"" + CT_PREFIX + "styles+xml\"/>");
+      for (int i = 1; i <= ns; i++)
+         out.write ("<Override PartName=\"/xl/worksheets/sheet" + i
+               + ".xml\" ContentType=\"" + CT_PREFIX + "worksheet+xml\"/>");
+      out.write ("</Types>");
+      closeEntry ();
+
+      putEntry ("_rels/.rels");
+      out.write ("<Relationships xmlns=\"" + NS_PKG_REL + "\">");
+      out.write ("<Relationship Id=\"rId1\" Type=\"" + NS_REL
+            + "/officeDocument\" Target=\"xl/workbook.xml\"/>");
+      out.write ("</Relationships>");
+      closeEntry ();
+
+      putEntry ("xl/workbook.xml");
+      out.write ("<workbook xmlns=\"" + NS_MAIN + "\" xmlns:r=\"" + NS_REL + "\"><sheets>");
+      for (int i = 1; i <= ns; i++) {
+         out.write ("<sheet name=\"");
+         escape (sheetNames.get (i - 1));
+         out.write ("\" sheetId=\"" + i + "\" r:id=\"rId" + i + "\"/>");
+      }
+      out.write ("</sheets></workbook>");
+      closeEntry ();
+
+      putEntry ("xl/_rels/workbook.xml.rels");
+      out.write ("<Relationships xmlns=\"" + NS_PKG_REL + "\">");
+      for (int i = 1; i <= ns; i++)
+         out.write ("<Relationship Id=\"rId" + i + "\" Type=\"" + NS_REL
+               + "/worksheet\" Target=\"worksheets/sheet" + i + ".xml\"/>");
+      out.write ("<Relationship Id=\"rId" + (ns + 1) + "\" Type=\"" + NS_REL
+            + "/styles\" Target=\"styles.xml\"/>");
+      out.write ("</Relationships>");
+      closeEntry ();
+
+      // The order of cellXfs must match the STYLE_ constants.
+      putEntry ("xl/styles.xml");
+      out.write ("<styleSheet xmlns=\"" + NS_MAIN + "\">");
+      out.write ("<fonts count=\"2\"><font><sz val=\"10\"/><name val=\"Arial\"/></font>"
+            + "<font><b/><sz val=\"10\"/><name val=\"Arial\"/></font></fonts>");
+      out.write ("<fills count=\"2\"><fill><patternFill patternType=\"none\"/></fill>"
+            + "<fill><patternFill patternType=\"gray125\"/></fill></fills>");
+      out.write ("<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>");
+      out.write ("<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>");
+      out.write ("<cellXfs count=\"7\">");
+      out.write ("<xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>");
+      out.write ("<xf numFmtId=\"1\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/>");
+      out.write ("<xf numFmtId=\"10\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/>");
+      out.write ("<xf numFmtId=\"22\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/>");
+      out.write ("<xf numFmtId=\"46\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/>");
+      out.write ("<xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyAlignment=\"1\">"
+            + "<alignment horizontal=\"center\"/></xf>");
+      out.write ("<xf numFmtId=\"0\" fontId=\"1\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyFont=\"1\"/>");
+      out.write ("</cellXfs>");
+      out.write ("<cellStyles count=\"1\"><cellStyle name=\"Normal\" xfId=\"0\" builtinId=\"0\"/></cellStyles>");
+      out.write ("</styleSheet>");
+      closeEntry ();
+
+      zip.close ();
+      closed = true;
+   }
+
+   private void putEntry (String name) throws IOException {
+      zip.putNextEntry (new ZipEntry (name));
+      out.write ("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+   }
+
+   private void closeEntry () throws IOException {
+      out.flush ();
+      zip.closeEntry ();
+   }
+
+   private void escape (String value) throws IOException {
+      for (int i = 0; i < value.length (); i++) {
+         final char ch = value.charAt (i);
+         switch (ch) {
+         case '&':
+            out.write ("&amp;");
+            break;
+         case '<':
+            out.write ("&lt;");
+            break;
+         case '>':
+            out.write ("&gt;");
+            break;
+         case '"':
+            out.write ("&quot;");
+            break;
+         default:
+            // Control characters other than tab, new line, and
+            // carriage return are not allowed in XML documents.
+            if (ch >= 0x20 || ch == '\t' || ch == '\n' || ch == '\r')
+               out.write (ch);
+         }
+      }
+   }
+
+   private void checkClosed () {
+      if (closed)
+         throw new IllegalStateException ("Workbook closed");
+   }
+
+   private void checkSheet () {
+      checkClosed ();
+      if (!sheetOpen)
+         throw new IllegalStateException ("No sheet started");
+   }
+
+   /**
+    * Returns the reference, e.g., \texttt{B3}, of the cell at row
+    * \texttt{r} and column \texttt{c}, both starting at 0.
+    *
+    * @param r
+    *           the row index.
+    * @param c
+    *           the column index.
+    * @return the cell reference.
+    */
+   public static String getCellReference (int r, int c) {
+      final StringBuilder sb = new StringBuilder ();
+      int n = c + 1;
+      while (n > 0) {
+         final int rem = (n - 1) % 26;
+         sb.insert (0, (char) ('A' + rem));
+         n = (n - 1) / 26;
+      }
+      sb.append (r + 1);
+      return sb.toString ();
+   }
+}
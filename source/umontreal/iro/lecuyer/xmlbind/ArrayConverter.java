@@ -186,6 +186,25 @@ public class ArrayConverter {
     * @return the Java 2D array.
     */
    public static double[][] unmarshalArray (DoubleArray array) {
+      if (array.isSetRows ()) {
+         // Rows read by PrimitiveArrayStreamReader
+         // can be copied without unboxing
+         List<double[]> resList = new ArrayList<double[]> ();
+         for (final DoubleArray.Row row : array.getRows ()) {
+            if (row == null)
+               continue;
+            if (!(row.getValue () instanceof PrimitiveDoubleList)) {
+               resList = null;
+               break;
+            }
+            final double[] values = ((PrimitiveDoubleList) row.getValue ()).toDoubleArray ();
+            resList.add (values);
+            for (int r = 1; r < row.getRepeat (); r++)
+               resList.add (values.clone ());
+         }
+         if (resList != null)
+            return resList.toArray (new double[resList.size ()][]);
+      }
       final Double[][] resWrap = unmarshalArray (Double.class, array.getRows ());
       final double[][] res = new double[resWrap.length][];
       for (int r = 0; r < res.length; r++) {
@@ -1,9 +1,11 @@
 package umontreal.iro.lecuyer.xmlbind;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -30,6 +32,9 @@ import javax.xml.bind.ValidationEventLocator;
 import javax.xml.bind.annotation.XmlElementDecl;
 import javax.xml.bind.annotation.XmlRegistry;
 import javax.xml.bind.util.ValidationEventCollector;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
@@ -75,6 +80,14 @@ import umontreal.iro.lecuyer.xmlconfig.DOMUtils;
  * which prints a detailed message and exits in case of an error while
  * the regular methods throw exceptions.
  * 
+ * When validation is disabled using {@link #setValidating(boolean)},
+ * files and URLs are unmarshalled from a StAX stream reader
+ * wrapped into a {@link PrimitiveArrayStreamReader}, which parses
+ * lists of numbers directly into arrays of primitive values, and
+ * the schema is not compiled at all. This can speed up the
+ * reading of large generated parameter files
+ * known to be valid.
+ * 
  * This class must be extended with a specific type of parameter object to be
  * used. This type can be any class derived by the
  * JAXB-provided \texttt{xjc}
@@ -110,6 +123,7 @@ public abstract class JAXBParamsConverter<T> {
    private boolean validating = true;
    private ValidationEventHandler handler;
    private Class<T> objClass;
+   private static XMLInputFactory inputFactory;
 
    /**
     * Constructs a new converter manipulating objects of class
@@ -260,6 +274,8 @@ public abstract class JAXBParamsConverter<T> {
     * instances. The default value is \texttt{true}, which activates validation.
     * However, validation is disabled if no schema is specified, or if the
     * schema cannot be initialized.
+    * When this returns \texttt{false}, files and URLs are
+    * unmarshalled using {@link #unmarshalStreaming(InputStream,String)}.
     * 
     * @return the status of the validating indicator.
     */
@@ -450,6 +466,22 @@ public abstract class JAXBParamsConverter<T> {
     *            if an error occurs during unmarshalling.
     */
    public T unmarshal (File file) throws JAXBException {
+      if (!validating) {
+         try {
+            final InputStream in = new BufferedInputStream (new FileInputStream (file));
+            try {
+               return unmarshalStreaming (in, file.toURI ().toString ());
+            }
+            finally {
+               in.close ();
+            }
+         }
+         catch (final IOException ioe) {
+            final JAXBException je = new JAXBException ("Could not read file " + file.getName ());
+            je.initCause (ioe);
+            throw je;
+         }
+      }
       final Unmarshaller um = getContext ().createUnmarshaller ();
       if (validating && !schemaReadBug)
          um.setSchema (readSchema ());
@@ -469,6 +501,22 @@ public abstract class JAXBParamsConverter<T> {
     *            if an error occurs during unmarshalling.
     */
    public T unmarshal (URL url) throws JAXBException {
+      if (!validating) {
+         try {
+            final InputStream in = new BufferedInputStream (url.openStream ());
+            try {
+               return unmarshalStreaming (in, url.toString ());
+            }
+            finally {
+               in.close ();
+            }
+         }
+         catch (final IOException ioe) {
+            final JAXBException je = new JAXBException ("Could not read URL " + url);
+            je.initCause (ioe);
+            throw je;
+         }
+      }
       final Unmarshaller um = getContext ().createUnmarshaller ();
       if (validating && !schemaReadBug)
          um.setSchema (readSchema ());
@@ -491,6 +539,13 @@ public abstract class JAXBParamsConverter<T> {
    public T unmarshalGZipped (File file) throws JAXBException {
       try {
          final GZIPInputStream gz = new GZIPInputStream (new FileInputStream (file));
+         if (!validating)
+            try {
+               return unmarshalStreaming (new BufferedInputStream (gz), file.toURI ().toString ());
+            }
+            finally {
+               gz.close ();
+            }
          final Unmarshaller um = getContext ().createUnmarshaller ();
          if (validating && !schemaReadBug)
             um.setSchema (readSchema ());
@@ -516,6 +571,13 @@ public abstract class JAXBParamsConverter<T> {
    public T unmarshalGZipped (URL url) throws JAXBException {
       try {
          final GZIPInputStream gz = new GZIPInputStream (url.openStream ());
+         if (!validating)
+            try {
+               return unmarshalStreaming (new BufferedInputStream (gz), url.toString ());
+            }
+            finally {
+               gz.close ();
+            }
          final Unmarshaller um = getContext ().createUnmarshaller ();
          if (validating && !schemaReadBug)
             um.setSchema (readSchema ());
@@ -531,6 +593,84 @@ public abstract class JAXBParamsConverter<T> {
       }
    }
    
+   /**
+    * Unmarshals the XML document read from the stream reader
+    * \texttt{reader}, and returns the constructed object.
+    * This is similar to {@link #unmarshal(File)}, for a StAX stream
+    * reader.
+    * 
+    * @param reader
+    *           the stream reader to be unmarshalled.
+    * @return the constructed object.
+    * @throws JAXBException
+    *            if an error occurs during unmarshalling.
+    */
+   public T unmarshal (XMLStreamReader reader) throws JAXBException {
+      final Unmarshaller um = getContext ().createUnmarshaller ();
+      if (validating && !schemaReadBug)
+         um.setSchema (readSchema ());
+      initUnmarshaller (um);
+      final Object res = um.unmarshal (reader);
+      return getValue (res);
+   }
+
+   /**
+    * Unmarshals the XML document read from the input stream
+    * \texttt{in}, without validation, and returns the constructed object.
+    * This method creates a StAX stream reader for \texttt{in},
+    * wraps it into a {@link PrimitiveArrayStreamReader} which parses
+    * lists of numbers directly into arrays of primitive values,
+    * and gives the resulting reader to an unmarshaller
+    * initialized with {@link #initUnmarshaller(Unmarshaller)}.
+    * The system identifier \texttt{systemId}, which can be
+    * \texttt{null}, is used to locate errors.
+    * The input stream is not closed by this method.
+    * 
+    * @param in
+    *           the input stream.
+    * @param systemId
+    *           the system identifier of the document.
+    * @return the constructed object.
+    * @throws JAXBException
+    *            if an error occurs during unmarshalling.
+    */
+   public T unmarshalStreaming (InputStream in, String systemId) throws JAXBException {
+      final XMLStreamReader reader;
+      try {
+         reader = createXMLStreamReader (in, systemId);
+      }
+      catch (final XMLStreamException xse) {
+         final JAXBException je = new JAXBException ("Could not create stream reader");
+         je.initCause (xse);
+         throw je;
+      }
+      try {
+         final PrimitiveArrayStreamReader pr = new PrimitiveArrayStreamReader (reader);
+         final Unmarshaller um = getContext ().createUnmarshaller ();
+         initUnmarshaller (um);
+         pr.install (um);
+         final Object res = um.unmarshal (pr);
+         return getValue (res);
+      }
+      finally {
+         try {
+            reader.close ();
+         }
+         catch (final XMLStreamException xse) {}
+      }
+   }
+
+   private static XMLStreamReader createXMLStreamReader (InputStream in, String systemId)
+   throws XMLStreamException {
+      synchronized (JAXBParamsConverter.class) {
+         if (inputFactory == null) {
+            inputFactory = XMLInputFactory.newInstance ();
+            inputFactory.setProperty (XMLInputFactory.IS_COALESCING, true);
+         }
+         return inputFactory.createXMLStreamReader (systemId, in);
+      }
+   }
+
    /**
     * Unmarshals the given node into a JAXB object, and returns the constructed
     * object. This is similar to {@link #unmarshal(File)}, for a DOM node.
@@ -0,0 +1,725 @@
+package umontreal.iro.lecuyer.xmlbind;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlType;
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.Duration;
+import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.namespace.QName;
+
+/**
+ * Stores parameter objects created by JAXB into compact binary
+ * snapshot files, and reads them back without using JAXB.
+ * Reading a parameter file requires the creation of a JAXB
+ * context, the parsing of the XML file,
+ * and often the estimation of parameters from data.
+ * When the same model is read many times, these steps can
+ * be performed once, and the resulting
+ * parameter object can be saved using {@link #write(Object,byte[],File)}.
+ * The snapshot can then be read with {@link #read(Class,byte[],File)}
+ * in a small fraction of the time needed to read the original file.
+ *
+ * Each snapshot contains a hash of the source from which the parameters
+ * were obtained, usually computed by {@link #computeHash(File,String,URL...)}
+ * on the XML file, the version of the library, and the
+ * schemas used to validate the file.
+ * When reading a snapshot, the expected hash is
+ * given, and the snapshot is considered stale if the hashes differ.
+ * The snapshot also stores the names of the fields of each class,
+ * so a snapshot written with a different version of the parameter classes
+ * is also considered stale.
+ *
+ * The objects are encoded by reflection, by storing the value of every
+ * non-static field in the classes annotated with {@link XmlType}
+ * or {@link XmlRootElement}, as generated by the JAXB compiler.
+ * Fields can contain primitive values and their wrappers, strings,
+ * enumerations, durations, dates, qualified names, arrays, lists,
+ * JAXB elements, and other objects of classes generated by JAXB.
+ * Objects referenced more than once, e.g., by an \texttt{IDREF},
+ * are written once, and shared when reading.
+ * Other numbers such as {@link java.math.BigInteger} are stored
+ * as strings, and recreated with a constructor taking a string.
+ */
+public class ParamsSnapshot {
+   private static final Logger logger = Logger.getLogger ("umontreal.iro.lecuyer.xmlbind");
+   private static final int MAGIC = 0x43435350;
+   /**
+    * Version of the format of snapshot files.
+    */
+   public static final int FORMAT_VERSION = 1;
+
+   private static final int NULL = 0;
+   private static final int BOOLEAN = 1;
+   private static final int INTEGER = 2;
+   private static final int DOUBLE = 3;
+   private static final int STRING = 4;
+   private static final int ENUM = 5;
+   private static final int DURATION = 6;
+   private static final int CALENDAR = 7;
+   private static final int DOUBLE_ARRAY = 8;
+   private static final int INT_ARRAY = 9;
+   private static final int BOOLEAN_ARRAY = 10;
+   private static final int OBJECT_ARRAY = 11;
+   private static final int LIST = 12;
+   private static final int DOUBLE_LIST = 13;
+   private static final int BEAN = 14;
+   private static final int REF = 15;
+   private static final int ELEMENT = 16;
+   private static final int QNAME = 17;
+   private static final int OTHER = 18;
+
+   private static final Map<Class<?>, Field[]> fieldsCache = new HashMap<Class<?>, Field[]>();
+   private static DatatypeFactory datatypeFactory;
+
+   private ParamsSnapshot () {}
+
+   /**
+    * Computes and returns the SHA-256 hash of the contents
+    * of the file \texttt{file}.
+    * This is equivalent to
+    * {@link #computeHash(File,String,URL...) computeHash (file, null)}.
+    *
+    * @param file
+    *           the file to be hashed.
+    * @return the hash.
+    * @throws IOException
+    *            if an error occurs while reading the file.
+    */
+   public static byte[] computeHash (File file) throws IOException {
+      return computeHash (file, null);
+   }
+
+   /**
+    * Computes and returns the SHA-256 hash of the contents
+    * of the file \texttt{file}, the version string
+    * \texttt{version}, and the contents of the resources
+    * \texttt{resources}, e.g., the schemas used to validate
+    * the file.
+    * This way, the snapshot becomes stale if the source file,
+    * the version of the library, or one of the
+    * schemas changes.
+    * If \texttt{version} is \texttt{null}, it is ignored.
+    *
+    * @param file
+    *           the file to be hashed.
+    * @param version
+    *           the version string, or \texttt{null}.
+    * @param resources
+    *           the additional resources to be hashed.
+    * @return the hash.
+    * @throws IOException
+    *            if an error occurs while reading the file or
+    *            one of the resources.
+    */
+   public static byte[] computeHash (File file, String version, URL... resources) throws IOException {
+      final MessageDigest md;
+      try {
+         md = MessageDigest.getInstance ("SHA-256");
+      }
+      catch (final NoSuchAlgorithmException nae) {
+         throw new IllegalStateException ("SHA-256 not supported", nae);
+      }
+      final byte[] buf = new byte[65536];
+      update (md, new FileInputStream (file), buf);
+      if (version != null)
+         md.update (version.getBytes ("UTF-8"));
+      for (final URL url : resources) {
+         if (url == null)
+            throw new IOException ("Missing resource");
+         update (md, url.openStream (), buf);
+      }
+      return md.digest ();
+   }
+
+   private static void update (MessageDigest md, InputStream in, byte[] buf) throws IOException {
+      try {
+         int n;
+         while ((n = in.read (buf)) > 0)
+            md.update (buf, 0, n);
+      }
+      finally {
+         in.close ();
+      }
+   }
+
+   /**
+    * Writes a snapshot of the parameter object \texttt{params}
+    * obtained from a source with hash \texttt{sourceHash} into the
+    * file \texttt{file}.
+    * The snapshot is first written into a temporary file which is then
+    * moved to \texttt{file}.
+    * If the file system supports atomic moves, the existing snapshot
+    * is replaced atomically, so a concurrent reader never sees a
+    * partially-written snapshot.
+    * Otherwise, the temporary file is moved without this guarantee.
+    *
+    * @param params
+    *           the parameter object.
+    * @param sourceHash
+    *           the hash of the source.
+    * @param file
+    *           the snapshot file.
+    * @throws IOException
+    *            if an error occurs while writing the snapshot, or
+    *            if the parameter object contains a value that cannot be
+    *            encoded.
+    */
+   public static void write (Object params, byte[] sourceHash, File file) throws IOException {
+      final File dir = file.getAbsoluteFile ().getParentFile ();
+      final File tmp = File.createTempFile (file.getName (), ".tmp", dir);
+      boolean done = false;
+      try {
+         final DataOutputStream out = new DataOutputStream (new BufferedOutputStream
+               (new FileOutputStream (tmp), 65536));
+         try {
+            out.writeInt (MAGIC);
+            out.writeInt (FORMAT_VERSION);
+            out.writeInt (sourceHash.length);
+            out.write (sourceHash);
+            new Writer (out).writeValue (params);
+         }
+         finally {
+            out.close ();
+         }
+         try {
+            Files.move (tmp.toPath (), file.toPath (), StandardCopyOption.ATOMIC_MOVE,
+                  StandardCopyOption.REPLACE_EXISTING);
+         }
+         catch (final AtomicMoveNotSupportedException amne) {
+            Files.move (tmp.toPath (), file.toPath (), StandardCopyOption.REPLACE_EXISTING);
+         }
+         done = true;
+      }
+      finally {
+         if (!done)
+            tmp.delete ();
+      }
+   }
+
+   /**
+    * Reads the snapshot in file \texttt{file}, and returns the
+    * parameter object of class \texttt{cls} it contains.
+    * This returns \texttt{null} if the file does not exist,
+    * if the hash of the source stored in the snapshot differs
+    * from \texttt{sourceHash}, if the snapshot was written with
+    * a different format or different parameter classes, or
+    * if the file is corrupted.
+    * In the latter case, a warning is logged.
+    *
+    * @param cls
+    *           the class of the parameter object.
+    * @param sourceHash
+    *           the expected hash of the source.
+    * @param file
+    *           the snapshot file.
+    * @return the parameter object, or \texttt{null}.
+    * @param <T> the type of the parameter object.
+    */
+   public static <T> T read (Class<T> cls, byte[] sourceHash, File file) {
+      final DataInputStream in;
+      try {
+         in = new DataInputStream (new BufferedInputStream (new FileInputStream (file), 65536));
+      }
+      catch (final FileNotFoundException fne) {
+         return null;
+      }
+      try {
+         if (in.readInt () != MAGIC || in.readInt () != FORMAT_VERSION)
+            return null;
+         final byte[] hash = new byte[in.readInt ()];
+         in.readFully (hash);
+         if (!Arrays.equals (hash, sourceHash))
+            return null;
+         final Object o = new Reader (in).readValue ();
+         return cls.isInstance (o) ? cls.cast (o) : null;
+      }
+      catch (final InvalidClassException ice) {
+         return null;
+      }
+      catch (final ClassNotFoundException cne) {
+         return null;
+      }
+      catch (final IOException ioe) {
+         logger.log (Level.WARNING, "Cannot read snapshot file " + file.getName (), ioe);
+         return null;
+      }
+      catch (final RuntimeException re) {
+         logger.log (Level.WARNING, "Cannot read snapshot file " + file.getName (), re);
+         return null;
+      }
+      finally {
+         try {
+            in.close ();
+         }
+         catch (final IOException ioe) {}
+      }
+   }
+
+   private static boolean isBean (Class<?> cls) {
+      return cls.isAnnotationPresent (XmlType.class) || cls.isAnnotationPresent (XmlRootElement.class);
+   }
+
+   private static Field[] getFields (Class<?> cls) {
+      synchronized (fieldsCache) {
+         Field[] fields = fieldsCache.get (cls);
+         if (fields != null)
+            return fields;
+         final List<Class<?>> classes = new ArrayList<Class<?>>();
+         for (Class<?> c = cls; c != null && c != Object.class; c = c.getSuperclass ())
+            classes.add (0, c);
+         final List<Field> fieldList = new ArrayList<Field>();
+         for (final Class<?> c : classes) {
+            final List<Field> cf = new ArrayList<Field>();
+            for (final Field f : c.getDeclaredFields ()) {
+               final int mod = f.getModifiers ();
+               if (Modifier.isStatic (mod) || Modifier.isTransient (mod) || f.isSynthetic ())
+                  continue;
+               f.setAccessible (true);
+               cf.add (f);
+            }
+            // The order of declared fields is unspecified
+            Collections.sort (cf, new Comparator<Field>() {
+               public int compare (Field f1, Field f2) {
+                  return f1.getName ().compareTo (f2.getName ());
+               }
+            });
+            fieldList.addAll (cf);
+         }
+         fields = fieldList.toArray (new Field[fieldList.size ()]);
+         fieldsCache.put (cls, fields);
+         return fields;
+      }
+   }
+
+   private static DatatypeFactory getDatatypeFactory () throws IOException {
+      synchronized (ParamsSnapshot.class) {
+         if (datatypeFactory == null)
+            try {
+               datatypeFactory = DatatypeFactory.newInstance ();
+            }
+            catch (final DatatypeConfigurationException dce) {
+               throw new IOException ("Cannot create datatype factory", dce);
+            }
+         return datatypeFactory;
+      }
+   }
+
+   private static final class Writer {
+      private final DataOutputStream out;
+      private final Map<Class<?>, Integer> classes = new HashMap<Class<?>, Integer>();
+      private final Set<Class<?>> described = new HashSet<Class<?>>();
+      private final Map<Object, Integer> handles = new IdentityHashMap<Object, Integer>();
+
+      Writer (DataOutputStream out) {
+         this.out = out;
+      }
+
+      private void writeVarInt (int v) throws IOException {
+         while ((v & ~0x7F) != 0) {
+            out.writeByte ((v & 0x7F) | 0x80);
+            v >>>= 7;
+         }
+         out.writeByte (v);
+      }
+
+      private void writeString (String s) throws IOException {
+         final byte[] b = s.getBytes ("UTF-8");
+         writeVarInt (b.length);
+         out.write (b);
+      }
+
+      private void writeClass (Class<?> cls) throws IOException {
+         final Integer idx = classes.get (cls);
+         if (idx != null) {
+            writeVarInt (idx + 1);
+            return;
+         }
+         classes.put (cls, classes.size ());
+         writeVarInt (0);
+         writeString (cls.getName ());
+      }
+
+      void writeValue (Object v) throws IOException {
+         if (v == null)
+            out.writeByte (NULL);
+         else if (v instanceof Boolean) {
+            out.writeByte (BOOLEAN);
+            out.writeBoolean ((Boolean) v);
+         }
+         else if (v instanceof Integer) {
+            out.writeByte (INTEGER);
+            final int i = (Integer) v;
+            writeVarInt ((i << 1) ^ (i >> 31));
+         }
+         else if (v instanceof Double) {
+            out.writeByte (DOUBLE);
+            out.writeDouble ((Double) v);
+         }
+         else if (v instanceof String) {
+            out.writeByte (STRING);
+            writeString ((String) v);
+         }
+         else if (v instanceof Enum) {
+            out.writeByte (ENUM);
+            writeClass (((Enum<?>) v).getDeclaringClass ());
+            writeString (((Enum<?>) v).name ());
+         }
+         else if (v instanceof Duration) {
+            out.writeByte (DURATION);
+            writeString (v.toString ());
+         }
+         else if (v instanceof XMLGregorianCalendar) {
+            out.writeByte (CALENDAR);
+            writeString (((XMLGregorianCalendar) v).toXMLFormat ());
+         }
+         else if (v instanceof QName) {
+            out.writeByte (QNAME);
+            writeQName ((QName) v);
+         }
+         else if (v instanceof double[]) {
+            out.writeByte (DOUBLE_ARRAY);
+            final double[] a = (double[]) v;
+            writeVarInt (a.length);
+            for (final double d : a)
+               out.writeDouble (d);
+         }
+         else if (v instanceof int[]) {
+            out.writeByte (INT_ARRAY);
+            final int[] a = (int[]) v;
+            writeVarInt (a.length);
+            for (final int i : a)
+               writeVarInt ((i << 1) ^ (i >> 31));
+         }
+         else if (v instanceof boolean[]) {
+            out.writeByte (BOOLEAN_ARRAY);
+            final boolean[] a = (boolean[]) v;
+            writeVarInt (a.length);
+            for (final boolean b : a)
+               out.writeBoolean (b);
+         }
+         else if (v instanceof Object[]) {
+            out.writeByte (OBJECT_ARRAY);
+            final Object[] a = (Object[]) v;
+            writeClass (a.getClass ().getComponentType ());
+            writeVarInt (a.length);
+            for (final Object o : a)
+               writeValue (o);
+         }
+         else if (v instanceof List)
+            writeList ((List<?>) v);
+         else if (v instanceof JAXBElement) {
+            out.writeByte (ELEMENT);
+            final JAXBElement<?> el = (JAXBElement<?>) v;
+            writeQName (el.getName ());
+            writeClass (el.getDeclaredType ());
+            writeClass (el.getScope ());
+            out.writeBoolean (el.isNil ());
+            writeValue (el.getValue ());
+         }
+         else if (isBean (v.getClass ()))
+            writeBean (v);
+         else {
+            try {
+               v.getClass ().getConstructor (String.class);
+            }
+            catch (final NoSuchMethodException nme) {
+               throw new IOException ("Cannot store value of class " + v.getClass ().getName ());
+            }
+            out.writeByte (OTHER);
+            writeClass (v.getClass ());
+            writeString (v.toString ());
+         }
+      }
+
+      private void writeQName (QName name) throws IOException {
+         writeString (name.getNamespaceURI ());
+         writeString (name.getLocalPart ());
+         writeString (name.getPrefix ());
+      }
+
+      private void writeList (List<?> list) throws IOException {
+         boolean doubles = !list.isEmpty ();
+         if (!(list instanceof PrimitiveDoubleList))
+            for (final Object o : list)
+               if (!(o instanceof Double)) {
+                  doubles = false;
+                  break;
+               }
+         if (doubles) {
+            out.writeByte (DOUBLE_LIST);
+            writeVarInt (list.size ());
+            for (final Object o : list)
+               out.writeDouble ((Double) o);
+         }
+         else {
+            out.writeByte (LIST);
+            writeVarInt (list.size ());
+            for (final Object o : list)
+               writeValue (o);
+         }
+      }
+
+      private void writeBean (Object v) throws IOException {
+         final Integer handle = handles.get (v);
+         if (handle != null) {
+            out.writeByte (REF);
+            writeVarInt (handle);
+            return;
+         }
+         handles.put (v, handles.size ());
+         out.writeByte (BEAN);
+         final Class<?> cls = v.getClass ();
+         writeClass (cls);
+         final Field[] fields = getFields (cls);
+         if (described.add (cls)) {
+            writeVarInt (fields.length);
+            for (final Field f : fields)
+               writeString (f.getName ());
+         }
+         try {
+            for (final Field f : fields)
+               writeValue (f.get (v));
+         }
+         catch (final IllegalAccessException iae) {
+            throw new IOException ("Cannot access field of class " + cls.getName (), iae);
+         }
+      }
+   }
+
+   private static final class Reader {
+      private final DataInputStream in;
+      private final List<Class<?>> classes = new ArrayList<Class<?>>();
+      private final Set<Class<?>> described = new HashSet<Class<?>>();
+      private final List<Object> handles = new ArrayList<Object>();
+
+      Reader (DataInputStream in) {
+         this.in = in;
+      }
+
+      private int readVarInt () throws IOException {
+         int v = 0;
+         int shift = 0;
+         int b;
+         do {
+            b = in.readUnsignedByte ();
+            v |= (b & 0x7F) << shift;
+            shift += 7;
+         }
+         while ((b & 0x80) != 0);
+         return v;
+      }
+
+      private int readZigZag () throws IOException {
+         final int v = readVarInt ();
+         return (v >>> 1) ^ -(v & 1);
+      }
+
+      private String readString () throws IOException {
+         final byte[] b = new byte[readVarInt ()];
+         in.readFully (b);
+         return new String (b, "UTF-8");
+      }
+
+      private Class<?> readClass () throws IOException, ClassNotFoundException {
+         final int idx = readVarInt ();
+         if (idx > 0)
+            return classes.get (idx - 1);
+         final Class<?> cls = Class.forName (readString (), false, ParamsSnapshot.class.getClassLoader ());
+         classes.add (cls);
+         return cls;
+      }
+
+      @SuppressWarnings ({ "unchecked", "rawtypes" })
+      Object readValue () throws IOException, ClassNotFoundException {
+         final int tag = in.readUnsignedByte ();
+         switch (tag) {
+         case NULL:
+            return null;
+         case BOOLEAN:
+            return in.readBoolean ();
+         case INTEGER:
+            return readZigZag ();
+         case DOUBLE:
+            return in.readDouble ();
+         case STRING:
+            return readString ();
+         case ENUM: {
+            final Class cls = readClass ();
+            try {
+               return Enum.valueOf (cls, readString ());
+            }
+            catch (final IllegalArgumentException iae) {
+               throw new InvalidClassException (cls.getName (), "Unknown constant");
+            }
+         }
+         case DURATION:
+            return getDatatypeFactory ().newDuration (readString ());
+         case CALENDAR:
+            return getDatatypeFactory ().newXMLGregorianCalendar (readString ());
+         case QNAME:
+            return readQName ();
+         case DOUBLE_ARRAY: {
+            final double[] a = new double[readVarInt ()];
+            for (int i = 0; i < a.length; i++)
+               a[i] = in.readDouble ();
+            return a;
+         }
+         case INT_ARRAY: {
+            final int[] a = new int[readVarInt ()];
+            for (int i = 0; i < a.length; i++)
+               a[i] = readZigZag ();
+            return a;
+         }
+         case BOOLEAN_ARRAY: {
+            final boolean[] a = new boolean[readVarInt ()];
+            for (int i = 0; i < a.length; i++)
+               a[i] = in.readBoolean ();
+            return a;
+         }
+         case OBJECT_ARRAY: {
+            final Class<?> comp = readClass ();
+            final Object[] a = (Object[]) Array.newInstance (comp, readVarInt ());
+            for (int i = 0; i < a.length; i++)
+               a[i] = readValue ();
+            return a;
+         }
+         case LIST: {
+            final int n = readVarInt ();
+            final List<Object> list = new ArrayList<Object> (n);
+            for (int i = 0; i < n; i++)
+               list.add (readValue ());
+            return list;
+         }
+         case DOUBLE_LIST: {
+            final int n = readVarInt ();
+            final double[] a = new double[Math.max (n, 1)];
+            for (int i = 0; i < n; i++)
+               a[i] = in.readDouble ();
+            return new PrimitiveDoubleList (a, n);
+         }
+         case ELEMENT: {
+            final QName name = readQName ();
+            final Class declaredType = readClass ();
+            final Class scope = readClass ();
+            final boolean nil = in.readBoolean ();
+            final JAXBElement el = new JAXBElement (name, declaredType, scope, readValue ());
+            el.setNil (nil);
+            return el;
+         }
+         case BEAN:
+            return readBean ();
+         case REF:
+            return handles.get (readVarInt ());
+         case OTHER: {
+            final Class<?> cls = readClass ();
+            final String s = readString ();
+            try {
+               return cls.getConstructor (String.class).newInstance (s);
+            }
+            catch (final NoSuchMethodException nme) {
+               throw new InvalidClassException (cls.getName (), "No constructor taking a string");
+            }
+            catch (final InstantiationException ie) {
+               throw new InvalidClassException (cls.getName (), "Cannot instantiate");
+            }
+            catch (final IllegalAccessException iae) {
+               throw new InvalidClassException (cls.getName (), "Cannot instantiate");
+            }
+            catch (final InvocationTargetException ite) {
+               throw new IOException ("Cannot create value of class " + cls.getName (), ite.getCause ());
+            }
+         }
+         default:
+            throw new IOException ("Invalid tag " + tag);
+         }
+      }
+
+      private QName readQName () throws IOException {
+         final String ns = readString ();
+         final String local = readString ();
+         return new QName (ns, local, readString ());
+      }
+
+      private Object readBean () throws IOException, ClassNotFoundException {
+         final Class<?> cls = readClass ();
+         if (!isBean (cls))
+            throw new InvalidClassException (cls.getName (), "Not a JAXB-generated class");
+         final Field[] fields = getFields (cls);
+         if (described.add (cls)) {
+            final int n = readVarInt ();
+            if (n != fields.length)
+               throw new InvalidClassException (cls.getName (), "Different number of fields");
+            for (final Field f : fields)
+               if (!f.getName ().equals (readString ()))
+                  throw new InvalidClassException (cls.getName (), "Different fields");
+         }
+         final Object bean;
+         try {
+            final Constructor<?> ctor = cls.getDeclaredConstructor ();
+            ctor.setAccessible (true);
+            bean = ctor.newInstance ();
+         }
+         catch (final NoSuchMethodException nme) {
+            throw new InvalidClassException (cls.getName (), "No nullary constructor");
+         }
+         catch (final InstantiationException ie) {
+            throw new InvalidClassException (cls.getName (), "Cannot instantiate");
+         }
+         catch (final IllegalAccessException iae) {
+            throw new InvalidClassException (cls.getName (), "Cannot instantiate");
+         }
+         catch (final InvocationTargetException ite) {
+            throw new IOException ("Cannot create object of class " + cls.getName (), ite.getCause ());
+         }
+         handles.add (bean);
+         try {
+            for (final Field f : fields)
+               f.set (bean, readValue ());
+         }
+         catch (final IllegalAccessException iae) {
+            throw new InvalidClassException (cls.getName (), "Cannot set field");
+         }
+         catch (final IllegalArgumentException iae) {
+            throw new InvalidClassException (cls.getName (), "Incompatible field type");
+         }
+         return bean;
+      }
+   }
+}
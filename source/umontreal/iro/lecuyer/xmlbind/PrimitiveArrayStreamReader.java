@@ -0,0 +1,468 @@
+package umontreal.iro.lecuyer.xmlbind;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlList;
+import javax.xml.bind.annotation.XmlValue;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+/**
+ * StAX stream reader parsing large lists of numbers directly
+ * into arrays of primitive values while a document is
+ * unmarshalled by JAXB.
+ * When unmarshalling a list of numbers, JAXB splits the
+ * text into tokens, converts each token into a wrapper object,
+ * and accumulates the objects before creating the final array.
+ * For parameter files containing per-period arrays for many
+ * call types and agent groups, this dominates the time spent
+ * reading the file once validation is disabled.
+ *
+ * This reader wraps another stream reader, and must be installed
+ * on the unmarshaller using {@link #install(Unmarshaller)} before
+ * it is passed to \texttt{Unmarshaller.unmarshal}.
+ * The installed listener keeps track of the objects being
+ * unmarshalled. When the reader encounters the text of an element
+ * bound to a field of type \texttt{double[]} or \texttt{int[]}
+ * annotated with {@link XmlList}, or the text
+ * bound to a field of type \texttt{List<Double>} annotated with
+ * {@link XmlValue}, as in the rows of
+ * {@link umontreal.iro.lecuyer.xmlbind.params.DoubleArray},
+ * the text is parsed by this class, and
+ * an empty text is reported to JAXB instead. The parsed
+ * array is then stored into the field when the enclosing
+ * object is completely unmarshalled. Lists of doubles
+ * are stored as {@link PrimitiveDoubleList} instances.
+ * If a token cannot be parsed, the text is left unchanged, and
+ * JAXB processes it as usual.
+ *
+ * Since the text seen by JAXB is modified, this reader must not be used
+ * when the unmarshaller validates the document against a schema.
+ * The parsing is also more lenient than the one
+ * performed by JAXB; for example, it accepts \texttt{Infinity}
+ * in addition to \texttt{INF}.
+ */
+public class PrimitiveArrayStreamReader extends StreamReaderDelegate {
+   private static final char[] EMPTY = new char[0];
+   private static final double[] POW10 = new double[23];
+   static {
+      POW10[0] = 1;
+      for (int i = 1; i < POW10.length; i++)
+         POW10[i] = 10*POW10[i - 1];
+   }
+   private static final Map<Class<?>, ClassInfo> infos = new HashMap<Class<?>, ClassInfo>();
+
+   private final List<String> names = new ArrayList<String>();
+   private final List<Frame> frames = new ArrayList<Frame>();
+   private Unmarshaller.Listener next;
+   private boolean replaced;
+   // Number of start tags read, and value of this counter when
+   // the last text was read, to detect texts split into
+   // several events
+   private int numStarts;
+   private int textStart = -1;
+   private boolean textReplaced;
+   private double[] buf = new double[64];
+
+   /**
+    * Constructs a new stream reader reading
+    * from \texttt{reader}.
+    *
+    * @param reader
+    *           the wrapped stream reader.
+    */
+   public PrimitiveArrayStreamReader (XMLStreamReader reader) {
+      super (reader);
+   }
+
+   /**
+    * Installs the listener of this reader on the
+    * unmarshaller \texttt{um}. Any listener previously
+    * associated with \texttt{um} is still notified of
+    * unmarshalling events.
+    *
+    * @param um
+    *           the unmarshaller processing this reader.
+    */
+   public void install (Unmarshaller um) {
+      next = um.getListener ();
+      um.setListener (new Listener());
+   }
+
+   @Override
+   public int next () throws XMLStreamException {
+      replaced = false;
+      final int ev = super.next ();
+      switch (ev) {
+      case START_ELEMENT:
+         ++numStarts;
+         names.add (getLocalName ());
+         break;
+      case END_ELEMENT:
+         names.remove (names.size () - 1);
+         break;
+      case CHARACTERS:
+      case CDATA:
+         processText ();
+         break;
+      }
+      return ev;
+   }
+
+   @Override
+   public int nextTag () throws XMLStreamException {
+      int ev = next ();
+      while (ev == CHARACTERS && isWhiteSpace () || ev == CDATA && isWhiteSpace ()
+            || ev == SPACE || ev == PROCESSING_INSTRUCTION || ev == COMMENT)
+         ev = next ();
+      if (ev != START_ELEMENT && ev != END_ELEMENT)
+         throw new XMLStreamException ("Expected start or end tag", getLocation ());
+      return ev;
+   }
+
+   @Override
+   public String getElementText () throws XMLStreamException {
+      if (getEventType () != START_ELEMENT)
+         throw new XMLStreamException ("Current event is not a start tag", getLocation ());
+      final StringBuilder sb = new StringBuilder ();
+      int ev = next ();
+      while (ev != END_ELEMENT) {
+         if (ev == CHARACTERS || ev == CDATA || ev == SPACE || ev == ENTITY_REFERENCE)
+            sb.append (getText ());
+         else if (ev != PROCESSING_INSTRUCTION && ev != COMMENT)
+            throw new XMLStreamException ("Unexpected event in element text", getLocation ());
+         ev = next ();
+      }
+      return sb.toString ();
+   }
+
+   @Override
+   public String getText () {
+      return replaced ? "" : super.getText ();
+   }
+
+   @Override
+   public char[] getTextCharacters () {
+      return replaced ? EMPTY : super.getTextCharacters ();
+   }
+
+   @Override
+   public int getTextCharacters (int sourceStart, char[] target, int targetStart, int length)
+         throws XMLStreamException {
+      return replaced ? 0 : super.getTextCharacters (sourceStart, target, targetStart, length);
+   }
+
+   @Override
+   public int getTextStart () {
+      return replaced ? 0 : super.getTextStart ();
+   }
+
+   @Override
+   public int getTextLength () {
+      return replaced ? 0 : super.getTextLength ();
+   }
+
+   @Override
+   public boolean isWhiteSpace () {
+      return replaced || super.isWhiteSpace ();
+   }
+
+   private void processText () {
+      final boolean continued = textStart == numStarts;
+      if (continued && !textReplaced)
+         return;
+      textStart = numStarts;
+      textReplaced = false;
+      if (frames.isEmpty ())
+         return;
+      final Frame frame = frames.get (frames.size () - 1);
+      final int depth = names.size ();
+      final Field field;
+      if (depth == frame.depth)
+         field = frame.info.valueField;
+      else if (depth == frame.depth + 1)
+         field = frame.info.listFields.get (names.get (depth - 1));
+      else
+         return;
+      if (field == null)
+         return;
+      final char[] text = super.getTextCharacters ();
+      final int start = super.getTextStart ();
+      final int end = start + super.getTextLength ();
+      Object value;
+      try {
+         if (field.getType () == int[].class)
+            value = parseInts (text, start, end);
+         else {
+            final int n = parseDoubles (text, start, end);
+            if (field.getType () == double[].class) {
+               final double[] res = new double[n];
+               System.arraycopy (buf, 0, res, 0, n);
+               value = res;
+            }
+            else {
+               final double[] res = new double[Math.max (n, 1)];
+               System.arraycopy (buf, 0, res, 0, n);
+               value = new PrimitiveDoubleList (res, n);
+            }
+         }
+      }
+      catch (final NumberFormatException nfe) {
+         if (continued)
+            // The first part of the text was already
+            // hidden from JAXB
+            throw new IllegalStateException ("Cannot parse the list of numbers in element "
+                  + names.get (depth - 1), nfe);
+         // Let JAXB process the text and report the error
+         return;
+      }
+      if (continued) {
+         final int last = frame.values.size () - 1;
+         value = concat (frame.values.get (last), value);
+         frame.values.set (last, value);
+      }
+      else {
+         frame.fields.add (field);
+         frame.values.add (value);
+      }
+      textReplaced = true;
+      replaced = true;
+   }
+
+   private static Object concat (Object v1, Object v2) {
+      if (v1 instanceof PrimitiveDoubleList) {
+         ((PrimitiveDoubleList) v1).addAll ((PrimitiveDoubleList) v2);
+         return v1;
+      }
+      final int n1 = Array.getLength (v1);
+      final int n2 = Array.getLength (v2);
+      final Object res = Array.newInstance (v1.getClass ().getComponentType (), n1 + n2);
+      System.arraycopy (v1, 0, res, 0, n1);
+      System.arraycopy (v2, 0, res, n1, n2);
+      return res;
+   }
+
+   private static boolean isSpace (char c) {
+      return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+   }
+
+   private int parseDoubles (char[] text, int start, int end) {
+      int n = 0;
+      int i = start;
+      while (true) {
+         while (i < end && isSpace (text[i]))
+            ++i;
+         if (i == end)
+            return n;
+         final int s = i;
+         while (i < end && !isSpace (text[i]))
+            ++i;
+         if (n == buf.length) {
+            final double[] newBuf = new double[2*n];
+            System.arraycopy (buf, 0, newBuf, 0, n);
+            buf = newBuf;
+         }
+         buf[n++] = parseDouble (text, s, i);
+      }
+   }
+
+   private static int[] parseInts (char[] text, int start, int end) {
+      int[] res = new int[16];
+      int n = 0;
+      int i = start;
+      while (true) {
+         while (i < end && isSpace (text[i]))
+            ++i;
+         if (i == end)
+            break;
+         final int s = i;
+         while (i < end && !isSpace (text[i]))
+            ++i;
+         if (n == res.length) {
+            final int[] newRes = new int[2*n];
+            System.arraycopy (res, 0, newRes, 0, n);
+            res = newRes;
+         }
+         res[n++] = parseInt (text, s, i);
+      }
+      final int[] a = new int[n];
+      System.arraycopy (res, 0, a, 0, n);
+      return a;
+   }
+
+   /**
+    * Parses the decimal number in \texttt{text[start..end-1]}.
+    * Numbers whose digits form an integer smaller than $2^{53}$,
+    * without exponent, are converted
+    * by dividing their exactly-represented digits by an exact
+    * power of 10, which is correctly rounded. Other numbers are
+    * converted using {@link Double#parseDouble(String)}.
+    */
+   static double parseDouble (char[] text, int start, int end) {
+      int i = start;
+      boolean neg = false;
+      if (text[i] == '-') {
+         neg = true;
+         ++i;
+      }
+      else if (text[i] == '+')
+         ++i;
+      long m = 0;
+      int scale = 0;
+      boolean dot = false;
+      boolean digits = false;
+      for (; i < end; i++) {
+         final char c = text[i];
+         if (c >= '0' && c <= '9') {
+            if (m >= 900719925474099L)
+               return parseDoubleSlow (text, start, end);
+            m = 10*m + (c - '0');
+            digits = true;
+            if (dot)
+               ++scale;
+         }
+         else if (c == '.' && !dot)
+            dot = true;
+         else
+            return parseDoubleSlow (text, start, end);
+      }
+      if (!digits || scale >= POW10.length)
+         return parseDoubleSlow (text, start, end);
+      final double v = m / POW10[scale];
+      return neg ? -v : v;
+   }
+
+   private static double parseDoubleSlow (char[] text, int start, int end) {
+      final String s = new String (text, start, end - start);
+      if (s.equals ("INF"))
+         return Double.POSITIVE_INFINITY;
+      if (s.equals ("-INF"))
+         return Double.NEGATIVE_INFINITY;
+      return Double.parseDouble (s);
+   }
+
+   static int parseInt (char[] text, int start, int end) {
+      int i = start;
+      boolean neg = false;
+      if (text[i] == '-') {
+         neg = true;
+         ++i;
+      }
+      else if (text[i] == '+')
+         ++i;
+      if (i == end || end - i > 9)
+         return Integer.parseInt (new String (text, start, end - start));
+      int v = 0;
+      for (; i < end; i++) {
+         final char c = text[i];
+         if (c < '0' || c > '9')
+            throw new NumberFormatException (new String (text, start, end - start));
+         v = 10*v + (c - '0');
+      }
+      return neg ? -v : v;
+   }
+
+   private static ClassInfo getInfo (Class<?> cls) {
+      synchronized (infos) {
+         ClassInfo info = infos.get (cls);
+         if (info == null) {
+            info = new ClassInfo (cls);
+            infos.put (cls, info);
+         }
+         return info;
+      }
+   }
+
+   private static final class ClassInfo {
+      Field valueField;
+      final Map<String, Field> listFields = new HashMap<String, Field>();
+
+      ClassInfo (Class<?> cls) {
+         for (Class<?> c = cls; c != null && c != Object.class; c = c.getSuperclass ())
+            for (final Field f : c.getDeclaredFields ()) {
+               if (f.isAnnotationPresent (XmlValue.class)) {
+                  if (valueField == null && isSupported (f)) {
+                     f.setAccessible (true);
+                     valueField = f;
+                  }
+               }
+               else if (f.isAnnotationPresent (XmlList.class)
+                     && (f.getType () == double[].class || f.getType () == int[].class)) {
+                  final XmlElement el = f.getAnnotation (XmlElement.class);
+                  final String name = el == null || el.name ().equals ("##default") ?
+                        f.getName () : el.name ();
+                  if (!listFields.containsKey (name)) {
+                     f.setAccessible (true);
+                     listFields.put (name, f);
+                  }
+               }
+            }
+      }
+
+      private static boolean isSupported (Field f) {
+         if (f.getType () == double[].class || f.getType () == int[].class)
+            return true;
+         if (f.getType () != List.class)
+            return false;
+         final Type type = f.getGenericType ();
+         return type instanceof ParameterizedType &&
+         ((ParameterizedType) type).getActualTypeArguments ()[0] == Double.class;
+      }
+   }
+
+   private static final class Frame {
+      final Object target;
+      final int depth;
+      final ClassInfo info;
+      final List<Field> fields = new ArrayList<Field>();
+      final List<Object> values = new ArrayList<Object>();
+
+      Frame (Object target, int depth, ClassInfo info) {
+         this.target = target;
+         this.depth = depth;
+         this.info = info;
+      }
+   }
+
+   private class Listener extends Unmarshaller.Listener {
+      @Override
+      public void beforeUnmarshal (Object target, Object parent) {
+         frames.add (new Frame (target, names.size (), getInfo (target.getClass ())));
+         if (next != null)
+            next.beforeUnmarshal (target, parent);
+      }
+
+      @Override
+      public void afterUnmarshal (Object target, Object parent) {
+         for (int f = frames.size () - 1; f >= 0; f--) {
+            final Frame frame = frames.get (f);
+            if (frame.target != target)
+               continue;
+            for (int i = 0; i < frame.fields.size (); i++)
+               try {
+                  frame.fields.get (i).set (target, frame.values.get (i));
+               }
+               catch (final IllegalAccessException iae) {
+                  throw new IllegalStateException ("Cannot set field "
+                        + frame.fields.get (i).getName () + " in class "
+                        + target.getClass ().getName (), iae);
+               }
+            while (frames.size () > f)
+               frames.remove (frames.size () - 1);
+            break;
+         }
+         if (next != null)
+            next.afterUnmarshal (target, parent);
+      }
+   }
+}
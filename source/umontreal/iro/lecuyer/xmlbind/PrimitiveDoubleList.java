@@ -0,0 +1,119 @@
+package umontreal.iro.lecuyer.xmlbind;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Represents a list of double-precision values stored in an
+ * array of primitive values rather than as {@link Double} objects.
+ * This list is used by {@link PrimitiveArrayStreamReader}
+ * to store the values of rows in 2D arrays such as
+ * {@link umontreal.iro.lecuyer.xmlbind.params.DoubleArray},
+ * which JAXB represents as lists.
+ * Elements can be added, removed, or replaced as with any
+ * other list, but they cannot be \texttt{null}.
+ * The method {@link #toDoubleArray()} can be used to
+ * obtain the values without unboxing each of them.
+ */
+public class PrimitiveDoubleList extends AbstractList<Double> implements RandomAccess {
+   private double[] values;
+   private int size;
+
+   /**
+    * Constructs a new empty list.
+    */
+   public PrimitiveDoubleList () {
+      values = new double[10];
+   }
+
+   /**
+    * Constructs a new list containing the
+    * first \texttt{size} elements of the array \texttt{values}.
+    * The array is used directly by the list, without being
+    * cloned.
+    *
+    * @param values
+    *           the array of values.
+    * @param size
+    *           the number of elements in the list.
+    * @exception IllegalArgumentException
+    *               if \texttt{size} is negative or greater than
+    *               the length of \texttt{values}.
+    */
+   public PrimitiveDoubleList (double[] values, int size) {
+      if (size < 0 || size > values.length)
+         throw new IllegalArgumentException ("Invalid size " + size);
+      this.values = values;
+      this.size = size;
+   }
+
+   /**
+    * Returns a copy of the values in this list, as
+    * an array of primitive values.
+    *
+    * @return the array of values.
+    */
+   public double[] toDoubleArray () {
+      return Arrays.copyOf (values, size);
+   }
+
+   /**
+    * Returns the element at position \texttt{index}
+    * of this list, as a primitive value.
+    *
+    * @param index
+    *           the index of the element.
+    * @return the value of the element.
+    */
+   public double getDouble (int index) {
+      if (index < 0 || index >= size)
+         throw new IndexOutOfBoundsException ("Index: " + index + ", Size: " + size);
+      return values[index];
+   }
+
+   @Override
+   public Double get (int index) {
+      return getDouble (index);
+   }
+
+   @Override
+   public int size () {
+      return size;
+   }
+
+   @Override
+   public Double set (int index, Double element) {
+      final double old = getDouble (index);
+      values[index] = element;
+      return old;
+   }
+
+   @Override
+   public void add (int index, Double element) {
+      if (index < 0 || index > size)
+         throw new IndexOutOfBoundsException ("Index: " + index + ", Size: " + size);
+      final double v = element;
+      if (size == values.length)
+         values = Arrays.copyOf (values, Math.max (10, 2 * size));
+      System.arraycopy (values, index, values, index + 1, size - index);
+      values[index] = v;
+      ++size;
+      ++modCount;
+   }
+
+   @Override
+   public Double remove (int index) {
+      final double old = getDouble (index);
+      System.arraycopy (values, index + 1, values, index, size - index - 1);
+      --size;
+      ++modCount;
+      return old;
+   }
+
+   @Override
+   public void clear () {
+      size = 0;
+      ++modCount;
+   }
+}
@@ -0,0 +1,173 @@
+package umontreal.ssj.simevents;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import umontreal.ssj.simevents.eventlist.EventList;
+
+/**
+ * Simulator counting the executed events, and measuring
+ * the time spent in the {@link Event#actions()} method
+ * of each event, for every class of event.
+ * The simulation itself is performed exactly as
+ * with the {@link Simulator} class; the only difference
+ * is the {@link #start()} method which
+ * reads the system's nanosecond timer before and after
+ * each event.
+ * Counters are not reset by {@link #init()}, so they
+ * accumulate over every replication or batch; one
+ * can use {@link #resetCounters()} to reset them.
+ *
+ * Since reading the timer adds some overhead
+ * to each event, this simulator should be used only
+ * when profiling is needed.
+ * Counters can be read from other threads, e.g., by
+ * a JMX client, while the simulation is in progress.
+ */
+public class ProfilingSimulator extends Simulator {
+   private final Map<Class<?>, EventCounter> counters = new ConcurrentHashMap<Class<?>, EventCounter> ();
+   private Class<?> lastClass;
+   private EventCounter lastCounter;
+
+   /**
+    * Constructs a new profiling simulator using
+    * the default event list.
+    */
+   public ProfilingSimulator () {
+      super ();
+   }
+
+   /**
+    * Constructs a new profiling simulator using
+    * the event list \texttt{evlist}.
+    * @param evlist the event list.
+    */
+   public ProfilingSimulator (EventList evlist) {
+      super (evlist);
+   }
+
+   @Override
+   public void start () {
+      if (eventList.isEmpty ())
+         throw new IllegalStateException (
+               "start() called with an empty event list");
+      stopped = false;
+      simulating = true;
+      Event ev;
+      try {
+         while ((ev = removeFirstEvent ()) != null && !stopped) {
+            final long t = System.nanoTime ();
+            ev.actions ();
+            count (ev.getClass (), System.nanoTime () - t);
+         }
+      }
+      finally {
+         stopped = true;
+         simulating = false;
+      }
+   }
+
+   private final void count (Class<?> cls, long nanos) {
+      EventCounter c;
+      if (cls == lastClass)
+         c = lastCounter;
+      else {
+         c = counters.get (cls);
+         if (c == null) {
+            c = new EventCounter (cls);
+            counters.put (cls, c);
+         }
+         lastClass = cls;
+         lastCounter = c;
+      }
+      ++c.count;
+      c.nanos += nanos;
+   }
+
+   /**
+    * Returns the counters for every class of event
+    * executed by this simulator since the
+    * last call to {@link #resetCounters()}.
+    * @return the list of event counters.
+    */
+   public List<EventCounter> getEventCounters () {
+      return new ArrayList<EventCounter> (counters.values ());
+   }
+
+   /**
+    * Returns the total number of events executed
+    * since the last call to {@link #resetCounters()}.
+    * @return the total number of events.
+    */
+   public long getNumEvents () {
+      long n = 0;
+      for (final EventCounter c : counters.values ())
+         n += c.count;
+      return n;
+   }
+
+   /**
+    * Returns the total time, in nanoseconds, spent
+    * executing events since the last call to
+    * {@link #resetCounters()}.
+    * @return the total time spent executing events.
+    */
+   public long getEventTime () {
+      long t = 0;
+      for (final EventCounter c : counters.values ())
+         t += c.nanos;
+      return t;
+   }
+
+   /**
+    * Resets all the event counters of this simulator.
+    */
+   public void resetCounters () {
+      counters.clear ();
+      lastClass = null;
+      lastCounter = null;
+   }
+
+   /**
+    * Contains the number of executed events and
+    * the cumulative execution time for one class of event.
+    */
+   public static final class EventCounter {
+      private final Class<?> eventClass;
+      // Updated only by the simulation thread, but read by
+      // the JMX threads
+      private volatile long count;
+      private volatile long nanos;
+
+      EventCounter (Class<?> eventClass) {
+         this.eventClass = eventClass;
+      }
+
+      /**
+       * Returns the class of events concerned by this counter.
+       * @return the class of events.
+       */
+      public Class<?> getEventClass () {
+         return eventClass;
+      }
+
+      /**
+       * Returns the number of executed events.
+       * @return the number of events.
+       */
+      public long getCount () {
+         return count;
+      }
+
+      /**
+       * Returns the cumulative time, in nanoseconds, spent
+       * in the {@link Event#actions()} method of the events.
+       * @return the cumulative execution time.
+       */
+      public long getTime () {
+         return nanos;
+      }
+   }
+}